@@ -0,0 +1,72 @@
+package com.asaanloyalty.asaan.auth;
+
+import android.accounts.Account;
+import android.accounts.AccountManager;
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.provider.ContactsContract;
+import android.telephony.TelephonyManager;
+
+/**
+ * {@link DeviceServices} backed by the real system services.
+ */
+class AndroidDeviceServices implements DeviceServices
+{
+	private static final String GOOGLE_ACCOUNT_TYPE = "com.google";
+
+	private final Context mContext;
+
+	AndroidDeviceServices(Context context)
+	{
+		mContext = context;
+	}
+
+	@Override
+	@TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+	public Cursor queryOwnerProfile(String[] projection, String selection, String[] selectionArgs, String sortOrder)
+	{
+		return mContext.getContentResolver().query(
+				Uri.withAppendedPath(ContactsContract.Profile.CONTENT_URI,
+						ContactsContract.Contacts.Data.CONTENT_DIRECTORY), projection, selection, selectionArgs,
+				sortOrder);
+	}
+
+	@Override
+	public String[] getGoogleAccountNames()
+	{
+		// GoogleAuthUtil.GOOGLE_ACCOUNT_TYPE, without loading Play Services
+		final Account[] accounts = AccountManager.get(mContext).getAccountsByType(GOOGLE_ACCOUNT_TYPE);
+		final String[] names = new String[accounts.length];
+		for (int i = 0; i < accounts.length; i++)
+			names[i] = accounts[i].name;
+		return names;
+	}
+
+	@Override
+	public boolean hasTelephony()
+	{
+		return mContext.getPackageManager().hasSystemFeature(PackageManager.FEATURE_TELEPHONY);
+	}
+
+	@Override
+	public String getLine1Number()
+	{
+		return telephony().getLine1Number();
+	}
+
+	@Override
+	public String getSimCountryIso()
+	{
+		TelephonyManager telephony = telephony();
+		return telephony != null ? telephony.getSimCountryIso() : null;
+	}
+
+	private TelephonyManager telephony()
+	{
+		return (TelephonyManager) mContext.getSystemService(Context.TELEPHONY_SERVICE);
+	}
+}
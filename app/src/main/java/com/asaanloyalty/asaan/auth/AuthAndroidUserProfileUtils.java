@@ -0,0 +1,590 @@
+package com.asaanloyalty.asaan.auth;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.provider.ContactsContract;
+import android.text.TextUtils;
+
+public class AuthAndroidUserProfileUtils
+{
+	/**
+	 * Interface for interacting with the result of
+	 * {@link AccountUtils#getUserProfile}.
+	 * 
+	 * @param <_possible_emails>
+	 */
+	private static final Logger logger = Logger.getLogger(AuthAndroidUserProfileUtils.class.getName());
+
+	/** Per-thread mapper so its buffers are reused across profile queries */
+	private static final ThreadLocal<ProfileCursorMapper> sCursorMapper = new ThreadLocal<ProfileCursorMapper>()
+	{
+		@Override
+		protected ProfileCursorMapper initialValue()
+		{
+			return new ProfileCursorMapper();
+		}
+	};
+
+	/** Replaces the system services when set; see {@link #setDeviceServices} */
+	private static volatile DeviceServices sDeviceServices;
+
+	public static class AndroidContactProfile
+	{
+
+		/** The possible email addresses for the user */
+		private final ProfileCandidateSet _possible_emails = new ProfileCandidateSet(ProfileCandidateSet.EMAIL_KEY);
+		/** The possible names for the user */
+		private final ProfileCandidateSet _possible_names = new ProfileCandidateSet(ProfileCandidateSet.NAME_KEY);
+		/** The possible phone numbers for the user */
+		private final ProfileCandidateSet _possible_phone_numbers = new ProfileCandidateSet(
+				ProfileCandidateSet.PHONE_KEY);
+		/** A possible photo for the user */
+		private Uri _possible_photo;
+
+		/**
+		 * Adds an email address to the list of possible email addresses for the
+		 * user. Retains information about whether this email address is the
+		 * primary email address of the user.
+		 * 
+		 * @param email
+		 *            the possible email address
+		 * @param is_primary
+		 *            whether the email address is the primary email address
+		 */
+		public void addPossibleEmail(String email, boolean is_primary)
+		{
+			addPossibleEmail(email, is_primary, ProfileCandidateSet.SOURCE_UNKNOWN);
+		}
+
+		/**
+		 * Adds an email address to the list of possible email addresses for the
+		 * user. An address that is already present is not added again, but
+		 * its ranking is updated.
+		 * 
+		 * @param email
+		 *            the possible email address
+		 * @param is_primary
+		 *            whether the email address is the primary email address
+		 * @param source
+		 *            one of the {@link ProfileCandidateSet} SOURCE_* constants
+		 */
+		public void addPossibleEmail(String email, boolean is_primary, int source)
+		{
+			_possible_emails.add(email, is_primary, source);
+		}
+
+		/**
+		 * Adds a name to the list of possible names for the user.
+		 * 
+		 * @param name
+		 *            the possible name
+		 */
+		public void addPossibleName(String name)
+		{
+			addPossibleName(name, ProfileCandidateSet.SOURCE_UNKNOWN);
+		}
+
+		/**
+		 * Adds a name to the list of possible names for the user.
+		 * 
+		 * @param name
+		 *            the possible name
+		 * @param source
+		 *            one of the {@link ProfileCandidateSet} SOURCE_* constants
+		 */
+		public void addPossibleName(String name, int source)
+		{
+			_possible_names.add(name, false, source);
+		}
+
+		/**
+		 * Adds a phone number to the list of possible phone numbers for the
+		 * user. Retains information about whether this phone number is the
+		 * primary phone number of the user.
+		 * 
+		 * @param phone_number
+		 *            the possible phone number
+		 * @param is_primary
+		 *            whether the phone number is the primary phone number
+		 */
+		public void addPossiblePhoneNumber(String phone_number, boolean is_primary)
+		{
+			addPossiblePhoneNumber(phone_number, is_primary, ProfileCandidateSet.SOURCE_UNKNOWN);
+		}
+
+		/**
+		 * Adds a phone number to the list of possible phone numbers for the
+		 * user. A number that is already present is not added again, but its
+		 * ranking is updated.
+		 * 
+		 * @param phone_number
+		 *            the possible phone number
+		 * @param is_primary
+		 *            whether the phone number is the primary phone number
+		 * @param source
+		 *            one of the {@link ProfileCandidateSet} SOURCE_* constants
+		 */
+		public void addPossiblePhoneNumber(String phone_number, boolean is_primary, int source)
+		{
+			_possible_phone_numbers.add(phone_number, is_primary, source);
+		}
+
+		/**
+		 * Sets the possible photo for the user.
+		 * 
+		 * @param photo
+		 *            the possible photo
+		 */
+		public void addPossiblePhoto(Uri photo)
+		{
+			if (photo != null)
+				_possible_photo = photo;
+		}
+
+		/**
+		 * Adds every candidate of another profile to this one. The other
+		 * profile's photo is only used if this profile has none.
+		 * 
+		 * @param other
+		 *            the profile to merge in
+		 */
+		public void merge(AndroidContactProfile other)
+		{
+			if (other == null)
+				return;
+			_possible_emails.addAll(other._possible_emails);
+			_possible_names.addAll(other._possible_names);
+			_possible_phone_numbers.addAll(other._possible_phone_numbers);
+			if (_possible_photo == null)
+				_possible_photo = other._possible_photo;
+		}
+
+		/**
+		 * Retrieves the possible photo.
+		 * 
+		 * @return the possible photo
+		 */
+		public String possiblePhotoPath()
+		{
+			if (_possible_photo != null)
+				return _possible_photo.getEncodedPath();
+			else
+				return null;
+		}
+
+		/**
+		 * Retrieves the primary email address.
+		 * 
+		 * @return the highest ranked email address
+		 */
+		public String primaryEmail()
+		{
+			return _possible_emails.best();
+		}
+
+		/**
+		 * Retrieves the primary phone number
+		 * 
+		 * @return the highest ranked phone number
+		 */
+		public String primaryPhoneNumber()
+		{
+			return _possible_phone_numbers.best();
+		}
+
+		/**
+		 * Retrieves the primary name
+		 * 
+		 * @return the highest ranked name
+		 */
+		public String primaryName()
+		{
+			return _possible_names.best();
+		}
+
+		/**
+		 * Sets the primary name for the user. The name is also added to the
+		 * list of possible names.
+		 *
+		 * @param name
+		 *            the primary name
+		 */
+		public void setPrimaryName(String name)
+		{
+			_possible_names.add(name, true, ProfileCandidateSet.SOURCE_UNKNOWN);
+		}
+
+		/**
+		 * Retrieves the possible email addresses.
+		 *
+		 * @return the possible email addresses in the order they were added
+		 */
+		public List<String> possibleEmails()
+		{
+			return _possible_emails.values();
+		}
+
+		/**
+		 * Retrieves the possible names.
+		 *
+		 * @return the possible names in the order they were added
+		 */
+		public List<String> possibleNames()
+		{
+			return _possible_names.values();
+		}
+
+		/**
+		 * Retrieves the possible phone numbers.
+		 *
+		 * @return the possible phone numbers in the order they were added
+		 */
+		public List<String> possiblePhoneNumbers()
+		{
+			return _possible_phone_numbers.values();
+		}
+
+		/**
+		 * Retrieves the ranked email address candidates.
+		 *
+		 * @return the email address candidates
+		 */
+		public ProfileCandidateSet emailCandidates()
+		{
+			return _possible_emails;
+		}
+
+		/**
+		 * Retrieves the ranked name candidates.
+		 *
+		 * @return the name candidates
+		 */
+		public ProfileCandidateSet nameCandidates()
+		{
+			return _possible_names;
+		}
+
+		/**
+		 * Retrieves the ranked phone number candidates.
+		 *
+		 * @return the phone number candidates
+		 */
+		public ProfileCandidateSet phoneNumberCandidates()
+		{
+			return _possible_phone_numbers;
+		}
+
+		/**
+		 * Retrieves the possible photo.
+		 *
+		 * @return the possible photo URI, or null if there is none
+		 */
+		public Uri possiblePhoto()
+		{
+			return _possible_photo;
+		}
+
+		/**
+		 * Converts the best candidates into the device owner's
+		 * {@link SocialProfile}.
+		 */
+		public SocialProfile toSocialProfile()
+		{
+			return new SocialProfile.Builder(SocialProfile.PROVIDER_DEVICE, "me").setName(primaryName())
+					.setEmail(primaryEmail()).setPhoneNumber(primaryPhoneNumber())
+					.setPhotoUrl(_possible_photo != null ? _possible_photo.toString() : null).build();
+		}
+	}
+
+	/** Reads the device owner's profile contact */
+	static final ProfileSource CONTACTS_SOURCE = new ProfileSource()
+	{
+		@Override
+		public String name()
+		{
+			return "contacts";
+		}
+
+		@Override
+		public long timeoutMillis()
+		{
+			return 1500;
+		}
+
+		@Override
+		public AndroidContactProfile load(Context context)
+		{
+			if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+				return getUserProfileOnIcsDevice(services(context));
+			return null;
+		}
+	};
+
+	/** Reads the Google accounts registered on the device */
+	static final ProfileSource ACCOUNTS_SOURCE = new ProfileSource()
+	{
+		@Override
+		public String name()
+		{
+			return "accounts";
+		}
+
+		@Override
+		public long timeoutMillis()
+		{
+			return 1000;
+		}
+
+		@Override
+		public AndroidContactProfile load(Context context)
+		{
+			return getUserProfileFromAccounts(services(context));
+		}
+	};
+
+	/** Reads the device's own phone number */
+	static final ProfileSource TELEPHONY_SOURCE = new ProfileSource()
+	{
+		@Override
+		public String name()
+		{
+			return "telephony";
+		}
+
+		@Override
+		public long timeoutMillis()
+		{
+			return 500;
+		}
+
+		@Override
+		public AndroidContactProfile load(Context context)
+		{
+			return getUserProfileFromTelephony(services(context));
+		}
+	};
+
+	/** Queries every device source and stops once an email and name are known */
+	private static final ProfileResolver sDefaultResolver = new ProfileResolver(Arrays.asList(CONTACTS_SOURCE,
+			ACCOUNTS_SOURCE, TELEPHONY_SOURCE), ProfileResolver.EMAIL_AND_NAME);
+	/** Waits for every device source and ignores the registered ones */
+	private static final ProfileResolver sDeviceResolver = new ProfileResolver(Arrays.asList(CONTACTS_SOURCE,
+			ACCOUNTS_SOURCE, TELEPHONY_SOURCE), ProfileResolver.ALL_SOURCES, false);
+
+	/**
+	 * Retrieves the user profile information. The device sources, and any
+	 * registered with {@link ProfileResolver#registerSource}, are queried in
+	 * parallel and their results merged. Blocks until the profile has an
+	 * email address and a name or every source has answered or timed out.
+	 * 
+	 * @param context
+	 *            the context from which to retrieve the user profile
+	 * @return the user profile, never null
+	 */
+	public static AndroidContactProfile getUserProfile(Context context)
+	{
+		return resolveUserProfile(context).getProfile();
+	}
+
+	/**
+	 * Like {@link #getUserProfile}, but also tells whether the profile is
+	 * complete and whether a registered source contributed to it.
+	 */
+	static ProfileResolver.Result resolveUserProfile(Context context)
+	{
+		initDefaultRegion(services(context));
+		return sDefaultResolver.resolve(context);
+	}
+
+	/**
+	 * Reads the profile from the device sources only, waiting for each of
+	 * them to answer or time out. Slower than {@link #getUserProfile}, but the
+	 * result only depends on the device, so it can be cached.
+	 */
+	static ProfileResolver.Result resolveDeviceProfile(Context context)
+	{
+		initDefaultRegion(services(context));
+		return sDeviceResolver.resolve(context);
+	}
+
+	/**
+	 * Makes the profile sources read from the given services instead of the
+	 * system's, for example fakes with synthetic data.
+	 *
+	 * @param services
+	 *            the services to use, or null to go back to the system's
+	 */
+	static void setDeviceServices(DeviceServices services)
+	{
+		sDeviceServices = services;
+	}
+
+	static DeviceServices services(Context context)
+	{
+		DeviceServices services = sDeviceServices;
+		return services != null ? services : new AndroidDeviceServices(context.getApplicationContext());
+	}
+
+	/**
+	 * Numbers in national form, from any source, are assumed to be in the
+	 * SIM's country.
+	 */
+	private static void initDefaultRegion(DeviceServices services)
+	{
+		try
+		{
+			IdentityNormalizer.setDefaultRegion(services.getSimCountryIso());
+		} catch (Exception e)
+		{
+			logger.log(Level.WARNING, "initDefaultRegion Failed - " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Retrieves the user's email addresses from the Google accounts on the
+	 * device.
+	 * 
+	 * @param services
+	 *            the services from which to retrieve the user's email address
+	 * @return the possible user's email addresses
+	 */
+	private static AndroidContactProfile getUserProfileFromAccounts(DeviceServices services)
+	{
+		try
+		{
+			final AndroidContactProfile user_profile = new AndroidContactProfile();
+			// As far as I can tell, there is no way to get the real name or
+			// phone
+			// number from the Google account
+			for (String account_name : services.getGoogleAccountNames())
+			{
+				if (IdentityNormalizer.isValidEmail(account_name))
+					user_profile.addPossibleEmail(account_name, true, ProfileCandidateSet.SOURCE_ACCOUNTS);
+			}
+			return user_profile;
+		} catch (Exception e)
+		{
+			logger.log(Level.WARNING, "getUserProfileFromAccounts Failed - " + e.getMessage());
+		}
+		return null;
+	}
+
+	/**
+	 * Retrieves the phone number of the device if the device has one.
+	 * 
+	 * @param services
+	 *            the services from which to retrieve the phone number
+	 * @return the possible user's phone number
+	 */
+	private static AndroidContactProfile getUserProfileFromTelephony(DeviceServices services)
+	{
+		try
+		{
+			if (!services.hasTelephony())
+				return null;
+			final String line1_number = IdentityNormalizer.normalizePhone(services.getLine1Number(),
+					services.getSimCountryIso());
+			final AndroidContactProfile user_profile = new AndroidContactProfile();
+			if (!TextUtils.isEmpty(line1_number))
+				user_profile.addPossiblePhoneNumber(line1_number, true, ProfileCandidateSet.SOURCE_TELEPHONY);
+			return user_profile;
+		} catch (Exception e)
+		{
+			logger.log(Level.WARNING, "getUserProfileFromTelephony Failed - " + e.getMessage());
+		}
+		return null;
+	}
+
+	/**
+	 * Retrieves the user profile information in a manner supported by Ice Cream
+	 * Sandwich devices.
+	 * 
+	 * @param services
+	 *            the services from which to retrieve the user's email address
+	 *            and name
+	 * @return a list of the possible user's email address and name
+	 */
+	@TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+	private static AndroidContactProfile getUserProfileOnIcsDevice(DeviceServices services)
+	{
+		final long traceBegin = AuthTrace.begin();
+		try
+		{
+			// Retrieves data rows for the device user's 'profile' contact
+			final Cursor cursor = services.queryOwnerProfile(ProfileQuery.PROJECTION,
+
+					// Selects only email addresses or names
+					ContactsContract.Contacts.Data.MIMETYPE + "=? OR " + ContactsContract.Contacts.Data.MIMETYPE
+							+ "=? OR " + ContactsContract.Contacts.Data.MIMETYPE + "=? OR "
+							+ ContactsContract.Contacts.Data.MIMETYPE + "=?", new String[]{
+							ContactsContract.CommonDataKinds.Email.CONTENT_ITEM_TYPE,
+							ContactsContract.CommonDataKinds.StructuredName.CONTENT_ITEM_TYPE,
+							ContactsContract.CommonDataKinds.Phone.CONTENT_ITEM_TYPE,
+							ContactsContract.CommonDataKinds.Photo.CONTENT_ITEM_TYPE},
+
+					// Show primary rows first. Note that there won't be a
+					// primary
+					// email address if the
+					// user hasn't specified one.
+					ContactsContract.Contacts.Data.IS_PRIMARY + " DESC");
+
+			try
+			{
+				return sCursorMapper.get().map(cursor);
+			} finally
+			{
+				cursor.close();
+				AuthTrace.end(AuthTrace.PHASE_PROFILE_QUERY, traceBegin);
+			}
+		} catch (Exception e)
+		{
+			logger.log(Level.WARNING, "getUserProfileOnIcsDevice Failed - " + e.getMessage());
+		}
+		return null;
+	}
+
+	/**
+	 * Contacts user profile query interface.
+	 */
+	interface ProfileQuery
+	{
+		/** The set of columns to extract from the profile query results */
+		String[] PROJECTION = {ContactsContract.CommonDataKinds.Email.ADDRESS,
+				ContactsContract.CommonDataKinds.Email.IS_PRIMARY,
+				ContactsContract.CommonDataKinds.StructuredName.FAMILY_NAME,
+				ContactsContract.CommonDataKinds.StructuredName.GIVEN_NAME,
+				ContactsContract.CommonDataKinds.Phone.NUMBER, ContactsContract.CommonDataKinds.Phone.IS_PRIMARY,
+				ContactsContract.CommonDataKinds.Photo.PHOTO_URI, ContactsContract.Contacts.Data.MIMETYPE};
+
+		/** Column index for the email address in the profile query results */
+		int EMAIL = 0;
+		/**
+		 * Column index for the primary email address indicator in the profile
+		 * query results
+		 */
+		int IS_PRIMARY_EMAIL = 1;
+		/** Column index for the family name in the profile query results */
+		int FAMILY_NAME = 2;
+		/** Column index for the given name in the profile query results */
+		int GIVEN_NAME = 3;
+		/** Column index for the phone number in the profile query results */
+		int PHONE_NUMBER = 4;
+		/**
+		 * Column index for the primary phone number in the profile query
+		 * results
+		 */
+		int IS_PRIMARY_PHONE_NUMBER = 5;
+		/** Column index for the photo in the profile query results */
+		int PHOTO = 6;
+		/** Column index for the MIME type in the profile query results */
+		int MIME_TYPE = 7;
+	}
+}
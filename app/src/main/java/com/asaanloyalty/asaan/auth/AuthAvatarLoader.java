@@ -0,0 +1,222 @@
+package com.asaanloyalty.asaan.auth;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.text.TextUtils;
+import android.view.View;
+import android.widget.ImageView;
+
+import com.asaanloyalty.asaan.R;
+import com.nostra13.universalimageloader.cache.disc.impl.LimitedAgeDiscCache;
+import com.nostra13.universalimageloader.cache.disc.naming.Md5FileNameGenerator;
+import com.nostra13.universalimageloader.cache.memory.impl.LruMemoryCache;
+import com.nostra13.universalimageloader.core.DisplayImageOptions;
+import com.nostra13.universalimageloader.core.ImageLoader;
+import com.nostra13.universalimageloader.core.ImageLoaderConfiguration;
+import com.nostra13.universalimageloader.core.assist.FailReason;
+import com.nostra13.universalimageloader.core.assist.ImageScaleType;
+import com.nostra13.universalimageloader.core.assist.DiscCacheUtil;
+import com.nostra13.universalimageloader.core.assist.ImageSize;
+import com.nostra13.universalimageloader.core.assist.MemoryCacheUtil;
+import com.nostra13.universalimageloader.core.assist.SimpleImageLoadingListener;
+import com.nostra13.universalimageloader.core.download.BaseImageDownloader;
+import com.nostra13.universalimageloader.utils.StorageUtils;
+
+/**
+ * Loads and caches profile photos for Facebook, Google+ and the device
+ * profile through the bundled Universal Image Loader.
+ *
+ * Photos are cached under an "avatar://provider/user-id/url-hash" key and
+ * decoded at the avatar size instead of full resolution. When the provider
+ * hands out a new URL for a user, the photo cached for the old one is removed
+ * from memory and disk, so a changed photo is downloaded again. Some URLs,
+ * such as the Facebook Graph one, stay the same when the photo changes, so
+ * photos are also dropped from disk after {@link #DISK_CACHE_MAX_AGE_S}.
+ * {@link #prefetch} should be called as soon as the user id is known so the
+ * photo is ready by the time it is shown.
+ */
+public class AuthAvatarLoader
+{
+	private static final Logger logger = Logger.getLogger(AuthAvatarLoader.class.getName());
+
+	public static final String PROVIDER_FACEBOOK = SocialProfile.PROVIDER_FACEBOOK;
+	public static final String PROVIDER_GOOGLE_PLUS = SocialProfile.PROVIDER_GOOGLE_PLUS;
+	public static final String PROVIDER_DEVICE = SocialProfile.PROVIDER_DEVICE;
+
+	/** Scheme of the cache keys handled by {@link AvatarDownloader} */
+	private static final String AVATAR_SCHEME = "avatar";
+	/** Share of the app's memory class given to decoded avatars */
+	private static final int MEMORY_CACHE_DIVISOR = 16;
+	/** Downloaded avatars are kept on disk for this many seconds */
+	private static final long DISK_CACHE_MAX_AGE_S = 3 * 24 * 60 * 60L;
+	/** Holds the cache key last used for each user, by provider and user id */
+	private static final String PREFS_KEYS = "avatar_keys";
+	/** Avatars are small, so a couple of threads are enough */
+	private static final int THREAD_POOL_SIZE = 2;
+
+	private static AuthAvatarLoader sInstance;
+
+	private final ImageLoader mImageLoader = ImageLoader.getInstance();
+	private final DisplayImageOptions mBaseOptions;
+	private final ImageSize mTargetSize;
+	private final SharedPreferences mKeys;
+
+	private AuthAvatarLoader(Context context)
+	{
+		final Context app_context = context.getApplicationContext();
+		final int memory_class = ((ActivityManager) app_context.getSystemService(Context.ACTIVITY_SERVICE))
+				.getMemoryClass();
+		final int avatar_size = app_context.getResources().getDimensionPixelSize(R.dimen.avatar_size);
+		mTargetSize = new ImageSize(avatar_size, avatar_size);
+		mKeys = app_context.getSharedPreferences(PREFS_KEYS, Context.MODE_PRIVATE);
+		mBaseOptions = new DisplayImageOptions.Builder().cacheInMemory(true).cacheOnDisc(true)
+				.imageScaleType(ImageScaleType.EXACTLY).bitmapConfig(Bitmap.Config.RGB_565).build();
+
+		if (!mImageLoader.isInited())
+		{
+			ImageLoaderConfiguration config = new ImageLoaderConfiguration.Builder(app_context)
+					.threadPoolSize(THREAD_POOL_SIZE)
+					.memoryCache(new LruMemoryCache(memory_class * 1024 * 1024 / MEMORY_CACHE_DIVISOR))
+					.memoryCacheExtraOptions(avatar_size, avatar_size)
+					.discCache(new LimitedAgeDiscCache(StorageUtils.getCacheDirectory(app_context),
+							new Md5FileNameGenerator(), DISK_CACHE_MAX_AGE_S))
+					.imageDownloader(new AvatarDownloader(app_context)).defaultDisplayImageOptions(mBaseOptions)
+					.build();
+			mImageLoader.init(config);
+		}
+	}
+
+	/**
+	 * Returns the process-wide avatar loader.
+	 *
+	 * @param context
+	 *            any context; only its application context is retained
+	 */
+	public static synchronized AuthAvatarLoader getInstance(Context context)
+	{
+		if (sInstance == null)
+			sInstance = new AuthAvatarLoader(context);
+		return sInstance;
+	}
+
+	/**
+	 * Builds the Facebook Graph URL of a user's profile picture.
+	 */
+	public static String facebookPhotoUrl(String userId)
+	{
+		return "http://graph.facebook.com/" + userId + "/picture?type=large";
+	}
+
+	/**
+	 * Starts downloading and decoding an avatar in the background so a later
+	 * {@link #display} is served from memory.
+	 *
+	 * @param provider
+	 *            one of the PROVIDER_* constants
+	 * @param userId
+	 *            the user's id with that provider
+	 * @param sourceUrl
+	 *            where to download the photo from if it is not cached
+	 */
+	public void prefetch(String provider, String userId, String sourceUrl)
+	{
+		if (TextUtils.isEmpty(userId) || TextUtils.isEmpty(sourceUrl))
+			return;
+		mImageLoader.loadImage(cacheKey(provider, userId, sourceUrl), mTargetSize, optionsFor(sourceUrl),
+				new SimpleImageLoadingListener()
+				{
+					@Override
+					public void onLoadingFailed(String imageUri, View view, FailReason failReason)
+					{
+						logger.log(Level.WARNING, "Avatar prefetch failed for " + imageUri + " - "
+								+ failReason.getType());
+					}
+				});
+	}
+
+	/**
+	 * Shows an avatar, downloading it first if it is not cached.
+	 *
+	 * @param provider
+	 *            one of the PROVIDER_* constants
+	 * @param userId
+	 *            the user's id with that provider
+	 * @param sourceUrl
+	 *            where to download the photo from if it is not cached
+	 * @param imageView
+	 *            the view to show the avatar in
+	 */
+	public void display(String provider, String userId, String sourceUrl, ImageView imageView)
+	{
+		if (TextUtils.isEmpty(userId) || TextUtils.isEmpty(sourceUrl))
+			return;
+		mImageLoader.displayImage(cacheKey(provider, userId, sourceUrl), imageView, optionsFor(sourceUrl));
+	}
+
+	/**
+	 * Prefetches the photo of the device owner's profile contact, if it has
+	 * one.
+	 */
+	public void prefetch(AuthAndroidUserProfileUtils.AndroidContactProfile profile)
+	{
+		Uri photo = profile.possiblePhoto();
+		if (photo != null)
+			prefetch(PROVIDER_DEVICE, "me", photo.toString());
+	}
+
+	private DisplayImageOptions optionsFor(String sourceUrl)
+	{
+		return new DisplayImageOptions.Builder().cloneFrom(mBaseOptions).extraForDownloader(sourceUrl).build();
+	}
+
+	/**
+	 * Returns the cache key of a user's photo at a URL, removing the photo
+	 * cached under the user's previous key if the URL changed.
+	 */
+	private synchronized String cacheKey(String provider, String userId, String sourceUrl)
+	{
+		String user = provider.toLowerCase(Locale.US) + "/" + Uri.encode(userId);
+		String key = AVATAR_SCHEME + "://" + user + "/" + Integer.toHexString(sourceUrl.hashCode());
+		String previous = mKeys.getString(user, null);
+		if (!key.equals(previous))
+		{
+			if (previous != null)
+			{
+				logger.log(Level.INFO, "Avatar URL changed for " + user + ", dropping the cached photo");
+				MemoryCacheUtil.removeFromCache(previous, mImageLoader.getMemoryCache());
+				DiscCacheUtil.removeFromCache(previous, mImageLoader.getDiscCache());
+			}
+			mKeys.edit().putString(user, key).commit();
+		}
+		return key;
+	}
+
+	/**
+	 * Resolves "avatar://" cache keys to the source URL passed as the
+	 * downloader extra and handles every other scheme as usual.
+	 */
+	private static class AvatarDownloader extends BaseImageDownloader
+	{
+		AvatarDownloader(Context context)
+		{
+			super(context);
+		}
+
+		@Override
+		protected InputStream getStreamFromOtherSource(String imageUri, Object extra) throws IOException
+		{
+			if (imageUri.startsWith(AVATAR_SCHEME + "://") && extra instanceof String)
+				return getStream((String) extra, null);
+			return super.getStreamFromOtherSource(imageUri, extra);
+		}
+	}
+}
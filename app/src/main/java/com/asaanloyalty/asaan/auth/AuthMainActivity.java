@@ -0,0 +1,788 @@
+package com.asaanloyalty.asaan.auth;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.asaanloyalty.asaan.R;
+import com.asaanloyalty.asaan.auth.AuthAndroidUserProfileUtils.AndroidContactProfile;
+import com.asaanloyalty.asaan.backend.IdentityExchangeClient;
+import com.asaanloyalty.asaan.backend.SyncOutbox;
+import com.asaanloyalty.asaan.contacts.ContactSync;
+import com.asaanloyalty.asaan.friends.FacebookFriendsSync;
+import com.asaanloyalty.asaan.push.PushRegistrar;
+import com.facebook.Request;
+import com.facebook.Response;
+import com.facebook.Session;
+import com.facebook.SessionState;
+import com.facebook.UiLifecycleHelper;
+import com.facebook.model.GraphUser;
+import com.facebook.widget.LoginButton;
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.GooglePlayServicesUtil;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.GoogleApiClient.ConnectionCallbacks;
+import com.google.android.gms.common.api.GoogleApiClient.OnConnectionFailedListener;
+import com.google.android.gms.plus.Plus;
+import com.google.android.gms.plus.model.people.Person;
+
+import android.os.Bundle;
+import android.os.Message;
+import android.app.Activity;
+import android.app.AlertDialog;
+import android.app.DialogFragment;
+import android.app.ProgressDialog;
+import android.content.Context;
+import android.content.DialogInterface;
+import android.content.Intent;
+import android.content.IntentSender.SendIntentException;
+import android.text.TextUtils;
+import android.view.Menu;
+import android.view.View;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
+import android.widget.Spinner;
+import android.widget.Toast;
+import android.widget.AdapterView.OnItemSelectedListener;
+
+public class AuthMainActivity extends Activity implements ConnectionCallbacks, OnConnectionFailedListener
+{
+	private static final Logger logger = Logger.getLogger(AuthMainActivity.class.getName());
+
+	/* Request code used to invoke sign in user interactions. */
+	private static final int RC_SIGN_IN = 0;
+	private static final String TAG_ERROR_DIALOG = "plusClientFragmentErrorDialog";
+	/* Stored sessions are revalidated this long before they expire. */
+	private static final long SESSION_REFRESH_WINDOW_MS = 24 * 60 * 60 * 1000L;
+	/* Google+ does not expose a token expiry, so revalidate on this interval. */
+	private static final long GOOGLE_PLUS_SESSION_LIFETIME_MS = 7 * 24 * 60 * 60 * 1000L;
+	
+	/* Creates the provider clients below on first use. */
+	private final AuthProviderRegistry mProviders = new AuthProviderRegistry();
+	/* Client used to interact with Google APIs. */
+	private AuthProviderRegistry.Provider<GoogleApiClient> mGoogleApiClient;
+	/* Contributes the Google+ account to profile resolution while connected. */
+	private PlusProfileSource mPlusProfileSource;
+	/*
+	 * Google+ sign-in state. All connects and resolution intents go through
+	 * it, so none is ever started twice.
+	 */
+	private final SignInStateMachine<ConnectionResult> mGoogleSignIn = new SignInStateMachine<ConnectionResult>(
+			SocialProfile.PROVIDER_GOOGLE_PLUS, new SignInStateMachine.Delegate<ConnectionResult>()
+			{
+				@Override
+				public void connect()
+				{
+					AuthTrace.start(AuthTrace.PHASE_GOOGLE_CONNECT);
+					mGoogleApiClient.get().connect();
+				}
+
+				@Override
+				public void disconnect()
+				{
+					if (mGoogleApiClient.isCreated())
+					{
+						ProfileResolver.unregisterSource(mPlusProfileSource);
+						mGoogleApiClient.peek().disconnect();
+					}
+				}
+
+				@Override
+				public boolean startResolution(ConnectionResult failure)
+				{
+					return resolveConnectionResult(failure);
+				}
+
+				@Override
+				public void signOut()
+				{
+					GoogleApiClient client = mGoogleApiClient.get();
+					ProfileResolver.unregisterSource(mPlusProfileSource);
+					Plus.AccountApi.clearDefaultAccount(client);
+					client.disconnect();
+				}
+
+				@Override
+				public void onSignedIn()
+				{
+					dismissProgressDialog();
+					updateSignOutButton();
+					ProfileResolver.registerSource(mPlusProfileSource);
+					loginThroughGooglePlus();
+				}
+
+				@Override
+				public void onSignInCanceled()
+				{
+					dismissProgressDialog();
+				}
+
+				@Override
+				public void onSignInFailed(ConnectionResult failure)
+				{
+					dismissProgressDialog();
+					Toast.makeText(AuthMainActivity.this, "Google Plus Authentication Failed", Toast.LENGTH_LONG)
+							.show();
+				}
+			}, new MainThreadScheduler());
+
+	/** Facebook **/
+	private AuthProviderRegistry.Provider<UiLifecycleHelper> mUiHelper;
+	/* State handed to the Facebook helper when it is created. */
+	private Bundle mSavedInstanceState;
+	/* Whether the activity is between onResume and onPause. */
+	private boolean mResumed;
+
+	private ProgressDialog mConnectionProgressDialog = null;
+	/* Asks whether the address book may be uploaded, while it is showing. */
+	private AlertDialog mContactsConsentDialog;
+
+	/* Session restored from AuthSessionStore, or null if there is none. */
+	private AuthSessionStore.StoredSession mRestoredSession;
+	/* Facebook access token whose sign-in has been published, or null. */
+	private String mFacebookSignedInToken;
+	/* Whether the stored session has been read yet. */
+	private boolean mSessionRestored;
+	/* Whether the activity is between onStart and onStop. */
+	private boolean mStarted;
+
+	/**
+	 * Shows the signed-in state from the stored session as soon as it has
+	 * been read, and only reconnects to Google+ if the session needs it.
+	 */
+	private AuthSessionStore.Callback mSessionCallback = new AuthSessionStore.Callback()
+	{
+		@Override
+		public void onSessionRestored(AuthSessionStore.StoredSession session)
+		{
+			mSessionRestored = true;
+			if (session != null && !session.isExpired())
+			{
+				logger.log(Level.INFO, "Restored " + session.getProvider() + " session");
+				mRestoredSession = session;
+				// Restored, not signed in again, so it is not recorded
+				SignInResultBus.getInstance().update(session.getProfile());
+				updateSignOutButton();
+			}
+			if (mStarted)
+				mProviders.runWhenIdle(mConnectGoogleApiClient);
+		}
+	};
+
+	/**
+	 * Connects to Google+ once the main thread is idle, so the connection
+	 * does not compete with the first frame.
+	 */
+	private Runnable mConnectGoogleApiClient = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			if (mStarted)
+				connectGoogleApiClientIfNeeded();
+		}
+	};
+
+	/** Pending device profile load, cancelled when the activity stops */
+	private AuthProfileLoader.LoadRequest mProfileRequest;
+
+	/**
+	 * Receives the device owner's profile once it has been read off the UI
+	 * thread.
+	 */
+	private AuthProfileLoader.Callback mProfileCallback = new AuthProfileLoader.Callback()
+	{
+		@Override
+		public void onProfileLoaded(AndroidContactProfile profile)
+		{
+			mProfileRequest = null;
+			if (profile != null)
+			{
+				logger.log(Level.INFO, "Device profile loaded email = " + profile.primaryEmail() + " name = "
+						+ profile.primaryName());
+				AuthAvatarLoader.getInstance(AuthMainActivity.this).prefetch(profile);
+				SignInResultBus.getInstance().publish(profile.toSocialProfile());
+			}
+		}
+	};
+
+	/**
+	 * Receives the merged sign-in result once a provider has published one.
+	 */
+	private SignInResultBus.Listener mSignInListener = new SignInResultBus.Listener()
+	{
+		@Override
+		public void onSignInResult(SocialProfile merged, SocialProfile latest)
+		{
+			logger.log(Level.INFO, "Sign-in result received " + merged);
+			if (!SocialProfile.PROVIDER_DEVICE.equals(latest.getProvider()))
+			{
+				dismissProgressDialog();
+				AuthUserStore.getInstance(AuthMainActivity.this).recordSignInAsync(latest);
+			} else
+			{
+				// The device profile fills in fields the social profile lacks;
+				// the outbox skips it if nothing changed since it was last sent
+				SocialProfile account = SignInResultBus.getInstance().get(SocialProfile.PROVIDER_GOOGLE_PLUS);
+				if (account == null)
+					account = SignInResultBus.getInstance().get(SocialProfile.PROVIDER_FACEBOOK);
+				if (account != null)
+					SyncOutbox.getInstance(AuthMainActivity.this).enqueueProfileUpdate(account, merged);
+			}
+		}
+
+		@Override
+		public void onCurrentResult(SocialProfile merged)
+		{
+			// Not a sign-in; anything to record was recorded when it was
+			// published
+			logger.log(Level.INFO, "Current sign-in result " + merged);
+		}
+	};
+
+	/**
+	 * Handler for Facebook Session Status change
+	 */
+	private Session.StatusCallback mFacebookStatusCallback = new Session.StatusCallback()
+	{
+		@Override
+		public void call(Session session, SessionState state, Exception exception)
+		{
+			onSessionStateChange(session, state, exception);
+		}
+	};
+
+	/**
+	 * Callback when the state of the Facebook Session changes.
+	 * 
+	 * @param session
+	 *            the session which changed.
+	 * @param state
+	 *            the current state of the session.
+	 * @param exception
+	 *            any exception which occurred.
+	 */
+	private void onSessionStateChange(Session session, SessionState state, Exception exception)
+	{
+		if (state.isOpened())
+		{
+			loginThroughFacebook();
+		}
+		else if (state == SessionState.CLOSED && isSignedInWithFacebook())
+		{
+			// Logged out with the LoginButton; a failed login closes with
+			// CLOSED_LOGIN_FAILED instead and leaves the stored sign-in alone
+			doLogoff();
+		}
+	}
+
+	/**
+	 * Whether the signed-in user came from this Facebook session or a stored
+	 * Facebook session.
+	 */
+	private boolean isSignedInWithFacebook()
+	{
+		return mFacebookSignedInToken != null
+				|| (mRestoredSession != null && SocialProfile.PROVIDER_FACEBOOK.equals(mRestoredSession.getProvider()));
+	}
+
+	@Override
+	protected void onCreate(Bundle savedInstanceState)
+	{
+		super.onCreate(savedInstanceState);
+		logger.log(Level.INFO, "onCreate started");
+		long traceBegin = AuthTrace.begin();
+		setContentView(R.layout.activity_auth_main);
+		AuthTrace.end(AuthTrace.PHASE_SET_CONTENT_VIEW, traceBegin);
+
+		// Neither SDK client is built here; see AuthProviderRegistry
+		mGoogleApiClient = mProviders.add(new AuthProviderRegistry.Provider<GoogleApiClient>("googleplus")
+		{
+			@Override
+			protected GoogleApiClient create()
+			{
+				GoogleApiClient client = new GoogleApiClient.Builder(AuthMainActivity.this)
+						.addConnectionCallbacks(AuthMainActivity.this)
+						.addOnConnectionFailedListener(AuthMainActivity.this).addApi(Plus.API, null)
+						.addScope(Plus.SCOPE_PLUS_LOGIN).build();
+				mPlusProfileSource = new PlusProfileSource(client);
+				return client;
+			}
+		});
+
+		// Facebook Loginbutton setup
+		mSavedInstanceState = savedInstanceState;
+		mUiHelper = mProviders.add(new AuthProviderRegistry.Provider<UiLifecycleHelper>("facebook")
+		{
+			@Override
+			protected UiLifecycleHelper create()
+			{
+				UiLifecycleHelper helper = new UiLifecycleHelper(AuthMainActivity.this, mFacebookStatusCallback);
+				helper.onCreate(mSavedInstanceState);
+				mSavedInstanceState = null;
+				if (mResumed)
+					helper.onResume();
+				return helper;
+			}
+		});
+
+		LoginButton authButton = (LoginButton) findViewById(R.id.authButton);
+		// user_friends lets FacebookFriendsSync read the friend list
+		authButton.setReadPermissions(Arrays.asList("email", "user_about_me", "user_friends"));
+
+		findViewById(R.id.sign_in_button).setOnClickListener(new View.OnClickListener()
+		{
+			@Override
+			public void onClick(View view)
+			{
+				logger.log(Level.INFO, "G+ Signin button Onclick started");
+				if (!mGoogleSignIn.isConnected())
+					showProgressDialog();
+				mGoogleSignIn.fire(SignInStateMachine.EVENT_SIGN_IN);
+			}
+		});
+		findViewById(R.id.sign_out_button).setOnClickListener(new View.OnClickListener()
+		{
+			@Override
+			public void onClick(View view)
+			{
+				logger.log(Level.INFO, "G+ Signout button Onclick started");
+				doLogoff();
+			}
+		});
+
+		AuthSessionStore.getInstance(this).restore(mSessionCallback);
+		// Registers once per app version; a no-op on later starts
+		PushRegistrar.getInstance(this).register();
+
+		logger.log(Level.INFO, "onCreate completed");
+	}
+
+	@Override
+	public void onBackPressed()
+	{
+		this.setResult(Activity.RESULT_FIRST_USER);
+		super.onBackPressed();
+	}
+
+	/**
+	 * Signs out of both providers and forgets everything kept for the user,
+	 * so the next launch starts signed out. Called when the Facebook session
+	 * is logged out and on Google+ sign-out.
+	 */
+	private void doLogoff()
+	{
+		logger.log(Level.INFO, "Logging off");
+		// Cleared first so the Facebook session closing below does not log
+		// off again
+		mRestoredSession = null;
+		mFacebookSignedInToken = null;
+		mGoogleSignIn.fire(SignInStateMachine.EVENT_SIGN_OUT);
+		SignInResultBus.getInstance().clear(SocialProfile.PROVIDER_GOOGLE_PLUS);
+		Session session = Session.getActiveSession();
+		if (session != null && !session.isClosed())
+			session.closeAndClearTokenInformation();
+		SignInResultBus.getInstance().clear(SocialProfile.PROVIDER_FACEBOOK);
+		FacebookMeRequestCoalescer.getInstance().clear();
+		FacebookFriendsSync.getInstance(this).clear();
+		ContactSync.getInstance(this).clear();
+		IdentityExchangeClient.getInstance(this).clear();
+		SyncOutbox.getInstance(this).clear();
+		AuthSessionStore.getInstance(this).clear();
+		updateSignOutButton();
+	}
+
+	/**
+	 * Offers the Google+ sign-out while the user is signed in with Google+.
+	 */
+	private void updateSignOutButton()
+	{
+		boolean google = mGoogleSignIn.isConnected()
+				|| (mRestoredSession != null && SocialProfile.PROVIDER_GOOGLE_PLUS.equals(mRestoredSession
+						.getProvider()));
+		findViewById(R.id.sign_out_button).setVisibility(google ? View.VISIBLE : View.GONE);
+	}
+
+	/**
+	 * Uploads the address book for friend discovery if the user allowed it,
+	 * asking them the first time.
+	 */
+	private void syncContacts()
+	{
+		final ContactSync contacts = ContactSync.getInstance(this);
+		if (contacts.isConsentAsked())
+		{
+			contacts.sync();
+			return;
+		}
+		if (isFinishing() || mContactsConsentDialog != null)
+			return;
+		// Dismissing the dialog without an answer asks again next time
+		mContactsConsentDialog = new AlertDialog.Builder(this).setTitle(R.string.contacts_consent_title)
+				.setMessage(R.string.contacts_consent_message)
+				.setPositiveButton(R.string.contacts_consent_allow, new DialogInterface.OnClickListener()
+				{
+					@Override
+					public void onClick(DialogInterface dialog, int which)
+					{
+						contacts.setConsent(true);
+					}
+				}).setNegativeButton(R.string.contacts_consent_deny, new DialogInterface.OnClickListener()
+				{
+					@Override
+					public void onClick(DialogInterface dialog, int which)
+					{
+						contacts.setConsent(false);
+					}
+				}).create();
+		mContactsConsentDialog.setOnDismissListener(new DialogInterface.OnDismissListener()
+		{
+			@Override
+			public void onDismiss(DialogInterface dialog)
+			{
+				mContactsConsentDialog = null;
+			}
+		});
+		mContactsConsentDialog.show();
+	}
+
+	@Override
+	protected void onStart()
+	{
+		super.onStart();
+		mStarted = true;
+		if (mSessionRestored)
+			mProviders.runWhenIdle(mConnectGoogleApiClient);
+		SignInResultBus.getInstance().register(mSignInListener);
+		mProfileRequest = AuthProfileLoader.getInstance(this).load(mProfileCallback);
+		mProviders.prewarmWhenIdle();
+		// Sends anything left over from an earlier offline sign-in
+		SyncOutbox.getInstance(this).replay();
+	}
+
+	@Override
+	protected void onStop()
+	{
+		super.onStop();
+		mStarted = false;
+		mProviders.cancelPending();
+		AuthTrace.dump();
+		SignInResultBus.getInstance().unregister(mSignInListener);
+		mGoogleSignIn.fire(SignInStateMachine.EVENT_STOP);
+		logger.log(Level.INFO, mGoogleSignIn.stats());
+		if (mProfileRequest != null)
+		{
+			mProfileRequest.cancel();
+			mProfileRequest = null;
+		}
+	}
+
+	/**
+	 * Connects to Google Play services unless the stored session is a fresh
+	 * Google+ one or a Facebook one, in which case the connection is made
+	 * when the user taps sign-in.
+	 */
+	private void connectGoogleApiClientIfNeeded()
+	{
+		if (mRestoredSession != null
+				&& (SocialProfile.PROVIDER_FACEBOOK.equals(mRestoredSession.getProvider()) || !mRestoredSession
+						.needsRefresh(SESSION_REFRESH_WINDOW_MS)))
+			return;
+		mGoogleSignIn.fire(SignInStateMachine.EVENT_CONNECT);
+	}
+
+	private void showProgressDialog()
+	{
+		if (mConnectionProgressDialog == null)
+			mConnectionProgressDialog = new ProgressDialog(this);
+		mConnectionProgressDialog.setMessage("Signing in ...");
+		mConnectionProgressDialog.show();
+	}
+
+	private void dismissProgressDialog()
+	{
+		if (mConnectionProgressDialog != null && mConnectionProgressDialog.isShowing())
+			mConnectionProgressDialog.dismiss();
+	}
+
+	@Override
+	public void onResume()
+	{
+		super.onResume();
+		mResumed = true;
+		// For scenarios where the main activity is launched and user
+		// session is not null, the session state change notification
+		// may not be triggered. Trigger it if it's open/closed.
+		Session session = Session.getActiveSession();
+		if (session != null && (session.isOpened() || session.isClosed()))
+		{
+			onSessionStateChange(session, session.getState(), null);
+		}
+
+		// A live Facebook session needs the helper now; otherwise it is left
+		// to the idle prewarm
+		if (mUiHelper.isCreated())
+			mUiHelper.peek().onResume();
+		else if (session != null)
+			mUiHelper.get();
+	}
+
+	@Override
+	public void onActivityResult(int requestCode, int resultCode, Intent data)
+	{
+		super.onActivityResult(requestCode, resultCode, data);
+		logger.log(Level.INFO, "Inside onActivityResult requestCode = " + requestCode + " resultCode = " + resultCode);
+		if (requestCode == RC_SIGN_IN)
+		{
+			AuthTrace.stop(AuthTrace.PHASE_GOOGLE_RESOLUTION);
+			mGoogleSignIn.fire(resultCode == RESULT_OK ? SignInStateMachine.EVENT_RESOLUTION_OK
+					: SignInStateMachine.EVENT_RESOLUTION_CANCELED);
+			return;
+		}
+		// The helper reports the Facebook login result through
+		// onSessionStateChange, which starts loginThroughFacebook
+		mUiHelper.get().onActivityResult(requestCode, resultCode, data);
+	}
+
+	@Override
+	public void onPause()
+	{
+		super.onPause();
+		mResumed = false;
+		if (mUiHelper.isCreated())
+			mUiHelper.peek().onPause();
+		if (mConnectionProgressDialog != null && mConnectionProgressDialog.isShowing() == true)
+			mConnectionProgressDialog.cancel();
+	}
+
+	@Override
+	public void onDestroy()
+	{
+		super.onDestroy();
+		if (mUiHelper.isCreated())
+			mUiHelper.peek().onDestroy();
+		if (mContactsConsentDialog != null)
+			mContactsConsentDialog.dismiss();
+	}
+
+	@Override
+	public void onConnectionFailed(ConnectionResult result)
+	{
+		AuthTrace.stop(AuthTrace.PHASE_GOOGLE_CONNECT);
+		// The state machine keeps the result and resolves it once the user
+		// has clicked 'sign-in'
+		boolean resolvable = result.hasResolution()
+				|| GooglePlayServicesUtil.isUserRecoverableError(result.getErrorCode());
+		mGoogleSignIn.fire(resolvable ? SignInStateMachine.EVENT_FAILED_RESOLVABLE
+				: SignInStateMachine.EVENT_FAILED_UNRESOLVABLE, result);
+	}
+
+	/**
+	 * Starts the user interaction that resolves a connection failure. The
+	 * outcome arrives in onActivityResult with RC_SIGN_IN.
+	 *
+	 * @return false if the resolution intent could not be sent
+	 */
+	private boolean resolveConnectionResult(ConnectionResult result)
+	{
+		if (GooglePlayServicesUtil.isUserRecoverableError(result.getErrorCode()))
+		{
+			// Show a dialog to install or enable Google Play services.
+			showErrorDialog(ErrorDialogFragment.create(result.getErrorCode(), RC_SIGN_IN));
+			return true;
+		}
+		try
+		{
+			logger.log(Level.INFO, "Inside onConnectionFailed hasResolution");
+			AuthTrace.start(AuthTrace.PHASE_GOOGLE_RESOLUTION);
+			result.startResolutionForResult(this, RC_SIGN_IN);
+			return true;
+		} catch (SendIntentException e)
+		{
+			// The intent we had is not valid right now, perhaps the remote
+			// process died. The state machine retries the connect to get a
+			// new resolution intent.
+			AuthTrace.cancel(AuthTrace.PHASE_GOOGLE_RESOLUTION);
+			return false;
+		}
+	}
+
+	private void showErrorDialog(DialogFragment errorDialog)
+	{
+		errorDialog.show(getFragmentManager(), TAG_ERROR_DIALOG);
+	}
+
+	public static final class ErrorDialogFragment extends GooglePlayServicesErrorDialogFragment
+	{
+		public static ErrorDialogFragment create(int errorCode, int requestCode)
+		{
+			ErrorDialogFragment fragment = new ErrorDialogFragment();
+			fragment.setArguments(createArguments(errorCode, requestCode));
+			return fragment;
+		}
+
+		@Override
+		public void onCancel(DialogInterface dialog)
+		{
+			super.onCancel(dialog);
+			// No activity result follows a dismissed error dialog
+			AuthMainActivity activity = (AuthMainActivity) getActivity();
+			if (activity != null)
+				activity.mGoogleSignIn.fire(SignInStateMachine.EVENT_RESOLUTION_CANCELED);
+		}
+	}
+
+	@Override
+	public void onConnected(Bundle connectionHint)
+	{
+		AuthTrace.stop(AuthTrace.PHASE_GOOGLE_CONNECT);
+		// We've resolved any connection errors.
+		mGoogleSignIn.fire(SignInStateMachine.EVENT_CONNECTED);
+	}
+
+	private void loginThroughGooglePlus()
+	{
+		GoogleApiClient client = mGoogleApiClient.get();
+		if (client.isConnected())
+		{
+			logger.log(Level.INFO, "Inside loginThroughGooglePlus connected");
+			showProgressDialog();
+
+			String email = Plus.AccountApi.getAccountName(client);
+			Person currentPerson = Plus.PeopleApi.getCurrentPerson(client);
+		    String personName = currentPerson.getDisplayName();
+			logger.log(Level.INFO, "Inside loginThroughGooglePlus person available email = " + email + " name = "
+					+ personName);
+			Person.Image personImage = currentPerson.getImage();
+			String photoUrl = personImage != null ? personImage.getUrl() : null;
+			AuthAvatarLoader.getInstance(this).prefetch(AuthAvatarLoader.PROVIDER_GOOGLE_PLUS, currentPerson.getId(),
+					photoUrl);
+			SocialProfile profile = new SocialProfile.Builder(SocialProfile.PROVIDER_GOOGLE_PLUS, currentPerson.getId())
+					.setName(personName).setEmail(email).setPhotoUrl(photoUrl).build();
+			SignInResultBus.getInstance().publish(profile);
+			AuthSessionStore.getInstance(this).save(
+					new AuthSessionStore.StoredSession(profile, null, System.currentTimeMillis()
+							+ GOOGLE_PLUS_SESSION_LIFETIME_MS));
+			exchangeIdentity(profile);
+			syncContacts();
+		}
+	}
+
+	private void loginThroughFacebook()
+	{
+		final Session session = Session.getActiveSession();
+		// Every resume reopens the session; the sign-in with this token has
+		// already been published, saved and queued
+		if (session != null && session.isOpened()
+				&& TextUtils.equals(mFacebookSignedInToken, session.getAccessToken()))
+			return;
+		if (session != null && session.isOpened() && isRestoredFacebookSession(session))
+		{
+			// Same token as the stored session, so the stored profile is still
+			// current and there is no need to ask Graph again
+			mFacebookSignedInToken = session.getAccessToken();
+			SignInResultBus.getInstance().update(mRestoredSession.getProfile());
+			FacebookFriendsSync.getInstance(this).sync(mRestoredSession.getProfile().getUserId(),
+					session.getAccessToken());
+			syncContacts();
+			return;
+		}
+		if (session != null && session.isOpened())
+		{
+			// Make an API call to get user data and define a
+			// new callback to handle the response.
+			showProgressDialog();
+
+			FacebookMeRequestCoalescer.getInstance().request(session, new Request.GraphUserCallback()
+			{
+				@Override
+				public void onCompleted(GraphUser user, Response response)
+				{
+					// If the response is successful
+					if (session == Session.getActiveSession())
+					{
+						if (user != null)
+						{
+							// Set the id for the ProfilePictureView view that
+							// in turn displays the profile picture.
+							// profilePictureView.setProfileId(user.getId());
+							// Set the Textview's text to the user's name.
+							String facebookProfilePhotoURL = AuthAvatarLoader.facebookPhotoUrl(user.getId());
+							AuthAvatarLoader.getInstance(AuthMainActivity.this).prefetch(
+									AuthAvatarLoader.PROVIDER_FACEBOOK, user.getId(), facebookProfilePhotoURL);
+
+							String name = user.getName();
+							String email = (String) user.getProperty("email");
+							String photoUrl = facebookProfilePhotoURL;
+							SocialProfile profile = new SocialProfile.Builder(SocialProfile.PROVIDER_FACEBOOK,
+									user.getId()).setName(name).setEmail(email).setPhotoUrl(photoUrl).build();
+							final String accessToken = session.getAccessToken();
+							mFacebookSignedInToken = accessToken;
+							SignInResultBus.getInstance().publish(profile);
+							mRestoredSession = new AuthSessionStore.StoredSession(profile, accessToken, session
+									.getExpirationDate().getTime());
+							AuthSessionStore.getInstance(AuthMainActivity.this).save(mRestoredSession);
+							FacebookFriendsSync.getInstance(AuthMainActivity.this).sync(user.getId(), accessToken);
+							exchangeIdentity(profile);
+							syncContacts();
+						}
+					}
+					if (response.getError() != null)
+					{
+						dismissProgressDialog();
+						Toast.makeText(AuthMainActivity.this,
+								"Facebook Authentication Failed - " + response.getError().getErrorMessage(),
+								Toast.LENGTH_LONG).show();
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Queues the exchange of a fresh sign-in for an Asaan loyalty session,
+	 * carrying the push registration id once any registration in flight has
+	 * finished. The outbox sends it when the device is online, with the
+	 * provider token current at that time; nothing waits for it.
+	 */
+	private void exchangeIdentity(final SocialProfile profile)
+	{
+		final Context appContext = getApplicationContext();
+		PushRegistrar.getInstance(this).getRegistrationId(new PushRegistrar.Callback()
+		{
+			@Override
+			public void onRegistrationId(String registrationId)
+			{
+				SyncOutbox.getInstance(appContext).enqueueExchange(profile, registrationId);
+			}
+		});
+	}
+
+	/**
+	 * Whether the stored session belongs to this Facebook session and is not
+	 * close to expiry.
+	 */
+	private boolean isRestoredFacebookSession(Session session)
+	{
+		return mRestoredSession != null && SocialProfile.PROVIDER_FACEBOOK.equals(mRestoredSession.getProvider())
+				&& TextUtils.equals(mRestoredSession.getAccessToken(), session.getAccessToken())
+				&& !mRestoredSession.needsRefresh(SESSION_REFRESH_WINDOW_MS);
+	}
+
+	@Override
+	public void onSaveInstanceState(Bundle outState)
+	{
+		super.onSaveInstanceState(outState);
+		if (mUiHelper.isCreated())
+			mUiHelper.peek().onSaveInstanceState(outState);
+	}
+
+	@Override
+	public void onConnectionSuspended(int cause)
+	{
+		// GoogleApiClient reconnects by itself after a suspension
+		mGoogleSignIn.fire(SignInStateMachine.EVENT_SUSPENDED);
+	}
+}
@@ -0,0 +1,394 @@
+package com.asaanloyalty.asaan.auth;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import android.accounts.AccountManager;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.ContactsContract;
+import android.text.TextUtils;
+
+import com.asaanloyalty.asaan.auth.AuthAndroidUserProfileUtils.AndroidContactProfile;
+import com.asaanloyalty.asaan.dao.CachedProfile;
+import com.asaanloyalty.asaan.dao.CachedProfileDao;
+import com.asaanloyalty.asaan.dao.DaoSessionProvider;
+
+/**
+ * Two level cache for the device owner's {@link AndroidContactProfile}.
+ *
+ * The profile is kept in memory and in a single row of the local database so
+ * that repeat launches do not need to query the Contacts provider or the
+ * AccountManager. Both levels are dropped when the profile contact changes or
+ * when the set of accounts on the device changes.
+ *
+ * The observers only hear changes made while the process is alive, so the row
+ * also stores a fingerprint of the device accounts and the versions of the
+ * profile contact's data rows. A row older than {@link #MAX_AGE_MS} is ignored
+ * and read again. Taking the fingerprint queries the AccountManager and the
+ * Contacts provider, so a younger row is returned at once and its fingerprint
+ * is checked afterwards in the background; if it no longer matches, the
+ * cache is invalidated and the next read goes to the device.
+ *
+ * Only a profile read from the device sources alone, each of which answered,
+ * is cached. The profile returned on a miss may stop early or include a
+ * registered source such as Google+, so in that case the device-only profile
+ * is read again in the background and cached instead.
+ */
+public class AuthProfileCache
+{
+	private static final Logger logger = Logger.getLogger(AuthProfileCache.class.getName());
+
+	/** Primary key of the only row in the profile table */
+	private static final long PROFILE_ROW_ID = 1L;
+	/** Separator used to flatten candidate lists into a single column */
+	private static final String LIST_SEPARATOR = "\n";
+	/** A stored profile older than this is read again from the device */
+	private static final long MAX_AGE_MS = 7 * 24 * 60 * 60 * 1000L;
+	/** Columns of the profile contact's data rows that make up the fingerprint */
+	private static final String[] VERSION_PROJECTION = { ContactsContract.Contacts.Data._ID,
+			ContactsContract.Contacts.Data.DATA_VERSION };
+
+	private static AuthProfileCache sInstance;
+
+	private final Context mContext;
+	/** Serialises database writes so they never run on the main thread */
+	private final ExecutorService mDiskExecutor = Executors.newSingleThreadExecutor();
+
+	/** In-memory copy of the profile, or null if it has not been loaded */
+	private volatile AndroidContactProfile mProfile;
+	/** Bumped on every invalidation so stale loads are not cached */
+	private volatile int mGeneration;
+	/** Whether a device-only profile is being read for the cache */
+	private final AtomicBoolean mLoadingDeviceProfile = new AtomicBoolean();
+
+	private AuthProfileCache(Context context)
+	{
+		mContext = context.getApplicationContext();
+		mContext.getContentResolver().registerContentObserver(ContactsContract.Profile.CONTENT_URI, true,
+				new ContentObserver(new Handler(Looper.getMainLooper()))
+				{
+					@Override
+					public void onChange(boolean selfChange)
+					{
+						logger.log(Level.INFO, "Profile contact changed, invalidating cached profile");
+						invalidate();
+					}
+				});
+		mContext.registerReceiver(new BroadcastReceiver()
+		{
+			@Override
+			public void onReceive(Context context, Intent intent)
+			{
+				logger.log(Level.INFO, "Accounts changed, invalidating cached profile");
+				invalidate();
+			}
+		}, new IntentFilter(AccountManager.LOGIN_ACCOUNTS_CHANGED_ACTION));
+	}
+
+	/**
+	 * Returns the process-wide cache.
+	 *
+	 * @param context
+	 *            any context; only its application context is retained
+	 */
+	public static synchronized AuthProfileCache getInstance(Context context)
+	{
+		if (sInstance == null)
+			sInstance = new AuthProfileCache(context);
+		return sInstance;
+	}
+
+	/**
+	 * Returns the profile if it is held in memory, without touching the disk.
+	 *
+	 * @return the cached profile, or null
+	 */
+	public AndroidContactProfile peek()
+	{
+		return mProfile;
+	}
+
+	/**
+	 * Returns the cached profile, reading it from disk if it is not held in
+	 * memory. A stored profile is returned while it is younger than
+	 * {@link #MAX_AGE_MS}, and dropped afterwards if the device accounts or
+	 * the profile contact are no longer as they were when it was stored. Must
+	 * not be called on the main thread.
+	 *
+	 * @return the cached profile, or null if nothing valid is cached
+	 */
+	public AndroidContactProfile get()
+	{
+		AndroidContactProfile profile = mProfile;
+		if (profile != null)
+			return profile;
+
+		int generation = mGeneration;
+		try
+		{
+			CachedProfile row = getDao().load(PROFILE_ROW_ID);
+			if (row == null)
+				return null;
+			// Left in place; the next put() replaces it
+			long age = System.currentTimeMillis() - row.getUpdatedAt();
+			if (age < 0 || age >= MAX_AGE_MS)
+				return null;
+			profile = fromRow(row);
+			verify(row.getFingerprint(), generation);
+		} catch (Exception e)
+		{
+			logger.log(Level.WARNING, "Reading cached profile failed - " + e.getMessage());
+			return null;
+		}
+		if (generation == mGeneration)
+			mProfile = profile;
+		return profile;
+	}
+
+	/**
+	 * Returns the cached profile, or queries the device if nothing is cached.
+	 * The result is cached if it came from the device sources alone and
+	 * every one of them answered; otherwise the device profile is read again
+	 * in the background for the cache. Must not be called on the main thread.
+	 *
+	 * @return the profile, or null if it could not be read
+	 */
+	public AndroidContactProfile getOrLoad()
+	{
+		AndroidContactProfile profile = get();
+		if (profile != null)
+			return profile;
+
+		int generation = mGeneration;
+		// Taken before the profile is read, so a change made during the read
+		// leaves a fingerprint that no longer matches
+		String fingerprint = fingerprint();
+		ProfileResolver.Result result = AuthAndroidUserProfileUtils.resolveUserProfile(mContext);
+		if (result.isComplete() && !result.isFromRegisteredSource())
+			putIfCurrent(result.getProfile(), fingerprint, generation);
+		else
+			loadDeviceProfile();
+		return result.getProfile();
+	}
+
+	/**
+	 * Reads the profile from the device sources alone in the background and
+	 * caches it if every source answered.
+	 */
+	private void loadDeviceProfile()
+	{
+		if (!mLoadingDeviceProfile.compareAndSet(false, true))
+			return;
+		final int generation = mGeneration;
+		mDiskExecutor.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					String fingerprint = fingerprint();
+					ProfileResolver.Result result = AuthAndroidUserProfileUtils.resolveDeviceProfile(mContext);
+					if (result.isComplete())
+						putIfCurrent(result.getProfile(), fingerprint, generation);
+				} finally
+				{
+					mLoadingDeviceProfile.set(false);
+				}
+			}
+		});
+	}
+
+	private void putIfCurrent(AndroidContactProfile profile, String fingerprint, int generation)
+	{
+		// Do not pin an empty profile, e.g. one read before permissions or
+		// accounts were available
+		if (profile != null && !TextUtils.isEmpty(profile.primaryEmail()) && generation == mGeneration)
+			put(profile, fingerprint);
+	}
+
+	/**
+	 * Stores the profile in memory and schedules it to be written to disk.
+	 *
+	 * @param profile
+	 *            the profile to cache
+	 */
+	public void put(AndroidContactProfile profile)
+	{
+		put(profile, null);
+	}
+
+	/**
+	 * @param fingerprint
+	 *            the fingerprint taken before the profile was read, or null to
+	 *            take it when the row is written
+	 */
+	private void put(AndroidContactProfile profile, final String fingerprint)
+	{
+		mProfile = profile;
+		final CachedProfile row = toRow(profile);
+		mDiskExecutor.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					row.setFingerprint(fingerprint != null ? fingerprint : fingerprint());
+					getDao().insertOrReplace(row);
+				} catch (Exception e)
+				{
+					logger.log(Level.WARNING, "Writing cached profile failed - " + e.getMessage());
+				}
+			}
+		});
+	}
+
+	/**
+	 * Drops the cached profile from memory and disk.
+	 */
+	public void invalidate()
+	{
+		mGeneration++;
+		mProfile = null;
+		mDiskExecutor.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					getDao().deleteByKey(PROFILE_ROW_ID);
+				} catch (Exception e)
+				{
+					logger.log(Level.WARNING, "Deleting cached profile failed - " + e.getMessage());
+				}
+			}
+		});
+	}
+
+	/**
+	 * Invalidates the cache in the background if the device no longer matches
+	 * the fingerprint of the profile read from disk, unless it was invalidated
+	 * already.
+	 */
+	private void verify(final String stored, final int generation)
+	{
+		mDiskExecutor.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				String fingerprint = fingerprint();
+				if (generation != mGeneration || (fingerprint != null && fingerprint.equals(stored)))
+					return;
+				logger.log(Level.INFO, "Device changed since the profile was cached, invalidating it");
+				invalidate();
+			}
+		});
+	}
+
+	/**
+	 * Describes the device accounts and the profile contact: the sorted
+	 * account names, then the number of the profile's data rows and the sums
+	 * of their ids and versions. Every edit of a data row bumps its version.
+	 *
+	 * @return the fingerprint, or null if it could not be taken
+	 */
+	private String fingerprint()
+	{
+		try
+		{
+			DeviceServices services = AuthAndroidUserProfileUtils.services(mContext);
+			String[] account_names = services.getGoogleAccountNames();
+			Arrays.sort(account_names);
+			StringBuilder fingerprint = new StringBuilder();
+			for (String account_name : account_names)
+				fingerprint.append(account_name).append(LIST_SEPARATOR);
+			if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+			{
+				Cursor cursor = services.queryOwnerProfile(VERSION_PROJECTION, null, null, null);
+				if (cursor != null)
+				{
+					try
+					{
+						long id_sum = 0;
+						long version_sum = 0;
+						while (cursor.moveToNext())
+						{
+							id_sum += cursor.getLong(0);
+							version_sum += cursor.getLong(1);
+						}
+						fingerprint.append(cursor.getCount()).append(':').append(id_sum).append(':')
+								.append(version_sum);
+					} finally
+					{
+						cursor.close();
+					}
+				}
+			}
+			return fingerprint.toString();
+		} catch (Exception e)
+		{
+			logger.log(Level.WARNING, "Fingerprinting profile failed - " + e.getMessage());
+			return null;
+		}
+	}
+
+	private CachedProfileDao getDao()
+	{
+		return DaoSessionProvider.getSession(mContext).getCachedProfileDao();
+	}
+
+	private static CachedProfile toRow(AndroidContactProfile profile)
+	{
+		Uri photo = profile.possiblePhoto();
+		return new CachedProfile(PROFILE_ROW_ID, profile.primaryEmail(), profile.primaryName(),
+				profile.primaryPhoneNumber(), join(profile.possibleEmails()), join(profile.possibleNames()),
+				join(profile.possiblePhoneNumbers()), photo != null ? photo.toString() : null,
+				System.currentTimeMillis(), null);
+	}
+
+	private static AndroidContactProfile fromRow(CachedProfile row)
+	{
+		AndroidContactProfile profile = new AndroidContactProfile();
+		for (String email : split(row.getPossibleEmails()))
+			profile.addPossibleEmail(email, email.equals(row.getPrimaryEmail()));
+		for (String name : split(row.getPossibleNames()))
+		{
+			if (name.equals(row.getPrimaryName()))
+				profile.setPrimaryName(name);
+			else
+				profile.addPossibleName(name);
+		}
+		for (String phone_number : split(row.getPossiblePhoneNumbers()))
+			profile.addPossiblePhoneNumber(phone_number, phone_number.equals(row.getPrimaryPhoneNumber()));
+		if (!TextUtils.isEmpty(row.getPhotoUri()))
+			profile.addPossiblePhoto(Uri.parse(row.getPhotoUri()));
+		return profile;
+	}
+
+	private static String join(List<String> values)
+	{
+		return values.isEmpty() ? null : TextUtils.join(LIST_SEPARATOR, values);
+	}
+
+	private static String[] split(String value)
+	{
+		return TextUtils.isEmpty(value) ? new String[0] : TextUtils.split(value, LIST_SEPARATOR);
+	}
+}
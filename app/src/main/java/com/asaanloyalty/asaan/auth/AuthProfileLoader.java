@@ -0,0 +1,277 @@
+package com.asaanloyalty.asaan.auth;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import com.asaanloyalty.asaan.auth.AuthAndroidUserProfileUtils.AndroidContactProfile;
+import com.google.api.client.util.Lists;
+
+/**
+ * Loads the device owner's {@link AndroidContactProfile} off the UI thread,
+ * going through {@link AuthProfileCache} so repeat loads skip the device query.
+ *
+ * Concurrent requests share a single query: a caller arriving while a load is
+ * in flight is attached to it instead of starting a new one. Results are
+ * delivered on the main thread. Each caller gets a {@link LoadRequest} handle
+ * which should be cancelled when the owning component stops; the underlying
+ * query is interrupted once nobody is waiting on it any more.
+ */
+public class AuthProfileLoader
+{
+	private static final Logger logger = Logger.getLogger(AuthProfileLoader.class.getName());
+
+	/** Upper bound on worker threads used for profile queries */
+	private static final int MAX_THREADS = 2;
+	/** Idle worker threads are released after this many seconds */
+	private static final int KEEP_ALIVE_SECONDS = 30;
+
+	private static AuthProfileLoader sInstance;
+
+	/**
+	 * Receives the result of {@link AuthProfileLoader#load}. Always called on
+	 * the main thread.
+	 */
+	public interface Callback
+	{
+		/**
+		 * @param profile
+		 *            the loaded profile, or null if it could not be read
+		 */
+		void onProfileLoaded(AndroidContactProfile profile);
+	}
+
+	/**
+	 * Handle for a single call to {@link AuthProfileLoader#load}.
+	 */
+	public final class LoadRequest
+	{
+		private final Callback mCallback;
+		private volatile boolean mCancelled;
+
+		private LoadRequest(Callback callback)
+		{
+			mCallback = callback;
+		}
+
+		/**
+		 * Stops the callback from being delivered. Safe to call more than once
+		 * and after the result has been delivered.
+		 */
+		public void cancel()
+		{
+			if (!mCancelled)
+			{
+				mCancelled = true;
+				detach(this);
+			}
+		}
+
+		public boolean isCancelled()
+		{
+			return mCancelled;
+		}
+	}
+
+	private final AuthProfileCache mCache;
+	private final ThreadPoolExecutor mExecutor;
+	private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+	/** The query currently running, or null if none */
+	private FutureTask<AndroidContactProfile> mInFlight;
+	/** Requests waiting on {@link #mInFlight} */
+	private final List<LoadRequest> mWaiting = Lists.newArrayList();
+	/** Whether {@link #mInFlight} has been handed out through {@link #loadFuture} */
+	private boolean mFutureShared;
+
+	private AuthProfileLoader(Context context)
+	{
+		mCache = AuthProfileCache.getInstance(context);
+		// Unbounded: callers are coalesced onto one query, so the queue only
+		// grows by queries restarted after a cancel, and a bounded one would
+		// throw RejectedExecutionException on the main thread
+		mExecutor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new BackgroundThreadFactory());
+		mExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Returns the process-wide loader.
+	 *
+	 * @param context
+	 *            any context; only its application context is retained
+	 */
+	public static synchronized AuthProfileLoader getInstance(Context context)
+	{
+		if (sInstance == null)
+			sInstance = new AuthProfileLoader(context);
+		return sInstance;
+	}
+
+	/**
+	 * Starts loading the profile, or joins a load that is already in flight.
+	 *
+	 * @param callback
+	 *            receives the profile on the main thread
+	 * @return a handle that can be used to cancel delivery
+	 */
+	public synchronized LoadRequest load(Callback callback)
+	{
+		final LoadRequest request = new LoadRequest(callback);
+		final AndroidContactProfile cached = mCache.peek();
+		if (cached != null)
+		{
+			// Served from memory, no need to involve the executor
+			mMainHandler.post(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					if (!request.isCancelled())
+						request.mCallback.onProfileLoaded(cached);
+				}
+			});
+			return request;
+		}
+		mWaiting.add(request);
+		start();
+		return request;
+	}
+
+	/**
+	 * Starts loading the profile, or joins a load that is already in flight,
+	 * and returns the shared {@link Future}. Must not be waited on from the
+	 * main thread.
+	 */
+	public synchronized Future<AndroidContactProfile> loadFuture()
+	{
+		FutureTask<AndroidContactProfile> task = start();
+		mFutureShared = true;
+		return task;
+	}
+
+	private FutureTask<AndroidContactProfile> start()
+	{
+		if (mInFlight != null)
+			return mInFlight;
+
+		final FutureTask<AndroidContactProfile> task = new FutureTask<AndroidContactProfile>(
+				new Callable<AndroidContactProfile>()
+				{
+					@Override
+					public AndroidContactProfile call() throws Exception
+					{
+						long traceBegin = AuthTrace.begin();
+						try
+						{
+							return mCache.getOrLoad();
+						} finally
+						{
+							AuthTrace.end(AuthTrace.PHASE_PROFILE_LOAD, traceBegin);
+						}
+					}
+				})
+		{
+			@Override
+			protected void done()
+			{
+				onLoadFinished(this);
+			}
+		};
+		mInFlight = task;
+		mFutureShared = false;
+		mExecutor.execute(task);
+		return task;
+	}
+
+	private void onLoadFinished(FutureTask<AndroidContactProfile> task)
+	{
+		final List<LoadRequest> requests;
+		synchronized (this)
+		{
+			if (mInFlight != task)
+				return;
+			mInFlight = null;
+			requests = Lists.newArrayList(mWaiting);
+			mWaiting.clear();
+		}
+		if (task.isCancelled())
+			return;
+
+		AndroidContactProfile profile = null;
+		try
+		{
+			profile = task.get();
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e)
+		{
+			logger.log(Level.WARNING, "Profile load failed - " + e.getCause());
+		}
+
+		final AndroidContactProfile result = profile;
+		mMainHandler.post(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				for (LoadRequest request : requests)
+				{
+					if (!request.isCancelled())
+						request.mCallback.onProfileLoaded(result);
+				}
+			}
+		});
+	}
+
+	private synchronized void detach(LoadRequest request)
+	{
+		mWaiting.remove(request);
+		// Nobody is interested in the running query any more
+		if (mWaiting.isEmpty() && mInFlight != null && !mFutureShared)
+		{
+			mInFlight.cancel(true);
+			mInFlight = null;
+		}
+	}
+
+	/**
+	 * Creates low priority daemon threads so profile queries do not compete
+	 * with the UI thread.
+	 */
+	private static class BackgroundThreadFactory implements ThreadFactory
+	{
+		private final AtomicInteger mCount = new AtomicInteger();
+
+		@Override
+		public Thread newThread(final Runnable runnable)
+		{
+			Thread thread = new Thread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+					runnable.run();
+				}
+			}, "AuthProfileLoader #" + mCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
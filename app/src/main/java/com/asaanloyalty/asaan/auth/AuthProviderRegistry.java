@@ -0,0 +1,152 @@
+package com.asaanloyalty.asaan.auth;
+
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import android.os.Looper;
+import android.os.MessageQueue;
+
+import com.google.api.client.util.Lists;
+
+/**
+ * Creates an activity's sign-in provider clients only when they are first
+ * needed.
+ *
+ * Each provider is wrapped in a {@link Provider} whose {@link Provider#get}
+ * builds it on first use. {@link #prewarmWhenIdle} builds the ones nobody has
+ * asked for yet once the main thread has gone idle, one provider per idle
+ * pass, so the work lands after the first frame instead of in
+ * {@code onCreate}. Must be used on the main thread.
+ */
+public class AuthProviderRegistry
+{
+	private static final Logger logger = Logger.getLogger(AuthProviderRegistry.class.getName());
+
+	/**
+	 * A lazily created provider client.
+	 */
+	public static abstract class Provider<T>
+	{
+		private final String mName;
+		private T mInstance;
+
+		protected Provider(String name)
+		{
+			mName = name;
+		}
+
+		/**
+		 * Builds the client. Called at most once, on the main thread.
+		 */
+		protected abstract T create();
+
+		/**
+		 * @return the client, creating it if necessary
+		 */
+		public final T get()
+		{
+			if (mInstance == null)
+			{
+				long start = System.nanoTime();
+				mInstance = create();
+				logger.log(Level.INFO, "Created " + mName + " provider in " + (System.nanoTime() - start) / 1000000
+						+ " ms");
+			}
+			return mInstance;
+		}
+
+		/**
+		 * @return the client, or null if it has not been created yet
+		 */
+		public final T peek()
+		{
+			return mInstance;
+		}
+
+		public final boolean isCreated()
+		{
+			return mInstance != null;
+		}
+
+		public String getName()
+		{
+			return mName;
+		}
+	}
+
+	private final List<Provider<?>> mProviders = Lists.newArrayList();
+	private boolean mPrewarmScheduled;
+	/** Bumped by {@link #cancelPending} so queued idle work can tell it is stale */
+	private int mGeneration;
+
+	/**
+	 * Adds a provider. Nothing is created until it is asked for or prewarmed.
+	 *
+	 * @return the provider, for assignment to a field
+	 */
+	public <T> Provider<T> add(Provider<T> provider)
+	{
+		mProviders.add(provider);
+		return provider;
+	}
+
+	/**
+	 * Creates every provider that has not been created yet, one per main
+	 * thread idle pass. Calling this again before it finishes does nothing.
+	 */
+	public void prewarmWhenIdle()
+	{
+		if (mPrewarmScheduled)
+			return;
+		mPrewarmScheduled = true;
+		final int generation = mGeneration;
+		Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler()
+		{
+			@Override
+			public boolean queueIdle()
+			{
+				if (generation != mGeneration)
+					return false;
+				for (Provider<?> provider : mProviders)
+				{
+					if (!provider.isCreated())
+					{
+						provider.get();
+						return true;
+					}
+				}
+				mPrewarmScheduled = false;
+				return false;
+			}
+		});
+	}
+
+	/**
+	 * Runs a task the next time the main thread has nothing else to do.
+	 */
+	public void runWhenIdle(final Runnable task)
+	{
+		final int generation = mGeneration;
+		Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler()
+		{
+			@Override
+			public boolean queueIdle()
+			{
+				if (generation == mGeneration)
+					task.run();
+				return false;
+			}
+		});
+	}
+
+	/**
+	 * Drops any prewarm or idle task that has not run yet, for example when
+	 * the activity stops.
+	 */
+	public void cancelPending()
+	{
+		mGeneration++;
+		mPrewarmScheduled = false;
+	}
+}
@@ -0,0 +1,376 @@
+package com.asaanloyalty.asaan.auth;
+
+import java.io.UnsupportedEncodingException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Base64;
+
+/**
+ * Persists the resolved sign-in identity so the app can show the signed-in
+ * state on a cold start without waiting for the provider SDKs or the network.
+ *
+ * The session is stored as JSON encrypted with AES-CBC and authenticated with
+ * HMAC-SHA256. Both keys are generated on first use and kept in plain text in
+ * the app's private preferences, next to the session they protect. This is
+ * obfuscation, not key protection: it keeps the token out of a casual look at
+ * the preferences, but anyone who can read one file can read the other. The
+ * manifest disables backup so neither file leaves the device that way.
+ */
+public class AuthSessionStore
+{
+	private static final Logger logger = Logger.getLogger(AuthSessionStore.class.getName());
+
+	private static final String PREFS_SESSION = "auth_session";
+	private static final String PREFS_KEYS = "auth_session_keys";
+	private static final String KEY_SESSION = "session";
+	private static final String KEY_CIPHER_KEY = "cipher_key";
+	private static final String KEY_MAC_KEY = "mac_key";
+
+	private static final String CIPHER = "AES/CBC/PKCS5Padding";
+	private static final String MAC = "HmacSHA256";
+	private static final int IV_LENGTH = 16;
+	private static final int MAC_LENGTH = 32;
+
+	private static AuthSessionStore sInstance;
+
+	/**
+	 * Receives the result of {@link AuthSessionStore#restore}. Called on the
+	 * main thread.
+	 */
+	public interface Callback
+	{
+		/**
+		 * @param session
+		 *            the stored session, or null if there is none
+		 */
+		void onSessionRestored(StoredSession session);
+	}
+
+	/**
+	 * A persisted sign-in.
+	 */
+	public static final class StoredSession
+	{
+		private final SocialProfile mProfile;
+		private final String mAccessToken;
+		private final long mExpiresAt;
+
+		public StoredSession(SocialProfile profile, String accessToken, long expiresAt)
+		{
+			mProfile = profile;
+			mAccessToken = accessToken;
+			mExpiresAt = expiresAt;
+		}
+
+		public SocialProfile getProfile()
+		{
+			return mProfile;
+		}
+
+		public String getProvider()
+		{
+			return mProfile.getProvider();
+		}
+
+		/**
+		 * @return the provider access token, or null if the provider does not
+		 *         expose one
+		 */
+		public String getAccessToken()
+		{
+			return mAccessToken;
+		}
+
+		/**
+		 * @return when the session must be revalidated, in milliseconds since
+		 *         the epoch
+		 */
+		public long getExpiresAt()
+		{
+			return mExpiresAt;
+		}
+
+		public boolean isExpired()
+		{
+			return System.currentTimeMillis() >= mExpiresAt;
+		}
+
+		/**
+		 * @param windowMillis
+		 *            how long before expiry revalidation should start
+		 * @return whether the session expires within the window
+		 */
+		public boolean needsRefresh(long windowMillis)
+		{
+			return System.currentTimeMillis() + windowMillis >= mExpiresAt;
+		}
+	}
+
+	private final Context mContext;
+	private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+	private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+	/** Last session read or written, so repeat reads skip decryption */
+	private volatile StoredSession mSession;
+	private volatile boolean mLoaded;
+
+	private AuthSessionStore(Context context)
+	{
+		mContext = context.getApplicationContext();
+	}
+
+	/**
+	 * Returns the process-wide session store.
+	 *
+	 * @param context
+	 *            any context; only its application context is retained
+	 */
+	public static synchronized AuthSessionStore getInstance(Context context)
+	{
+		if (sInstance == null)
+			sInstance = new AuthSessionStore(context);
+		return sInstance;
+	}
+
+	/**
+	 * Reads the stored session in the background.
+	 *
+	 * @param callback
+	 *            receives the session on the main thread
+	 */
+	public void restore(final Callback callback)
+	{
+		if (mLoaded)
+		{
+			callback.onSessionRestored(mSession);
+			return;
+		}
+		mExecutor.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				final StoredSession session = load();
+				mMainHandler.post(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						callback.onSessionRestored(session);
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * Reads the stored session on the calling thread, for work that runs
+	 * without an activity, for example in a process started for a push
+	 * message. Must not be called on the main thread.
+	 *
+	 * @return the stored session, or null if there is none
+	 */
+	public StoredSession get()
+	{
+		return load();
+	}
+
+	/**
+	 * @return the session if it has already been restored or saved in this
+	 *         process, otherwise null
+	 */
+	public StoredSession peek()
+	{
+		return mSession;
+	}
+
+	/**
+	 * Stores a session, replacing any previous one. The write happens in the
+	 * background.
+	 */
+	public void save(final StoredSession session)
+	{
+		// Under the lock so a load on another thread cannot overwrite it
+		synchronized (this)
+		{
+			mSession = session;
+			mLoaded = true;
+		}
+		mExecutor.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					String encrypted = encrypt(toJson(session).toString());
+					prefs(PREFS_SESSION).edit().putString(KEY_SESSION, encrypted).commit();
+				} catch (Exception e)
+				{
+					logger.log(Level.WARNING, "Saving session failed - " + e.getMessage());
+				}
+			}
+		});
+	}
+
+	/**
+	 * Forgets the stored session.
+	 */
+	public void clear()
+	{
+		synchronized (this)
+		{
+			mSession = null;
+			mLoaded = true;
+		}
+		mExecutor.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				prefs(PREFS_SESSION).edit().remove(KEY_SESSION).commit();
+			}
+		});
+	}
+
+	private synchronized StoredSession load()
+	{
+		if (mLoaded)
+			return mSession;
+		StoredSession session = null;
+		String encrypted = prefs(PREFS_SESSION).getString(KEY_SESSION, null);
+		if (encrypted != null)
+		{
+			try
+			{
+				session = fromJson(new JSONObject(decrypt(encrypted)));
+			} catch (Exception e)
+			{
+				// Unreadable or tampered with; start over
+				logger.log(Level.WARNING, "Restoring session failed - " + e.getMessage());
+				prefs(PREFS_SESSION).edit().remove(KEY_SESSION).commit();
+			}
+		}
+		mSession = session;
+		mLoaded = true;
+		return session;
+	}
+
+	private SharedPreferences prefs(String name)
+	{
+		return mContext.getSharedPreferences(name, Context.MODE_PRIVATE);
+	}
+
+	private static JSONObject toJson(StoredSession session) throws JSONException
+	{
+		SocialProfile profile = session.getProfile();
+		return new JSONObject().put("provider", profile.getProvider()).put("userId", profile.getUserId())
+				.put("name", profile.getName()).put("email", profile.getEmail())
+				.put("phoneNumber", profile.getPhoneNumber()).put("photoUrl", profile.getPhotoUrl())
+				.put("accessToken", session.getAccessToken()).put("expiresAt", session.getExpiresAt());
+	}
+
+	private static StoredSession fromJson(JSONObject json) throws JSONException
+	{
+		SocialProfile profile = new SocialProfile.Builder(json.getString("provider"), json.optString("userId", null))
+				.setName(json.optString("name", null)).setEmail(json.optString("email", null))
+				.setPhoneNumber(json.optString("phoneNumber", null)).setPhotoUrl(json.optString("photoUrl", null))
+				.build();
+		return new StoredSession(profile, json.optString("accessToken", null), json.getLong("expiresAt"));
+	}
+
+	private String encrypt(String plaintext) throws GeneralSecurityException
+	{
+		byte[] iv = new byte[IV_LENGTH];
+		new SecureRandom().nextBytes(iv);
+		Cipher cipher = Cipher.getInstance(CIPHER);
+		cipher.init(Cipher.ENCRYPT_MODE, key(KEY_CIPHER_KEY, "AES"), new IvParameterSpec(iv));
+		byte[] ciphertext = cipher.doFinal(utf8(plaintext));
+
+		byte[] message = new byte[IV_LENGTH + ciphertext.length + MAC_LENGTH];
+		System.arraycopy(iv, 0, message, 0, IV_LENGTH);
+		System.arraycopy(ciphertext, 0, message, IV_LENGTH, ciphertext.length);
+		byte[] mac = mac(message, IV_LENGTH + ciphertext.length);
+		System.arraycopy(mac, 0, message, IV_LENGTH + ciphertext.length, MAC_LENGTH);
+		return Base64.encodeToString(message, Base64.NO_WRAP);
+	}
+
+	private String decrypt(String encoded) throws GeneralSecurityException
+	{
+		byte[] message = Base64.decode(encoded, Base64.NO_WRAP);
+		int body_length = message.length - MAC_LENGTH;
+		if (body_length <= IV_LENGTH)
+			throw new GeneralSecurityException("Session too short");
+		byte[] expected = mac(message, body_length);
+		byte[] actual = new byte[MAC_LENGTH];
+		System.arraycopy(message, body_length, actual, 0, MAC_LENGTH);
+		if (!MessageDigest.isEqual(expected, actual))
+			throw new GeneralSecurityException("Session MAC mismatch");
+
+		Cipher cipher = Cipher.getInstance(CIPHER);
+		cipher.init(Cipher.DECRYPT_MODE, key(KEY_CIPHER_KEY, "AES"), new IvParameterSpec(message, 0, IV_LENGTH));
+		byte[] plaintext = cipher.doFinal(message, IV_LENGTH, body_length - IV_LENGTH);
+		try
+		{
+			return new String(plaintext, "UTF-8");
+		} catch (UnsupportedEncodingException e)
+		{
+			throw new AssertionError(e);
+		}
+	}
+
+	private byte[] mac(byte[] data, int length) throws GeneralSecurityException
+	{
+		Mac mac = Mac.getInstance(MAC);
+		mac.init(key(KEY_MAC_KEY, MAC));
+		mac.update(data, 0, length);
+		return mac.doFinal();
+	}
+
+	/**
+	 * Returns a stored key, generating it on first use.
+	 */
+	private synchronized SecretKey key(String name, String algorithm) throws GeneralSecurityException
+	{
+		SharedPreferences prefs = prefs(PREFS_KEYS);
+		String encoded = prefs.getString(name, null);
+		if (encoded != null)
+			return new SecretKeySpec(Base64.decode(encoded, Base64.NO_WRAP), algorithm);
+
+		KeyGenerator generator = KeyGenerator.getInstance(algorithm);
+		generator.init(256);
+		SecretKey key = generator.generateKey();
+		prefs.edit().putString(name, Base64.encodeToString(key.getEncoded(), Base64.NO_WRAP)).commit();
+		return key;
+	}
+
+	private static byte[] utf8(String value)
+	{
+		try
+		{
+			return value.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e)
+		{
+			throw new AssertionError(e);
+		}
+	}
+}
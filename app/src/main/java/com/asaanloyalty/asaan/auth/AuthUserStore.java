@@ -0,0 +1,299 @@
+package com.asaanloyalty.asaan.auth;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
+
+import com.asaanloyalty.asaan.dao.DaoSessionProvider;
+import com.asaanloyalty.asaan.dao.LinkedIdentity;
+
+/**
+ * Local record of the users who have signed in on this device and the social
+ * identities linked to each of them, in the LOCAL_USER and LINKED_IDENTITY
+ * tables.
+ *
+ * LINKED_IDENTITY is indexed on (provider, external id), which is unique, and
+ * on the {@link IdentityNormalizer#emailKey email key} and E.164 phone number, so each lookup here is a single
+ * indexed query run through a statement compiled once per store. Upserts use
+ * compiled INSERT OR IGNORE and UPDATE statements inside a transaction rather
+ * than INSERT OR REPLACE, which would give the identity a new row id.
+ *
+ * A new identity is linked to an existing user when {@link IdentityLinker}
+ * matches it by email, phone number or name; the linker's indices are loaded
+ * from LINKED_IDENTITY once and kept up to date by {@link #recordSignIn}.
+ *
+ * Writes go straight to SQLite, bypassing the greenDAO identity scope, so read
+ * these tables through this class rather than through cached DAO entities.
+ * All methods touch the disk and must not be called on the main thread,
+ * except {@link #recordSignInAsync}.
+ */
+public class AuthUserStore
+{
+	private static final Logger logger = Logger.getLogger(AuthUserStore.class.getName());
+
+	/** Returned by the lookups when nothing matches */
+	public static final long NO_USER = -1;
+
+	private static final String SQL_FIND_BY_IDENTITY = "SELECT USER_ID FROM LINKED_IDENTITY WHERE PROVIDER = ? AND EXTERNAL_ID = ?";
+	private static final String SQL_FIND_BY_EMAIL = "SELECT USER_ID FROM LINKED_IDENTITY WHERE EMAIL = ? LIMIT 1";
+	private static final String SQL_FIND_BY_PHONE = "SELECT USER_ID FROM LINKED_IDENTITY WHERE PHONE_E164 = ? LIMIT 1";
+	private static final String SQL_INSERT_IDENTITY = "INSERT OR IGNORE INTO LINKED_IDENTITY (USER_ID, PROVIDER, EXTERNAL_ID, EMAIL, PHONE_E164, DISPLAY_NAME, PHOTO_URL, LINKED_AT, LAST_SEEN_AT) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+	private static final String SQL_UPDATE_IDENTITY = "UPDATE LINKED_IDENTITY SET EMAIL = COALESCE(?, EMAIL), PHONE_E164 = COALESCE(?, PHONE_E164), DISPLAY_NAME = COALESCE(?, DISPLAY_NAME), PHOTO_URL = COALESCE(?, PHOTO_URL), LAST_SEEN_AT = ? WHERE PROVIDER = ? AND EXTERNAL_ID = ?";
+	private static final String SQL_INSERT_USER = "INSERT INTO LOCAL_USER (DISPLAY_NAME, EMAIL, PHONE_E164, PHOTO_URL, CREATED_AT, UPDATED_AT) VALUES (?, ?, ?, ?, ?, ?)";
+	private static final String SQL_UPDATE_USER = "UPDATE LOCAL_USER SET DISPLAY_NAME = COALESCE(DISPLAY_NAME, ?), EMAIL = COALESCE(EMAIL, ?), PHONE_E164 = COALESCE(PHONE_E164, ?), PHOTO_URL = COALESCE(PHOTO_URL, ?), UPDATED_AT = ? WHERE _id = ?";
+
+	private static AuthUserStore sInstance;
+
+	private final Context mContext;
+	private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+	/** Opened and compiled on first use; all guarded by this */
+	private SQLiteDatabase mDb;
+	private SQLiteStatement mFindByIdentity;
+	private SQLiteStatement mFindByEmail;
+	private SQLiteStatement mFindByPhone;
+	private SQLiteStatement mInsertIdentity;
+	private SQLiteStatement mUpdateIdentity;
+	private SQLiteStatement mInsertUser;
+	private SQLiteStatement mUpdateUser;
+	private IdentityLinker mLinker;
+
+	private AuthUserStore(Context context)
+	{
+		mContext = context.getApplicationContext();
+	}
+
+	/**
+	 * Returns the process-wide store.
+	 *
+	 * @param context
+	 *            any context; only its application context is retained
+	 */
+	public static synchronized AuthUserStore getInstance(Context context)
+	{
+		if (sInstance == null)
+			sInstance = new AuthUserStore(context);
+		return sInstance;
+	}
+
+	/**
+	 * @return the local user the identity is linked to, or {@link #NO_USER}
+	 */
+	public synchronized long findUserIdByIdentity(String provider, String externalId)
+	{
+		open();
+		mFindByIdentity.bindString(1, provider);
+		mFindByIdentity.bindString(2, externalId);
+		return queryForUserId(mFindByIdentity);
+	}
+
+	/**
+	 * @return whether this identity has signed in on this device before
+	 */
+	public boolean hasSeen(String provider, String externalId)
+	{
+		return findUserIdByIdentity(provider, externalId) != NO_USER;
+	}
+
+	/**
+	 * @return a local user with an identity reporting this address, or
+	 *         {@link #NO_USER}
+	 */
+	public synchronized long findUserIdByEmail(String email)
+	{
+		String normalized = IdentityNormalizer.emailKey(email);
+		if (normalized == null)
+			return NO_USER;
+		open();
+		mFindByEmail.bindString(1, normalized);
+		return queryForUserId(mFindByEmail);
+	}
+
+	/**
+	 * @return a local user with an identity reporting this number, or
+	 *         {@link #NO_USER}
+	 */
+	public synchronized long findUserIdByPhone(String phone)
+	{
+		String normalized = IdentityNormalizer.normalizePhone(phone);
+		if (normalized == null)
+			return NO_USER;
+		open();
+		mFindByPhone.bindString(1, normalized);
+		return queryForUserId(mFindByPhone);
+	}
+
+	/**
+	 * Records a sign-in and refreshes the stored fields. On the identity's
+	 * first sign-in it is linked to the matching user, or to a new user if
+	 * none matches.
+	 *
+	 * @return the local user id
+	 */
+	public synchronized long recordSignIn(SocialProfile profile)
+	{
+		open();
+		String email = IdentityNormalizer.normalizeEmail(profile.getEmail());
+		String email_key = IdentityNormalizer.emailKey(profile.getEmail());
+		String phone = IdentityNormalizer.normalizePhone(profile.getPhoneNumber());
+		long now = System.currentTimeMillis();
+		IdentityLinker.Match match = mLinker.match(profile);
+		long userId = match.getUserId();
+		mDb.beginTransaction();
+		try
+		{
+			switch (match.getReason())
+			{
+			case IdentityLinker.MATCH_NONE:
+				userId = insertUser(profile, email, phone, now);
+				insertIdentity(userId, profile, email_key, phone, now);
+				break;
+			case IdentityLinker.MATCH_IDENTITY:
+				updateIdentity(profile, email_key, phone, now);
+				updateUser(userId, profile, email, phone, now);
+				break;
+			default:
+				logger.log(Level.INFO, "Linking " + profile.getProvider() + " identity to local user " + userId
+						+ " by " + match);
+				insertIdentity(userId, profile, email_key, phone, now);
+				updateUser(userId, profile, email, phone, now);
+				break;
+			}
+			mDb.setTransactionSuccessful();
+		} finally
+		{
+			mDb.endTransaction();
+		}
+		// Index only once the rows are committed
+		mLinker.add(userId, profile);
+		return userId;
+	}
+
+	/**
+	 * Runs {@link #recordSignIn} in the background. Profiles without a
+	 * provider user id, such as the device profile, are ignored.
+	 */
+	public void recordSignInAsync(final SocialProfile profile)
+	{
+		if (profile.getUserId() == null || SocialProfile.PROVIDER_DEVICE.equals(profile.getProvider()))
+			return;
+		mExecutor.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					long userId = recordSignIn(profile);
+					logger.log(Level.INFO, "Recorded " + profile.getProvider() + " sign-in for local user " + userId);
+				} catch (RuntimeException e)
+				{
+					logger.log(Level.WARNING, "Recording sign-in failed - " + e.getMessage());
+				}
+			}
+		});
+	}
+
+	private long insertUser(SocialProfile profile, String email, String phone, long now)
+	{
+		mInsertUser.clearBindings();
+		bindOptional(mInsertUser, 1, profile.getName());
+		bindOptional(mInsertUser, 2, email);
+		bindOptional(mInsertUser, 3, phone);
+		bindOptional(mInsertUser, 4, profile.getPhotoUrl());
+		mInsertUser.bindLong(5, now);
+		mInsertUser.bindLong(6, now);
+		return mInsertUser.executeInsert();
+	}
+
+	/**
+	 * Fills in user fields that are still empty; fields already set are kept.
+	 */
+	private void updateUser(long userId, SocialProfile profile, String email, String phone, long now)
+	{
+		mUpdateUser.clearBindings();
+		bindOptional(mUpdateUser, 1, profile.getName());
+		bindOptional(mUpdateUser, 2, email);
+		bindOptional(mUpdateUser, 3, phone);
+		bindOptional(mUpdateUser, 4, profile.getPhotoUrl());
+		mUpdateUser.bindLong(5, now);
+		mUpdateUser.bindLong(6, userId);
+		mUpdateUser.execute();
+	}
+
+	private void insertIdentity(long userId, SocialProfile profile, String email, String phone, long now)
+	{
+		mInsertIdentity.clearBindings();
+		mInsertIdentity.bindLong(1, userId);
+		mInsertIdentity.bindString(2, profile.getProvider());
+		mInsertIdentity.bindString(3, profile.getUserId());
+		bindOptional(mInsertIdentity, 4, email);
+		bindOptional(mInsertIdentity, 5, phone);
+		bindOptional(mInsertIdentity, 6, profile.getName());
+		bindOptional(mInsertIdentity, 7, profile.getPhotoUrl());
+		mInsertIdentity.bindLong(8, now);
+		mInsertIdentity.bindLong(9, now);
+		mInsertIdentity.executeInsert();
+	}
+
+	/**
+	 * Overwrites identity fields the provider reported; missing fields keep
+	 * their stored value.
+	 */
+	private void updateIdentity(SocialProfile profile, String email, String phone, long now)
+	{
+		mUpdateIdentity.clearBindings();
+		bindOptional(mUpdateIdentity, 1, email);
+		bindOptional(mUpdateIdentity, 2, phone);
+		bindOptional(mUpdateIdentity, 3, profile.getName());
+		bindOptional(mUpdateIdentity, 4, profile.getPhotoUrl());
+		mUpdateIdentity.bindLong(5, now);
+		mUpdateIdentity.bindString(6, profile.getProvider());
+		mUpdateIdentity.bindString(7, profile.getUserId());
+		mUpdateIdentity.execute();
+	}
+
+	private static long queryForUserId(SQLiteStatement statement)
+	{
+		try
+		{
+			return statement.simpleQueryForLong();
+		} catch (SQLiteDoneException e)
+		{
+			// No row
+			return NO_USER;
+		}
+	}
+
+	private static void bindOptional(SQLiteStatement statement, int index, String value)
+	{
+		if (value != null)
+			statement.bindString(index, value);
+		else
+			statement.bindNull(index);
+	}
+
+	private void open()
+	{
+		if (mDb != null)
+			return;
+		mDb = DaoSessionProvider.getSession(mContext).getDatabase();
+		mFindByIdentity = mDb.compileStatement(SQL_FIND_BY_IDENTITY);
+		mFindByEmail = mDb.compileStatement(SQL_FIND_BY_EMAIL);
+		mFindByPhone = mDb.compileStatement(SQL_FIND_BY_PHONE);
+		mInsertIdentity = mDb.compileStatement(SQL_INSERT_IDENTITY);
+		mUpdateIdentity = mDb.compileStatement(SQL_UPDATE_IDENTITY);
+		mInsertUser = mDb.compileStatement(SQL_INSERT_USER);
+		mUpdateUser = mDb.compileStatement(SQL_UPDATE_USER);
+		mLinker = new IdentityLinker();
+		for (LinkedIdentity identity : DaoSessionProvider.getSession(mContext).getLinkedIdentityDao().loadAll())
+			mLinker.add(identity.getUserId(), identity.getProvider(), identity.getExternalId(), identity.getEmail(),
+					identity.getPhoneE164(), identity.getDisplayName());
+	}
+}
@@ -0,0 +1,41 @@
+package com.asaanloyalty.asaan.auth;
+
+import android.database.Cursor;
+
+/**
+ * The system services the device profile is read from: the Contacts
+ * provider, the AccountManager and the TelephonyManager.
+ *
+ * {@link AuthAndroidUserProfileUtils} goes through this interface rather than
+ * the services themselves, so the profile sources can be driven by fakes with
+ * synthetic data.
+ */
+public interface DeviceServices
+{
+	/**
+	 * Queries the data rows of the device owner's profile contact.
+	 *
+	 * @return the cursor, which the caller closes, or null
+	 */
+	Cursor queryOwnerProfile(String[] projection, String selection, String[] selectionArgs, String sortOrder);
+
+	/**
+	 * @return the names of the Google accounts on the device, never null
+	 */
+	String[] getGoogleAccountNames();
+
+	/**
+	 * @return whether the device has a phone radio
+	 */
+	boolean hasTelephony();
+
+	/**
+	 * @return the device's own phone number as reported by the SIM, or null
+	 */
+	String getLine1Number();
+
+	/**
+	 * @return the ISO 3166 country of the SIM, or null
+	 */
+	String getSimCountryIso();
+}
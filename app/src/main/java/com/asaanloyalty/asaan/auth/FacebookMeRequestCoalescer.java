@@ -0,0 +1,167 @@
+package com.asaanloyalty.asaan.auth;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import android.os.SystemClock;
+
+import com.facebook.Request;
+import com.facebook.Response;
+import com.facebook.Session;
+import com.facebook.model.GraphUser;
+import com.google.api.client.util.Lists;
+import com.google.api.client.util.Maps;
+
+/**
+ * Shares Graph API /me requests between callers.
+ *
+ * Requests are keyed by the session's access token. A caller asking while a
+ * request for the same token is in flight is attached to it, and successful
+ * responses are reused for {@link #CACHE_TTL_MS} so repeated session state
+ * callbacks during one login do not each cost an HTTP call. Counters record
+ * how many requests were actually issued and how many were saved.
+ */
+public class FacebookMeRequestCoalescer
+{
+	private static final Logger logger = Logger.getLogger(FacebookMeRequestCoalescer.class.getName());
+
+	/** How long a successful /me response is reused */
+	public static final long CACHE_TTL_MS = 5 * 60 * 1000L;
+
+	private static FacebookMeRequestCoalescer sInstance;
+
+	/** Successful responses by access token, guarded by this */
+	private final Map<String, CachedUser> mCache = Maps.newHashMap();
+	/** Callers waiting on an in-flight request by access token, guarded by this */
+	private final Map<String, List<Request.GraphUserCallback>> mInFlight = Maps.newHashMap();
+
+	private final AtomicInteger mIssued = new AtomicInteger();
+	private final AtomicInteger mCoalesced = new AtomicInteger();
+	private final AtomicInteger mCacheHits = new AtomicInteger();
+
+	public static synchronized FacebookMeRequestCoalescer getInstance()
+	{
+		if (sInstance == null)
+			sInstance = new FacebookMeRequestCoalescer();
+		return sInstance;
+	}
+
+	/**
+	 * Fetches the session's user, reusing a cached or in-flight response when
+	 * there is one. Must be called on the main thread; the callback is always
+	 * invoked on the main thread, immediately on a cache hit.
+	 *
+	 * @param session
+	 *            an open session
+	 * @param callback
+	 *            receives the user and the response it came from
+	 */
+	public void request(Session session, Request.GraphUserCallback callback)
+	{
+		final String token = session.getAccessToken();
+		CachedUser cached;
+		synchronized (this)
+		{
+			cached = mCache.get(token);
+			if (cached != null && cached.isExpired())
+			{
+				mCache.remove(token);
+				cached = null;
+			}
+			if (cached == null)
+			{
+				List<Request.GraphUserCallback> waiting = mInFlight.get(token);
+				if (waiting != null)
+				{
+					waiting.add(callback);
+					mCoalesced.incrementAndGet();
+					return;
+				}
+				waiting = Lists.newArrayList();
+				waiting.add(callback);
+				mInFlight.put(token, waiting);
+			}
+		}
+		if (cached != null)
+		{
+			mCacheHits.incrementAndGet();
+			callback.onCompleted(cached.mUser, cached.mResponse);
+			return;
+		}
+
+		mIssued.incrementAndGet();
+		final long traceBegin = AuthTrace.begin();
+		Request.newMeRequest(session, new Request.GraphUserCallback()
+		{
+			@Override
+			public void onCompleted(GraphUser user, Response response)
+			{
+				AuthTrace.end(AuthTrace.PHASE_GRAPH_ME, traceBegin);
+				List<Request.GraphUserCallback> waiting;
+				synchronized (FacebookMeRequestCoalescer.this)
+				{
+					waiting = mInFlight.remove(token);
+					if (user != null && response.getError() == null)
+						mCache.put(token, new CachedUser(user, response));
+				}
+				logger.log(Level.INFO, "Graph /me completed for " + waiting.size() + " caller(s), " + stats());
+				for (Request.GraphUserCallback callback : waiting)
+					callback.onCompleted(user, response);
+			}
+		}).executeAsync();
+	}
+
+	/**
+	 * Drops every cached response, for example after the user logs off.
+	 */
+	public synchronized void clear()
+	{
+		mCache.clear();
+	}
+
+	/** Number of /me requests sent to Graph */
+	public int issuedCount()
+	{
+		return mIssued.get();
+	}
+
+	/** Number of requests saved by sharing an in-flight request */
+	public int coalescedCount()
+	{
+		return mCoalesced.get();
+	}
+
+	/** Number of requests saved by a cached response */
+	public int cacheHitCount()
+	{
+		return mCacheHits.get();
+	}
+
+	public String stats()
+	{
+		return "issued = " + mIssued.get() + " coalesced = " + mCoalesced.get() + " cacheHits = "
+				+ mCacheHits.get();
+	}
+
+	private static final class CachedUser
+	{
+		final GraphUser mUser;
+		final Response mResponse;
+		final long mExpiresAt;
+
+		CachedUser(GraphUser user, Response response)
+		{
+			mUser = user;
+			mResponse = response;
+			mExpiresAt = SystemClock.elapsedRealtime() + CACHE_TTL_MS;
+		}
+
+		boolean isExpired()
+		{
+			return SystemClock.elapsedRealtime() >= mExpiresAt;
+		}
+	}
+}
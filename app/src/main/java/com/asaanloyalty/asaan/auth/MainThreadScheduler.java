@@ -0,0 +1,24 @@
+package com.asaanloyalty.asaan.auth;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Runs a {@link SignInStateMachine}'s retries on the main thread.
+ */
+class MainThreadScheduler implements SignInStateMachine.Scheduler
+{
+	private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+	@Override
+	public void postDelayed(Runnable task, long delayMillis)
+	{
+		mHandler.postDelayed(task, delayMillis);
+	}
+
+	@Override
+	public void cancel(Runnable task)
+	{
+		mHandler.removeCallbacks(task);
+	}
+}
@@ -0,0 +1,54 @@
+package com.asaanloyalty.asaan.auth;
+
+import android.content.Context;
+import android.net.Uri;
+
+import com.asaanloyalty.asaan.auth.AuthAndroidUserProfileUtils.AndroidContactProfile;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.plus.Plus;
+import com.google.android.gms.plus.model.people.Person;
+
+/**
+ * Reads the signed-in Google+ account's email address, name and photo.
+ * Contributes nothing unless the client is connected.
+ */
+public class PlusProfileSource implements ProfileSource
+{
+	private final GoogleApiClient mGoogleApiClient;
+
+	public PlusProfileSource(GoogleApiClient googleApiClient)
+	{
+		mGoogleApiClient = googleApiClient;
+	}
+
+	@Override
+	public String name()
+	{
+		return "google-plus";
+	}
+
+	@Override
+	public long timeoutMillis()
+	{
+		return 1000;
+	}
+
+	@Override
+	public AndroidContactProfile load(Context context)
+	{
+		if (!mGoogleApiClient.isConnected())
+			return null;
+
+		final AndroidContactProfile user_profile = new AndroidContactProfile();
+		user_profile.addPossibleEmail(Plus.AccountApi.getAccountName(mGoogleApiClient), false,
+				ProfileCandidateSet.SOURCE_SOCIAL);
+		Person person = Plus.PeopleApi.getCurrentPerson(mGoogleApiClient);
+		if (person != null)
+		{
+			user_profile.addPossibleName(person.getDisplayName(), ProfileCandidateSet.SOURCE_SOCIAL);
+			if (person.hasImage() && person.getImage().hasUrl())
+				user_profile.addPossiblePhoto(Uri.parse(person.getImage().getUrl()));
+		}
+		return user_profile;
+	}
+}
@@ -0,0 +1,146 @@
+package com.asaanloyalty.asaan.auth;
+
+import android.database.CharArrayBuffer;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.ContactsContract;
+import android.text.TextUtils;
+
+import com.asaanloyalty.asaan.auth.AuthAndroidUserProfileUtils.AndroidContactProfile;
+import com.asaanloyalty.asaan.auth.AuthAndroidUserProfileUtils.ProfileQuery;
+
+/**
+ * Maps the rows of a {@link ProfileQuery} cursor onto an
+ * {@link AndroidContactProfile} in a single pass.
+ *
+ * MIME types are read into a reusable buffer and resolved to a small integer
+ * code without creating a String per row, and names are assembled in a
+ * reusable scratch array. Instances keep their buffers between calls and are
+ * not thread safe.
+ */
+class ProfileCursorMapper
+{
+	static final int MIME_UNKNOWN = -1;
+	static final int MIME_EMAIL = 0;
+	static final int MIME_NAME = 1;
+	static final int MIME_PHONE = 2;
+	static final int MIME_PHOTO = 3;
+
+	/** MIME types indexed by their code */
+	private static final char[][] MIME_TYPES = {
+			ContactsContract.CommonDataKinds.Email.CONTENT_ITEM_TYPE.toCharArray(),
+			ContactsContract.CommonDataKinds.StructuredName.CONTENT_ITEM_TYPE.toCharArray(),
+			ContactsContract.CommonDataKinds.Phone.CONTENT_ITEM_TYPE.toCharArray(),
+			ContactsContract.CommonDataKinds.Photo.CONTENT_ITEM_TYPE.toCharArray()};
+
+	private final CharArrayBuffer mMimeBuffer = new CharArrayBuffer(64);
+	private final CharArrayBuffer mGivenNameBuffer = new CharArrayBuffer(32);
+	private final CharArrayBuffer mFamilyNameBuffer = new CharArrayBuffer(32);
+	private char[] mNameScratch = new char[64];
+
+	/**
+	 * Reads every remaining row of the cursor. The cursor is left open.
+	 *
+	 * @param cursor
+	 *            a cursor over the {@link ProfileQuery#PROJECTION}
+	 * @return the profile assembled from the rows
+	 */
+	public AndroidContactProfile map(Cursor cursor)
+	{
+		final AndroidContactProfile user_profile = new AndroidContactProfile();
+		// Rows are sorted primary first and the last photo wins, so only the
+		// final one is parsed
+		String photo = null;
+		while (cursor.moveToNext())
+		{
+			switch (resolveMimeType(cursor))
+			{
+				case MIME_EMAIL:
+				{
+					String email = cursor.getString(ProfileQuery.EMAIL);
+					if (!TextUtils.isEmpty(email))
+						user_profile.addPossibleEmail(email, cursor.getInt(ProfileQuery.IS_PRIMARY_EMAIL) > 0,
+								ProfileCandidateSet.SOURCE_CONTACTS);
+					break;
+				}
+				case MIME_NAME:
+				{
+					String name = readName(cursor);
+					if (name != null)
+						user_profile.addPossibleName(name, ProfileCandidateSet.SOURCE_CONTACTS);
+					break;
+				}
+				case MIME_PHONE:
+				{
+					String phone_number = cursor.getString(ProfileQuery.PHONE_NUMBER);
+					if (!TextUtils.isEmpty(phone_number))
+						user_profile.addPossiblePhoneNumber(phone_number,
+								cursor.getInt(ProfileQuery.IS_PRIMARY_PHONE_NUMBER) > 0,
+								ProfileCandidateSet.SOURCE_CONTACTS);
+					break;
+				}
+				case MIME_PHOTO:
+				{
+					String photo_uri = cursor.getString(ProfileQuery.PHOTO);
+					if (!TextUtils.isEmpty(photo_uri))
+						photo = photo_uri;
+					break;
+				}
+				default:
+					break;
+			}
+		}
+		if (photo != null)
+			user_profile.addPossiblePhoto(Uri.parse(photo));
+		return user_profile;
+	}
+
+	/**
+	 * Resolves the MIME type of the current row.
+	 *
+	 * @return one of the MIME_* codes
+	 */
+	int resolveMimeType(Cursor cursor)
+	{
+		cursor.copyStringToBuffer(ProfileQuery.MIME_TYPE, mMimeBuffer);
+		final char[] data = mMimeBuffer.data;
+		final int length = mMimeBuffer.sizeCopied;
+		for (int code = 0; code < MIME_TYPES.length; code++)
+		{
+			final char[] candidate = MIME_TYPES[code];
+			if (candidate.length != length)
+				continue;
+			// All candidates share the "vnd.android.cursor.item/" prefix, so
+			// compare from the end to reject mismatches early
+			int i = length - 1;
+			while (i >= 0 && candidate[i] == data[i])
+				i--;
+			if (i < 0)
+				return code;
+		}
+		return MIME_UNKNOWN;
+	}
+
+	/**
+	 * Builds "given family" from the current row.
+	 *
+	 * @return the full name, or null unless both parts are present
+	 */
+	private String readName(Cursor cursor)
+	{
+		cursor.copyStringToBuffer(ProfileQuery.GIVEN_NAME, mGivenNameBuffer);
+		cursor.copyStringToBuffer(ProfileQuery.FAMILY_NAME, mFamilyNameBuffer);
+		final int given_length = mGivenNameBuffer.sizeCopied;
+		final int family_length = mFamilyNameBuffer.sizeCopied;
+		if (given_length == 0 || family_length == 0)
+			return null;
+
+		final int length = given_length + 1 + family_length;
+		if (mNameScratch.length < length)
+			mNameScratch = new char[length];
+		System.arraycopy(mGivenNameBuffer.data, 0, mNameScratch, 0, given_length);
+		mNameScratch[given_length] = ' ';
+		System.arraycopy(mFamilyNameBuffer.data, 0, mNameScratch, given_length + 1, family_length);
+		return new String(mNameScratch, 0, length);
+	}
+}
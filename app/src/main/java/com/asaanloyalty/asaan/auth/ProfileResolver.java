@@ -0,0 +1,326 @@
+package com.asaanloyalty.asaan.auth;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import android.content.Context;
+import android.text.TextUtils;
+
+import com.asaanloyalty.asaan.auth.AuthAndroidUserProfileUtils.AndroidContactProfile;
+import com.google.api.client.util.Lists;
+import com.google.api.client.util.Maps;
+
+/**
+ * Resolves the device owner's profile by querying several
+ * {@link ProfileSource}s in parallel and merging their answers.
+ *
+ * Each source has its own timeout, counted from when it starts running rather
+ * than from when it was queued behind other sources. Resolution finishes as
+ * soon as the merged profile satisfies the resolver's {@link Criteria}, and
+ * any sources still running at that point are cancelled, so the latency is
+ * that of the fastest sources that together produce a good enough profile
+ * rather than the sum of all of them. The {@link Result} tells whether every
+ * source answered and whether any registered source contributed, so callers
+ * can tell a partial profile from a complete one.
+ */
+public class ProfileResolver
+{
+	private static final Logger logger = Logger.getLogger(ProfileResolver.class.getName());
+
+	/** Upper bound on sources queried at the same time */
+	private static final int MAX_THREADS = 4;
+	/** Idle worker threads are released after this many seconds */
+	private static final int KEEP_ALIVE_SECONDS = 30;
+	/** How often a source still queued for a thread is checked for its start */
+	private static final long QUEUED_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+	private static final ThreadPoolExecutor sExecutor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS,
+			KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+	static
+	{
+		sExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	/** Sources added at runtime, queried by every resolver */
+	private static final List<ProfileSource> sRegisteredSources = new CopyOnWriteArrayList<ProfileSource>();
+
+	/**
+	 * Decides whether a merged profile is good enough to stop waiting for the
+	 * remaining sources.
+	 */
+	public interface Criteria
+	{
+		boolean isSatisfied(AndroidContactProfile profile);
+	}
+
+	/** Satisfied once the profile has an email address and a name */
+	public static final Criteria EMAIL_AND_NAME = new Criteria()
+	{
+		@Override
+		public boolean isSatisfied(AndroidContactProfile profile)
+		{
+			return !TextUtils.isEmpty(profile.primaryEmail()) && !TextUtils.isEmpty(profile.primaryName());
+		}
+	};
+
+	/** Never satisfied, so every source is waited for */
+	public static final Criteria ALL_SOURCES = new Criteria()
+	{
+		@Override
+		public boolean isSatisfied(AndroidContactProfile profile)
+		{
+			return false;
+		}
+	};
+
+	/**
+	 * The outcome of a resolution.
+	 */
+	public static final class Result
+	{
+		private final AndroidContactProfile mProfile;
+		private final boolean mComplete;
+		private final boolean mFromRegisteredSource;
+
+		Result(AndroidContactProfile profile, boolean complete, boolean fromRegisteredSource)
+		{
+			mProfile = profile;
+			mComplete = complete;
+			mFromRegisteredSource = fromRegisteredSource;
+		}
+
+		/**
+		 * @return the merged profile, never null
+		 */
+		public AndroidContactProfile getProfile()
+		{
+			return mProfile;
+		}
+
+		/**
+		 * @return whether every source answered, rather than the criteria
+		 *         ending the resolution early or a source timing out
+		 */
+		public boolean isComplete()
+		{
+			return mComplete;
+		}
+
+		/**
+		 * @return whether a source added with {@link #registerSource}
+		 *         contributed to the profile
+		 */
+		public boolean isFromRegisteredSource()
+		{
+			return mFromRegisteredSource;
+		}
+	}
+
+	private final List<ProfileSource> mSources;
+	private final Criteria mCriteria;
+	private final boolean mQueryRegistered;
+
+	/**
+	 * @param sources
+	 *            the sources to query on every resolution
+	 * @param criteria
+	 *            decides when to stop waiting for slower sources
+	 */
+	public ProfileResolver(List<ProfileSource> sources, Criteria criteria)
+	{
+		this(sources, criteria, true);
+	}
+
+	/**
+	 * @param queryRegistered
+	 *            whether the sources added with {@link #registerSource} are
+	 *            queried as well
+	 */
+	public ProfileResolver(List<ProfileSource> sources, Criteria criteria, boolean queryRegistered)
+	{
+		mSources = Lists.newArrayList(sources);
+		mCriteria = criteria;
+		mQueryRegistered = queryRegistered;
+	}
+
+	/**
+	 * Adds a source to every resolution until it is unregistered, for
+	 * example a signed-in social network client.
+	 */
+	public static void registerSource(ProfileSource source)
+	{
+		if (!sRegisteredSources.contains(source))
+			sRegisteredSources.add(source);
+	}
+
+	public static void unregisterSource(ProfileSource source)
+	{
+		sRegisteredSources.remove(source);
+	}
+
+	/**
+	 * Queries the sources and merges their results. Must not be called on the
+	 * main thread.
+	 *
+	 * @param context
+	 *            any context; sources receive its application context
+	 * @return the merged profile and how it was resolved
+	 */
+	public Result resolve(Context context)
+	{
+		final Context app_context = context.getApplicationContext();
+		final List<ProfileSource> sources = Lists.newArrayList(mSources);
+		if (mQueryRegistered)
+			sources.addAll(sRegisteredSources);
+
+		final CompletionService<AndroidContactProfile> completion = new ExecutorCompletionService<AndroidContactProfile>(
+				sExecutor);
+		final Map<Future<AndroidContactProfile>, Pending> pending = Maps.newHashMap();
+		final long start = System.nanoTime();
+		for (final ProfileSource source : sources)
+		{
+			final Pending entry = new Pending(source, mSources.contains(source));
+			Future<AndroidContactProfile> future = completion.submit(new Callable<AndroidContactProfile>()
+			{
+				@Override
+				public AndroidContactProfile call() throws Exception
+				{
+					entry.start();
+					return source.load(app_context);
+				}
+			});
+			pending.put(future, entry);
+		}
+
+		final AndroidContactProfile merged = new AndroidContactProfile();
+		boolean complete = true;
+		boolean from_registered = false;
+		try
+		{
+			while (!pending.isEmpty())
+			{
+				long now = System.nanoTime();
+				long wait = nextDeadline(pending, now) - now;
+				Future<AndroidContactProfile> future = wait > 0 ? completion.poll(wait, TimeUnit.NANOSECONDS) : null;
+				if (future == null)
+				{
+					if (expire(pending))
+						complete = false;
+					continue;
+				}
+				Pending done = pending.remove(future);
+				// Sources that were already given up on still complete later
+				if (done == null)
+					continue;
+				try
+				{
+					AndroidContactProfile profile = future.get();
+					if (profile != null && !done.mOwn)
+						from_registered = true;
+					merged.merge(profile);
+				} catch (ExecutionException e)
+				{
+					logger.log(Level.WARNING, "Profile source " + done.mSource.name() + " failed - " + e.getCause());
+				}
+				if (mCriteria.isSatisfied(merged))
+					break;
+			}
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		} finally
+		{
+			for (Future<AndroidContactProfile> future : pending.keySet())
+				future.cancel(true);
+		}
+		AuthTrace.end(AuthTrace.PHASE_PROFILE_RESOLVE, start);
+		logger.log(Level.INFO, "Profile resolved in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+				+ " ms, " + pending.size() + " source(s) skipped");
+		return new Result(merged, complete && pending.isEmpty(), from_registered);
+	}
+
+	private static long nextDeadline(Map<Future<AndroidContactProfile>, Pending> pending, long now)
+	{
+		long next = Long.MAX_VALUE;
+		for (Pending p : pending.values())
+			next = Math.min(next, p.deadline(now));
+		return next;
+	}
+
+	/**
+	 * Cancels and forgets every source whose deadline has passed.
+	 *
+	 * @return whether any source timed out
+	 */
+	private static boolean expire(Map<Future<AndroidContactProfile>, Pending> pending)
+	{
+		final long now = System.nanoTime();
+		boolean expired = false;
+		for (Iterator<Map.Entry<Future<AndroidContactProfile>, Pending>> it = pending.entrySet().iterator(); it
+				.hasNext();)
+		{
+			Map.Entry<Future<AndroidContactProfile>, Pending> entry = it.next();
+			if (entry.getValue().isExpired(now))
+			{
+				logger.log(Level.WARNING, "Profile source " + entry.getValue().mSource.name() + " timed out");
+				entry.getKey().cancel(true);
+				it.remove();
+				expired = true;
+			}
+		}
+		return expired;
+	}
+
+	private static final class Pending
+	{
+		final ProfileSource mSource;
+		/** Whether the source is one of the resolver's own, not a registered one */
+		final boolean mOwn;
+		final long mTimeout;
+		/** Written by the worker thread once before mStarted is set */
+		private long mStartedAt;
+		private volatile boolean mStarted;
+
+		Pending(ProfileSource source, boolean own)
+		{
+			mSource = source;
+			mOwn = own;
+			mTimeout = TimeUnit.MILLISECONDS.toNanos(source.timeoutMillis());
+		}
+
+		/**
+		 * Called on the worker thread when the source starts running.
+		 */
+		void start()
+		{
+			mStartedAt = System.nanoTime();
+			mStarted = true;
+		}
+
+		/**
+		 * @return when the source times out, or when to check again whether a
+		 *         source still waiting for a thread has started
+		 */
+		long deadline(long now)
+		{
+			return mStarted ? mStartedAt + mTimeout : now + Math.min(mTimeout, QUEUED_POLL_NANOS);
+		}
+
+		boolean isExpired(long now)
+		{
+			return mStarted && mStartedAt + mTimeout - now <= 0;
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package com.asaanloyalty.asaan.auth;
+
+import android.content.Context;
+
+import com.asaanloyalty.asaan.auth.AuthAndroidUserProfileUtils.AndroidContactProfile;
+
+/**
+ * A place the device owner's profile can be read from, such as the Contacts
+ * provider or the AccountManager. Sources are queried in parallel by
+ * {@link ProfileResolver}.
+ */
+public interface ProfileSource
+{
+	/**
+	 * @return a short name for logging
+	 */
+	String name();
+
+	/**
+	 * @return how long the resolver waits for this source before giving up on
+	 *         it
+	 */
+	long timeoutMillis();
+
+	/**
+	 * Reads the profile. Called on a background thread; implementations should
+	 * respond to interruption where they can.
+	 * 
+	 * @param context
+	 *            the application context
+	 * @return the partial profile this source knows about, or null
+	 */
+	AndroidContactProfile load(Context context) throws Exception;
+}
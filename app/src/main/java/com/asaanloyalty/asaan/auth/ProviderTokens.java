@@ -0,0 +1,84 @@
+package com.asaanloyalty.asaan.auth;
+
+import android.content.Context;
+import android.text.TextUtils;
+
+import com.asaanloyalty.asaan.backend.IdentityExchangeClient;
+import com.facebook.Session;
+import com.google.android.gms.auth.GoogleAuthUtil;
+import com.google.android.gms.common.Scopes;
+
+/**
+ * Looks up the provider access token of a signed-in identity when it is
+ * needed, so nothing has to store one.
+ *
+ * Google+ tokens come from {@link GoogleAuthUtil}, which caches them and mints
+ * a new one once a cached token is invalidated. Facebook tokens come from the
+ * open Facebook session or, in a process that has none, from the
+ * {@link AuthSessionStore}; they cannot be renewed without the user, so the
+ * next sign-in brings a new one. Every call may block, so none may be made on
+ * the main thread.
+ */
+public class ProviderTokens
+{
+	/** Scope the Google+ sign-in and its tokens are granted */
+	public static final String GOOGLE_PLUS_SCOPE = "oauth2:" + Scopes.PLUS_LOGIN;
+
+	private final Context mContext;
+
+	/**
+	 * @param context
+	 *            any context; only its application context is retained
+	 */
+	public ProviderTokens(Context context)
+	{
+		mContext = context.getApplicationContext();
+	}
+
+	/**
+	 * @return the identity's current token, or null if its provider has none,
+	 *         for example after the user signed out
+	 */
+	public String getToken(SocialProfile profile) throws Exception
+	{
+		if (SocialProfile.PROVIDER_GOOGLE_PLUS.equals(profile.getProvider()))
+			return GoogleAuthUtil.getToken(mContext, profile.getEmail(), GOOGLE_PLUS_SCOPE);
+		if (SocialProfile.PROVIDER_FACEBOOK.equals(profile.getProvider()))
+		{
+			Session session = Session.getActiveSession();
+			if (session != null && session.isOpened())
+				return session.getAccessToken();
+			AuthSessionStore.StoredSession stored = AuthSessionStore.getInstance(mContext).get();
+			if (stored != null && SocialProfile.PROVIDER_FACEBOOK.equals(stored.getProvider())
+					&& TextUtils.equals(profile.getUserId(), stored.getProfile().getUserId()) && !stored.isExpired())
+				return stored.getAccessToken();
+		}
+		return null;
+	}
+
+	/**
+	 * @return a source that looks up the identity's token only when an
+	 *         exchange needs it
+	 */
+	public IdentityExchangeClient.TokenSource tokenSource(final SocialProfile profile)
+	{
+		return new IdentityExchangeClient.TokenSource()
+		{
+			@Override
+			public String getToken() throws Exception
+			{
+				return ProviderTokens.this.getToken(profile);
+			}
+		};
+	}
+
+	/**
+	 * Discards a token the backend rejected, so the next
+	 * {@link #getToken} does not return it again where the provider allows.
+	 */
+	public void invalidateToken(SocialProfile profile, String token)
+	{
+		if (SocialProfile.PROVIDER_GOOGLE_PLUS.equals(profile.getProvider()))
+			GoogleAuthUtil.invalidateToken(mContext, token);
+	}
+}
@@ -0,0 +1,210 @@
+package com.asaanloyalty.asaan.auth;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.google.api.client.util.Maps;
+
+/**
+ * Collects the {@link SocialProfile}s published by the sign-in providers and
+ * hands every subscriber a single merged result.
+ *
+ * Publishing never blocks: results are recorded and listeners are notified
+ * on the main thread afterwards. Listeners registered after a result has been
+ * published are sent the current merged profile straight away through
+ * {@link Listener#onCurrentResult}, so consumers never need to query the
+ * provider SDKs themselves, and can tell a replay from a new sign-in.
+ *
+ * Only profiles that {@link IdentityLinker#isSamePerson describe the same
+ * person} as the most preferred one are merged, so a device shared by two
+ * people never mixes their details.
+ */
+public class SignInResultBus
+{
+	private static final Logger logger = Logger.getLogger(SignInResultBus.class.getName());
+
+	/** Providers in the order their fields are preferred when merging */
+	private static final String[] MERGE_ORDER = {SocialProfile.PROVIDER_GOOGLE_PLUS, SocialProfile.PROVIDER_FACEBOOK,
+			SocialProfile.PROVIDER_DEVICE};
+
+	private static SignInResultBus sInstance;
+
+	/**
+	 * Receives merged sign-in results. Always called on the main thread.
+	 */
+	public interface Listener
+	{
+		/**
+		 * @param merged
+		 *            the merge of every provider's latest profile
+		 * @param latest
+		 *            the profile whose publication caused this call
+		 */
+		void onSignInResult(SocialProfile merged, SocialProfile latest);
+
+		/**
+		 * Called with a result that is not a new sign-in: once on
+		 * registration if a result was already published, and after every
+		 * {@link SignInResultBus#update}.
+		 *
+		 * @param merged
+		 *            the merge of every provider's latest profile
+		 */
+		void onCurrentResult(SocialProfile merged);
+	}
+
+	private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+	private final List<Listener> mListeners = new CopyOnWriteArrayList<Listener>();
+	/** Latest profile per provider, guarded by this */
+	private final Map<String, SocialProfile> mProfiles = Maps.newHashMap();
+	/** Merge of the linked {@link #mProfiles}, guarded by this */
+	private LinkedProfile mLinked;
+
+	public static synchronized SignInResultBus getInstance()
+	{
+		if (sInstance == null)
+			sInstance = new SignInResultBus();
+		return sInstance;
+	}
+
+	/**
+	 * Records a provider's profile and notifies listeners. May be called from
+	 * any thread.
+	 */
+	public void publish(final SocialProfile profile)
+	{
+		final SocialProfile merged = record(profile);
+		logger.log(Level.INFO, "Sign-in result published " + profile);
+		mMainHandler.post(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				for (Listener listener : mListeners)
+					listener.onSignInResult(merged, profile);
+			}
+		});
+	}
+
+	/**
+	 * Records a provider's profile that arrived without a sign-in, for
+	 * example restored from disk or changed on the backend, and passes the
+	 * new merge to {@link Listener#onCurrentResult}. May be called from any
+	 * thread.
+	 */
+	public void update(SocialProfile profile)
+	{
+		final SocialProfile merged = record(profile);
+		logger.log(Level.INFO, "Sign-in result updated " + profile);
+		mMainHandler.post(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				for (Listener listener : mListeners)
+					listener.onCurrentResult(merged);
+			}
+		});
+	}
+
+	/**
+	 * Forgets a provider's profile, for example after it signs out. Listeners
+	 * are not notified.
+	 */
+	public synchronized void clear(String provider)
+	{
+		mProfiles.remove(provider);
+		mLinked = merge();
+	}
+
+	/**
+	 * @return the current merged profile, or null if nothing was published
+	 */
+	public synchronized SocialProfile getMerged()
+	{
+		return mLinked != null ? mLinked.getProfile() : null;
+	}
+
+	/**
+	 * @return the current merged profile with the provider of each field, or
+	 *         null if nothing was published
+	 */
+	public synchronized LinkedProfile getLinked()
+	{
+		return mLinked;
+	}
+
+	/**
+	 * @return the latest profile published by a provider, or null
+	 */
+	public synchronized SocialProfile get(String provider)
+	{
+		return mProfiles.get(provider);
+	}
+
+	/**
+	 * Subscribes a listener. If a result is already available it is delivered
+	 * to {@link Listener#onCurrentResult} on the next main loop iteration.
+	 */
+	public void register(final Listener listener)
+	{
+		if (mListeners.contains(listener))
+			return;
+		mListeners.add(listener);
+		final SocialProfile merged = getMerged();
+		if (merged != null)
+		{
+			mMainHandler.post(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					if (mListeners.contains(listener))
+						listener.onCurrentResult(merged);
+				}
+			});
+		}
+	}
+
+	public void unregister(Listener listener)
+	{
+		mListeners.remove(listener);
+	}
+
+	/**
+	 * @return the merge including the profile
+	 */
+	private synchronized SocialProfile record(SocialProfile profile)
+	{
+		mProfiles.put(profile.getProvider(), profile);
+		mLinked = merge();
+		return mLinked.getProfile();
+	}
+
+	private LinkedProfile merge()
+	{
+		SocialProfile[] linked = new SocialProfile[MERGE_ORDER.length];
+		SocialProfile primary = null;
+		for (int i = 0; i < MERGE_ORDER.length; i++)
+		{
+			SocialProfile profile = mProfiles.get(MERGE_ORDER[i]);
+			if (profile == null)
+				continue;
+			if (primary == null)
+				primary = profile;
+			else if (!IdentityLinker.isSamePerson(primary, profile))
+			{
+				logger.log(Level.INFO, "Not merging unlinked profile " + profile);
+				continue;
+			}
+			linked[i] = profile;
+		}
+		return LinkedProfile.merge(linked);
+	}
+}
@@ -0,0 +1,1182 @@
+package com.asaanloyalty.asaan.backend;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.asaanloyalty.asaan.R;
+import com.asaanloyalty.asaan.auth.SocialProfile;
+import com.asaanloyalty.asaan.dao.OutboxEntry;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.api.client.extensions.android.http.AndroidHttp;
+import com.google.api.client.http.AbstractHttpContent;
+import com.google.api.client.http.GZipEncoding;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpBackOffIOExceptionHandler;
+import com.google.api.client.http.HttpBackOffUnsuccessfulResponseHandler;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestFactory;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpStatusCodes;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.util.Base64;
+import com.google.api.client.util.ExponentialBackOff;
+import com.google.api.client.util.Lists;
+import com.google.api.client.util.Maps;
+
+/**
+ * Exchanges a resolved social identity for an Asaan loyalty session.
+ *
+ * The identity, the avatar to mirror and the device registration are batched
+ * into a single POST to {@code <base url>/identity/exchange}, and the backend
+ * answers all three in one response:
+ *
+ * <pre>
+ * request:  {"identity":{...}, "avatar":{...}, "device":{...}}
+ * response: {"session":{"token", "memberId", "expiresAt"}, "avatar":{"url"}, "device":{"id"}}
+ * </pre>
+ *
+ * Every client shares one keep-alive {@link HttpTransport}. Request bodies are
+ * gzipped and written with a Jackson2 {@link JsonGenerator}, and responses are
+ * read with a Jackson2 {@link JsonParser} as they stream in, without building
+ * a tree or binding to objects. Unknown response fields are skipped.
+ *
+ * Requests answered with a 5xx are retried with exponential backoff for at
+ * most {@link #RETRY_MAX_ELAPSED_MS}, so a struggling backend holds up the
+ * single worker thread for seconds rather than minutes. Connection failures
+ * are only retried for requests that are safe to repeat, the changes GET and
+ * the contacts upload: any other failed POST may already have reached the
+ * backend, and the outbox sends it again later instead.
+ */
+public class IdentityExchangeClient
+{
+	private static final Logger logger = Logger.getLogger(IdentityExchangeClient.class.getName());
+
+	/** Path of the identity exchange endpoint, also used as its outbox type */
+	public static final String EXCHANGE_PATH = "identity/exchange";
+	/** Path of the profile update endpoint, also used as its outbox type */
+	public static final String PROFILE_UPDATE_PATH = "profile/update";
+	/** Path of the device update endpoint, also used as its outbox type */
+	public static final String DEVICE_UPDATE_PATH = "device/update";
+	private static final String BATCH_PATH = "batch";
+	private static final String CHANGES_PATH = "member/changes";
+	private static final String CONTACTS_PATH = "contacts/sync";
+	private static final String CONTACT_KEY_PATH = "contacts/key";
+	/** Section of {@link #fetchChanges} holding the member's profile fields */
+	public static final String SECTION_PROFILE = "profile";
+	/** Section of {@link #fetchChanges} holding the backend's avatar copy */
+	public static final String SECTION_AVATAR = "avatar";
+	private static final String JSON_MEDIA_TYPE = "application/json; charset=UTF-8";
+	private static final int CONNECT_TIMEOUT_MS = 10 * 1000;
+	private static final int READ_TIMEOUT_MS = 15 * 1000;
+	private static final int RETRY_INITIAL_INTERVAL_MS = 500;
+	private static final int RETRY_MAX_INTERVAL_MS = 4 * 1000;
+	/** Longest a request keeps retrying before its failure is returned */
+	static final int RETRY_MAX_ELAPSED_MS = 15 * 1000;
+
+	/** Shared by every client so connections are pooled and kept alive */
+	private static final HttpTransport sTransport = AndroidHttp.newCompatibleTransport();
+	private static final JsonFactory sJsonFactory = new JsonFactory();
+
+	private static IdentityExchangeClient sInstance;
+
+	/**
+	 * Supplies the provider access token. Called on a background thread, so it
+	 * may block.
+	 */
+	public interface TokenSource
+	{
+		/**
+		 * @return the token, or null if the provider has none
+		 */
+		String getToken() throws Exception;
+	}
+
+	/**
+	 * Receives the result of {@link IdentityExchangeClient#exchange}. Called on
+	 * the main thread.
+	 */
+	public interface Callback
+	{
+		void onExchanged(LoyaltySession session);
+
+		void onExchangeFailed(Exception e);
+	}
+
+	private final GenericUrl mExchangeUrl;
+	private final GenericUrl mBatchUrl;
+	private final String mChangesUrl;
+	private final GenericUrl mContactsUrl;
+	private final GenericUrl mContactKeyUrl;
+	private final HttpRequestFactory mRequestFactory;
+	private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+	private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+	/** Callers waiting on an in-flight exchange by identity, guarded by this */
+	private final Map<String, List<Callback>> mInFlight = Maps.newHashMap();
+	/** Identity of the last successful exchange, guarded by this */
+	private String mSessionKey;
+	/** Session from the last successful exchange, guarded by this */
+	private LoyaltySession mSession;
+
+	/**
+	 * @param baseUrl
+	 *            the backend's base URL, ending in a slash; tests point this at
+	 *            a local stub server
+	 */
+	public IdentityExchangeClient(String baseUrl)
+	{
+		mExchangeUrl = new GenericUrl(baseUrl + EXCHANGE_PATH);
+		mBatchUrl = new GenericUrl(baseUrl + BATCH_PATH);
+		mChangesUrl = baseUrl + CHANGES_PATH;
+		mContactsUrl = new GenericUrl(baseUrl + CONTACTS_PATH);
+		mContactKeyUrl = new GenericUrl(baseUrl + CONTACT_KEY_PATH);
+		mRequestFactory = sTransport.createRequestFactory(new HttpRequestInitializer()
+		{
+			@Override
+			public void initialize(HttpRequest request)
+			{
+				request.setConnectTimeout(CONNECT_TIMEOUT_MS);
+				request.setReadTimeout(READ_TIMEOUT_MS);
+				request.setUnsuccessfulResponseHandler(new HttpBackOffUnsuccessfulResponseHandler(newBackOff())
+						.setBackOffRequired(HttpBackOffUnsuccessfulResponseHandler.BackOffRequired.ON_SERVER_ERROR));
+			}
+		});
+	}
+
+	/**
+	 * Returns the client for the backend configured in
+	 * {@code R.string.asaan_backend_url}.
+	 */
+	public static synchronized IdentityExchangeClient getInstance(Context context)
+	{
+		if (sInstance == null)
+			sInstance = new IdentityExchangeClient(context.getString(R.string.asaan_backend_url));
+		return sInstance;
+	}
+
+	/**
+	 * @return the session from the last successful exchange, or null
+	 */
+	public synchronized LoyaltySession getSession()
+	{
+		return mSession;
+	}
+
+	/**
+	 * Exchanges an identity in the background. A caller asking for an identity
+	 * that is already being exchanged joins that request, and an identity that
+	 * already has an unexpired session is answered without a round trip.
+	 *
+	 * @param profile
+	 *            the signed-in profile
+	 * @param tokenSource
+	 *            supplies the provider token the backend verifies
+	 * @param pushRegistrationId
+	 *            the device's push registration id, or null
+	 * @param callback
+	 *            receives the session on the main thread
+	 */
+	public void exchange(final SocialProfile profile, final TokenSource tokenSource, final String pushRegistrationId,
+			Callback callback)
+	{
+		final String key = identityKey(profile);
+		final LoyaltySession cached;
+		synchronized (this)
+		{
+			cached = key.equals(mSessionKey) && !mSession.isExpired() ? mSession : null;
+			if (cached == null)
+			{
+				List<Callback> waiting = mInFlight.get(key);
+				if (waiting != null)
+				{
+					waiting.add(callback);
+					return;
+				}
+				waiting = Lists.newArrayList();
+				waiting.add(callback);
+				mInFlight.put(key, waiting);
+			}
+		}
+		if (cached != null)
+		{
+			callback.onExchanged(cached);
+			return;
+		}
+
+		mExecutor.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				LoyaltySession session = null;
+				Exception error = null;
+				try
+				{
+					session = exchangeNow(profile, tokenSource.getToken(), pushRegistrationId);
+				} catch (Exception e)
+				{
+					logger.log(Level.WARNING, "Identity exchange failed - " + e.getMessage());
+					error = e;
+				}
+				final List<Callback> waiting;
+				synchronized (IdentityExchangeClient.this)
+				{
+					waiting = mInFlight.remove(key);
+					if (session != null)
+					{
+						mSessionKey = key;
+						mSession = session;
+					}
+				}
+				deliver(waiting, session, error);
+			}
+		});
+	}
+
+	/**
+	 * Returns the identity's unexpired session, or exchanges the identity for
+	 * a new one on the calling thread. For work without an activity, such as
+	 * a push message handled in a process started for it, which has no
+	 * session yet.
+	 *
+	 * @param tokenSource
+	 *            supplies the provider token if an exchange is needed
+	 * @param pushRegistrationId
+	 *            the device's push registration id, or null
+	 */
+	public LoyaltySession getOrExchange(SocialProfile profile, TokenSource tokenSource, String pushRegistrationId)
+			throws Exception
+	{
+		String key = identityKey(profile);
+		synchronized (this)
+		{
+			if (key.equals(mSessionKey) && !mSession.isExpired())
+				return mSession;
+		}
+		LoyaltySession session = exchangeNow(profile, tokenSource.getToken(), pushRegistrationId);
+		putSession(key, session);
+		return session;
+	}
+
+	/**
+	 * Replaces the cached session's avatar with the backend's new copy.
+	 */
+	public synchronized void updateAvatarUrl(String avatarUrl)
+	{
+		if (mSession != null)
+			mSession = new LoyaltySession(mSession.getToken(), mSession.getMemberId(), mSession.getExpiresAt(),
+					avatarUrl, mSession.getDeviceId());
+	}
+
+	/**
+	 * Forgets the cached session, for example after the user logs off.
+	 */
+	public synchronized void clear()
+	{
+		mSessionKey = null;
+		mSession = null;
+	}
+
+	private void deliver(final List<Callback> callbacks, final LoyaltySession session, final Exception error)
+	{
+		mMainHandler.post(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				for (Callback callback : callbacks)
+				{
+					if (session != null)
+						callback.onExchanged(session);
+					else
+						callback.onExchangeFailed(error);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Performs the exchange on the calling thread.
+	 *
+	 * @param accessToken
+	 *            the provider token, or null
+	 * @param pushRegistrationId
+	 *            the device's push registration id, or null
+	 */
+	public LoyaltySession exchangeNow(SocialProfile profile, String accessToken, String pushRegistrationId)
+			throws IOException
+	{
+		long start = System.nanoTime();
+		HttpRequest request = mRequestFactory.buildPostRequest(mExchangeUrl, new ExchangeContent(profile,
+				accessToken, pushRegistrationId));
+		request.setEncoding(new GZipEncoding());
+		HttpResponse response = request.execute();
+		try
+		{
+			// getContent() undoes any gzip Content-Encoding
+			LoyaltySession session = parseResponse(response.getContent());
+			logger.log(Level.INFO, "Identity exchanged in " + (System.nanoTime() - start) / 1000000 + " ms " + session);
+			return session;
+		} finally
+		{
+			// Closing rather than disconnecting leaves the connection in the
+			// keep-alive pool
+			response.ignore();
+		}
+	}
+
+	/**
+	 * Sends queued operations in one request to {@code <base url>/batch}:
+	 *
+	 * <pre>
+	 * request:  {"operations":[{"id", "path", "body"}, ...]}
+	 * response: {"results":[{"id", "status", "body"}, ...]}
+	 * </pre>
+	 *
+	 * Each body is the JSON the operation's own endpoint takes or returns.
+	 *
+	 * @param accessTokens
+	 *            provider tokens to add to the identity of queued exchanges,
+	 *            which are stored without one, by entry id
+	 * @return the result of every operation the backend answered, by entry id
+	 */
+	public Map<Long, BatchResult> sendBatch(List<OutboxEntry> entries, Map<Long, String> accessTokens)
+			throws IOException
+	{
+		long start = System.nanoTime();
+		HttpRequest request = mRequestFactory.buildPostRequest(mBatchUrl, new BatchContent(entries, accessTokens));
+		request.setEncoding(new GZipEncoding());
+		// The outbox reschedules failed batches itself
+		request.setUnsuccessfulResponseHandler(null);
+		request.setIOExceptionHandler(null);
+		HttpResponse response = request.execute();
+		try
+		{
+			Map<Long, BatchResult> results = parseBatchResponse(response.getContent());
+			logger.log(Level.INFO, "Batch of " + entries.size() + " sent in " + (System.nanoTime() - start) / 1000000
+					+ " ms, " + results.size() + " answered");
+			return results;
+		} finally
+		{
+			response.ignore();
+		}
+	}
+
+	/**
+	 * Fetches only the named sections of the member's data from
+	 * {@code <base url>/member/changes}, on the calling thread:
+	 *
+	 * <pre>
+	 * request:  GET ?sections=profile,avatar with the session token as bearer
+	 * response: {"profile":{"name", "email", "phoneNumber", "photoUrl"}, "avatar":{"url"}}
+	 * </pre>
+	 *
+	 * A section holds only the fields that changed.
+	 *
+	 * @param session
+	 *            the session whose member changed
+	 * @param account
+	 *            the identity the member signed in with; the returned profile
+	 *            carries its provider and user id
+	 * @param sections
+	 *            comma separated {@link #SECTION_PROFILE} and
+	 *            {@link #SECTION_AVATAR}
+	 */
+	public MemberChanges fetchChanges(LoyaltySession session, SocialProfile account, String sections)
+			throws IOException
+	{
+		long start = System.nanoTime();
+		GenericUrl url = new GenericUrl(mChangesUrl);
+		url.put("sections", sections);
+		HttpRequest request = mRequestFactory.buildGetRequest(url);
+		request.getHeaders().setAuthorization("Bearer " + session.getToken());
+		// Reading the changes again has no effect on the backend
+		request.setIOExceptionHandler(new HttpBackOffIOExceptionHandler(newBackOff()));
+		HttpResponse response = request.execute();
+		try
+		{
+			MemberChanges changes = parseChanges(response.getContent(), account);
+			logger.log(Level.INFO, "Member changes " + sections + " fetched in " + (System.nanoTime() - start)
+					/ 1000000 + " ms");
+			return changes;
+		} finally
+		{
+			response.ignore();
+		}
+	}
+
+	/**
+	 * Fetches the key contact hashes are made with from
+	 * {@code <base url>/contacts/key}, on the calling thread:
+	 *
+	 * <pre>
+	 * request:  GET with the session token as bearer
+	 * response: {"id", "key":"<base64>"}
+	 * </pre>
+	 *
+	 * The backend may replace the key; hashes made with an older one are no
+	 * longer matched.
+	 */
+	public ContactKey fetchContactKey(LoyaltySession session) throws IOException
+	{
+		HttpRequest request = mRequestFactory.buildGetRequest(mContactKeyUrl);
+		request.getHeaders().setAuthorization("Bearer " + session.getToken());
+		request.setIOExceptionHandler(new HttpBackOffIOExceptionHandler(newBackOff()));
+		HttpResponse response = request.execute();
+		try
+		{
+			return parseContactKey(response.getContent());
+		} finally
+		{
+			response.ignore();
+		}
+	}
+
+	/**
+	 * Reports changes to the member's address book to
+	 * {@code <base url>/contacts/sync}, on the calling thread:
+	 *
+	 * <pre>
+	 * request:  {"keyId", "contacts":[{"id", "emails":[...], "phones":[...]}], "removed":[id, ...]}
+	 *           with the session token as bearer
+	 * response: 204
+	 * </pre>
+	 *
+	 * Contacts are identified by their local id and carry only the hashes of
+	 * their addresses, made with the key named by keyId. A contact reported
+	 * again replaces the backend's copy.
+	 *
+	 * @param session
+	 *            the session of the member whose address book it is
+	 * @param keyId
+	 *            the {@link ContactKey#getId id} of the key the hashes were
+	 *            made with
+	 */
+	public void uploadContacts(LoyaltySession session, String keyId, List<ContactHashes> changed,
+			List<Long> removed) throws IOException
+	{
+		long start = System.nanoTime();
+		HttpRequest request = mRequestFactory.buildPostRequest(mContactsUrl, new ContactsContent(keyId, changed,
+				removed));
+		request.getHeaders().setAuthorization("Bearer " + session.getToken());
+		request.setEncoding(new GZipEncoding());
+		// Reporting the same contacts again has no further effect
+		request.setIOExceptionHandler(new HttpBackOffIOExceptionHandler(newBackOff()));
+		HttpResponse response = request.execute();
+		response.ignore();
+		logger.log(Level.INFO, changed.size() + " contacts changed and " + removed.size() + " removed uploaded in "
+				+ (System.nanoTime() - start) / 1000000 + " ms");
+	}
+
+	private static ExponentialBackOff newBackOff()
+	{
+		return new ExponentialBackOff.Builder().setInitialIntervalMillis(RETRY_INITIAL_INTERVAL_MS)
+				.setMaxIntervalMillis(RETRY_MAX_INTERVAL_MS).setMaxElapsedTimeMillis(RETRY_MAX_ELAPSED_MS).build();
+	}
+
+	/**
+	 * Records a session obtained by replaying a queued exchange.
+	 */
+	synchronized void putSession(String key, LoyaltySession session)
+	{
+		mSessionKey = key;
+		mSession = session;
+	}
+
+	/**
+	 * @return the key sessions for this identity are cached under
+	 */
+	static String identityKey(SocialProfile profile)
+	{
+		return profile.getProvider() + ":" + profile.getUserId();
+	}
+
+	/**
+	 * Serializes an exchange request for the outbox.
+	 */
+	static String exchangeBody(SocialProfile profile, String accessToken, String pushRegistrationId)
+			throws IOException
+	{
+		StringWriter out = new StringWriter();
+		JsonGenerator json = sJsonFactory.createGenerator(out);
+		writeExchange(json, profile, accessToken, pushRegistrationId);
+		json.close();
+		return out.toString();
+	}
+
+	/**
+	 * Reads the identity back out of a serialized exchange request.
+	 */
+	static SocialProfile readExchangeIdentity(String body) throws IOException
+	{
+		JsonParser parser = sJsonFactory.createParser(body);
+		try
+		{
+			if (parser.nextToken() != JsonToken.START_OBJECT)
+				throw new IOException("Exchange request is not an object");
+			while (parser.nextToken() == JsonToken.FIELD_NAME)
+			{
+				String section = parser.getCurrentName();
+				if (parser.nextToken() != JsonToken.START_OBJECT || !"identity".equals(section))
+				{
+					parser.skipChildren();
+					continue;
+				}
+				String provider = null;
+				String user_id = null;
+				String name = null;
+				String email = null;
+				String phone_number = null;
+				while (parser.nextToken() == JsonToken.FIELD_NAME)
+				{
+					String field = parser.getCurrentName();
+					String text = parser.nextToken() == JsonToken.VALUE_STRING ? parser.getText() : null;
+					if ("provider".equals(field))
+						provider = text;
+					else if ("userId".equals(field))
+						user_id = text;
+					else if ("name".equals(field))
+						name = text;
+					else if ("email".equals(field))
+						email = text;
+					else if ("phoneNumber".equals(field))
+						phone_number = text;
+					else
+						parser.skipChildren();
+				}
+				if (provider == null)
+					throw new IOException("Exchange request has no provider");
+				return new SocialProfile.Builder(provider, user_id).setName(name).setEmail(email)
+						.setPhoneNumber(phone_number).build();
+			}
+			throw new IOException("Exchange request has no identity");
+		} finally
+		{
+			parser.close();
+		}
+	}
+
+	/**
+	 * Serializes a profile update for the outbox.
+	 *
+	 * @param account
+	 *            the identity the member signed in with
+	 * @param profile
+	 *            the fields to store for the member
+	 */
+	static String profileUpdateBody(SocialProfile account, SocialProfile profile) throws IOException
+	{
+		StringWriter out = new StringWriter();
+		JsonGenerator json = sJsonFactory.createGenerator(out);
+		json.writeStartObject();
+		json.writeObjectFieldStart("identity");
+		json.writeStringField("provider", account.getProvider());
+		writeOptional(json, "userId", account.getUserId());
+		json.writeEndObject();
+		json.writeObjectFieldStart("profile");
+		writeOptional(json, "name", profile.getName());
+		writeOptional(json, "email", profile.getEmail());
+		writeOptional(json, "phoneNumber", profile.getPhoneNumber());
+		writeOptional(json, "photoUrl", profile.getPhotoUrl());
+		json.writeEndObject();
+		json.writeEndObject();
+		json.close();
+		return out.toString();
+	}
+
+	/**
+	 * Serializes a device update for the outbox.
+	 *
+	 * @param account
+	 *            the identity the member signed in with
+	 * @param pushRegistrationId
+	 *            the device's new push registration id
+	 */
+	static String deviceUpdateBody(SocialProfile account, String pushRegistrationId) throws IOException
+	{
+		StringWriter out = new StringWriter();
+		JsonGenerator json = sJsonFactory.createGenerator(out);
+		json.writeStartObject();
+		json.writeObjectFieldStart("identity");
+		json.writeStringField("provider", account.getProvider());
+		writeOptional(json, "userId", account.getUserId());
+		json.writeEndObject();
+		writeDevice(json, pushRegistrationId);
+		json.writeEndObject();
+		json.close();
+		return out.toString();
+	}
+
+	/**
+	 * Reads an exchange response, skipping anything it does not recognise.
+	 */
+	static LoyaltySession parseResponse(InputStream in) throws IOException
+	{
+		JsonParser parser = sJsonFactory.createParser(in);
+		try
+		{
+			if (parser.nextToken() != JsonToken.START_OBJECT)
+				throw new IOException("Exchange response is not an object");
+			LoyaltySession session = readSession(parser);
+			if (session == null)
+				throw new IOException("Exchange response has no session");
+			return session;
+		} finally
+		{
+			parser.close();
+		}
+	}
+
+	static Map<Long, BatchResult> parseBatchResponse(InputStream in) throws IOException
+	{
+		Map<Long, BatchResult> results = Maps.newHashMap();
+		JsonParser parser = sJsonFactory.createParser(in);
+		try
+		{
+			if (parser.nextToken() != JsonToken.START_OBJECT)
+				throw new IOException("Batch response is not an object");
+			while (parser.nextToken() == JsonToken.FIELD_NAME)
+			{
+				String field = parser.getCurrentName();
+				if (parser.nextToken() != JsonToken.START_ARRAY || !"results".equals(field))
+				{
+					parser.skipChildren();
+					continue;
+				}
+				while (parser.nextToken() == JsonToken.START_OBJECT)
+				{
+					long id = -1;
+					int status = 0;
+					LoyaltySession session = null;
+					while (parser.nextToken() == JsonToken.FIELD_NAME)
+					{
+						String name = parser.getCurrentName();
+						JsonToken value = parser.nextToken();
+						if ("id".equals(name) && value == JsonToken.VALUE_NUMBER_INT)
+							id = parser.getLongValue();
+						else if ("status".equals(name) && value == JsonToken.VALUE_NUMBER_INT)
+							status = parser.getIntValue();
+						else if ("body".equals(name) && value == JsonToken.START_OBJECT)
+							session = readSession(parser);
+						else
+							parser.skipChildren();
+					}
+					if (id >= 0)
+						results.put(id, new BatchResult(status, session));
+				}
+			}
+		} finally
+		{
+			parser.close();
+		}
+		return results;
+	}
+
+	static ContactKey parseContactKey(InputStream in) throws IOException
+	{
+		String id = null;
+		String key = null;
+		JsonParser parser = sJsonFactory.createParser(in);
+		try
+		{
+			if (parser.nextToken() != JsonToken.START_OBJECT)
+				throw new IOException("Contact key response is not an object");
+			while (parser.nextToken() == JsonToken.FIELD_NAME)
+			{
+				String field = parser.getCurrentName();
+				JsonToken value = parser.nextToken();
+				if ("id".equals(field) && value == JsonToken.VALUE_STRING)
+					id = parser.getText();
+				else if ("key".equals(field) && value == JsonToken.VALUE_STRING)
+					key = parser.getText();
+				else
+					parser.skipChildren();
+			}
+		} finally
+		{
+			parser.close();
+		}
+		byte[] decoded = key != null ? Base64.decodeBase64(key) : null;
+		if (id == null || decoded == null || decoded.length == 0)
+			throw new IOException("Contact key response has no key");
+		return new ContactKey(id, decoded);
+	}
+
+	static MemberChanges parseChanges(InputStream in, SocialProfile account) throws IOException
+	{
+		SocialProfile.Builder profile = null;
+		String avatarUrl = null;
+		boolean avatarChanged = false;
+		JsonParser parser = sJsonFactory.createParser(in);
+		try
+		{
+			if (parser.nextToken() != JsonToken.START_OBJECT)
+				throw new IOException("Changes response is not an object");
+			while (parser.nextToken() == JsonToken.FIELD_NAME)
+			{
+				String section = parser.getCurrentName();
+				if (parser.nextToken() != JsonToken.START_OBJECT)
+				{
+					parser.skipChildren();
+					continue;
+				}
+				if (SECTION_PROFILE.equals(section))
+					profile = new SocialProfile.Builder(account.getProvider(), account.getUserId());
+				while (parser.nextToken() == JsonToken.FIELD_NAME)
+				{
+					String field = parser.getCurrentName();
+					JsonToken value = parser.nextToken();
+					String text = value == JsonToken.VALUE_NULL ? null : parser.getText();
+					if (SECTION_PROFILE.equals(section) && "name".equals(field))
+						profile.setName(text);
+					else if (SECTION_PROFILE.equals(section) && "email".equals(field))
+						profile.setEmail(text);
+					else if (SECTION_PROFILE.equals(section) && "phoneNumber".equals(field))
+						profile.setPhoneNumber(text);
+					else if (SECTION_PROFILE.equals(section) && "photoUrl".equals(field))
+						profile.setPhotoUrl(text);
+					else if (SECTION_AVATAR.equals(section) && "url".equals(field))
+					{
+						avatarUrl = text;
+						avatarChanged = true;
+					} else
+						parser.skipChildren();
+				}
+			}
+		} finally
+		{
+			parser.close();
+		}
+		return new MemberChanges(profile != null ? profile.build() : null, avatarChanged, avatarUrl);
+	}
+
+	/**
+	 * Reads the sections of an exchange response from the parser's current
+	 * START_OBJECT up to its matching END_OBJECT.
+	 *
+	 * @return the session, or null if the object has none
+	 */
+	private static LoyaltySession readSession(JsonParser parser) throws IOException
+	{
+		String token = null;
+		String memberId = null;
+		long expiresAt = 0;
+		String avatarUrl = null;
+		String deviceId = null;
+
+		while (parser.nextToken() == JsonToken.FIELD_NAME)
+		{
+			String section = parser.getCurrentName();
+			if (parser.nextToken() != JsonToken.START_OBJECT)
+			{
+				parser.skipChildren();
+				continue;
+			}
+			while (parser.nextToken() == JsonToken.FIELD_NAME)
+			{
+				String field = parser.getCurrentName();
+				JsonToken value = parser.nextToken();
+				if ("session".equals(section) && "token".equals(field))
+					token = parser.getText();
+				else if ("session".equals(section) && "memberId".equals(field))
+					memberId = parser.getText();
+				else if ("session".equals(section) && "expiresAt".equals(field) && value == JsonToken.VALUE_NUMBER_INT)
+					expiresAt = parser.getLongValue();
+				else if ("avatar".equals(section) && "url".equals(field))
+					avatarUrl = value == JsonToken.VALUE_NULL ? null : parser.getText();
+				else if ("device".equals(section) && "id".equals(field))
+					deviceId = value == JsonToken.VALUE_NULL ? null : parser.getText();
+				else
+					parser.skipChildren();
+			}
+		}
+		if (token == null || memberId == null)
+			return null;
+		return new LoyaltySession(token, memberId, expiresAt, avatarUrl, deviceId);
+	}
+
+	private static void writeExchange(JsonGenerator json, SocialProfile profile, String accessToken,
+			String pushRegistrationId) throws IOException
+	{
+		json.writeStartObject();
+
+		json.writeObjectFieldStart("identity");
+		json.writeStringField("provider", profile.getProvider());
+		writeOptional(json, "userId", profile.getUserId());
+		writeOptional(json, "accessToken", accessToken);
+		writeOptional(json, "name", profile.getName());
+		writeOptional(json, "email", profile.getEmail());
+		writeOptional(json, "phoneNumber", profile.getPhoneNumber());
+		json.writeEndObject();
+
+		if (profile.getPhotoUrl() != null)
+		{
+			json.writeObjectFieldStart("avatar");
+			json.writeStringField("sourceUrl", profile.getPhotoUrl());
+			json.writeEndObject();
+		}
+
+		writeDevice(json, pushRegistrationId);
+
+		json.writeEndObject();
+	}
+
+	private static void writeDevice(JsonGenerator json, String pushRegistrationId) throws IOException
+	{
+		json.writeObjectFieldStart("device");
+		json.writeStringField("platform", "android");
+		json.writeNumberField("sdkInt", Build.VERSION.SDK_INT);
+		json.writeStringField("model", Build.MODEL);
+		writeOptional(json, "pushRegistrationId", pushRegistrationId);
+		json.writeEndObject();
+	}
+
+	private static void writeOptional(JsonGenerator json, String name, String value) throws IOException
+	{
+		if (value != null)
+			json.writeStringField(name, value);
+	}
+
+	/**
+	 * The backend's answer to one batched operation.
+	 */
+	public static final class BatchResult
+	{
+		private final int mStatus;
+		private final LoyaltySession mSession;
+
+		BatchResult(int status, LoyaltySession session)
+		{
+			mStatus = status;
+			mSession = session;
+		}
+
+		/**
+		 * @return the HTTP status the operation would have had on its own
+		 */
+		public int getStatus()
+		{
+			return mStatus;
+		}
+
+		public boolean isSuccess()
+		{
+			return mStatus >= 200 && mStatus < 300;
+		}
+
+		/**
+		 * @return whether the backend rejected the provider token
+		 */
+		public boolean isUnauthorized()
+		{
+			return mStatus == HttpStatusCodes.STATUS_CODE_UNAUTHORIZED;
+		}
+
+		/**
+		 * @return whether sending the operation again cannot succeed
+		 */
+		public boolean isPermanentFailure()
+		{
+			return mStatus >= 400 && mStatus < 500;
+		}
+
+		/**
+		 * @return the session an identity exchange produced, or null
+		 */
+		public LoyaltySession getSession()
+		{
+			return mSession;
+		}
+	}
+
+	/**
+	 * The sections of a member's data that changed on the backend.
+	 */
+	public static final class MemberChanges
+	{
+		private final SocialProfile mProfile;
+		private final boolean mAvatarChanged;
+		private final String mAvatarUrl;
+
+		MemberChanges(SocialProfile profile, boolean avatarChanged, String avatarUrl)
+		{
+			mProfile = profile;
+			mAvatarChanged = avatarChanged;
+			mAvatarUrl = avatarUrl;
+		}
+
+		/**
+		 * @return the changed profile fields, with the rest null, or null if
+		 *         the profile did not change
+		 */
+		public SocialProfile getProfile()
+		{
+			return mProfile;
+		}
+
+		public boolean isAvatarChanged()
+		{
+			return mAvatarChanged;
+		}
+
+		/**
+		 * @return the backend's new avatar copy, or null if it was removed
+		 */
+		public String getAvatarUrl()
+		{
+			return mAvatarUrl;
+		}
+	}
+
+	/**
+	 * The key contact hashes are made with, and its id.
+	 */
+	public static final class ContactKey
+	{
+		private final String mId;
+		private final byte[] mKey;
+
+		ContactKey(String id, byte[] key)
+		{
+			mId = id;
+			mKey = key;
+		}
+
+		public String getId()
+		{
+			return mId;
+		}
+
+		public byte[] getKey()
+		{
+			return mKey;
+		}
+	}
+
+	/**
+	 * The hashed addresses of one address book contact.
+	 */
+	public static final class ContactHashes
+	{
+		private final long mContactId;
+		private final List<String> mEmailHashes;
+		private final List<String> mPhoneHashes;
+
+		public ContactHashes(long contactId, List<String> emailHashes, List<String> phoneHashes)
+		{
+			mContactId = contactId;
+			mEmailHashes = emailHashes;
+			mPhoneHashes = phoneHashes;
+		}
+
+		public long getContactId()
+		{
+			return mContactId;
+		}
+
+		public List<String> getEmailHashes()
+		{
+			return mEmailHashes;
+		}
+
+		public List<String> getPhoneHashes()
+		{
+			return mPhoneHashes;
+		}
+	}
+
+	/**
+	 * The exchange request body, written straight to the connection.
+	 */
+	private static final class ExchangeContent extends AbstractHttpContent
+	{
+		private final SocialProfile mProfile;
+		private final String mAccessToken;
+		private final String mPushRegistrationId;
+
+		ExchangeContent(SocialProfile profile, String accessToken, String pushRegistrationId)
+		{
+			super(JSON_MEDIA_TYPE);
+			mProfile = profile;
+			mAccessToken = accessToken;
+			mPushRegistrationId = pushRegistrationId;
+		}
+
+		@Override
+		public long getLength()
+		{
+			// Streamed with chunked encoding instead of being written twice to
+			// measure it
+			return -1;
+		}
+
+		@Override
+		public void writeTo(OutputStream out) throws IOException
+		{
+			JsonGenerator json = sJsonFactory.createGenerator(out, JsonEncoding.UTF8);
+			writeExchange(json, mProfile, mAccessToken, mPushRegistrationId);
+			// Flush without closing; the transport owns the stream
+			json.flush();
+		}
+	}
+
+	/**
+	 * The batch request body. Each entry's payload is already JSON and is
+	 * copied in as is, except that queued exchanges get their access token.
+	 */
+	private static final class BatchContent extends AbstractHttpContent
+	{
+		private final List<OutboxEntry> mEntries;
+		private final Map<Long, String> mAccessTokens;
+
+		BatchContent(List<OutboxEntry> entries, Map<Long, String> accessTokens)
+		{
+			super(JSON_MEDIA_TYPE);
+			mEntries = entries;
+			mAccessTokens = accessTokens;
+		}
+
+		@Override
+		public long getLength()
+		{
+			return -1;
+		}
+
+		@Override
+		public void writeTo(OutputStream out) throws IOException
+		{
+			JsonGenerator json = sJsonFactory.createGenerator(out, JsonEncoding.UTF8);
+			json.writeStartObject();
+			json.writeArrayFieldStart("operations");
+			for (OutboxEntry entry : mEntries)
+			{
+				json.writeStartObject();
+				json.writeNumberField("id", entry.getId());
+				json.writeStringField("path", entry.getType());
+				json.writeFieldName("body");
+				String access_token = mAccessTokens.get(entry.getId());
+				if (access_token != null)
+					copyWithAccessToken(json, entry.getPayload(), access_token);
+				else
+					json.writeRawValue(entry.getPayload());
+				json.writeEndObject();
+			}
+			json.writeEndArray();
+			json.writeEndObject();
+			json.flush();
+		}
+
+		/**
+		 * Copies an exchange request, putting the token at the end of its
+		 * identity in place of any it already has.
+		 */
+		private static void copyWithAccessToken(JsonGenerator json, String body, String accessToken)
+				throws IOException
+		{
+			JsonParser parser = sJsonFactory.createParser(body);
+			try
+			{
+				int depth = 0;
+				boolean identity = false;
+				JsonToken token;
+				while ((token = parser.nextToken()) != null)
+				{
+					if (identity && depth == 2 && token == JsonToken.FIELD_NAME
+							&& "accessToken".equals(parser.getCurrentName()))
+					{
+						parser.nextToken();
+						parser.skipChildren();
+						continue;
+					}
+					if (identity && depth == 2 && token == JsonToken.END_OBJECT)
+						json.writeStringField("accessToken", accessToken);
+					json.copyCurrentEvent(parser);
+					if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY)
+					{
+						if (depth == 1)
+							identity = "identity".equals(parser.getCurrentName());
+						depth++;
+					} else if (token == JsonToken.END_OBJECT || token == JsonToken.END_ARRAY)
+						depth--;
+				}
+			} finally
+			{
+				parser.close();
+			}
+		}
+	}
+
+	/**
+	 * The contacts upload body.
+	 */
+	private static final class ContactsContent extends AbstractHttpContent
+	{
+		private final String mKeyId;
+		private final List<ContactHashes> mChanged;
+		private final List<Long> mRemoved;
+
+		ContactsContent(String keyId, List<ContactHashes> changed, List<Long> removed)
+		{
+			super(JSON_MEDIA_TYPE);
+			mKeyId = keyId;
+			mChanged = changed;
+			mRemoved = removed;
+		}
+
+		@Override
+		public long getLength()
+		{
+			return -1;
+		}
+
+		@Override
+		public void writeTo(OutputStream out) throws IOException
+		{
+			JsonGenerator json = sJsonFactory.createGenerator(out, JsonEncoding.UTF8);
+			json.writeStartObject();
+			json.writeStringField("keyId", mKeyId);
+			json.writeArrayFieldStart("contacts");
+			for (ContactHashes contact : mChanged)
+			{
+				json.writeStartObject();
+				json.writeNumberField("id", contact.getContactId());
+				writeStrings(json, "emails", contact.getEmailHashes());
+				writeStrings(json, "phones", contact.getPhoneHashes());
+				json.writeEndObject();
+			}
+			json.writeEndArray();
+			json.writeArrayFieldStart("removed");
+			for (Long id : mRemoved)
+				json.writeNumber(id);
+			json.writeEndArray();
+			json.writeEndObject();
+			json.flush();
+		}
+
+		private static void writeStrings(JsonGenerator json, String name, List<String> values) throws IOException
+		{
+			json.writeArrayFieldStart(name);
+			for (String value : values)
+				json.writeString(value);
+			json.writeEndArray();
+		}
+	}
+}
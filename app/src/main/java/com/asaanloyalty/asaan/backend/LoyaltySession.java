@@ -0,0 +1,73 @@
+package com.asaanloyalty.asaan.backend;
+
+/**
+ * An Asaan loyalty session obtained by exchanging a social identity with the
+ * backend.
+ */
+public final class LoyaltySession
+{
+	private final String mToken;
+	private final String mMemberId;
+	private final long mExpiresAt;
+	private final String mAvatarUrl;
+	private final String mDeviceId;
+
+	public LoyaltySession(String token, String memberId, long expiresAt, String avatarUrl, String deviceId)
+	{
+		mToken = token;
+		mMemberId = memberId;
+		mExpiresAt = expiresAt;
+		mAvatarUrl = avatarUrl;
+		mDeviceId = deviceId;
+	}
+
+	/**
+	 * @return the bearer token for later backend calls
+	 */
+	public String getToken()
+	{
+		return mToken;
+	}
+
+	public String getMemberId()
+	{
+		return mMemberId;
+	}
+
+	/**
+	 * @return when the token expires, in milliseconds since the epoch
+	 */
+	public long getExpiresAt()
+	{
+		return mExpiresAt;
+	}
+
+	public boolean isExpired()
+	{
+		return System.currentTimeMillis() >= mExpiresAt;
+	}
+
+	/**
+	 * @return the backend's copy of the member's avatar, or null if the avatar
+	 *         was not sent
+	 */
+	public String getAvatarUrl()
+	{
+		return mAvatarUrl;
+	}
+
+	/**
+	 * @return the backend's id for this device, or null if the device was not
+	 *         registered
+	 */
+	public String getDeviceId()
+	{
+		return mDeviceId;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "LoyaltySession{memberId=" + mMemberId + ", expiresAt=" + mExpiresAt + ", deviceId=" + mDeviceId + "}";
+	}
+}
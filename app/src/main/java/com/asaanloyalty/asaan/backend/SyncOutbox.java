@@ -0,0 +1,440 @@
+package com.asaanloyalty.asaan.backend;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.asaanloyalty.asaan.auth.ProviderTokens;
+import com.asaanloyalty.asaan.auth.SocialProfile;
+import com.asaanloyalty.asaan.dao.DaoSessionProvider;
+import com.asaanloyalty.asaan.dao.OutboxEntry;
+import com.asaanloyalty.asaan.dao.OutboxEntryDao;
+import com.google.api.client.util.Base64;
+import com.google.api.client.util.Maps;
+import com.google.api.client.util.Sets;
+
+/**
+ * Persistent queue of backend calls made after sign-in, so a flaky connection
+ * never holds up or loses a login.
+ *
+ * Operations are written to the OUTBOX_ENTRY table and the caller returns
+ * straight away. The table has a unique index on (type, user), so queueing an
+ * operation replaces any older one of the same type for the same user that
+ * has not been sent yet. Due entries are replayed oldest first in batches of
+ * {@link #BATCH_SIZE} through {@link IdentityExchangeClient#sendBatch}, as soon
+ * as they are queued if the device is online and otherwise when connectivity
+ * returns. Entries that fail are retried with exponential backoff and dropped
+ * after {@link #MAX_ATTEMPTS} attempts or on a client error.
+ *
+ * A digest of the last profile update the backend accepted for each account
+ * is kept in the "sync_outbox" preferences, and an update equal to it is not
+ * queued, so the device profile merged on every start is only sent when it
+ * changed.
+ *
+ * Identity exchanges are queued without the provider token, which would have
+ * needed the network to obtain, would sit in the table in plain text and would
+ * often have expired by the time it was sent. {@link ProviderTokens} supplies
+ * it when the exchange is sent; if the backend rejects it, it is invalidated
+ * and the exchange is sent once more straight away with a new one.
+ */
+public class SyncOutbox
+{
+	private static final Logger logger = Logger.getLogger(SyncOutbox.class.getName());
+
+	/** Entries sent per request */
+	public static final int BATCH_SIZE = 20;
+	/** Attempts before an entry is dropped */
+	public static final int MAX_ATTEMPTS = 8;
+	private static final long INITIAL_RETRY_MS = 30 * 1000L;
+	private static final long MAX_RETRY_MS = 60 * 60 * 1000L;
+	private static final String PREFS_OUTBOX = "sync_outbox";
+	/** Prefix of the keys of the sent profile digests, followed by the user key */
+	private static final String KEY_SENT_PROFILE = "sent_profile:";
+
+	private static SyncOutbox sInstance;
+
+	private final Context mContext;
+	private final IdentityExchangeClient mClient;
+	private final ProviderTokens mTokens;
+	private final SharedPreferences mPrefs;
+	/** Runs all database and network work, in order */
+	private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+	private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+	private OutboxEntryDao mDao;
+
+	private final Runnable mReplay = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			replay();
+		}
+	};
+
+	/** Replays once the device is back online; registered only while offline */
+	private final BroadcastReceiver mConnectivityReceiver = new BroadcastReceiver()
+	{
+		@Override
+		public void onReceive(Context context, Intent intent)
+		{
+			if (isOnline())
+			{
+				unregisterConnectivityReceiver();
+				replay();
+			}
+		}
+	};
+	/** Guarded by this */
+	private boolean mReceiverRegistered;
+
+	private SyncOutbox(Context context)
+	{
+		mContext = context.getApplicationContext();
+		mClient = IdentityExchangeClient.getInstance(mContext);
+		mTokens = new ProviderTokens(mContext);
+		mPrefs = mContext.getSharedPreferences(PREFS_OUTBOX, Context.MODE_PRIVATE);
+	}
+
+	/**
+	 * Returns the process-wide outbox.
+	 *
+	 * @param context
+	 *            any context; only its application context is retained
+	 */
+	public static synchronized SyncOutbox getInstance(Context context)
+	{
+		if (sInstance == null)
+			sInstance = new SyncOutbox(context);
+		return sInstance;
+	}
+
+	/**
+	 * Queues an identity exchange, replacing any unsent one for the same
+	 * identity. The provider token is looked up when it is sent.
+	 *
+	 * @param pushRegistrationId
+	 *            the device's push registration id, or null
+	 */
+	public void enqueueExchange(final SocialProfile profile, final String pushRegistrationId)
+	{
+		mExecutor.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					String body = IdentityExchangeClient.exchangeBody(profile, null, pushRegistrationId);
+					insert(IdentityExchangeClient.EXCHANGE_PATH, IdentityExchangeClient.identityKey(profile), body);
+				} catch (IOException e)
+				{
+					logger.log(Level.WARNING, "Queueing identity exchange failed - " + e.getMessage());
+				}
+			}
+		});
+	}
+
+	/**
+	 * Queues a profile update, replacing any unsent one for the same account,
+	 * unless it is the update last sent for the account.
+	 *
+	 * @param account
+	 *            the identity the member signed in with
+	 * @param profile
+	 *            the fields to store for the member
+	 */
+	public void enqueueProfileUpdate(final SocialProfile account, final SocialProfile profile)
+	{
+		mExecutor.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					String user_key = IdentityExchangeClient.identityKey(account);
+					String body = IdentityExchangeClient.profileUpdateBody(account, profile);
+					if (digest(body).equals(mPrefs.getString(KEY_SENT_PROFILE + user_key, null)))
+					{
+						logger.log(Level.FINE, "Profile of " + user_key + " unchanged since it was sent");
+						return;
+					}
+					insert(IdentityExchangeClient.PROFILE_UPDATE_PATH, user_key, body);
+				} catch (IOException e)
+				{
+					logger.log(Level.WARNING, "Queueing profile update failed - " + e.getMessage());
+				}
+			}
+		});
+	}
+
+	/**
+	 * Queues a device update carrying a new push registration id, replacing
+	 * any unsent one for the same account.
+	 *
+	 * @param account
+	 *            the identity the member signed in with
+	 */
+	public void enqueueDeviceUpdate(final SocialProfile account, final String pushRegistrationId)
+	{
+		mExecutor.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					insert(IdentityExchangeClient.DEVICE_UPDATE_PATH, IdentityExchangeClient.identityKey(account),
+							IdentityExchangeClient.deviceUpdateBody(account, pushRegistrationId));
+				} catch (IOException e)
+				{
+					logger.log(Level.WARNING, "Queueing device update failed - " + e.getMessage());
+				}
+			}
+		});
+	}
+
+	/**
+	 * Sends every due entry in the background.
+	 */
+	public void replay()
+	{
+		mMainHandler.removeCallbacks(mReplay);
+		mExecutor.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				replayNow();
+			}
+		});
+	}
+
+	/**
+	 * Drops every queued entry, for example after the user logs off.
+	 */
+	public void clear()
+	{
+		mMainHandler.removeCallbacks(mReplay);
+		mExecutor.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				dao().deleteAll();
+				mPrefs.edit().clear().commit();
+			}
+		});
+	}
+
+	/**
+	 * Runs on the executor.
+	 */
+	private void insert(String type, String userKey, String payload)
+	{
+		long now = System.currentTimeMillis();
+		// INSERT OR REPLACE resolves the (type, user) unique index conflict by
+		// deleting the superseded entry
+		dao().insertOrReplace(new OutboxEntry(null, type, userKey, payload, now, 0, now));
+		replayNow();
+	}
+
+	/**
+	 * Runs on the executor.
+	 */
+	private void replayNow()
+	{
+		if (!isOnline())
+		{
+			registerConnectivityReceiver();
+			return;
+		}
+		OutboxEntryDao dao = dao();
+		// Exchanges already sent again with a new token in this replay
+		Set<Long> reauthorized = Sets.newHashSet();
+		while (true)
+		{
+			long now = System.currentTimeMillis();
+			List<OutboxEntry> batch = dao.queryBuilder().where(OutboxEntryDao.Properties.NextAttemptAt.le(now))
+					.orderAsc(OutboxEntryDao.Properties.Id).limit(BATCH_SIZE).list();
+			if (batch.isEmpty())
+				break;
+
+			Map<Long, SocialProfile> identities = Maps.newHashMap();
+			Map<Long, String> tokens = Maps.newHashMap();
+			resolveTokens(dao, batch, identities, tokens, now);
+			if (batch.isEmpty())
+				continue;
+
+			Map<Long, IdentityExchangeClient.BatchResult> results;
+			try
+			{
+				results = mClient.sendBatch(batch, tokens);
+			} catch (IOException e)
+			{
+				logger.log(Level.WARNING, "Outbox replay failed - " + e.getMessage());
+				for (OutboxEntry entry : batch)
+					reschedule(dao, entry, now);
+				break;
+			}
+
+			for (OutboxEntry entry : batch)
+			{
+				IdentityExchangeClient.BatchResult result = results.get(entry.getId());
+				if (result != null && result.isSuccess())
+				{
+					dao.delete(entry);
+					if (result.getSession() != null)
+						mClient.putSession(entry.getUserKey(), result.getSession());
+					if (IdentityExchangeClient.PROFILE_UPDATE_PATH.equals(entry.getType()))
+						mPrefs.edit().putString(KEY_SENT_PROFILE + entry.getUserKey(), digest(entry.getPayload()))
+								.commit();
+				} else if (result != null && result.isUnauthorized() && tokens.containsKey(entry.getId())
+						&& reauthorized.add(entry.getId()))
+				{
+					// Expired or revoked since the provider handed it out; the
+					// entry stays due, so the next batch carries a new token
+					mTokens.invalidateToken(identities.get(entry.getId()), tokens.get(entry.getId()));
+				} else if (result != null && result.isPermanentFailure())
+				{
+					logger.log(Level.WARNING, "Outbox dropped " + entry.getType() + " for " + entry.getUserKey()
+							+ " with status " + result.getStatus());
+					dao.delete(entry);
+				} else
+					reschedule(dao, entry, now);
+			}
+		}
+		scheduleNextReplay(dao);
+	}
+
+	/**
+	 * Looks up the provider token of every exchange in the batch. Exchanges
+	 * whose provider has no token any more are dropped, and those whose
+	 * token could not be had right now are rescheduled; both are taken out
+	 * of the batch.
+	 */
+	private void resolveTokens(OutboxEntryDao dao, List<OutboxEntry> batch, Map<Long, SocialProfile> identities,
+			Map<Long, String> tokens, long now)
+	{
+		for (Iterator<OutboxEntry> it = batch.iterator(); it.hasNext();)
+		{
+			OutboxEntry entry = it.next();
+			if (!IdentityExchangeClient.EXCHANGE_PATH.equals(entry.getType()))
+				continue;
+			try
+			{
+				SocialProfile identity = IdentityExchangeClient.readExchangeIdentity(entry.getPayload());
+				String token = mTokens.getToken(identity);
+				if (token != null)
+				{
+					identities.put(entry.getId(), identity);
+					tokens.put(entry.getId(), token);
+					continue;
+				}
+				logger.log(Level.WARNING, "Outbox dropped " + entry.getType() + " for " + entry.getUserKey()
+						+ " - no provider token");
+				dao.delete(entry);
+			} catch (Exception e)
+			{
+				logger.log(Level.WARNING, "Getting provider token failed - " + e.getMessage());
+				reschedule(dao, entry, now);
+			}
+			it.remove();
+		}
+	}
+
+	private void reschedule(OutboxEntryDao dao, OutboxEntry entry, long now)
+	{
+		int attempts = entry.getAttempts() + 1;
+		if (attempts >= MAX_ATTEMPTS)
+		{
+			logger.log(Level.WARNING, "Outbox gave up on " + entry.getType() + " for " + entry.getUserKey());
+			dao.delete(entry);
+			return;
+		}
+		entry.setAttempts(attempts);
+		entry.setNextAttemptAt(now + Math.min(INITIAL_RETRY_MS << (attempts - 1), MAX_RETRY_MS));
+		dao.update(entry);
+	}
+
+	private void scheduleNextReplay(OutboxEntryDao dao)
+	{
+		OutboxEntry next = dao.queryBuilder().orderAsc(OutboxEntryDao.Properties.NextAttemptAt).limit(1).unique();
+		if (next != null)
+		{
+			long delay = Math.max(0, next.getNextAttemptAt() - System.currentTimeMillis());
+			mMainHandler.removeCallbacks(mReplay);
+			mMainHandler.postDelayed(mReplay, delay);
+		}
+	}
+
+	/**
+	 * @return the base64 SHA-256 digest of a payload
+	 */
+	private static String digest(String payload)
+	{
+		try
+		{
+			return Base64.encodeBase64String(MessageDigest.getInstance("SHA-256").digest(payload.getBytes("UTF-8")));
+		} catch (NoSuchAlgorithmException e)
+		{
+			// Every JVM and Android release provides SHA-256
+			throw new IllegalStateException(e);
+		} catch (UnsupportedEncodingException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private OutboxEntryDao dao()
+	{
+		if (mDao == null)
+			mDao = DaoSessionProvider.getSession(mContext).getOutboxEntryDao();
+		return mDao;
+	}
+
+	private boolean isOnline()
+	{
+		ConnectivityManager connectivity = (ConnectivityManager) mContext
+				.getSystemService(Context.CONNECTIVITY_SERVICE);
+		NetworkInfo network = connectivity.getActiveNetworkInfo();
+		return network != null && network.isConnected();
+	}
+
+	private synchronized void registerConnectivityReceiver()
+	{
+		if (!mReceiverRegistered)
+		{
+			mContext.registerReceiver(mConnectivityReceiver, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+			mReceiverRegistered = true;
+		}
+	}
+
+	private synchronized void unregisterConnectivityReceiver()
+	{
+		if (mReceiverRegistered)
+		{
+			mContext.unregisterReceiver(mConnectivityReceiver);
+			mReceiverRegistered = false;
+		}
+	}
+}
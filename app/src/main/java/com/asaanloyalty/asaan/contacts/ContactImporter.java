@@ -0,0 +1,455 @@
+package com.asaanloyalty.asaan.contacts;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import android.annotation.TargetApi;
+import android.content.ContentResolver;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.provider.ContactsContract;
+import android.text.TextUtils;
+
+import com.asaanloyalty.asaan.auth.IdentityHasher;
+import com.asaanloyalty.asaan.dao.ImportedContact;
+
+/**
+ * Imports the device address book for friend discovery as hashed email
+ * addresses and phone numbers.
+ *
+ * Contacts are read {@link #PAGE_SIZE} at a time, keyed on their id, and each
+ * page's email and phone rows are then read from the Data table with a
+ * projection of just the contact id, MIME type and value; no cursor ever holds
+ * more than one page. Values are hashed with the keyed {@link IdentityHasher}
+ * the run is given as they are read, and only the hashes are kept or handed
+ * on. A run with a different key reports different hashes, so the importer
+ * must be {@link #reset} when the key changes.
+ *
+ * The hashes last reported for each contact are kept in a {@link Store}, in
+ * the app the IMPORTED_CONTACT table, and a contact is passed to the
+ * {@link Sink} only when its hashes differ from those. On Android 4.3 and
+ * later, runs after the first only read contacts whose
+ * CONTACT_LAST_UPDATED_TIMESTAMP is at or after the start of the previous run,
+ * and learn about deleted contacts from the DeletedContacts table, so a
+ * re-sync costs in proportion to what changed. Older releases have neither
+ * column, so each run reads the whole book and contacts that were not seen
+ * are reported removed; so does any run once the provider may have pruned
+ * deletions from its log.
+ *
+ * The importer has no threads of its own; {@link ContactSync} runs it in the
+ * background and uploads what it finds.
+ */
+public class ContactImporter
+{
+	private static final Logger logger = Logger.getLogger(ContactImporter.class.getName());
+
+	/** Contacts read per query */
+	public static final int PAGE_SIZE = 500;
+
+	/** When the last completed run started, in the provider's clock */
+	private static final String KEY_SYNCED_AT = "synced_at";
+	/** DeletedContacts.DAYS_KEPT_MILLISECONDS, which is not a compile-time constant */
+	private static final long DELETED_KEPT_MS = 30L * 24 * 60 * 60 * 1000;
+	private static final String HASH_SEPARATOR = ",";
+
+	private static final String[] DATA_PROJECTION = new String[] { ContactsContract.Data.CONTACT_ID,
+			ContactsContract.Data.MIMETYPE, ContactsContract.Data.DATA1 };
+	private static final String[] DATA_MIME_TYPES = new String[] {
+			ContactsContract.CommonDataKinds.Email.CONTENT_ITEM_TYPE,
+			ContactsContract.CommonDataKinds.Phone.CONTENT_ITEM_TYPE };
+
+	/**
+	 * Receives the changes found by {@link ContactImporter#importContacts}.
+	 * Called on the importing thread. A page is recorded as imported only
+	 * after all its contacts were delivered and {@link #flush} returned, so a
+	 * run that fails part-way delivers the rest of that page again next time.
+	 */
+	public interface Sink
+	{
+		/**
+		 * A contact was added, or its email addresses or phone numbers
+		 * changed.
+		 *
+		 * @param emailHashes
+		 *            hashes of all the contact's addresses, sorted
+		 * @param phoneHashes
+		 *            hashes of all the contact's numbers, sorted
+		 */
+		void onContactChanged(long contactId, List<String> emailHashes, List<String> phoneHashes);
+
+		/**
+		 * A contact reported earlier was deleted or no longer has an address
+		 * or number.
+		 */
+		void onContactRemoved(long contactId);
+
+		/**
+		 * The changes delivered since the last call are about to be recorded
+		 * as imported.
+		 *
+		 * @throws IOException
+		 *             if they could not be passed on; the run stops
+		 */
+		void flush() throws IOException;
+	}
+
+	/**
+	 * Keeps the hashes last reported for each contact.
+	 */
+	public interface Store
+	{
+		/**
+		 * @return the stored contacts among the first count ids, by id
+		 */
+		Map<Long, ImportedContact> load(long[] ids, int count);
+
+		/**
+		 * @return the ids of every stored contact
+		 */
+		List<Long> loadIds();
+
+		/**
+		 * Stores the changed contacts and forgets the removed ones, all or
+		 * none.
+		 */
+		void write(List<ImportedContact> changed, List<Long> removed);
+
+		void clear();
+	}
+
+	/**
+	 * What a run of {@link ContactImporter#importContacts} did.
+	 */
+	public static class Result
+	{
+		/** Whether the whole address book was read */
+		public boolean fullScan;
+		public int contactsRead;
+		public int changed;
+		public int removed;
+
+		@Override
+		public String toString()
+		{
+			return (fullScan ? "full" : "delta") + " import read " + contactsRead + " contacts, " + changed
+					+ " changed, " + removed + " removed";
+		}
+	}
+
+	private final ContentResolver mResolver;
+	private final SharedPreferences mPrefs;
+	private final Store mStore;
+	private final String mRegion;
+
+	/**
+	 * @param resolver
+	 *            reads the Contacts provider
+	 * @param prefs
+	 *            private preferences for the time of the last run
+	 * @param store
+	 *            keeps the hashes last reported
+	 * @param region
+	 *            ISO 3166 country numbers in national form are assumed to be
+	 *            in, or null
+	 */
+	public ContactImporter(ContentResolver resolver, SharedPreferences prefs, Store store, String region)
+	{
+		mResolver = resolver;
+		mPrefs = prefs;
+		mStore = store;
+		mRegion = region;
+	}
+
+	/**
+	 * @return when the last completed run started, or 0 if there was none
+	 */
+	public long getLastRunAt()
+	{
+		return mPrefs.getLong(KEY_SYNCED_AT, 0);
+	}
+
+	/**
+	 * Reads the address book and reports what changed since the last run.
+	 * Reads the Contacts provider and the store, so it must not be called
+	 * from the main thread; concurrent calls run one after the other.
+	 *
+	 * @param hasher
+	 *            hashes under the current key; only used by this thread
+	 * @return what the run did
+	 * @throws IOException
+	 *             if the sink failed; the pages it flushed stay imported
+	 */
+	public synchronized Result importContacts(Sink sink, IdentityHasher hasher) throws IOException
+	{
+		long started_at = System.currentTimeMillis();
+		long synced_at = mPrefs.getLong(KEY_SYNCED_AT, 0);
+		Result result = new Result();
+		result.fullScan = Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR2 || synced_at <= 0
+				|| started_at - synced_at >= DELETED_KEPT_MS;
+
+		// Only needed to find the contacts a full scan did not see
+		Set<Long> seen = result.fullScan ? new HashSet<Long>() : null;
+
+		long after_id = -1;
+		long[] ids = new long[PAGE_SIZE];
+		long[] updated_ats = new long[PAGE_SIZE];
+		int count;
+		do
+		{
+			count = readContactPage(after_id, result.fullScan ? 0 : synced_at, ids, updated_ats);
+			if (count == 0)
+				break;
+			result.contactsRead += count;
+			if (seen != null)
+				for (int i = 0; i < count; i++)
+					seen.add(ids[i]);
+			importPage(sink, hasher, ids, updated_ats, count, result);
+			after_id = ids[count - 1];
+		} while (count == PAGE_SIZE);
+
+		if (result.fullScan)
+			removeUnseen(sink, seen, result);
+		else
+			removeDeleted(sink, synced_at, result);
+
+		// Contacts changed while this run was reading are at or after its
+		// start, so the next run picks them up
+		mPrefs.edit().putLong(KEY_SYNCED_AT, started_at).commit();
+		logger.log(Level.INFO, "Contact " + result + " in " + (System.currentTimeMillis() - started_at) + " ms");
+		return result;
+	}
+
+	/**
+	 * Forgets what was imported, so the next run reports every contact again.
+	 */
+	public synchronized void reset()
+	{
+		mStore.clear();
+		mPrefs.edit().remove(KEY_SYNCED_AT).commit();
+	}
+
+	/**
+	 * Reads the ids of the next contacts, in id order, updated at or after
+	 * the given time.
+	 *
+	 * @param updatedSince
+	 *            the earliest last-update time, or 0 for all contacts
+	 * @return the number of contacts read into the arrays
+	 */
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+	private int readContactPage(long afterId, long updatedSince, long[] ids, long[] updatedAts)
+	{
+		boolean has_timestamp = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+		String[] projection = has_timestamp ? new String[] { ContactsContract.Contacts._ID,
+				ContactsContract.Contacts.CONTACT_LAST_UPDATED_TIMESTAMP }
+				: new String[] { ContactsContract.Contacts._ID };
+		String selection = ContactsContract.Contacts._ID + ">?";
+		String[] selection_args;
+		if (updatedSince > 0)
+		{
+			selection += " AND " + ContactsContract.Contacts.CONTACT_LAST_UPDATED_TIMESTAMP + ">=?";
+			selection_args = new String[] { String.valueOf(afterId), String.valueOf(updatedSince) };
+		} else
+			selection_args = new String[] { String.valueOf(afterId) };
+
+		Uri uri = ContactsContract.Contacts.CONTENT_URI.buildUpon()
+				.appendQueryParameter(ContactsContract.LIMIT_PARAM_KEY, String.valueOf(ids.length)).build();
+		Cursor cursor = mResolver.query(uri, projection, selection, selection_args, ContactsContract.Contacts._ID
+				+ " ASC");
+		if (cursor == null)
+			return 0;
+		int count = 0;
+		try
+		{
+			// The limit is only a hint to the provider
+			while (count < ids.length && cursor.moveToNext())
+			{
+				ids[count] = cursor.getLong(0);
+				updatedAts[count] = has_timestamp ? cursor.getLong(1) : 0;
+				count++;
+			}
+		} finally
+		{
+			cursor.close();
+		}
+		return count;
+	}
+
+	/**
+	 * Reads and hashes the email and phone rows of a page of contacts and
+	 * reports and stores the contacts whose hashes changed.
+	 */
+	private void importPage(Sink sink, IdentityHasher hasher, long[] ids, long[] updatedAts, int count,
+			Result result) throws IOException
+	{
+		Map<Long, Hashes> read = readHashes(hasher, ids, count);
+		Map<Long, ImportedContact> stored = mStore.load(ids, count);
+
+		List<ImportedContact> changed = new ArrayList<ImportedContact>();
+		List<Long> removed = new ArrayList<Long>();
+		for (int i = 0; i < count; i++)
+		{
+			long id = ids[i];
+			Hashes hashes = read.get(id);
+			ImportedContact previous = stored.get(id);
+			if (hashes == null)
+			{
+				if (previous != null)
+				{
+					sink.onContactRemoved(id);
+					removed.add(id);
+				}
+				continue;
+			}
+			String emails = TextUtils.join(HASH_SEPARATOR, hashes.mEmails);
+			String phones = TextUtils.join(HASH_SEPARATOR, hashes.mPhones);
+			if (previous != null && emails.equals(previous.getEmailHashes())
+					&& phones.equals(previous.getPhoneHashes()))
+				continue;
+			sink.onContactChanged(id, new ArrayList<String>(hashes.mEmails), new ArrayList<String>(hashes.mPhones));
+			changed.add(new ImportedContact(id, updatedAts[i], emails, phones));
+		}
+		store(sink, changed, removed);
+		result.changed += changed.size();
+		result.removed += removed.size();
+	}
+
+	/**
+	 * @return the hashes of each contact that has an address or number
+	 */
+	private Map<Long, Hashes> readHashes(IdentityHasher hasher, long[] ids, int count)
+	{
+		Map<Long, Hashes> hashes = new HashMap<Long, Hashes>(count * 2);
+		// Contact ids are numbers, so they are written into the selection
+		// rather than bound, which would exceed SQLite's limit of 999 arguments
+		StringBuilder selection = new StringBuilder(count * 8 + 64).append(ContactsContract.Data.MIMETYPE)
+				.append(" IN (?,?) AND ").append(ContactsContract.Data.CONTACT_ID).append(" IN (");
+		for (int i = 0; i < count; i++)
+			selection.append(i > 0 ? "," : "").append(ids[i]);
+		selection.append(')');
+
+		Cursor cursor = mResolver.query(ContactsContract.Data.CONTENT_URI, DATA_PROJECTION, selection.toString(),
+				DATA_MIME_TYPES, null);
+		if (cursor == null)
+			return hashes;
+		try
+		{
+			while (cursor.moveToNext())
+			{
+				boolean is_email = ContactsContract.CommonDataKinds.Email.CONTENT_ITEM_TYPE.equals(cursor
+						.getString(1));
+				String value = cursor.getString(2);
+				String hash = is_email ? hasher.hashEmail(value) : hasher.hashPhone(value, mRegion);
+				if (hash == null)
+					continue;
+				long contact_id = cursor.getLong(0);
+				Hashes contact = hashes.get(contact_id);
+				if (contact == null)
+				{
+					contact = new Hashes();
+					hashes.put(contact_id, contact);
+				}
+				(is_email ? contact.mEmails : contact.mPhones).add(hash);
+			}
+		} finally
+		{
+			cursor.close();
+		}
+		return hashes;
+	}
+
+	/**
+	 * Flushes the sink and records a page's changes.
+	 */
+	private void store(Sink sink, List<ImportedContact> changed, List<Long> removed) throws IOException
+	{
+		if (changed.isEmpty() && removed.isEmpty())
+			return;
+		sink.flush();
+		mStore.write(changed, removed);
+	}
+
+	/**
+	 * Reports and forgets the contacts deleted at or after the given time.
+	 */
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+	private void removeDeleted(Sink sink, long deletedSince, Result result) throws IOException
+	{
+		Cursor cursor = mResolver.query(ContactsContract.DeletedContacts.CONTENT_URI,
+				new String[] { ContactsContract.DeletedContacts.CONTACT_ID },
+				ContactsContract.DeletedContacts.CONTACT_DELETED_TIMESTAMP + ">=?",
+				new String[] { String.valueOf(deletedSince) }, null);
+		if (cursor == null)
+			return;
+		long[] ids = new long[PAGE_SIZE];
+		try
+		{
+			int count = 0;
+			while (cursor.moveToNext())
+			{
+				ids[count++] = cursor.getLong(0);
+				if (count == ids.length)
+				{
+					result.removed += removeStored(sink, ids, count);
+					count = 0;
+				}
+			}
+			result.removed += removeStored(sink, ids, count);
+		} finally
+		{
+			cursor.close();
+		}
+	}
+
+	/**
+	 * Reports and forgets the stored contacts a full scan did not see.
+	 */
+	private void removeUnseen(Sink sink, Set<Long> seen, Result result) throws IOException
+	{
+		List<Long> removed = new ArrayList<Long>();
+		for (Long id : mStore.loadIds())
+		{
+			if (!seen.contains(id))
+				removed.add(id);
+		}
+		for (Long id : removed)
+			sink.onContactRemoved(id);
+		store(sink, new ArrayList<ImportedContact>(), removed);
+		result.removed += removed.size();
+	}
+
+	/**
+	 * @return how many of the contacts had been reported and were removed
+	 */
+	private int removeStored(Sink sink, long[] ids, int count) throws IOException
+	{
+		if (count == 0)
+			return 0;
+		Map<Long, ImportedContact> stored = mStore.load(ids, count);
+		List<Long> removed = new ArrayList<Long>(stored.keySet());
+		for (Long id : removed)
+			sink.onContactRemoved(id);
+		store(sink, new ArrayList<ImportedContact>(), removed);
+		return removed.size();
+	}
+
+	/**
+	 * One contact's hashes, sorted so they compare and store the same
+	 * whatever order the provider returns the rows in.
+	 */
+	private static final class Hashes
+	{
+		final Set<String> mEmails = new TreeSet<String>();
+		final Set<String> mPhones = new TreeSet<String>();
+	}
+}
@@ -0,0 +1,247 @@
+package com.asaanloyalty.asaan.contacts;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.telephony.TelephonyManager;
+
+import com.asaanloyalty.asaan.auth.AuthSessionStore;
+import com.asaanloyalty.asaan.auth.IdentityHasher;
+import com.asaanloyalty.asaan.auth.ProviderTokens;
+import com.asaanloyalty.asaan.backend.IdentityExchangeClient;
+import com.asaanloyalty.asaan.backend.LoyaltySession;
+import com.asaanloyalty.asaan.push.PushRegistrar;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.http.HttpStatusCodes;
+
+/**
+ * Uploads the hashes of the signed-in member's address book to the backend,
+ * for friend discovery, once the user has agreed to it.
+ *
+ * Nothing is read or uploaded until {@link #setConsent} records the user's
+ * answer, and only if the answer was yes; logging off forgets the answer.
+ * The hashes are made with a key fetched from the backend with
+ * {@link IdentityExchangeClient#fetchContactKey}, and a new key starts the
+ * import over.
+ *
+ * Each sync runs {@link ContactImporter} in the background and uploads the
+ * contacts it reports with {@link IdentityExchangeClient#uploadContacts}, one
+ * page at a time; a page is recorded as imported only once its upload
+ * succeeded, so a failed sync sends the rest again next time. The member is
+ * read from the {@link AuthSessionStore} and exchanged for a loyalty session
+ * if there is none yet. What was uploaded belongs to the member it was
+ * uploaded for: a different member starts over, and so does a sync after
+ * {@link #clear}.
+ */
+public class ContactSync
+{
+	private static final Logger logger = Logger.getLogger(ContactSync.class.getName());
+
+	/** Repeated sign-ins within this time reuse the last sync */
+	private static final long MIN_SYNC_INTERVAL_MS = 60 * 60 * 1000L;
+
+	private static final String PREFS_IMPORT = "contact_import";
+	private static final String PREFS_SYNC = "contact_sync";
+	private static final String KEY_MEMBER_ID = "member_id";
+	private static final String KEY_KEY_ID = "key_id";
+	/** Whether the user agreed to the upload; absent until asked */
+	private static final String KEY_CONSENT = "consent";
+
+	private static ContactSync sInstance;
+
+	private final Context mContext;
+	private final SharedPreferences mPrefs;
+	private final ContactImporter mImporter;
+	/** Runs syncs one at a time */
+	private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+	private ContactSync(Context context)
+	{
+		mContext = context.getApplicationContext();
+		mPrefs = mContext.getSharedPreferences(PREFS_SYNC, Context.MODE_PRIVATE);
+		TelephonyManager telephony = (TelephonyManager) mContext.getSystemService(Context.TELEPHONY_SERVICE);
+		mImporter = new ContactImporter(mContext.getContentResolver(), mContext.getSharedPreferences(PREFS_IMPORT,
+				Context.MODE_PRIVATE), new ImportedContactStore(mContext), telephony != null ? telephony
+				.getSimCountryIso() : null);
+	}
+
+	/**
+	 * Returns the process-wide sync.
+	 *
+	 * @param context
+	 *            any context; only its application context is retained
+	 */
+	public static synchronized ContactSync getInstance(Context context)
+	{
+		if (sInstance == null)
+			sInstance = new ContactSync(context);
+		return sInstance;
+	}
+
+	/**
+	 * @return whether the user has been asked to allow the upload
+	 */
+	public boolean isConsentAsked()
+	{
+		return mPrefs.contains(KEY_CONSENT);
+	}
+
+	/**
+	 * Records the user's answer and, if they agreed, starts a sync.
+	 */
+	public void setConsent(final boolean granted)
+	{
+		mExecutor.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				mPrefs.edit().putBoolean(KEY_CONSENT, granted).commit();
+				if (granted)
+					runSync();
+				else
+					forget();
+			}
+		});
+	}
+
+	/**
+	 * Uploads what changed in the address book in the background, unless the
+	 * user has not agreed to it, it was synced moments ago or nobody is signed
+	 * in.
+	 */
+	public void sync()
+	{
+		mExecutor.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				runSync();
+			}
+		});
+	}
+
+	/**
+	 * Forgets what was uploaded and the user's answer in the background, on
+	 * sign-out.
+	 */
+	public void clear()
+	{
+		mExecutor.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				forget();
+				mPrefs.edit().remove(KEY_CONSENT).commit();
+			}
+		});
+	}
+
+	/**
+	 * Runs on the executor.
+	 */
+	private void runSync()
+	{
+		if (!mPrefs.getBoolean(KEY_CONSENT, false))
+			return;
+		AuthSessionStore.StoredSession stored = AuthSessionStore.getInstance(mContext).get();
+		if (stored == null || stored.isExpired())
+			return;
+
+		IdentityExchangeClient client = IdentityExchangeClient.getInstance(mContext);
+		LoyaltySession session;
+		try
+		{
+			session = client.getOrExchange(stored.getProfile(),
+					new ProviderTokens(mContext).tokenSource(stored.getProfile()), PushRegistrar.getInstance(mContext)
+							.peekRegistrationId());
+		} catch (Exception e)
+		{
+			logger.log(Level.WARNING, "Contact sync failed - exchange failed - " + e.getMessage());
+			return;
+		}
+
+		boolean same_member = session.getMemberId().equals(mPrefs.getString(KEY_MEMBER_ID, null));
+		if (same_member && System.currentTimeMillis() - mImporter.getLastRunAt() < MIN_SYNC_INTERVAL_MS)
+			return;
+
+		try
+		{
+			IdentityExchangeClient.ContactKey key = client.fetchContactKey(session);
+			if (!same_member || !key.getId().equals(mPrefs.getString(KEY_KEY_ID, null)))
+			{
+				// Hashes uploaded for another member or made with another key
+				// are of no use
+				forget();
+				mPrefs.edit().putString(KEY_MEMBER_ID, session.getMemberId()).putString(KEY_KEY_ID, key.getId())
+						.commit();
+			}
+			mImporter.importContacts(new UploadSink(client, session, key.getId()), new IdentityHasher(key.getKey()));
+		} catch (IOException e)
+		{
+			if (e instanceof HttpResponseException
+					&& ((HttpResponseException) e).getStatusCode() == HttpStatusCodes.STATUS_CODE_UNAUTHORIZED)
+				// The next sync exchanges the identity again
+				client.clear();
+			logger.log(Level.WARNING, "Contact sync failed - " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Forgets what was uploaded, but not the user's answer.
+	 */
+	private void forget()
+	{
+		mImporter.reset();
+		mPrefs.edit().remove(KEY_MEMBER_ID).remove(KEY_KEY_ID).commit();
+	}
+
+	/**
+	 * Uploads the contacts of each page when the importer flushes it.
+	 */
+	private static final class UploadSink implements ContactImporter.Sink
+	{
+		private final IdentityExchangeClient mClient;
+		private final LoyaltySession mSession;
+		private final String mKeyId;
+		private final List<IdentityExchangeClient.ContactHashes> mChanged =
+				new ArrayList<IdentityExchangeClient.ContactHashes>();
+		private final List<Long> mRemoved = new ArrayList<Long>();
+
+		UploadSink(IdentityExchangeClient client, LoyaltySession session, String keyId)
+		{
+			mClient = client;
+			mSession = session;
+			mKeyId = keyId;
+		}
+
+		@Override
+		public void onContactChanged(long contactId, List<String> emailHashes, List<String> phoneHashes)
+		{
+			mChanged.add(new IdentityExchangeClient.ContactHashes(contactId, emailHashes, phoneHashes));
+		}
+
+		@Override
+		public void onContactRemoved(long contactId)
+		{
+			mRemoved.add(contactId);
+		}
+
+		@Override
+		public void flush() throws IOException
+		{
+			mClient.uploadContacts(mSession, mKeyId, mChanged, mRemoved);
+			mChanged.clear();
+			mRemoved.clear();
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package com.asaanloyalty.asaan.contacts;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.asaanloyalty.asaan.dao.DaoSessionProvider;
+import com.asaanloyalty.asaan.dao.ImportedContact;
+import com.asaanloyalty.asaan.dao.ImportedContactDao;
+
+/**
+ * Keeps the imported contacts in the IMPORTED_CONTACT table.
+ */
+class ImportedContactStore implements ContactImporter.Store
+{
+	private static final String SELECT_IDS = "SELECT " + ImportedContactDao.Properties.Id.columnName + " FROM "
+			+ ImportedContactDao.TABLENAME;
+
+	private final Context mContext;
+
+	ImportedContactStore(Context context)
+	{
+		mContext = context.getApplicationContext();
+	}
+
+	@Override
+	public Map<Long, ImportedContact> load(long[] ids, int count)
+	{
+		List<Long> keys = new ArrayList<Long>(count);
+		for (int i = 0; i < count; i++)
+			keys.add(ids[i]);
+		Map<Long, ImportedContact> stored = new HashMap<Long, ImportedContact>(count * 2);
+		for (ImportedContact contact : dao().queryBuilder().where(ImportedContactDao.Properties.Id.in(keys)).list())
+			stored.put(contact.getId(), contact);
+		return stored;
+	}
+
+	@Override
+	public List<Long> loadIds()
+	{
+		List<Long> ids = new ArrayList<Long>();
+		Cursor cursor = dao().getDatabase().rawQuery(SELECT_IDS, null);
+		try
+		{
+			while (cursor.moveToNext())
+				ids.add(cursor.getLong(0));
+		} finally
+		{
+			cursor.close();
+		}
+		return ids;
+	}
+
+	@Override
+	public void write(List<ImportedContact> changed, List<Long> removed)
+	{
+		ImportedContactDao dao = dao();
+		SQLiteDatabase db = dao.getDatabase();
+		db.beginTransaction();
+		try
+		{
+			for (ImportedContact contact : changed)
+				dao.insertOrReplace(contact);
+			for (Long id : removed)
+				dao.deleteByKey(id);
+			db.setTransactionSuccessful();
+		} finally
+		{
+			db.endTransaction();
+		}
+	}
+
+	@Override
+	public void clear()
+	{
+		dao().deleteAll();
+	}
+
+	private ImportedContactDao dao()
+	{
+		return DaoSessionProvider.getSession(mContext).getImportedContactDao();
+	}
+}
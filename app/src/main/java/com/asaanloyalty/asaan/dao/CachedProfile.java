@@ -0,0 +1,143 @@
+package com.asaanloyalty.asaan.dao;
+
+// Hand-maintained in the layout greenDAO generates; there is no generator
+// project. A new entity also needs registering in DaoMaster and DaoSession.
+/**
+ * Entity mapped to table CACHED_PROFILE.
+ */
+public class CachedProfile
+{
+	private Long id;
+	private String primaryEmail;
+	private String primaryName;
+	private String primaryPhoneNumber;
+	private String possibleEmails;
+	private String possibleNames;
+	private String possiblePhoneNumbers;
+	private String photoUri;
+	private long updatedAt;
+	private String fingerprint;
+
+	public CachedProfile()
+	{
+	}
+
+	public CachedProfile(Long id)
+	{
+		this.id = id;
+	}
+
+	public CachedProfile(Long id, String primaryEmail, String primaryName, String primaryPhoneNumber, String possibleEmails, String possibleNames, String possiblePhoneNumbers, String photoUri, long updatedAt, String fingerprint)
+	{
+		this.id = id;
+		this.primaryEmail = primaryEmail;
+		this.primaryName = primaryName;
+		this.primaryPhoneNumber = primaryPhoneNumber;
+		this.possibleEmails = possibleEmails;
+		this.possibleNames = possibleNames;
+		this.possiblePhoneNumbers = possiblePhoneNumbers;
+		this.photoUri = photoUri;
+		this.updatedAt = updatedAt;
+		this.fingerprint = fingerprint;
+	}
+
+	public Long getId()
+	{
+		return id;
+	}
+
+	public void setId(Long id)
+	{
+		this.id = id;
+	}
+
+	public String getPrimaryEmail()
+	{
+		return primaryEmail;
+	}
+
+	public void setPrimaryEmail(String primaryEmail)
+	{
+		this.primaryEmail = primaryEmail;
+	}
+
+	public String getPrimaryName()
+	{
+		return primaryName;
+	}
+
+	public void setPrimaryName(String primaryName)
+	{
+		this.primaryName = primaryName;
+	}
+
+	public String getPrimaryPhoneNumber()
+	{
+		return primaryPhoneNumber;
+	}
+
+	public void setPrimaryPhoneNumber(String primaryPhoneNumber)
+	{
+		this.primaryPhoneNumber = primaryPhoneNumber;
+	}
+
+	public String getPossibleEmails()
+	{
+		return possibleEmails;
+	}
+
+	public void setPossibleEmails(String possibleEmails)
+	{
+		this.possibleEmails = possibleEmails;
+	}
+
+	public String getPossibleNames()
+	{
+		return possibleNames;
+	}
+
+	public void setPossibleNames(String possibleNames)
+	{
+		this.possibleNames = possibleNames;
+	}
+
+	public String getPossiblePhoneNumbers()
+	{
+		return possiblePhoneNumbers;
+	}
+
+	public void setPossiblePhoneNumbers(String possiblePhoneNumbers)
+	{
+		this.possiblePhoneNumbers = possiblePhoneNumbers;
+	}
+
+	public String getPhotoUri()
+	{
+		return photoUri;
+	}
+
+	public void setPhotoUri(String photoUri)
+	{
+		this.photoUri = photoUri;
+	}
+
+	public long getUpdatedAt()
+	{
+		return updatedAt;
+	}
+
+	public void setUpdatedAt(long updatedAt)
+	{
+		this.updatedAt = updatedAt;
+	}
+
+	public String getFingerprint()
+	{
+		return fingerprint;
+	}
+
+	public void setFingerprint(String fingerprint)
+	{
+		this.fingerprint = fingerprint;
+	}
+}
@@ -0,0 +1,206 @@
+package com.asaanloyalty.asaan.dao;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import de.greenrobot.dao.AbstractDao;
+import de.greenrobot.dao.Property;
+import de.greenrobot.dao.internal.DaoConfig;
+
+import com.asaanloyalty.asaan.dao.CachedProfile;
+
+// Hand-maintained in the layout greenDAO generates; there is no generator
+// project. A new entity also needs registering in DaoMaster and DaoSession.
+/**
+ * DAO for table CACHED_PROFILE.
+ */
+public class CachedProfileDao extends AbstractDao<CachedProfile, Long>
+{
+	public static final String TABLENAME = "CACHED_PROFILE";
+
+	/**
+	 * Properties of entity CachedProfile.<br/>
+	 * Can be used for QueryBuilder and for referencing column names.
+	 */
+	public static class Properties
+	{
+		public final static Property Id = new Property(0, Long.class, "id", true, "_id");
+		public final static Property PrimaryEmail = new Property(1, String.class, "primaryEmail", false, "PRIMARY_EMAIL");
+		public final static Property PrimaryName = new Property(2, String.class, "primaryName", false, "PRIMARY_NAME");
+		public final static Property PrimaryPhoneNumber = new Property(3, String.class, "primaryPhoneNumber", false, "PRIMARY_PHONE_NUMBER");
+		public final static Property PossibleEmails = new Property(4, String.class, "possibleEmails", false, "POSSIBLE_EMAILS");
+		public final static Property PossibleNames = new Property(5, String.class, "possibleNames", false, "POSSIBLE_NAMES");
+		public final static Property PossiblePhoneNumbers = new Property(6, String.class, "possiblePhoneNumbers", false, "POSSIBLE_PHONE_NUMBERS");
+		public final static Property PhotoUri = new Property(7, String.class, "photoUri", false, "PHOTO_URI");
+		public final static Property UpdatedAt = new Property(8, long.class, "updatedAt", false, "UPDATED_AT");
+		public final static Property Fingerprint = new Property(9, String.class, "fingerprint", false, "FINGERPRINT");
+	}
+
+	public CachedProfileDao(DaoConfig config)
+	{
+		super(config);
+	}
+
+	public CachedProfileDao(DaoConfig config, DaoSession daoSession)
+	{
+		super(config, daoSession);
+	}
+
+	/** Creates the underlying database table. */
+	public static void createTable(SQLiteDatabase db, boolean ifNotExists)
+	{
+		String constraint = ifNotExists ? "IF NOT EXISTS " : "";
+		db.execSQL("CREATE TABLE " + constraint + "'CACHED_PROFILE' (" + //
+				"'_id' INTEGER PRIMARY KEY ," + // 0: id
+				"'PRIMARY_EMAIL' TEXT," + // 1: primaryEmail
+				"'PRIMARY_NAME' TEXT," + // 2: primaryName
+				"'PRIMARY_PHONE_NUMBER' TEXT," + // 3: primaryPhoneNumber
+				"'POSSIBLE_EMAILS' TEXT," + // 4: possibleEmails
+				"'POSSIBLE_NAMES' TEXT," + // 5: possibleNames
+				"'POSSIBLE_PHONE_NUMBERS' TEXT," + // 6: possiblePhoneNumbers
+				"'PHOTO_URI' TEXT," + // 7: photoUri
+				"'UPDATED_AT' INTEGER NOT NULL ," + // 8: updatedAt
+				"'FINGERPRINT' TEXT);"); // 9: fingerprint
+	}
+
+	/** Drops the underlying database table. */
+	public static void dropTable(SQLiteDatabase db, boolean ifExists)
+	{
+		String sql = "DROP TABLE " + (ifExists ? "IF EXISTS " : "") + "'CACHED_PROFILE'";
+		db.execSQL(sql);
+	}
+
+	/** @inheritdoc */
+	@Override
+	protected void bindValues(SQLiteStatement stmt, CachedProfile entity)
+	{
+		stmt.clearBindings();
+
+		Long id = entity.getId();
+		if (id != null)
+		{
+			stmt.bindLong(1, id);
+		}
+
+		String primaryEmail = entity.getPrimaryEmail();
+		if (primaryEmail != null)
+		{
+			stmt.bindString(2, primaryEmail);
+		}
+
+		String primaryName = entity.getPrimaryName();
+		if (primaryName != null)
+		{
+			stmt.bindString(3, primaryName);
+		}
+
+		String primaryPhoneNumber = entity.getPrimaryPhoneNumber();
+		if (primaryPhoneNumber != null)
+		{
+			stmt.bindString(4, primaryPhoneNumber);
+		}
+
+		String possibleEmails = entity.getPossibleEmails();
+		if (possibleEmails != null)
+		{
+			stmt.bindString(5, possibleEmails);
+		}
+
+		String possibleNames = entity.getPossibleNames();
+		if (possibleNames != null)
+		{
+			stmt.bindString(6, possibleNames);
+		}
+
+		String possiblePhoneNumbers = entity.getPossiblePhoneNumbers();
+		if (possiblePhoneNumbers != null)
+		{
+			stmt.bindString(7, possiblePhoneNumbers);
+		}
+
+		String photoUri = entity.getPhotoUri();
+		if (photoUri != null)
+		{
+			stmt.bindString(8, photoUri);
+		}
+		stmt.bindLong(9, entity.getUpdatedAt());
+
+		String fingerprint = entity.getFingerprint();
+		if (fingerprint != null)
+		{
+			stmt.bindString(10, fingerprint);
+		}
+	}
+
+	/** @inheritdoc */
+	@Override
+	public Long readKey(Cursor cursor, int offset)
+	{
+		return cursor.isNull(offset + 0) ? null : cursor.getLong(offset + 0);
+	}
+
+	/** @inheritdoc */
+	@Override
+	public CachedProfile readEntity(Cursor cursor, int offset)
+	{
+		CachedProfile entity = new CachedProfile( //
+			cursor.isNull(offset + 0) ? null : cursor.getLong(offset + 0), // id
+			cursor.isNull(offset + 1) ? null : cursor.getString(offset + 1), // primaryEmail
+			cursor.isNull(offset + 2) ? null : cursor.getString(offset + 2), // primaryName
+			cursor.isNull(offset + 3) ? null : cursor.getString(offset + 3), // primaryPhoneNumber
+			cursor.isNull(offset + 4) ? null : cursor.getString(offset + 4), // possibleEmails
+			cursor.isNull(offset + 5) ? null : cursor.getString(offset + 5), // possibleNames
+			cursor.isNull(offset + 6) ? null : cursor.getString(offset + 6), // possiblePhoneNumbers
+			cursor.isNull(offset + 7) ? null : cursor.getString(offset + 7), // photoUri
+			cursor.getLong(offset + 8), // updatedAt
+			cursor.isNull(offset + 9) ? null : cursor.getString(offset + 9) // fingerprint
+		);
+		return entity;
+	}
+
+	/** @inheritdoc */
+	@Override
+	public void readEntity(Cursor cursor, CachedProfile entity, int offset)
+	{
+		entity.setId(cursor.isNull(offset + 0) ? null : cursor.getLong(offset + 0));
+		entity.setPrimaryEmail(cursor.isNull(offset + 1) ? null : cursor.getString(offset + 1));
+		entity.setPrimaryName(cursor.isNull(offset + 2) ? null : cursor.getString(offset + 2));
+		entity.setPrimaryPhoneNumber(cursor.isNull(offset + 3) ? null : cursor.getString(offset + 3));
+		entity.setPossibleEmails(cursor.isNull(offset + 4) ? null : cursor.getString(offset + 4));
+		entity.setPossibleNames(cursor.isNull(offset + 5) ? null : cursor.getString(offset + 5));
+		entity.setPossiblePhoneNumbers(cursor.isNull(offset + 6) ? null : cursor.getString(offset + 6));
+		entity.setPhotoUri(cursor.isNull(offset + 7) ? null : cursor.getString(offset + 7));
+		entity.setUpdatedAt(cursor.getLong(offset + 8));
+		entity.setFingerprint(cursor.isNull(offset + 9) ? null : cursor.getString(offset + 9));
+	 }
+
+	/** @inheritdoc */
+	@Override
+	protected Long updateKeyAfterInsert(CachedProfile entity, long rowId)
+	{
+		entity.setId(rowId);
+		return rowId;
+	}
+
+	/** @inheritdoc */
+	@Override
+	public Long getKey(CachedProfile entity)
+	{
+		if (entity != null)
+		{
+			return entity.getId();
+		}
+		else
+		{
+			return null;
+		}
+	}
+
+	/** @inheritdoc */
+	@Override
+	protected boolean isEntityUpdateable()
+	{
+		return true;
+	}
+}
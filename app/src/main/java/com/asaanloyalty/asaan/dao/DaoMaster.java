@@ -0,0 +1,101 @@
+package com.asaanloyalty.asaan.dao;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDatabase.CursorFactory;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+import de.greenrobot.dao.AbstractDaoMaster;
+import de.greenrobot.dao.identityscope.IdentityScopeType;
+
+import com.asaanloyalty.asaan.dao.CachedProfileDao;
+import com.asaanloyalty.asaan.dao.OutboxEntryDao;
+import com.asaanloyalty.asaan.dao.LocalUserDao;
+import com.asaanloyalty.asaan.dao.LinkedIdentityDao;
+import com.asaanloyalty.asaan.dao.ImportedContactDao;
+import com.asaanloyalty.asaan.dao.FacebookFriendDao;
+
+// Hand-maintained in the layout greenDAO generates; there is no generator
+// project. Register each new DAO here and in DaoSession, and bump SCHEMA_VERSION.
+/**
+ * Master of DAO (schema version 6): knows all DAOs.
+ */
+public class DaoMaster extends AbstractDaoMaster
+{
+	public static final int SCHEMA_VERSION = 6;
+
+	/** Creates underlying database table using DAOs. */
+	public static void createAllTables(SQLiteDatabase db, boolean ifNotExists)
+	{
+		CachedProfileDao.createTable(db, ifNotExists);
+		OutboxEntryDao.createTable(db, ifNotExists);
+		LocalUserDao.createTable(db, ifNotExists);
+		LinkedIdentityDao.createTable(db, ifNotExists);
+		ImportedContactDao.createTable(db, ifNotExists);
+		FacebookFriendDao.createTable(db, ifNotExists);
+	}
+
+	/** Drops underlying database table using DAOs. */
+	public static void dropAllTables(SQLiteDatabase db, boolean ifExists)
+	{
+		CachedProfileDao.dropTable(db, ifExists);
+		OutboxEntryDao.dropTable(db, ifExists);
+		LocalUserDao.dropTable(db, ifExists);
+		LinkedIdentityDao.dropTable(db, ifExists);
+		ImportedContactDao.dropTable(db, ifExists);
+		FacebookFriendDao.dropTable(db, ifExists);
+	}
+
+	public static abstract class OpenHelper extends SQLiteOpenHelper
+	{
+		public OpenHelper(Context context, String name, CursorFactory factory)
+		{
+			super(context, name, factory, SCHEMA_VERSION);
+		}
+
+		@Override
+		public void onCreate(SQLiteDatabase db)
+		{
+			Log.i("greenDAO", "Creating tables for schema version " + SCHEMA_VERSION);
+			createAllTables(db, false);
+		}
+	}
+
+	/** WARNING: Drops all table on Upgrade! Use only during development. */
+	public static class DevOpenHelper extends OpenHelper
+	{
+		public DevOpenHelper(Context context, String name, CursorFactory factory)
+		{
+			super(context, name, factory);
+		}
+
+		@Override
+		public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion)
+		{
+			Log.i("greenDAO", "Upgrading schema from version " + oldVersion + " to " + newVersion + " by dropping all tables");
+			dropAllTables(db, true);
+			onCreate(db);
+		}
+	}
+
+	public DaoMaster(SQLiteDatabase db)
+	{
+		super(db, SCHEMA_VERSION);
+		registerDaoClass(CachedProfileDao.class);
+		registerDaoClass(OutboxEntryDao.class);
+		registerDaoClass(LocalUserDao.class);
+		registerDaoClass(LinkedIdentityDao.class);
+		registerDaoClass(ImportedContactDao.class);
+		registerDaoClass(FacebookFriendDao.class);
+	}
+
+	public DaoSession newSession()
+	{
+		return new DaoSession(db, IdentityScopeType.Session, daoConfigMap);
+	}
+
+	public DaoSession newSession(IdentityScopeType type)
+	{
+		return new DaoSession(db, type, daoConfigMap);
+	}
+}
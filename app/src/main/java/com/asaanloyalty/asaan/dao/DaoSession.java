@@ -0,0 +1,127 @@
+package com.asaanloyalty.asaan.dao;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.Map;
+
+import de.greenrobot.dao.AbstractDao;
+import de.greenrobot.dao.AbstractDaoSession;
+import de.greenrobot.dao.identityscope.IdentityScopeType;
+import de.greenrobot.dao.internal.DaoConfig;
+
+import com.asaanloyalty.asaan.dao.CachedProfile;
+import com.asaanloyalty.asaan.dao.OutboxEntry;
+import com.asaanloyalty.asaan.dao.LocalUser;
+import com.asaanloyalty.asaan.dao.LinkedIdentity;
+import com.asaanloyalty.asaan.dao.ImportedContact;
+import com.asaanloyalty.asaan.dao.FacebookFriend;
+
+import com.asaanloyalty.asaan.dao.CachedProfileDao;
+import com.asaanloyalty.asaan.dao.OutboxEntryDao;
+import com.asaanloyalty.asaan.dao.LocalUserDao;
+import com.asaanloyalty.asaan.dao.LinkedIdentityDao;
+import com.asaanloyalty.asaan.dao.ImportedContactDao;
+import com.asaanloyalty.asaan.dao.FacebookFriendDao;
+
+// Hand-maintained in the layout greenDAO generates; there is no generator
+// project. Register each new DAO here and in DaoMaster.
+
+/**
+ * {@inheritDoc}
+ *
+ * @see de.greenrobot.dao.AbstractDaoSession
+ */
+public class DaoSession extends AbstractDaoSession
+{
+	private final DaoConfig cachedProfileDaoConfig;
+	private final DaoConfig outboxEntryDaoConfig;
+	private final DaoConfig localUserDaoConfig;
+	private final DaoConfig linkedIdentityDaoConfig;
+	private final DaoConfig importedContactDaoConfig;
+	private final DaoConfig facebookFriendDaoConfig;
+
+	private final CachedProfileDao cachedProfileDao;
+	private final OutboxEntryDao outboxEntryDao;
+	private final LocalUserDao localUserDao;
+	private final LinkedIdentityDao linkedIdentityDao;
+	private final ImportedContactDao importedContactDao;
+	private final FacebookFriendDao facebookFriendDao;
+
+	public DaoSession(SQLiteDatabase db, IdentityScopeType type, Map<Class<? extends AbstractDao<?, ?>>, DaoConfig>
+			daoConfigMap)
+			{
+		super(db);
+
+		cachedProfileDaoConfig = daoConfigMap.get(CachedProfileDao.class).clone();
+		cachedProfileDaoConfig.initIdentityScope(type);
+
+		outboxEntryDaoConfig = daoConfigMap.get(OutboxEntryDao.class).clone();
+		outboxEntryDaoConfig.initIdentityScope(type);
+
+		localUserDaoConfig = daoConfigMap.get(LocalUserDao.class).clone();
+		localUserDaoConfig.initIdentityScope(type);
+
+		linkedIdentityDaoConfig = daoConfigMap.get(LinkedIdentityDao.class).clone();
+		linkedIdentityDaoConfig.initIdentityScope(type);
+
+		importedContactDaoConfig = daoConfigMap.get(ImportedContactDao.class).clone();
+		importedContactDaoConfig.initIdentityScope(type);
+
+		facebookFriendDaoConfig = daoConfigMap.get(FacebookFriendDao.class).clone();
+		facebookFriendDaoConfig.initIdentityScope(type);
+
+		cachedProfileDao = new CachedProfileDao(cachedProfileDaoConfig, this);
+		outboxEntryDao = new OutboxEntryDao(outboxEntryDaoConfig, this);
+		localUserDao = new LocalUserDao(localUserDaoConfig, this);
+		linkedIdentityDao = new LinkedIdentityDao(linkedIdentityDaoConfig, this);
+		importedContactDao = new ImportedContactDao(importedContactDaoConfig, this);
+		facebookFriendDao = new FacebookFriendDao(facebookFriendDaoConfig, this);
+
+		registerDao(CachedProfile.class, cachedProfileDao);
+		registerDao(OutboxEntry.class, outboxEntryDao);
+		registerDao(LocalUser.class, localUserDao);
+		registerDao(LinkedIdentity.class, linkedIdentityDao);
+		registerDao(ImportedContact.class, importedContactDao);
+		registerDao(FacebookFriend.class, facebookFriendDao);
+	}
+
+	public void clear()
+	{
+		cachedProfileDaoConfig.getIdentityScope().clear();
+		outboxEntryDaoConfig.getIdentityScope().clear();
+		localUserDaoConfig.getIdentityScope().clear();
+		linkedIdentityDaoConfig.getIdentityScope().clear();
+		importedContactDaoConfig.getIdentityScope().clear();
+		facebookFriendDaoConfig.getIdentityScope().clear();
+	}
+
+	public CachedProfileDao getCachedProfileDao()
+	{
+		return cachedProfileDao;
+	}
+
+	public OutboxEntryDao getOutboxEntryDao()
+	{
+		return outboxEntryDao;
+	}
+
+	public LocalUserDao getLocalUserDao()
+	{
+		return localUserDao;
+	}
+
+	public LinkedIdentityDao getLinkedIdentityDao()
+	{
+		return linkedIdentityDao;
+	}
+
+	public ImportedContactDao getImportedContactDao()
+	{
+		return importedContactDao;
+	}
+
+	public FacebookFriendDao getFacebookFriendDao()
+	{
+		return facebookFriendDao;
+	}
+}
@@ -0,0 +1,60 @@
+package com.asaanloyalty.asaan.dao;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+/**
+ * Owns the process-wide greenDAO session for the app's local database.
+ */
+public class DaoSessionProvider
+{
+	/** Name of the SQLite database file */
+	private static final String DATABASE_NAME = "asaan-db";
+
+	private static DaoSession sSession;
+
+	/**
+	 * Returns the shared session, opening the database on first use. Opening
+	 * touches the disk, so the first call should not be made from the main
+	 * thread.
+	 * 
+	 * @param context
+	 *            any context; only its application context is retained
+	 * @return the shared session
+	 */
+	public static synchronized DaoSession getSession(Context context)
+	{
+		if (sSession == null)
+		{
+			DaoMaster.OpenHelper helper = new UpgradeOpenHelper(context.getApplicationContext());
+			SQLiteDatabase db = helper.getWritableDatabase();
+			sSession = new DaoMaster(db).newSession();
+		}
+		return sSession;
+	}
+
+	/**
+	 * Upgrades by creating the tables added since the installed version.
+	 * Unlike {@link DaoMaster.DevOpenHelper} it never drops tables, so queued
+	 * outbox entries survive an app update. Schema changes other than new
+	 * tables or indices need an explicit step here.
+	 */
+	private static class UpgradeOpenHelper extends DaoMaster.OpenHelper
+	{
+		UpgradeOpenHelper(Context context)
+		{
+			super(context, DATABASE_NAME, null);
+		}
+
+		@Override
+		public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion)
+		{
+			Log.i("greenDAO", "Upgrading schema from version " + oldVersion + " to " + newVersion);
+			if (oldVersion < 6)
+				db.execSQL("ALTER TABLE " + CachedProfileDao.TABLENAME + " ADD COLUMN "
+						+ CachedProfileDao.Properties.Fingerprint.columnName + " TEXT");
+			DaoMaster.createAllTables(db, true);
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package com.asaanloyalty.asaan.dao;
+
+// Hand-maintained in the layout greenDAO generates; there is no generator
+// project. A new entity also needs registering in DaoMaster and DaoSession.
+/**
+ * Entity mapped to table FACEBOOK_FRIEND.
+ */
+public class FacebookFriend
+{
+	private Long id;
+	/** Not-null value. */
+	private String facebookId;
+	private String name;
+	private boolean installed;
+	private int page;
+	private long syncedAt;
+
+	public FacebookFriend()
+	{
+	}
+
+	public FacebookFriend(Long id)
+	{
+		this.id = id;
+	}
+
+	public FacebookFriend(Long id, String facebookId, String name, boolean installed, int page, long syncedAt)
+	{
+		this.id = id;
+		this.facebookId = facebookId;
+		this.name = name;
+		this.installed = installed;
+		this.page = page;
+		this.syncedAt = syncedAt;
+	}
+
+	public Long getId()
+	{
+		return id;
+	}
+
+	public void setId(Long id)
+	{
+		this.id = id;
+	}
+
+	/** Not-null value. */
+	public String getFacebookId()
+	{
+		return facebookId;
+	}
+
+	/** Not-null value; ensure this value is available before it is saved to the database. */
+	public void setFacebookId(String facebookId)
+	{
+		this.facebookId = facebookId;
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public void setName(String name)
+	{
+		this.name = name;
+	}
+
+	public boolean getInstalled()
+	{
+		return installed;
+	}
+
+	public void setInstalled(boolean installed)
+	{
+		this.installed = installed;
+	}
+
+	public int getPage()
+	{
+		return page;
+	}
+
+	public void setPage(int page)
+	{
+		this.page = page;
+	}
+
+	public long getSyncedAt()
+	{
+		return syncedAt;
+	}
+
+	public void setSyncedAt(long syncedAt)
+	{
+		this.syncedAt = syncedAt;
+	}
+}
@@ -0,0 +1,158 @@
+package com.asaanloyalty.asaan.dao;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import de.greenrobot.dao.AbstractDao;
+import de.greenrobot.dao.Property;
+import de.greenrobot.dao.internal.DaoConfig;
+
+import com.asaanloyalty.asaan.dao.FacebookFriend;
+
+// Hand-maintained in the layout greenDAO generates; there is no generator
+// project. A new entity also needs registering in DaoMaster and DaoSession.
+/**
+ * DAO for table FACEBOOK_FRIEND.
+ */
+public class FacebookFriendDao extends AbstractDao<FacebookFriend, Long>
+{
+	public static final String TABLENAME = "FACEBOOK_FRIEND";
+
+	/**
+	 * Properties of entity FacebookFriend.<br/>
+	 * Can be used for QueryBuilder and for referencing column names.
+	 */
+	public static class Properties
+	{
+		public final static Property Id = new Property(0, Long.class, "id", true, "_id");
+		public final static Property FacebookId = new Property(1, String.class, "facebookId", false, "FACEBOOK_ID");
+		public final static Property Name = new Property(2, String.class, "name", false, "NAME");
+		public final static Property Installed = new Property(3, boolean.class, "installed", false, "INSTALLED");
+		public final static Property Page = new Property(4, int.class, "page", false, "PAGE");
+		public final static Property SyncedAt = new Property(5, long.class, "syncedAt", false, "SYNCED_AT");
+	}
+
+	public FacebookFriendDao(DaoConfig config)
+	{
+		super(config);
+	}
+
+	public FacebookFriendDao(DaoConfig config, DaoSession daoSession)
+	{
+		super(config, daoSession);
+	}
+
+	/** Creates the underlying database table. */
+	public static void createTable(SQLiteDatabase db, boolean ifNotExists)
+	{
+		String constraint = ifNotExists ? "IF NOT EXISTS " : "";
+		db.execSQL("CREATE TABLE " + constraint + "'FACEBOOK_FRIEND' (" + //
+				"'_id' INTEGER PRIMARY KEY ," + // 0: id
+				"'FACEBOOK_ID' TEXT NOT NULL ," + // 1: facebookId
+				"'NAME' TEXT," + // 2: name
+				"'INSTALLED' INTEGER NOT NULL ," + // 3: installed
+				"'PAGE' INTEGER NOT NULL ," + // 4: page
+				"'SYNCED_AT' INTEGER NOT NULL );"); // 5: syncedAt
+		// Add Indexes
+		db.execSQL("CREATE UNIQUE INDEX " + constraint + "IDX_FACEBOOK_FRIEND_FACEBOOK_ID ON FACEBOOK_FRIEND" +
+				" (FACEBOOK_ID);");
+		db.execSQL("CREATE INDEX " + constraint + "IDX_FACEBOOK_FRIEND_INSTALLED ON FACEBOOK_FRIEND" +
+				" (INSTALLED);");
+		db.execSQL("CREATE INDEX " + constraint + "IDX_FACEBOOK_FRIEND_PAGE ON FACEBOOK_FRIEND" +
+				" (PAGE);");
+	}
+
+	/** Drops the underlying database table. */
+	public static void dropTable(SQLiteDatabase db, boolean ifExists)
+	{
+		String sql = "DROP TABLE " + (ifExists ? "IF EXISTS " : "") + "'FACEBOOK_FRIEND'";
+		db.execSQL(sql);
+	}
+
+	/** @inheritdoc */
+	@Override
+	protected void bindValues(SQLiteStatement stmt, FacebookFriend entity)
+	{
+		stmt.clearBindings();
+
+		Long id = entity.getId();
+		if (id != null)
+		{
+			stmt.bindLong(1, id);
+		}
+		stmt.bindString(2, entity.getFacebookId());
+
+		String name = entity.getName();
+		if (name != null)
+		{
+			stmt.bindString(3, name);
+		}
+		stmt.bindLong(4, entity.getInstalled() ? 1l: 0l);
+		stmt.bindLong(5, entity.getPage());
+		stmt.bindLong(6, entity.getSyncedAt());
+	}
+
+	/** @inheritdoc */
+	@Override
+	public Long readKey(Cursor cursor, int offset)
+	{
+		return cursor.isNull(offset + 0) ? null : cursor.getLong(offset + 0);
+	}
+
+	/** @inheritdoc */
+	@Override
+	public FacebookFriend readEntity(Cursor cursor, int offset)
+	{
+		FacebookFriend entity = new FacebookFriend( //
+			cursor.isNull(offset + 0) ? null : cursor.getLong(offset + 0), // id
+			cursor.getString(offset + 1), // facebookId
+			cursor.isNull(offset + 2) ? null : cursor.getString(offset + 2), // name
+			cursor.getShort(offset + 3) != 0, // installed
+			cursor.getInt(offset + 4), // page
+			cursor.getLong(offset + 5) // syncedAt
+		);
+		return entity;
+	}
+
+	/** @inheritdoc */
+	@Override
+	public void readEntity(Cursor cursor, FacebookFriend entity, int offset)
+	{
+		entity.setId(cursor.isNull(offset + 0) ? null : cursor.getLong(offset + 0));
+		entity.setFacebookId(cursor.getString(offset + 1));
+		entity.setName(cursor.isNull(offset + 2) ? null : cursor.getString(offset + 2));
+		entity.setInstalled(cursor.getShort(offset + 3) != 0);
+		entity.setPage(cursor.getInt(offset + 4));
+		entity.setSyncedAt(cursor.getLong(offset + 5));
+	 }
+
+	/** @inheritdoc */
+	@Override
+	protected Long updateKeyAfterInsert(FacebookFriend entity, long rowId)
+	{
+		entity.setId(rowId);
+		return rowId;
+	}
+
+	/** @inheritdoc */
+	@Override
+	public Long getKey(FacebookFriend entity)
+	{
+		if (entity != null)
+		{
+			return entity.getId();
+		}
+		else
+		{
+			return null;
+		}
+	}
+
+	/** @inheritdoc */
+	@Override
+	protected boolean isEntityUpdateable()
+	{
+		return true;
+	}
+}
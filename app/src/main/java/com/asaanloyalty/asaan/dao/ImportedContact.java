@@ -0,0 +1,71 @@
+package com.asaanloyalty.asaan.dao;
+
+// Hand-maintained in the layout greenDAO generates; there is no generator
+// project. A new entity also needs registering in DaoMaster and DaoSession.
+/**
+ * Entity mapped to table IMPORTED_CONTACT.
+ */
+public class ImportedContact
+{
+	private Long id;
+	private long contactUpdatedAt;
+	private String emailHashes;
+	private String phoneHashes;
+
+	public ImportedContact()
+	{
+	}
+
+	public ImportedContact(Long id)
+	{
+		this.id = id;
+	}
+
+	public ImportedContact(Long id, long contactUpdatedAt, String emailHashes, String phoneHashes)
+	{
+		this.id = id;
+		this.contactUpdatedAt = contactUpdatedAt;
+		this.emailHashes = emailHashes;
+		this.phoneHashes = phoneHashes;
+	}
+
+	public Long getId()
+	{
+		return id;
+	}
+
+	public void setId(Long id)
+	{
+		this.id = id;
+	}
+
+	public long getContactUpdatedAt()
+	{
+		return contactUpdatedAt;
+	}
+
+	public void setContactUpdatedAt(long contactUpdatedAt)
+	{
+		this.contactUpdatedAt = contactUpdatedAt;
+	}
+
+	public String getEmailHashes()
+	{
+		return emailHashes;
+	}
+
+	public void setEmailHashes(String emailHashes)
+	{
+		this.emailHashes = emailHashes;
+	}
+
+	public String getPhoneHashes()
+	{
+		return phoneHashes;
+	}
+
+	public void setPhoneHashes(String phoneHashes)
+	{
+		this.phoneHashes = phoneHashes;
+	}
+}
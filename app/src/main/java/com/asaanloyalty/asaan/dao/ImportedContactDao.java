@@ -0,0 +1,146 @@
+package com.asaanloyalty.asaan.dao;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import de.greenrobot.dao.AbstractDao;
+import de.greenrobot.dao.Property;
+import de.greenrobot.dao.internal.DaoConfig;
+
+import com.asaanloyalty.asaan.dao.ImportedContact;
+
+// Hand-maintained in the layout greenDAO generates; there is no generator
+// project. A new entity also needs registering in DaoMaster and DaoSession.
+/**
+ * DAO for table IMPORTED_CONTACT.
+ */
+public class ImportedContactDao extends AbstractDao<ImportedContact, Long>
+{
+	public static final String TABLENAME = "IMPORTED_CONTACT";
+
+	/**
+	 * Properties of entity ImportedContact.<br/>
+	 * Can be used for QueryBuilder and for referencing column names.
+	 */
+	public static class Properties
+	{
+		public final static Property Id = new Property(0, Long.class, "id", true, "_id");
+		public final static Property ContactUpdatedAt = new Property(1, long.class, "contactUpdatedAt", false, "CONTACT_UPDATED_AT");
+		public final static Property EmailHashes = new Property(2, String.class, "emailHashes", false, "EMAIL_HASHES");
+		public final static Property PhoneHashes = new Property(3, String.class, "phoneHashes", false, "PHONE_HASHES");
+	}
+
+	public ImportedContactDao(DaoConfig config)
+	{
+		super(config);
+	}
+
+	public ImportedContactDao(DaoConfig config, DaoSession daoSession)
+	{
+		super(config, daoSession);
+	}
+
+	/** Creates the underlying database table. */
+	public static void createTable(SQLiteDatabase db, boolean ifNotExists)
+	{
+		String constraint = ifNotExists ? "IF NOT EXISTS " : "";
+		db.execSQL("CREATE TABLE " + constraint + "'IMPORTED_CONTACT' (" + //
+				"'_id' INTEGER PRIMARY KEY ," + // 0: id
+				"'CONTACT_UPDATED_AT' INTEGER NOT NULL ," + // 1: contactUpdatedAt
+				"'EMAIL_HASHES' TEXT," + // 2: emailHashes
+				"'PHONE_HASHES' TEXT);"); // 3: phoneHashes
+	}
+
+	/** Drops the underlying database table. */
+	public static void dropTable(SQLiteDatabase db, boolean ifExists)
+	{
+		String sql = "DROP TABLE " + (ifExists ? "IF EXISTS " : "") + "'IMPORTED_CONTACT'";
+		db.execSQL(sql);
+	}
+
+	/** @inheritdoc */
+	@Override
+	protected void bindValues(SQLiteStatement stmt, ImportedContact entity)
+	{
+		stmt.clearBindings();
+
+		Long id = entity.getId();
+		if (id != null)
+		{
+			stmt.bindLong(1, id);
+		}
+		stmt.bindLong(2, entity.getContactUpdatedAt());
+
+		String emailHashes = entity.getEmailHashes();
+		if (emailHashes != null)
+		{
+			stmt.bindString(3, emailHashes);
+		}
+
+		String phoneHashes = entity.getPhoneHashes();
+		if (phoneHashes != null)
+		{
+			stmt.bindString(4, phoneHashes);
+		}
+	}
+
+	/** @inheritdoc */
+	@Override
+	public Long readKey(Cursor cursor, int offset)
+	{
+		return cursor.isNull(offset + 0) ? null : cursor.getLong(offset + 0);
+	}
+
+	/** @inheritdoc */
+	@Override
+	public ImportedContact readEntity(Cursor cursor, int offset)
+	{
+		ImportedContact entity = new ImportedContact( //
+			cursor.isNull(offset + 0) ? null : cursor.getLong(offset + 0), // id
+			cursor.getLong(offset + 1), // contactUpdatedAt
+			cursor.isNull(offset + 2) ? null : cursor.getString(offset + 2), // emailHashes
+			cursor.isNull(offset + 3) ? null : cursor.getString(offset + 3) // phoneHashes
+		);
+		return entity;
+	}
+
+	/** @inheritdoc */
+	@Override
+	public void readEntity(Cursor cursor, ImportedContact entity, int offset)
+	{
+		entity.setId(cursor.isNull(offset + 0) ? null : cursor.getLong(offset + 0));
+		entity.setContactUpdatedAt(cursor.getLong(offset + 1));
+		entity.setEmailHashes(cursor.isNull(offset + 2) ? null : cursor.getString(offset + 2));
+		entity.setPhoneHashes(cursor.isNull(offset + 3) ? null : cursor.getString(offset + 3));
+	 }
+
+	/** @inheritdoc */
+	@Override
+	protected Long updateKeyAfterInsert(ImportedContact entity, long rowId)
+	{
+		entity.setId(rowId);
+		return rowId;
+	}
+
+	/** @inheritdoc */
+	@Override
+	public Long getKey(ImportedContact entity)
+	{
+		if (entity != null)
+		{
+			return entity.getId();
+		}
+		else
+		{
+			return null;
+		}
+	}
+
+	/** @inheritdoc */
+	@Override
+	protected boolean isEntityUpdateable()
+	{
+		return true;
+	}
+}
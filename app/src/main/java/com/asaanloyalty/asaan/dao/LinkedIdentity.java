@@ -0,0 +1,149 @@
+package com.asaanloyalty.asaan.dao;
+
+// Hand-maintained in the layout greenDAO generates; there is no generator
+// project. A new entity also needs registering in DaoMaster and DaoSession.
+/**
+ * Entity mapped to table LINKED_IDENTITY.
+ */
+public class LinkedIdentity
+{
+	private Long id;
+	private long userId;
+	/** Not-null value. */
+	private String provider;
+	/** Not-null value. */
+	private String externalId;
+	private String email;
+	private String phoneE164;
+	private String displayName;
+	private String photoUrl;
+	private long linkedAt;
+	private long lastSeenAt;
+
+	public LinkedIdentity()
+	{
+	}
+
+	public LinkedIdentity(Long id)
+	{
+		this.id = id;
+	}
+
+	public LinkedIdentity(Long id, long userId, String provider, String externalId, String email, String phoneE164, String displayName, String photoUrl, long linkedAt, long lastSeenAt)
+	{
+		this.id = id;
+		this.userId = userId;
+		this.provider = provider;
+		this.externalId = externalId;
+		this.email = email;
+		this.phoneE164 = phoneE164;
+		this.displayName = displayName;
+		this.photoUrl = photoUrl;
+		this.linkedAt = linkedAt;
+		this.lastSeenAt = lastSeenAt;
+	}
+
+	public Long getId()
+	{
+		return id;
+	}
+
+	public void setId(Long id)
+	{
+		this.id = id;
+	}
+
+	public long getUserId()
+	{
+		return userId;
+	}
+
+	public void setUserId(long userId)
+	{
+		this.userId = userId;
+	}
+
+	/** Not-null value. */
+	public String getProvider()
+	{
+		return provider;
+	}
+
+	/** Not-null value; ensure this value is available before it is saved to the database. */
+	public void setProvider(String provider)
+	{
+		this.provider = provider;
+	}
+
+	/** Not-null value. */
+	public String getExternalId()
+	{
+		return externalId;
+	}
+
+	/** Not-null value; ensure this value is available before it is saved to the database. */
+	public void setExternalId(String externalId)
+	{
+		this.externalId = externalId;
+	}
+
+	public String getEmail()
+	{
+		return email;
+	}
+
+	public void setEmail(String email)
+	{
+		this.email = email;
+	}
+
+	public String getPhoneE164()
+	{
+		return phoneE164;
+	}
+
+	public void setPhoneE164(String phoneE164)
+	{
+		this.phoneE164 = phoneE164;
+	}
+
+	public String getDisplayName()
+	{
+		return displayName;
+	}
+
+	public void setDisplayName(String displayName)
+	{
+		this.displayName = displayName;
+	}
+
+	public String getPhotoUrl()
+	{
+		return photoUrl;
+	}
+
+	public void setPhotoUrl(String photoUrl)
+	{
+		this.photoUrl = photoUrl;
+	}
+
+	public long getLinkedAt()
+	{
+		return linkedAt;
+	}
+
+	public void setLinkedAt(long linkedAt)
+	{
+		this.linkedAt = linkedAt;
+	}
+
+	public long getLastSeenAt()
+	{
+		return lastSeenAt;
+	}
+
+	public void setLastSeenAt(long lastSeenAt)
+	{
+		this.lastSeenAt = lastSeenAt;
+	}
+}
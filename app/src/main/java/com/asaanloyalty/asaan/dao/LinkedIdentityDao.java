@@ -0,0 +1,195 @@
+package com.asaanloyalty.asaan.dao;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import de.greenrobot.dao.AbstractDao;
+import de.greenrobot.dao.Property;
+import de.greenrobot.dao.internal.DaoConfig;
+
+import com.asaanloyalty.asaan.dao.LinkedIdentity;
+
+// Hand-maintained in the layout greenDAO generates; there is no generator
+// project. A new entity also needs registering in DaoMaster and DaoSession.
+/**
+ * DAO for table LINKED_IDENTITY.
+ */
+public class LinkedIdentityDao extends AbstractDao<LinkedIdentity, Long>
+{
+	public static final String TABLENAME = "LINKED_IDENTITY";
+
+	/**
+	 * Properties of entity LinkedIdentity.<br/>
+	 * Can be used for QueryBuilder and for referencing column names.
+	 */
+	public static class Properties
+	{
+		public final static Property Id = new Property(0, Long.class, "id", true, "_id");
+		public final static Property UserId = new Property(1, long.class, "userId", false, "USER_ID");
+		public final static Property Provider = new Property(2, String.class, "provider", false, "PROVIDER");
+		public final static Property ExternalId = new Property(3, String.class, "externalId", false, "EXTERNAL_ID");
+		public final static Property Email = new Property(4, String.class, "email", false, "EMAIL");
+		public final static Property PhoneE164 = new Property(5, String.class, "phoneE164", false, "PHONE_E164");
+		public final static Property DisplayName = new Property(6, String.class, "displayName", false, "DISPLAY_NAME");
+		public final static Property PhotoUrl = new Property(7, String.class, "photoUrl", false, "PHOTO_URL");
+		public final static Property LinkedAt = new Property(8, long.class, "linkedAt", false, "LINKED_AT");
+		public final static Property LastSeenAt = new Property(9, long.class, "lastSeenAt", false, "LAST_SEEN_AT");
+	}
+
+	public LinkedIdentityDao(DaoConfig config)
+	{
+		super(config);
+	}
+
+	public LinkedIdentityDao(DaoConfig config, DaoSession daoSession)
+	{
+		super(config, daoSession);
+	}
+
+	/** Creates the underlying database table. */
+	public static void createTable(SQLiteDatabase db, boolean ifNotExists)
+	{
+		String constraint = ifNotExists ? "IF NOT EXISTS " : "";
+		db.execSQL("CREATE TABLE " + constraint + "'LINKED_IDENTITY' (" + //
+				"'_id' INTEGER PRIMARY KEY ," + // 0: id
+				"'USER_ID' INTEGER NOT NULL ," + // 1: userId
+				"'PROVIDER' TEXT NOT NULL ," + // 2: provider
+				"'EXTERNAL_ID' TEXT NOT NULL ," + // 3: externalId
+				"'EMAIL' TEXT," + // 4: email
+				"'PHONE_E164' TEXT," + // 5: phoneE164
+				"'DISPLAY_NAME' TEXT," + // 6: displayName
+				"'PHOTO_URL' TEXT," + // 7: photoUrl
+				"'LINKED_AT' INTEGER NOT NULL ," + // 8: linkedAt
+				"'LAST_SEEN_AT' INTEGER NOT NULL );"); // 9: lastSeenAt
+		// Add Indexes
+		db.execSQL("CREATE UNIQUE INDEX " + constraint + "IDX_LINKED_IDENTITY_PROVIDER_EXTERNAL_ID ON LINKED_IDENTITY" +
+				" (PROVIDER,EXTERNAL_ID);");
+		db.execSQL("CREATE INDEX " + constraint + "IDX_LINKED_IDENTITY_USER_ID ON LINKED_IDENTITY" +
+				" (USER_ID);");
+		db.execSQL("CREATE INDEX " + constraint + "IDX_LINKED_IDENTITY_EMAIL ON LINKED_IDENTITY" +
+				" (EMAIL);");
+		db.execSQL("CREATE INDEX " + constraint + "IDX_LINKED_IDENTITY_PHONE_E164 ON LINKED_IDENTITY" +
+				" (PHONE_E164);");
+	}
+
+	/** Drops the underlying database table. */
+	public static void dropTable(SQLiteDatabase db, boolean ifExists)
+	{
+		String sql = "DROP TABLE " + (ifExists ? "IF EXISTS " : "") + "'LINKED_IDENTITY'";
+		db.execSQL(sql);
+	}
+
+	/** @inheritdoc */
+	@Override
+	protected void bindValues(SQLiteStatement stmt, LinkedIdentity entity)
+	{
+		stmt.clearBindings();
+
+		Long id = entity.getId();
+		if (id != null)
+		{
+			stmt.bindLong(1, id);
+		}
+		stmt.bindLong(2, entity.getUserId());
+		stmt.bindString(3, entity.getProvider());
+		stmt.bindString(4, entity.getExternalId());
+
+		String email = entity.getEmail();
+		if (email != null)
+		{
+			stmt.bindString(5, email);
+		}
+
+		String phoneE164 = entity.getPhoneE164();
+		if (phoneE164 != null)
+		{
+			stmt.bindString(6, phoneE164);
+		}
+
+		String displayName = entity.getDisplayName();
+		if (displayName != null)
+		{
+			stmt.bindString(7, displayName);
+		}
+
+		String photoUrl = entity.getPhotoUrl();
+		if (photoUrl != null)
+		{
+			stmt.bindString(8, photoUrl);
+		}
+		stmt.bindLong(9, entity.getLinkedAt());
+		stmt.bindLong(10, entity.getLastSeenAt());
+	}
+
+	/** @inheritdoc */
+	@Override
+	public Long readKey(Cursor cursor, int offset)
+	{
+		return cursor.isNull(offset + 0) ? null : cursor.getLong(offset + 0);
+	}
+
+	/** @inheritdoc */
+	@Override
+	public LinkedIdentity readEntity(Cursor cursor, int offset)
+	{
+		LinkedIdentity entity = new LinkedIdentity( //
+			cursor.isNull(offset + 0) ? null : cursor.getLong(offset + 0), // id
+			cursor.getLong(offset + 1), // userId
+			cursor.getString(offset + 2), // provider
+			cursor.getString(offset + 3), // externalId
+			cursor.isNull(offset + 4) ? null : cursor.getString(offset + 4), // email
+			cursor.isNull(offset + 5) ? null : cursor.getString(offset + 5), // phoneE164
+			cursor.isNull(offset + 6) ? null : cursor.getString(offset + 6), // displayName
+			cursor.isNull(offset + 7) ? null : cursor.getString(offset + 7), // photoUrl
+			cursor.getLong(offset + 8), // linkedAt
+			cursor.getLong(offset + 9) // lastSeenAt
+		);
+		return entity;
+	}
+
+	/** @inheritdoc */
+	@Override
+	public void readEntity(Cursor cursor, LinkedIdentity entity, int offset)
+	{
+		entity.setId(cursor.isNull(offset + 0) ? null : cursor.getLong(offset + 0));
+		entity.setUserId(cursor.getLong(offset + 1));
+		entity.setProvider(cursor.getString(offset + 2));
+		entity.setExternalId(cursor.getString(offset + 3));
+		entity.setEmail(cursor.isNull(offset + 4) ? null : cursor.getString(offset + 4));
+		entity.setPhoneE164(cursor.isNull(offset + 5) ? null : cursor.getString(offset + 5));
+		entity.setDisplayName(cursor.isNull(offset + 6) ? null : cursor.getString(offset + 6));
+		entity.setPhotoUrl(cursor.isNull(offset + 7) ? null : cursor.getString(offset + 7));
+		entity.setLinkedAt(cursor.getLong(offset + 8));
+		entity.setLastSeenAt(cursor.getLong(offset + 9));
+	 }
+
+	/** @inheritdoc */
+	@Override
+	protected Long updateKeyAfterInsert(LinkedIdentity entity, long rowId)
+	{
+		entity.setId(rowId);
+		return rowId;
+	}
+
+	/** @inheritdoc */
+	@Override
+	public Long getKey(LinkedIdentity entity)
+	{
+		if (entity != null)
+		{
+			return entity.getId();
+		}
+		else
+		{
+			return null;
+		}
+	}
+
+	/** @inheritdoc */
+	@Override
+	protected boolean isEntityUpdateable()
+	{
+		return true;
+	}
+}
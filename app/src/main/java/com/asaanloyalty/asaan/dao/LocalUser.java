@@ -0,0 +1,107 @@
+package com.asaanloyalty.asaan.dao;
+
+// Hand-maintained in the layout greenDAO generates; there is no generator
+// project. A new entity also needs registering in DaoMaster and DaoSession.
+/**
+ * Entity mapped to table LOCAL_USER.
+ */
+public class LocalUser
+{
+	private Long id;
+	private String displayName;
+	private String email;
+	private String phoneE164;
+	private String photoUrl;
+	private long createdAt;
+	private long updatedAt;
+
+	public LocalUser()
+	{
+	}
+
+	public LocalUser(Long id)
+	{
+		this.id = id;
+	}
+
+	public LocalUser(Long id, String displayName, String email, String phoneE164, String photoUrl, long createdAt, long updatedAt)
+	{
+		this.id = id;
+		this.displayName = displayName;
+		this.email = email;
+		this.phoneE164 = phoneE164;
+		this.photoUrl = photoUrl;
+		this.createdAt = createdAt;
+		this.updatedAt = updatedAt;
+	}
+
+	public Long getId()
+	{
+		return id;
+	}
+
+	public void setId(Long id)
+	{
+		this.id = id;
+	}
+
+	public String getDisplayName()
+	{
+		return displayName;
+	}
+
+	public void setDisplayName(String displayName)
+	{
+		this.displayName = displayName;
+	}
+
+	public String getEmail()
+	{
+		return email;
+	}
+
+	public void setEmail(String email)
+	{
+		this.email = email;
+	}
+
+	public String getPhoneE164()
+	{
+		return phoneE164;
+	}
+
+	public void setPhoneE164(String phoneE164)
+	{
+		this.phoneE164 = phoneE164;
+	}
+
+	public String getPhotoUrl()
+	{
+		return photoUrl;
+	}
+
+	public void setPhotoUrl(String photoUrl)
+	{
+		this.photoUrl = photoUrl;
+	}
+
+	public long getCreatedAt()
+	{
+		return createdAt;
+	}
+
+	public void setCreatedAt(long createdAt)
+	{
+		this.createdAt = createdAt;
+	}
+
+	public long getUpdatedAt()
+	{
+		return updatedAt;
+	}
+
+	public void setUpdatedAt(long updatedAt)
+	{
+		this.updatedAt = updatedAt;
+	}
+}
@@ -0,0 +1,176 @@
+package com.asaanloyalty.asaan.dao;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import de.greenrobot.dao.AbstractDao;
+import de.greenrobot.dao.Property;
+import de.greenrobot.dao.internal.DaoConfig;
+
+import com.asaanloyalty.asaan.dao.LocalUser;
+
+// Hand-maintained in the layout greenDAO generates; there is no generator
+// project. A new entity also needs registering in DaoMaster and DaoSession.
+/**
+ * DAO for table LOCAL_USER.
+ */
+public class LocalUserDao extends AbstractDao<LocalUser, Long>
+{
+	public static final String TABLENAME = "LOCAL_USER";
+
+	/**
+	 * Properties of entity LocalUser.<br/>
+	 * Can be used for QueryBuilder and for referencing column names.
+	 */
+	public static class Properties
+	{
+		public final static Property Id = new Property(0, Long.class, "id", true, "_id");
+		public final static Property DisplayName = new Property(1, String.class, "displayName", false, "DISPLAY_NAME");
+		public final static Property Email = new Property(2, String.class, "email", false, "EMAIL");
+		public final static Property PhoneE164 = new Property(3, String.class, "phoneE164", false, "PHONE_E164");
+		public final static Property PhotoUrl = new Property(4, String.class, "photoUrl", false, "PHOTO_URL");
+		public final static Property CreatedAt = new Property(5, long.class, "createdAt", false, "CREATED_AT");
+		public final static Property UpdatedAt = new Property(6, long.class, "updatedAt", false, "UPDATED_AT");
+	}
+
+	public LocalUserDao(DaoConfig config)
+	{
+		super(config);
+	}
+
+	public LocalUserDao(DaoConfig config, DaoSession daoSession)
+	{
+		super(config, daoSession);
+	}
+
+	/** Creates the underlying database table. */
+	public static void createTable(SQLiteDatabase db, boolean ifNotExists)
+	{
+		String constraint = ifNotExists ? "IF NOT EXISTS " : "";
+		db.execSQL("CREATE TABLE " + constraint + "'LOCAL_USER' (" + //
+				"'_id' INTEGER PRIMARY KEY ," + // 0: id
+				"'DISPLAY_NAME' TEXT," + // 1: displayName
+				"'EMAIL' TEXT," + // 2: email
+				"'PHONE_E164' TEXT," + // 3: phoneE164
+				"'PHOTO_URL' TEXT," + // 4: photoUrl
+				"'CREATED_AT' INTEGER NOT NULL ," + // 5: createdAt
+				"'UPDATED_AT' INTEGER NOT NULL );"); // 6: updatedAt
+		// Add Indexes
+		db.execSQL("CREATE INDEX " + constraint + "IDX_LOCAL_USER_EMAIL ON LOCAL_USER" +
+				" (EMAIL);");
+		db.execSQL("CREATE INDEX " + constraint + "IDX_LOCAL_USER_PHONE_E164 ON LOCAL_USER" +
+				" (PHONE_E164);");
+	}
+
+	/** Drops the underlying database table. */
+	public static void dropTable(SQLiteDatabase db, boolean ifExists)
+	{
+		String sql = "DROP TABLE " + (ifExists ? "IF EXISTS " : "") + "'LOCAL_USER'";
+		db.execSQL(sql);
+	}
+
+	/** @inheritdoc */
+	@Override
+	protected void bindValues(SQLiteStatement stmt, LocalUser entity)
+	{
+		stmt.clearBindings();
+
+		Long id = entity.getId();
+		if (id != null)
+		{
+			stmt.bindLong(1, id);
+		}
+
+		String displayName = entity.getDisplayName();
+		if (displayName != null)
+		{
+			stmt.bindString(2, displayName);
+		}
+
+		String email = entity.getEmail();
+		if (email != null)
+		{
+			stmt.bindString(3, email);
+		}
+
+		String phoneE164 = entity.getPhoneE164();
+		if (phoneE164 != null)
+		{
+			stmt.bindString(4, phoneE164);
+		}
+
+		String photoUrl = entity.getPhotoUrl();
+		if (photoUrl != null)
+		{
+			stmt.bindString(5, photoUrl);
+		}
+		stmt.bindLong(6, entity.getCreatedAt());
+		stmt.bindLong(7, entity.getUpdatedAt());
+	}
+
+	/** @inheritdoc */
+	@Override
+	public Long readKey(Cursor cursor, int offset)
+	{
+		return cursor.isNull(offset + 0) ? null : cursor.getLong(offset + 0);
+	}
+
+	/** @inheritdoc */
+	@Override
+	public LocalUser readEntity(Cursor cursor, int offset)
+	{
+		LocalUser entity = new LocalUser( //
+			cursor.isNull(offset + 0) ? null : cursor.getLong(offset + 0), // id
+			cursor.isNull(offset + 1) ? null : cursor.getString(offset + 1), // displayName
+			cursor.isNull(offset + 2) ? null : cursor.getString(offset + 2), // email
+			cursor.isNull(offset + 3) ? null : cursor.getString(offset + 3), // phoneE164
+			cursor.isNull(offset + 4) ? null : cursor.getString(offset + 4), // photoUrl
+			cursor.getLong(offset + 5), // createdAt
+			cursor.getLong(offset + 6) // updatedAt
+		);
+		return entity;
+	}
+
+	/** @inheritdoc */
+	@Override
+	public void readEntity(Cursor cursor, LocalUser entity, int offset)
+	{
+		entity.setId(cursor.isNull(offset + 0) ? null : cursor.getLong(offset + 0));
+		entity.setDisplayName(cursor.isNull(offset + 1) ? null : cursor.getString(offset + 1));
+		entity.setEmail(cursor.isNull(offset + 2) ? null : cursor.getString(offset + 2));
+		entity.setPhoneE164(cursor.isNull(offset + 3) ? null : cursor.getString(offset + 3));
+		entity.setPhotoUrl(cursor.isNull(offset + 4) ? null : cursor.getString(offset + 4));
+		entity.setCreatedAt(cursor.getLong(offset + 5));
+		entity.setUpdatedAt(cursor.getLong(offset + 6));
+	 }
+
+	/** @inheritdoc */
+	@Override
+	protected Long updateKeyAfterInsert(LocalUser entity, long rowId)
+	{
+		entity.setId(rowId);
+		return rowId;
+	}
+
+	/** @inheritdoc */
+	@Override
+	public Long getKey(LocalUser entity)
+	{
+		if (entity != null)
+		{
+			return entity.getId();
+		}
+		else
+		{
+			return null;
+		}
+	}
+
+	/** @inheritdoc */
+	@Override
+	protected boolean isEntityUpdateable()
+	{
+		return true;
+	}
+}
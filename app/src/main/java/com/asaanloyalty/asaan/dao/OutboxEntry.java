@@ -0,0 +1,116 @@
+package com.asaanloyalty.asaan.dao;
+
+// Hand-maintained in the layout greenDAO generates; there is no generator
+// project. A new entity also needs registering in DaoMaster and DaoSession.
+/**
+ * Entity mapped to table OUTBOX_ENTRY.
+ */
+public class OutboxEntry
+{
+	private Long id;
+	/** Not-null value. */
+	private String type;
+	/** Not-null value. */
+	private String userKey;
+	/** Not-null value. */
+	private String payload;
+	private long createdAt;
+	private int attempts;
+	private long nextAttemptAt;
+
+	public OutboxEntry()
+	{
+	}
+
+	public OutboxEntry(Long id)
+	{
+		this.id = id;
+	}
+
+	public OutboxEntry(Long id, String type, String userKey, String payload, long createdAt, int attempts, long nextAttemptAt)
+	{
+		this.id = id;
+		this.type = type;
+		this.userKey = userKey;
+		this.payload = payload;
+		this.createdAt = createdAt;
+		this.attempts = attempts;
+		this.nextAttemptAt = nextAttemptAt;
+	}
+
+	public Long getId()
+	{
+		return id;
+	}
+
+	public void setId(Long id)
+	{
+		this.id = id;
+	}
+
+	/** Not-null value. */
+	public String getType()
+	{
+		return type;
+	}
+
+	/** Not-null value; ensure this value is available before it is saved to the database. */
+	public void setType(String type)
+	{
+		this.type = type;
+	}
+
+	/** Not-null value. */
+	public String getUserKey()
+	{
+		return userKey;
+	}
+
+	/** Not-null value; ensure this value is available before it is saved to the database. */
+	public void setUserKey(String userKey)
+	{
+		this.userKey = userKey;
+	}
+
+	/** Not-null value. */
+	public String getPayload()
+	{
+		return payload;
+	}
+
+	/** Not-null value; ensure this value is available before it is saved to the database. */
+	public void setPayload(String payload)
+	{
+		this.payload = payload;
+	}
+
+	public long getCreatedAt()
+	{
+		return createdAt;
+	}
+
+	public void setCreatedAt(long createdAt)
+	{
+		this.createdAt = createdAt;
+	}
+
+	public int getAttempts()
+	{
+		return attempts;
+	}
+
+	public void setAttempts(int attempts)
+	{
+		this.attempts = attempts;
+	}
+
+	public long getNextAttemptAt()
+	{
+		return nextAttemptAt;
+	}
+
+	public void setNextAttemptAt(long nextAttemptAt)
+	{
+		this.nextAttemptAt = nextAttemptAt;
+	}
+}
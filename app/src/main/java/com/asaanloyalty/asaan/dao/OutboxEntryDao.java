@@ -0,0 +1,156 @@
+package com.asaanloyalty.asaan.dao;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import de.greenrobot.dao.AbstractDao;
+import de.greenrobot.dao.Property;
+import de.greenrobot.dao.internal.DaoConfig;
+
+import com.asaanloyalty.asaan.dao.OutboxEntry;
+
+// Hand-maintained in the layout greenDAO generates; there is no generator
+// project. A new entity also needs registering in DaoMaster and DaoSession.
+/**
+ * DAO for table OUTBOX_ENTRY.
+ */
+public class OutboxEntryDao extends AbstractDao<OutboxEntry, Long>
+{
+	public static final String TABLENAME = "OUTBOX_ENTRY";
+
+	/**
+	 * Properties of entity OutboxEntry.<br/>
+	 * Can be used for QueryBuilder and for referencing column names.
+	 */
+	public static class Properties
+	{
+		public final static Property Id = new Property(0, Long.class, "id", true, "_id");
+		public final static Property Type = new Property(1, String.class, "type", false, "TYPE");
+		public final static Property UserKey = new Property(2, String.class, "userKey", false, "USER_KEY");
+		public final static Property Payload = new Property(3, String.class, "payload", false, "PAYLOAD");
+		public final static Property CreatedAt = new Property(4, long.class, "createdAt", false, "CREATED_AT");
+		public final static Property Attempts = new Property(5, int.class, "attempts", false, "ATTEMPTS");
+		public final static Property NextAttemptAt = new Property(6, long.class, "nextAttemptAt", false, "NEXT_ATTEMPT_AT");
+	}
+
+	public OutboxEntryDao(DaoConfig config)
+	{
+		super(config);
+	}
+
+	public OutboxEntryDao(DaoConfig config, DaoSession daoSession)
+	{
+		super(config, daoSession);
+	}
+
+	/** Creates the underlying database table. */
+	public static void createTable(SQLiteDatabase db, boolean ifNotExists)
+	{
+		String constraint = ifNotExists ? "IF NOT EXISTS " : "";
+		db.execSQL("CREATE TABLE " + constraint + "'OUTBOX_ENTRY' (" + //
+				"'_id' INTEGER PRIMARY KEY ," + // 0: id
+				"'TYPE' TEXT NOT NULL ," + // 1: type
+				"'USER_KEY' TEXT NOT NULL ," + // 2: userKey
+				"'PAYLOAD' TEXT NOT NULL ," + // 3: payload
+				"'CREATED_AT' INTEGER NOT NULL ," + // 4: createdAt
+				"'ATTEMPTS' INTEGER NOT NULL ," + // 5: attempts
+				"'NEXT_ATTEMPT_AT' INTEGER NOT NULL );"); // 6: nextAttemptAt
+		// Add Indexes
+		db.execSQL("CREATE UNIQUE INDEX " + constraint + "IDX_OUTBOX_ENTRY_TYPE_USER_KEY ON OUTBOX_ENTRY" +
+				" (TYPE,USER_KEY);");
+		db.execSQL("CREATE INDEX " + constraint + "IDX_OUTBOX_ENTRY_NEXT_ATTEMPT_AT ON OUTBOX_ENTRY" +
+				" (NEXT_ATTEMPT_AT);");
+	}
+
+	/** Drops the underlying database table. */
+	public static void dropTable(SQLiteDatabase db, boolean ifExists)
+	{
+		String sql = "DROP TABLE " + (ifExists ? "IF EXISTS " : "") + "'OUTBOX_ENTRY'";
+		db.execSQL(sql);
+	}
+
+	/** @inheritdoc */
+	@Override
+	protected void bindValues(SQLiteStatement stmt, OutboxEntry entity)
+	{
+		stmt.clearBindings();
+
+		Long id = entity.getId();
+		if (id != null)
+		{
+			stmt.bindLong(1, id);
+		}
+		stmt.bindString(2, entity.getType());
+		stmt.bindString(3, entity.getUserKey());
+		stmt.bindString(4, entity.getPayload());
+		stmt.bindLong(5, entity.getCreatedAt());
+		stmt.bindLong(6, entity.getAttempts());
+		stmt.bindLong(7, entity.getNextAttemptAt());
+	}
+
+	/** @inheritdoc */
+	@Override
+	public Long readKey(Cursor cursor, int offset)
+	{
+		return cursor.isNull(offset + 0) ? null : cursor.getLong(offset + 0);
+	}
+
+	/** @inheritdoc */
+	@Override
+	public OutboxEntry readEntity(Cursor cursor, int offset)
+	{
+		OutboxEntry entity = new OutboxEntry( //
+			cursor.isNull(offset + 0) ? null : cursor.getLong(offset + 0), // id
+			cursor.getString(offset + 1), // type
+			cursor.getString(offset + 2), // userKey
+			cursor.getString(offset + 3), // payload
+			cursor.getLong(offset + 4), // createdAt
+			cursor.getInt(offset + 5), // attempts
+			cursor.getLong(offset + 6) // nextAttemptAt
+		);
+		return entity;
+	}
+
+	/** @inheritdoc */
+	@Override
+	public void readEntity(Cursor cursor, OutboxEntry entity, int offset)
+	{
+		entity.setId(cursor.isNull(offset + 0) ? null : cursor.getLong(offset + 0));
+		entity.setType(cursor.getString(offset + 1));
+		entity.setUserKey(cursor.getString(offset + 2));
+		entity.setPayload(cursor.getString(offset + 3));
+		entity.setCreatedAt(cursor.getLong(offset + 4));
+		entity.setAttempts(cursor.getInt(offset + 5));
+		entity.setNextAttemptAt(cursor.getLong(offset + 6));
+	 }
+
+	/** @inheritdoc */
+	@Override
+	protected Long updateKeyAfterInsert(OutboxEntry entity, long rowId)
+	{
+		entity.setId(rowId);
+		return rowId;
+	}
+
+	/** @inheritdoc */
+	@Override
+	public Long getKey(OutboxEntry entity)
+	{
+		if (entity != null)
+		{
+			return entity.getId();
+		}
+		else
+		{
+			return null;
+		}
+	}
+
+	/** @inheritdoc */
+	@Override
+	protected boolean isEntityUpdateable()
+	{
+		return true;
+	}
+}
@@ -0,0 +1,416 @@
+package com.asaanloyalty.asaan.friends;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestFactory;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.http.HttpStatusCodes;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.util.Lists;
+
+/**
+ * Reads the signed-in user's Facebook friends from the Graph API, page by
+ * page.
+ *
+ * The friend list is read in pages of {@link #PAGE_SIZE} with
+ * {@code limit}/{@code offset} paging rather than by following
+ * {@code paging.next}, so up to {@code maxInFlight} pages can be requested at
+ * once instead of one round trip after another. Pages are requested in
+ * order, and none past the first page found to be the last or, when the
+ * previous fetch is known, past its last page unless that page has grown.
+ *
+ * The ETag of every page is handed back with it. Passing the states of the
+ * last fetch to the next one makes each page a conditional request, and the
+ * Graph API answers a page that has not changed with 304 and no body, so
+ * fetching an unchanged friend list costs a request per page but no
+ * download or parsing.
+ *
+ * Offsets are positions in the list, not stable keys, which limits this. A
+ * friend added or removed shifts every later page by one, so all of them get
+ * new ETags and are downloaded again; FacebookFriendsBenchmark's
+ * oneFriendAdded case measures this. A friend can also move across a page
+ * boundary between two requests of one fetch and be read twice, or be missed
+ * until the next fetch.
+ *
+ * A changed page is parsed with a Jackson2 {@link JsonParser} as it streams
+ * in, and each friend goes to the {@link PageHandler} as soon as it is read,
+ * without building the page or the list in memory. This class has no Android
+ * dependency, so it runs unchanged against a local server replaying recorded
+ * Graph responses.
+ */
+public class FacebookFriendsClient
+{
+	private static final Logger logger = Logger.getLogger(FacebookFriendsClient.class.getName());
+
+	public static final String GRAPH_URL = "https://graph.facebook.com/";
+	private static final String FRIENDS_PATH = "me/friends";
+	/** Only what friend discovery shows; installed is true for friends who use the app */
+	private static final String FRIEND_FIELDS = "id,name,installed";
+	/** Friends per page */
+	public static final int PAGE_SIZE = 500;
+	private static final int CONNECT_TIMEOUT_MS = 10 * 1000;
+	private static final int READ_TIMEOUT_MS = 20 * 1000;
+
+	private static final JsonFactory sJsonFactory = new JsonFactory();
+
+	/**
+	 * What is known about one page of the friend list. The caller keeps the
+	 * states of a fetch and passes them to the next one.
+	 */
+	public static class PageState
+	{
+		private final String mETag;
+		private final int mCount;
+		private final boolean mHasMore;
+
+		/**
+		 * @param eTag
+		 *            the page's ETag, or null if the response had none
+		 * @param count
+		 *            friends on the page
+		 * @param hasMore
+		 *            whether the page linked to a next one
+		 */
+		public PageState(String eTag, int count, boolean hasMore)
+		{
+			mETag = eTag;
+			mCount = count;
+			mHasMore = hasMore;
+		}
+
+		public String getETag()
+		{
+			return mETag;
+		}
+
+		public int getCount()
+		{
+			return mCount;
+		}
+
+		public boolean hasMore()
+		{
+			return mHasMore;
+		}
+	}
+
+	/**
+	 * Receives the pages of {@link FacebookFriendsClient#fetch}. Called on the
+	 * thread fetching the page, so calls for different pages can run at the
+	 * same time; the calls for one page are made in order on one thread.
+	 */
+	public interface PageHandler
+	{
+		/**
+		 * A friend on a changed page.
+		 *
+		 * @param installed
+		 *            whether the friend uses the app
+		 */
+		void onFriend(int page, String id, String name, boolean installed);
+
+		/**
+		 * All the friends on a changed page were delivered.
+		 */
+		void onPageChanged(int page, PageState state);
+
+		/**
+		 * The page is the same as when it had the given state.
+		 */
+		void onPageUnchanged(int page, PageState state);
+	}
+
+	/**
+	 * What a {@link FacebookFriendsClient#fetch} found.
+	 */
+	public static class Result
+	{
+		/** Pages in the friend list, including an empty last page */
+		public int pages;
+		public int changedPages;
+		public int friendsRead;
+
+		@Override
+		public String toString()
+		{
+			return pages + " pages, " + changedPages + " changed, " + friendsRead + " friends read";
+		}
+	}
+
+	private final String mFriendsUrl;
+	private final HttpRequestFactory mRequestFactory;
+	private final int mMaxInFlight;
+	private final ExecutorService mExecutor;
+
+	/**
+	 * @param graphUrl
+	 *            the Graph API's base URL, ending in a slash; tests point this
+	 *            at a local server
+	 * @param maxInFlight
+	 *            pages requested at once
+	 */
+	public FacebookFriendsClient(HttpTransport transport, String graphUrl, int maxInFlight)
+	{
+		mFriendsUrl = graphUrl + FRIENDS_PATH;
+		mMaxInFlight = maxInFlight;
+		mRequestFactory = transport.createRequestFactory(new HttpRequestInitializer()
+		{
+			@Override
+			public void initialize(HttpRequest request)
+			{
+				request.setConnectTimeout(CONNECT_TIMEOUT_MS);
+				request.setReadTimeout(READ_TIMEOUT_MS);
+				// 304 is an answer, not an error
+				request.setThrowExceptionOnExecuteError(false);
+			}
+		});
+		mExecutor = Executors.newFixedThreadPool(maxInFlight, new ThreadFactory()
+		{
+			@Override
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, "facebook-friends");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Fetches the friend list, page by page, blocking until every page was
+	 * delivered or one failed.
+	 *
+	 * @param accessToken
+	 *            the signed-in user's access token
+	 * @param known
+	 *            the page states of the last fetch for the same user, in page
+	 *            order, or an empty list to fetch every page in full
+	 * @throws IOException
+	 *             if a page could not be fetched or read; pages delivered
+	 *             before that stay delivered
+	 */
+	public Result fetch(String accessToken, List<PageState> known, PageHandler handler) throws IOException
+	{
+		long start = System.nanoTime();
+		Result result = new Result();
+		CompletionService<PageResult> completion = new ExecutorCompletionService<PageResult>(mExecutor);
+		List<Future<PageResult>> futures = Lists.newArrayList();
+		int next = 0;
+		int in_flight = 0;
+		// Index of the first page known to be the last
+		int last = Integer.MAX_VALUE;
+		// Pages past the last one of the previous fetch are only requested
+		// once that page turns out to have grown
+		int horizon = known.isEmpty() || known.get(known.size() - 1).hasMore() ? Integer.MAX_VALUE
+				: known.size() - 1;
+		try
+		{
+			while (true)
+			{
+				while (in_flight < mMaxInFlight && next <= Math.min(last, horizon))
+				{
+					PageState state = next < known.size() ? known.get(next) : null;
+					futures.add(completion.submit(new PageFetch(accessToken, next, state, handler)));
+					next++;
+					in_flight++;
+				}
+				if (in_flight == 0)
+					break;
+				PageResult page = completion.take().get();
+				in_flight--;
+				if (page.mChanged)
+				{
+					result.changedPages++;
+					result.friendsRead += page.mState.getCount();
+				}
+				if (!page.mState.hasMore())
+					last = Math.min(last, page.mPage);
+				else if (page.mPage >= horizon)
+					horizon = Integer.MAX_VALUE;
+			}
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted fetching friends");
+		} catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			throw new IOException("Friends fetch failed", cause);
+		} finally
+		{
+			// Only does anything after a failure
+			for (Future<PageResult> future : futures)
+				future.cancel(true);
+		}
+		result.pages = last + 1;
+		logger.log(Level.INFO, "Friends fetched: " + result + " in " + (System.nanoTime() - start) / 1000000
+				+ " ms");
+		return result;
+	}
+
+	/**
+	 * Stops the fetch threads. The client cannot be used afterwards.
+	 */
+	public void shutdown()
+	{
+		mExecutor.shutdownNow();
+	}
+
+	/**
+	 * Fetches and delivers one page.
+	 */
+	private PageResult fetchPage(String accessToken, int page, PageState known, PageHandler handler)
+			throws IOException
+	{
+		GenericUrl url = new GenericUrl(mFriendsUrl);
+		url.put("fields", FRIEND_FIELDS);
+		url.put("limit", PAGE_SIZE);
+		url.put("offset", page * PAGE_SIZE);
+		url.put("access_token", accessToken);
+		HttpRequest request = mRequestFactory.buildGetRequest(url);
+		if (known != null && known.getETag() != null)
+			request.getHeaders().setIfNoneMatch(known.getETag());
+		HttpResponse response = request.execute();
+		try
+		{
+			int status = response.getStatusCode();
+			if (status == HttpStatusCodes.STATUS_CODE_NOT_MODIFIED && known != null)
+			{
+				handler.onPageUnchanged(page, known);
+				return new PageResult(page, known, false);
+			}
+			if (!response.isSuccessStatusCode())
+				throw new HttpResponseException(response);
+			PageState state = parsePage(response.getContent(), response.getHeaders().getETag(), page, handler);
+			handler.onPageChanged(page, state);
+			return new PageResult(page, state, true);
+		} finally
+		{
+			response.ignore();
+		}
+	}
+
+	/**
+	 * Reads a page of the form
+	 * {@code {"data":[{"id", "name", "installed"}, ...], "paging":{"next"}}},
+	 * handing each friend to the handler as it is read.
+	 */
+	static PageState parsePage(InputStream in, String eTag, int page, PageHandler handler) throws IOException
+	{
+		int count = 0;
+		boolean has_next = false;
+		JsonParser parser = sJsonFactory.createParser(in);
+		try
+		{
+			if (parser.nextToken() != JsonToken.START_OBJECT)
+				throw new IOException("Friends page is not an object");
+			while (parser.nextToken() == JsonToken.FIELD_NAME)
+			{
+				String field = parser.getCurrentName();
+				JsonToken value = parser.nextToken();
+				if ("data".equals(field) && value == JsonToken.START_ARRAY)
+				{
+					while (parser.nextToken() == JsonToken.START_OBJECT)
+					{
+						String id = null;
+						String name = null;
+						boolean installed = false;
+						while (parser.nextToken() == JsonToken.FIELD_NAME)
+						{
+							String friend_field = parser.getCurrentName();
+							JsonToken friend_value = parser.nextToken();
+							if ("id".equals(friend_field))
+								id = parser.getText();
+							else if ("name".equals(friend_field))
+								name = friend_value == JsonToken.VALUE_NULL ? null : parser.getText();
+							else if ("installed".equals(friend_field))
+								installed = friend_value == JsonToken.VALUE_TRUE;
+							else
+								parser.skipChildren();
+						}
+						if (id == null)
+							continue;
+						handler.onFriend(page, id, name, installed);
+						count++;
+					}
+				} else if ("paging".equals(field) && value == JsonToken.START_OBJECT)
+				{
+					while (parser.nextToken() == JsonToken.FIELD_NAME)
+					{
+						String paging_field = parser.getCurrentName();
+						JsonToken paging_value = parser.nextToken();
+						if ("next".equals(paging_field))
+							has_next = paging_value != JsonToken.VALUE_NULL;
+						else
+							parser.skipChildren();
+					}
+				} else
+					parser.skipChildren();
+			}
+		} finally
+		{
+			parser.close();
+		}
+		// An empty page can still link to a next one
+		return new PageState(eTag, count, has_next && count > 0);
+	}
+
+	private final class PageFetch implements Callable<PageResult>
+	{
+		private final String mAccessToken;
+		private final int mPage;
+		private final PageState mKnown;
+		private final PageHandler mHandler;
+
+		PageFetch(String accessToken, int page, PageState known, PageHandler handler)
+		{
+			mAccessToken = accessToken;
+			mPage = page;
+			mKnown = known;
+			mHandler = handler;
+		}
+
+		@Override
+		public PageResult call() throws IOException
+		{
+			return fetchPage(mAccessToken, mPage, mKnown, mHandler);
+		}
+	}
+
+	private static final class PageResult
+	{
+		final int mPage;
+		final PageState mState;
+		final boolean mChanged;
+
+		PageResult(int page, PageState state, boolean changed)
+		{
+			mPage = page;
+			mState = state;
+			mChanged = changed;
+		}
+	}
+}
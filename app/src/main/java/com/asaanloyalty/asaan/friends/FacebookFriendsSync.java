@@ -0,0 +1,263 @@
+package com.asaanloyalty.asaan.friends;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.asaanloyalty.asaan.dao.DaoSessionProvider;
+import com.asaanloyalty.asaan.dao.FacebookFriend;
+import com.asaanloyalty.asaan.dao.FacebookFriendDao;
+import com.google.api.client.extensions.android.http.AndroidHttp;
+import com.google.api.client.util.Lists;
+
+/**
+ * Keeps a local copy of the signed-in user's Facebook friends, marking those
+ * who already use Asaan.
+ *
+ * Friends are fetched with {@link FacebookFriendsClient} and stored in the
+ * FACEBOOK_FRIEND table, each with the page it was read from and the time of
+ * the sync that last saw it. The ETag of every page is kept in the app's
+ * private preferences, so a sync after the first downloads only the pages
+ * that changed; the Graph API offers no {@code since} filter for the friend
+ * list, so the page ETags are the watermark; a friend added or removed near
+ * the start of the list changes every later page, see
+ * {@link FacebookFriendsClient}. A changed page is written in one
+ * transaction as soon as it is read. Once every page was seen, the friends of
+ * unchanged pages are marked seen too and the rest, who are no longer
+ * friends, are deleted. A failed sync keeps the pages it wrote and starts
+ * over next time.
+ */
+public class FacebookFriendsSync
+{
+	private static final Logger logger = Logger.getLogger(FacebookFriendsSync.class.getName());
+
+	/** Pages requested at once */
+	private static final int MAX_IN_FLIGHT = 3;
+	/** Repeated logins within this time reuse the last sync */
+	private static final long MIN_SYNC_INTERVAL_MS = 15 * 60 * 1000L;
+
+	private static final String PREFS_FRIENDS = "facebook_friends";
+	private static final String KEY_USER_ID = "user_id";
+	private static final String KEY_SYNCED_AT = "synced_at";
+	private static final String KEY_PAGES = "pages";
+	private static final String KEY_PAGE_ETAG = "page_etag_";
+	private static final String KEY_PAGE_COUNT = "page_count_";
+	private static final String KEY_PAGE_MORE = "page_more_";
+
+	private static final String MARK_PAGE_SEEN = "UPDATE " + FacebookFriendDao.TABLENAME + " SET "
+			+ FacebookFriendDao.Properties.SyncedAt.columnName + "=? WHERE "
+			+ FacebookFriendDao.Properties.Page.columnName + "=?";
+	private static final String DELETE_UNSEEN = "DELETE FROM " + FacebookFriendDao.TABLENAME + " WHERE "
+			+ FacebookFriendDao.Properties.SyncedAt.columnName + "<>?";
+
+	private static FacebookFriendsSync sInstance;
+
+	private final Context mContext;
+	private final SharedPreferences mPrefs;
+	private final FacebookFriendsClient mClient;
+	/** Runs syncs one at a time */
+	private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+	private FacebookFriendsSync(Context context)
+	{
+		mContext = context.getApplicationContext();
+		mPrefs = mContext.getSharedPreferences(PREFS_FRIENDS, Context.MODE_PRIVATE);
+		mClient = new FacebookFriendsClient(AndroidHttp.newCompatibleTransport(), FacebookFriendsClient.GRAPH_URL,
+				MAX_IN_FLIGHT);
+	}
+
+	/**
+	 * Returns the process-wide sync.
+	 *
+	 * @param context
+	 *            any context; only its application context is retained
+	 */
+	public static synchronized FacebookFriendsSync getInstance(Context context)
+	{
+		if (sInstance == null)
+			sInstance = new FacebookFriendsSync(context);
+		return sInstance;
+	}
+
+	/**
+	 * Brings the local friends up to date in the background, unless they
+	 * were synced for the same user moments ago. Friends stored for another
+	 * user are dropped first.
+	 *
+	 * @param userId
+	 *            the signed-in Facebook user
+	 * @param accessToken
+	 *            the user's access token
+	 */
+	public void sync(final String userId, final String accessToken)
+	{
+		mExecutor.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				runSync(userId, accessToken);
+			}
+		});
+	}
+
+	/**
+	 * Deletes the local friends in the background, on sign-out.
+	 */
+	public void clear()
+	{
+		mExecutor.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				forget();
+			}
+		});
+	}
+
+	/**
+	 * Reads the friends who use Asaan, by name. Reads the database, so it
+	 * must not be called from the main thread.
+	 */
+	public List<FacebookFriend> loadMembers()
+	{
+		return dao().queryBuilder().where(FacebookFriendDao.Properties.Installed.eq(true))
+				.orderAsc(FacebookFriendDao.Properties.Name).list();
+	}
+
+	/**
+	 * Runs on the executor.
+	 */
+	private void runSync(String userId, String accessToken)
+	{
+		if (!userId.equals(mPrefs.getString(KEY_USER_ID, null)))
+			forget();
+		else if (System.currentTimeMillis() - mPrefs.getLong(KEY_SYNCED_AT, 0) < MIN_SYNC_INTERVAL_MS)
+			return;
+
+		long synced_at = System.currentTimeMillis();
+		FacebookFriendDao dao = dao();
+		PageWriter writer = new PageWriter(dao, synced_at);
+		FacebookFriendsClient.Result result;
+		try
+		{
+			result = mClient.fetch(accessToken, loadPageStates(), writer);
+		} catch (IOException e)
+		{
+			logger.log(Level.WARNING, "Facebook friends sync failed - " + e.getMessage());
+			return;
+		}
+		dao.getDatabase().execSQL(DELETE_UNSEEN, new Object[] { synced_at });
+		savePageStates(userId, synced_at, writer.mStates, result.pages);
+	}
+
+	private void forget()
+	{
+		dao().deleteAll();
+		mPrefs.edit().clear().commit();
+	}
+
+	private List<FacebookFriendsClient.PageState> loadPageStates()
+	{
+		int pages = mPrefs.getInt(KEY_PAGES, 0);
+		List<FacebookFriendsClient.PageState> states = Lists.newArrayListWithCapacity(pages);
+		for (int i = 0; i < pages; i++)
+			states.add(new FacebookFriendsClient.PageState(mPrefs.getString(KEY_PAGE_ETAG + i, null), mPrefs.getInt(
+					KEY_PAGE_COUNT + i, 0), mPrefs.getBoolean(KEY_PAGE_MORE + i, false)));
+		return states;
+	}
+
+	private void savePageStates(String userId, long syncedAt, Map<Integer, FacebookFriendsClient.PageState> states,
+			int pages)
+	{
+		SharedPreferences.Editor editor = mPrefs.edit().clear().putString(KEY_USER_ID, userId)
+				.putLong(KEY_SYNCED_AT, syncedAt).putInt(KEY_PAGES, pages);
+		for (int i = 0; i < pages; i++)
+		{
+			FacebookFriendsClient.PageState state = states.get(i);
+			editor.putString(KEY_PAGE_ETAG + i, state.getETag()).putInt(KEY_PAGE_COUNT + i, state.getCount())
+					.putBoolean(KEY_PAGE_MORE + i, state.hasMore());
+		}
+		editor.commit();
+	}
+
+	private FacebookFriendDao dao()
+	{
+		return DaoSessionProvider.getSession(mContext).getFacebookFriendDao();
+	}
+
+	/**
+	 * Writes each changed page in one transaction and marks the friends of
+	 * unchanged pages seen. A page's friends are buffered until the page
+	 * ends, so at most {@link FacebookFriendsClient#PAGE_SIZE} friends per
+	 * page in flight are held in memory.
+	 */
+	private static final class PageWriter implements FacebookFriendsClient.PageHandler
+	{
+		private final FacebookFriendDao mDao;
+		private final long mSyncedAt;
+		/** Friends of the pages being read */
+		private final Map<Integer, List<FacebookFriend>> mPages = new ConcurrentHashMap<Integer, List<FacebookFriend>>();
+		/** States of the pages delivered */
+		final Map<Integer, FacebookFriendsClient.PageState> mStates =
+				new ConcurrentHashMap<Integer, FacebookFriendsClient.PageState>();
+
+		PageWriter(FacebookFriendDao dao, long syncedAt)
+		{
+			mDao = dao;
+			mSyncedAt = syncedAt;
+		}
+
+		@Override
+		public void onFriend(int page, String id, String name, boolean installed)
+		{
+			List<FacebookFriend> friends = mPages.get(page);
+			if (friends == null)
+			{
+				friends = Lists.newArrayList();
+				mPages.put(page, friends);
+			}
+			friends.add(new FacebookFriend(null, id, name, installed, page, mSyncedAt));
+		}
+
+		@Override
+		public void onPageChanged(int page, FacebookFriendsClient.PageState state)
+		{
+			List<FacebookFriend> friends = mPages.remove(page);
+			if (friends != null)
+			{
+				SQLiteDatabase db = mDao.getDatabase();
+				db.beginTransaction();
+				try
+				{
+					// Replaces the row of a friend already stored, by the
+					// unique index on FACEBOOK_ID
+					for (FacebookFriend friend : friends)
+						mDao.insertOrReplace(friend);
+					db.setTransactionSuccessful();
+				} finally
+				{
+					db.endTransaction();
+				}
+			}
+			mStates.put(page, state);
+		}
+
+		@Override
+		public void onPageUnchanged(int page, FacebookFriendsClient.PageState state)
+		{
+			mDao.getDatabase().execSQL(MARK_PAGE_SEEN, new Object[] { mSyncedAt, page });
+			mStates.put(page, state);
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package com.asaanloyalty.asaan.push;
+
+import android.app.Activity;
+import android.content.BroadcastReceiver;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.os.PowerManager;
+
+/**
+ * Receives GCM messages and hands them to {@link PushIntentService}.
+ *
+ * A partial wake lock is taken before the service is started and released by
+ * the service once it has handled the message, so the device cannot sleep in
+ * between.
+ */
+public class PushBroadcastReceiver extends BroadcastReceiver
+{
+	private static final long WAKE_LOCK_TIMEOUT_MS = 60 * 1000L;
+
+	private static PowerManager.WakeLock sWakeLock;
+
+	@Override
+	public void onReceive(Context context, Intent intent)
+	{
+		acquireWakeLock(context);
+		Intent service = new Intent(intent).setComponent(new ComponentName(context, PushIntentService.class));
+		if (context.startService(service) == null)
+			releaseWakeLock();
+		setResultCode(Activity.RESULT_OK);
+	}
+
+	private static synchronized void acquireWakeLock(Context context)
+	{
+		if (sWakeLock == null)
+		{
+			PowerManager power = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+			sWakeLock = power.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, PushBroadcastReceiver.class.getName());
+			sWakeLock.setReferenceCounted(true);
+		}
+		// The timeout guards against a service killed before it could release
+		sWakeLock.acquire(WAKE_LOCK_TIMEOUT_MS);
+	}
+
+	/**
+	 * Releases the wake lock taken for one message.
+	 */
+	static synchronized void releaseWakeLock()
+	{
+		if (sWakeLock != null && sWakeLock.isHeld())
+			sWakeLock.release();
+	}
+}
@@ -0,0 +1,121 @@
+package com.asaanloyalty.asaan.push;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import android.app.IntentService;
+import android.content.Intent;
+
+import com.asaanloyalty.asaan.auth.AuthSessionStore;
+import com.asaanloyalty.asaan.auth.ProviderTokens;
+import com.asaanloyalty.asaan.auth.SignInResultBus;
+import com.asaanloyalty.asaan.auth.SocialProfile;
+import com.asaanloyalty.asaan.backend.IdentityExchangeClient;
+import com.asaanloyalty.asaan.backend.LoyaltySession;
+import com.google.android.gms.gcm.GoogleCloudMessaging;
+
+/**
+ * Handles GCM messages passed on by {@link PushBroadcastReceiver}.
+ *
+ * The backend sends a tickle rather than the data itself when a member's data
+ * changes:
+ *
+ * <pre>
+ * {"type":"member_changed", "sections":"profile,avatar"}
+ * </pre>
+ *
+ * Only the named sections are fetched, through
+ * {@link IdentityExchangeClient#fetchChanges}, and merged into the signed-in
+ * state. When GCM reports that pending messages were deleted, every section
+ * is fetched instead.
+ *
+ * GCM may start a new process for the message, so the stored sign-in is read
+ * from disk, and if there is no loyalty session yet the stored identity is
+ * exchanged for one first. Changes are passed on with
+ * {@link SignInResultBus#update}, so they are not taken for a new sign-in.
+ */
+public class PushIntentService extends IntentService
+{
+	private static final Logger logger = Logger.getLogger(PushIntentService.class.getName());
+
+	/** Value of the {@code type} extra of a change tickle */
+	public static final String TYPE_MEMBER_CHANGED = "member_changed";
+	private static final String EXTRA_TYPE = "type";
+	private static final String EXTRA_SECTIONS = "sections";
+	private static final String ALL_SECTIONS = IdentityExchangeClient.SECTION_PROFILE + ","
+			+ IdentityExchangeClient.SECTION_AVATAR;
+
+	public PushIntentService()
+	{
+		super(PushIntentService.class.getSimpleName());
+	}
+
+	@Override
+	protected void onHandleIntent(Intent intent)
+	{
+		try
+		{
+			String message_type = GoogleCloudMessaging.getInstance(this).getMessageType(intent);
+			if (GoogleCloudMessaging.MESSAGE_TYPE_DELETED.equals(message_type))
+				refresh(ALL_SECTIONS);
+			else if (GoogleCloudMessaging.MESSAGE_TYPE_MESSAGE.equals(message_type)
+					&& TYPE_MEMBER_CHANGED.equals(intent.getStringExtra(EXTRA_TYPE)))
+			{
+				String sections = intent.getStringExtra(EXTRA_SECTIONS);
+				refresh(sections != null ? sections : ALL_SECTIONS);
+			}
+		} finally
+		{
+			PushBroadcastReceiver.releaseWakeLock();
+		}
+	}
+
+	/**
+	 * Runs on the service's worker thread.
+	 */
+	private void refresh(String sections)
+	{
+		AuthSessionStore.StoredSession stored = AuthSessionStore.getInstance(this).get();
+		if (stored == null || stored.isExpired())
+		{
+			// The next identity exchange returns current data anyway
+			logger.log(Level.INFO, "Member change for " + sections + " ignored - not signed in");
+			return;
+		}
+
+		IdentityExchangeClient client = IdentityExchangeClient.getInstance(this);
+		SocialProfile identity = stored.getProfile();
+		LoyaltySession session;
+		try
+		{
+			session = client.getOrExchange(identity, new ProviderTokens(this).tokenSource(identity), PushRegistrar
+					.getInstance(this).peekRegistrationId());
+		} catch (Exception e)
+		{
+			logger.log(Level.WARNING, "Member change for " + sections + " ignored - exchange failed - "
+					+ e.getMessage());
+			return;
+		}
+
+		IdentityExchangeClient.MemberChanges changes;
+		try
+		{
+			changes = client.fetchChanges(session, stored.getProfile(), sections);
+		} catch (IOException e)
+		{
+			logger.log(Level.WARNING, "Fetching member changes failed - " + e.getMessage());
+			return;
+		}
+
+		if (changes.isAvatarChanged())
+			client.updateAvatarUrl(changes.getAvatarUrl());
+		if (changes.getProfile() != null)
+		{
+			SocialProfile profile = changes.getProfile().mergedWith(stored.getProfile());
+			SignInResultBus.getInstance().update(profile);
+			AuthSessionStore.getInstance(this).save(
+					new AuthSessionStore.StoredSession(profile, stored.getAccessToken(), stored.getExpiresAt()));
+		}
+	}
+}
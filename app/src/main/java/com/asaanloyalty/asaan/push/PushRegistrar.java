@@ -0,0 +1,238 @@
+package com.asaanloyalty.asaan.push;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.asaanloyalty.asaan.R;
+import com.asaanloyalty.asaan.auth.AuthSessionStore;
+import com.asaanloyalty.asaan.backend.SyncOutbox;
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.GooglePlayServicesUtil;
+import com.google.android.gms.gcm.GoogleCloudMessaging;
+import com.google.api.client.util.Lists;
+
+/**
+ * Registers the device for GCM push messages and caches the registration id.
+ *
+ * The id is kept in the app's private preferences together with the app
+ * version it was issued to, so the device registers once per installed
+ * version rather than on every start; GCM does not guarantee an id survives an
+ * app update. A failed registration is retried with exponential backoff, and
+ * the attempt count and the time of the next attempt are persisted with the id
+ * so a process restart does not retry any sooner.
+ *
+ * A new id is sent to the backend with the next identity exchange. If the
+ * user is already signed in, a device update carrying it is queued in the
+ * {@link SyncOutbox} as well, so pushes reach the device without waiting for
+ * the next sign-in.
+ */
+public class PushRegistrar
+{
+	private static final Logger logger = Logger.getLogger(PushRegistrar.class.getName());
+
+	private static final String PREFS_PUSH = "push_registration";
+	private static final String KEY_REGISTRATION_ID = "registration_id";
+	private static final String KEY_APP_VERSION = "app_version";
+	private static final String KEY_ATTEMPTS = "attempts";
+	private static final String KEY_NEXT_ATTEMPT_AT = "next_attempt_at";
+
+	private static final long INITIAL_RETRY_MS = 30 * 1000L;
+	private static final long MAX_RETRY_MS = 6 * 60 * 60 * 1000L;
+
+	private static PushRegistrar sInstance;
+
+	/**
+	 * Receives the registration id from {@link PushRegistrar#getRegistrationId}.
+	 * Called on the main thread.
+	 */
+	public interface Callback
+	{
+		/**
+		 * @param registrationId
+		 *            the id, or null if the device is not registered
+		 */
+		void onRegistrationId(String registrationId);
+	}
+
+	private final Context mContext;
+	private final SharedPreferences mPrefs;
+	private final int mAppVersion;
+	private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+	private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+	/** Callers waiting on the in-flight registration, or null if none; guarded by this */
+	private List<Callback> mWaiting;
+
+	private final Runnable mRetry = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			register();
+		}
+	};
+
+	/** Runs on the executor */
+	private final Runnable mRegister = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			String registration_id = null;
+			try
+			{
+				registration_id = GoogleCloudMessaging.getInstance(mContext).register(
+						mContext.getString(R.string.gcm_sender_id));
+				mPrefs.edit().putString(KEY_REGISTRATION_ID, registration_id).putInt(KEY_APP_VERSION, mAppVersion)
+						.remove(KEY_ATTEMPTS).remove(KEY_NEXT_ATTEMPT_AT).commit();
+				logger.log(Level.INFO, "Push registration succeeded for app version " + mAppVersion);
+				AuthSessionStore.StoredSession stored = AuthSessionStore.getInstance(mContext).get();
+				if (stored != null)
+					SyncOutbox.getInstance(mContext).enqueueDeviceUpdate(stored.getProfile(), registration_id);
+			} catch (IOException e)
+			{
+				logger.log(Level.WARNING, "Push registration failed - " + e.getMessage());
+				int attempts = mPrefs.getInt(KEY_ATTEMPTS, 0) + 1;
+				long delay = Math.min(INITIAL_RETRY_MS << Math.min(attempts - 1, 20), MAX_RETRY_MS);
+				mPrefs.edit().putInt(KEY_ATTEMPTS, attempts)
+						.putLong(KEY_NEXT_ATTEMPT_AT, System.currentTimeMillis() + delay).commit();
+				scheduleRetry(delay);
+			}
+			final List<Callback> waiting;
+			synchronized (PushRegistrar.this)
+			{
+				waiting = mWaiting;
+				mWaiting = null;
+			}
+			deliver(waiting, registration_id);
+		}
+	};
+
+	private PushRegistrar(Context context)
+	{
+		mContext = context.getApplicationContext();
+		mPrefs = mContext.getSharedPreferences(PREFS_PUSH, Context.MODE_PRIVATE);
+		mAppVersion = appVersion(mContext);
+	}
+
+	/**
+	 * Returns the process-wide registrar.
+	 *
+	 * @param context
+	 *            any context; only its application context is retained
+	 */
+	public static synchronized PushRegistrar getInstance(Context context)
+	{
+		if (sInstance == null)
+			sInstance = new PushRegistrar(context);
+		return sInstance;
+	}
+
+	/**
+	 * @return the id registered for this app version, or null
+	 */
+	public String peekRegistrationId()
+	{
+		if (mPrefs.getInt(KEY_APP_VERSION, Integer.MIN_VALUE) != mAppVersion)
+			return null;
+		return mPrefs.getString(KEY_REGISTRATION_ID, null);
+	}
+
+	/**
+	 * Registers in the background unless this app version already has an id,
+	 * a registration is in flight or the last failure's backoff has not yet
+	 * run out, in which case the retry is scheduled for then.
+	 */
+	public void register()
+	{
+		if (peekRegistrationId() != null)
+			return;
+		if (GooglePlayServicesUtil.isGooglePlayServicesAvailable(mContext) != ConnectionResult.SUCCESS)
+		{
+			logger.log(Level.INFO, "Push registration skipped - Google Play services unavailable");
+			return;
+		}
+		long delay = mPrefs.getLong(KEY_NEXT_ATTEMPT_AT, 0) - System.currentTimeMillis();
+		if (delay > 0)
+		{
+			scheduleRetry(delay);
+			return;
+		}
+		synchronized (this)
+		{
+			if (mWaiting != null)
+				return;
+			mWaiting = Lists.newArrayList();
+		}
+		mExecutor.execute(mRegister);
+	}
+
+	/**
+	 * Delivers the registration id. A caller asking while a registration is in
+	 * flight waits for it; otherwise it is answered straight away, with null if
+	 * the device is not registered.
+	 */
+	public void getRegistrationId(final Callback callback)
+	{
+		synchronized (this)
+		{
+			if (mWaiting != null)
+			{
+				mWaiting.add(callback);
+				return;
+			}
+		}
+		final String registration_id = peekRegistrationId();
+		mMainHandler.post(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				callback.onRegistrationId(registration_id);
+			}
+		});
+	}
+
+	private void scheduleRetry(long delay)
+	{
+		mMainHandler.removeCallbacks(mRetry);
+		mMainHandler.postDelayed(mRetry, delay);
+	}
+
+	private void deliver(final List<Callback> callbacks, final String registrationId)
+	{
+		if (callbacks.isEmpty())
+			return;
+		mMainHandler.post(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				for (Callback callback : callbacks)
+					callback.onRegistrationId(registrationId);
+			}
+		});
+	}
+
+	private static int appVersion(Context context)
+	{
+		try
+		{
+			return context.getPackageManager().getPackageInfo(context.getPackageName(), 0).versionCode;
+		} catch (PackageManager.NameNotFoundException e)
+		{
+			// Cannot happen for our own package
+			throw new IllegalStateException(e);
+		}
+	}
+}
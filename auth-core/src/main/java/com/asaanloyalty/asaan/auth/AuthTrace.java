@@ -0,0 +1,192 @@
+package com.asaanloyalty.asaan.auth;
+
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Records how long each phase of start-up and sign-in takes.
+ *
+ * Durations are measured with {@link System#nanoTime()} and stored in a fixed
+ * size ring buffer per phase, so recording never allocates and only the most
+ * recent {@link #CAPACITY} samples of each phase are kept. Percentiles are
+ * computed on demand from a copy of the buffer.
+ *
+ * A phase can be timed either with {@link #begin}/{@link #end}, which keeps
+ * the start time on the caller's stack, or with {@link #start}/{@link #stop}
+ * when the phase starts and finishes in different callbacks.
+ */
+public final class AuthTrace
+{
+	private static final Logger logger = Logger.getLogger(AuthTrace.class.getName());
+
+	public static final int PHASE_SET_CONTENT_VIEW = 0;
+	public static final int PHASE_GOOGLE_CONNECT = 1;
+	public static final int PHASE_GOOGLE_RESOLUTION = 2;
+	public static final int PHASE_GRAPH_ME = 3;
+	public static final int PHASE_PROFILE_QUERY = 4;
+	public static final int PHASE_PROFILE_RESOLVE = 5;
+	public static final int PHASE_PROFILE_LOAD = 6;
+
+	private static final String[] PHASE_NAMES = {"setContentView", "googleConnect", "googleResolution", "graphMe",
+			"profileQuery", "profileResolve", "profileLoad"};
+	private static final int PHASE_COUNT = PHASE_NAMES.length;
+
+	/** Samples kept per phase */
+	public static final int CAPACITY = 128;
+
+	/** Durations in nanoseconds, one ring per phase */
+	private static final long[][] sSamples = new long[PHASE_COUNT][CAPACITY];
+	/** Total samples recorded per phase; the next write goes to count % CAPACITY */
+	private static final long[] sCounts = new long[PHASE_COUNT];
+	/** Start time of phases timed with start/stop, or 0 if not running */
+	private static final long[] sOpen = new long[PHASE_COUNT];
+
+	private AuthTrace()
+	{
+	}
+
+	/**
+	 * @return a start time to pass to {@link #end}
+	 */
+	public static long begin()
+	{
+		return System.nanoTime();
+	}
+
+	/**
+	 * Records the time since a {@link #begin} call.
+	 */
+	public static void end(int phase, long begin)
+	{
+		record(phase, System.nanoTime() - begin);
+	}
+
+	/**
+	 * Marks the start of a phase that will be finished by {@link #stop},
+	 * possibly from another callback. Restarting a running phase moves its
+	 * start time.
+	 */
+	public static void start(int phase)
+	{
+		long now = System.nanoTime();
+		synchronized (sOpen)
+		{
+			sOpen[phase] = now;
+		}
+	}
+
+	/**
+	 * Records the time since the matching {@link #start}. Does nothing if the
+	 * phase is not running.
+	 */
+	public static void stop(int phase)
+	{
+		long now = System.nanoTime();
+		long started;
+		synchronized (sOpen)
+		{
+			started = sOpen[phase];
+			sOpen[phase] = 0;
+		}
+		if (started != 0)
+			record(phase, now - started);
+	}
+
+	/**
+	 * Forgets a running phase without recording it, for example when it was
+	 * abandoned.
+	 */
+	public static void cancel(int phase)
+	{
+		synchronized (sOpen)
+		{
+			sOpen[phase] = 0;
+		}
+	}
+
+	private static void record(int phase, long durationNanos)
+	{
+		synchronized (sSamples[phase])
+		{
+			sSamples[phase][(int) (sCounts[phase] % CAPACITY)] = durationNanos;
+			sCounts[phase]++;
+		}
+	}
+
+	/**
+	 * @return the number of samples recorded for a phase since start-up
+	 */
+	public static long count(int phase)
+	{
+		synchronized (sSamples[phase])
+		{
+			return sCounts[phase];
+		}
+	}
+
+	/**
+	 * Computes a percentile over the retained samples of a phase.
+	 *
+	 * @param percentile
+	 *            between 0 and 100
+	 * @return the duration in milliseconds, or -1 if there are no samples
+	 */
+	public static double percentileMillis(int phase, double percentile)
+	{
+		return percentileMillis(snapshot(phase), percentile);
+	}
+
+	private static double percentileMillis(long[] sorted, double percentile)
+	{
+		if (sorted.length == 0)
+			return -1;
+		int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+		index = Math.max(0, Math.min(sorted.length - 1, index));
+		return sorted[index] / 1000000.0;
+	}
+
+	private static long[] snapshot(int phase)
+	{
+		long[] copy;
+		synchronized (sSamples[phase])
+		{
+			int size = (int) Math.min(sCounts[phase], CAPACITY);
+			copy = Arrays.copyOf(sSamples[phase], size);
+		}
+		Arrays.sort(copy);
+		return copy;
+	}
+
+	/**
+	 * Renders count, p50, p90, p99 and max for every phase with samples as
+	 * JSON, for export to the dashboards.
+	 */
+	public static String toJson()
+	{
+		StringBuilder json = new StringBuilder("{");
+		boolean first = true;
+		for (int phase = 0; phase < PHASE_COUNT; phase++)
+		{
+			long[] sorted = snapshot(phase);
+			if (sorted.length == 0)
+				continue;
+			if (!first)
+				json.append(',');
+			first = false;
+			json.append('"').append(PHASE_NAMES[phase]).append("\":{\"count\":").append(count(phase))
+					.append(",\"p50\":").append(percentileMillis(sorted, 50)).append(",\"p90\":")
+					.append(percentileMillis(sorted, 90)).append(",\"p99\":").append(percentileMillis(sorted, 99))
+					.append(",\"max\":").append(sorted[sorted.length - 1] / 1000000.0).append('}');
+		}
+		return json.append('}').toString();
+	}
+
+	/**
+	 * Writes the current percentiles to the log.
+	 */
+	public static void dump()
+	{
+		logger.log(Level.INFO, "Auth timings (ms) " + toJson());
+	}
+}
@@ -0,0 +1,96 @@
+package com.asaanloyalty.asaan.auth;
+
+import java.io.UnsupportedEncodingException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Hashes email addresses and phone numbers so they can be matched against
+ * members without being sent in the clear.
+ *
+ * Values are brought into their {@link IdentityNormalizer} canonical form
+ * before hashing, so every spelling of an address or number that reaches the
+ * same person hashes the same on the device and on the backend. A hash is the
+ * lower-case hex HMAC-SHA256 of a type prefix and the canonical value, under
+ * a key the backend issues. There are few enough phone numbers that a plain
+ * hash could be reversed by hashing them all, so the key is what keeps the
+ * values from anyone who sees the hashes without it. The backend holds the
+ * key and matches the hashes, so it can recover the values as well.
+ *
+ * Not thread-safe; use one hasher per thread.
+ */
+public final class IdentityHasher
+{
+	private static final String ALGORITHM = "HmacSHA256";
+	private static final String EMAIL_PREFIX = "email:";
+	private static final String PHONE_PREFIX = "phone:";
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final Mac mMac;
+
+	/**
+	 * @param key
+	 *            the HMAC key the backend issued
+	 */
+	public IdentityHasher(byte[] key)
+	{
+		try
+		{
+			mMac = Mac.getInstance(ALGORITHM);
+			mMac.init(new SecretKeySpec(key, ALGORITHM));
+		} catch (NoSuchAlgorithmException e)
+		{
+			// Every JVM and Android release provides HmacSHA256
+			throw new IllegalStateException(e);
+		} catch (InvalidKeyException e)
+		{
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	/**
+	 * @return the hash of the address's {@link IdentityNormalizer#emailKey},
+	 *         or null if the value is not an address
+	 */
+	public String hashEmail(String email)
+	{
+		String key = IdentityNormalizer.emailKey(email);
+		return key != null ? hash(EMAIL_PREFIX, key) : null;
+	}
+
+	/**
+	 * @param region
+	 *            ISO 3166 country numbers in national form are assumed to be
+	 *            in, or null
+	 * @return the hash of the number in E.164 form, or null if it is not a
+	 *         number
+	 */
+	public String hashPhone(String phone, String region)
+	{
+		String normalized = IdentityNormalizer.normalizePhone(phone, region);
+		return normalized != null ? hash(PHONE_PREFIX, normalized) : null;
+	}
+
+	private String hash(String prefix, String value)
+	{
+		byte[] hash;
+		try
+		{
+			mMac.update(prefix.getBytes("UTF-8"));
+			hash = mMac.doFinal(value.getBytes("UTF-8"));
+		} catch (UnsupportedEncodingException e)
+		{
+			throw new IllegalStateException(e);
+		}
+		char[] hex = new char[hash.length * 2];
+		for (int i = 0; i < hash.length; i++)
+		{
+			hex[i * 2] = HEX[(hash[i] >> 4) & 0xf];
+			hex[i * 2 + 1] = HEX[hash[i] & 0xf];
+		}
+		return new String(hex);
+	}
+}
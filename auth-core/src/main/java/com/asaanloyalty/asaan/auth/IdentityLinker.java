@@ -0,0 +1,337 @@
+package com.asaanloyalty.asaan.auth;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import com.google.api.client.util.Maps;
+
+/**
+ * Decides which local user a social identity belongs to, so a member who signs
+ * in with Facebook one day and Google+ the next ends up as one user.
+ *
+ * Known identities are kept in hash indices keyed by provider id, normalized
+ * email, normalized phone number and a name blocking key, so matching costs a
+ * few map lookups however many identities are stored. An identity links to a
+ * user by, in order of strength, the same provider id, a shared email, a
+ * shared phone number, or a sufficiently similar name. Name matches are only
+ * accepted when a single user qualifies and that user's known emails do not
+ * contradict the identity's.
+ *
+ * Not thread-safe; callers synchronize.
+ */
+public class IdentityLinker
+{
+	public static final int MATCH_NONE = 0;
+	public static final int MATCH_IDENTITY = 1;
+	public static final int MATCH_EMAIL = 2;
+	public static final int MATCH_PHONE = 3;
+	public static final int MATCH_NAME = 4;
+
+	/** Token overlap two names need to count as the same person */
+	static final float NAME_THRESHOLD = 0.8f;
+
+	private static final Pattern NAME_SEPARATORS = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+	private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+	private static final String[] NO_TOKENS = new String[0];
+
+	/**
+	 * The outcome of {@link IdentityLinker#match}.
+	 */
+	public static final class Match
+	{
+		static final Match NONE = new Match(-1, MATCH_NONE);
+
+		private final long mUserId;
+		private final int mReason;
+
+		Match(long userId, int reason)
+		{
+			mUserId = userId;
+			mReason = reason;
+		}
+
+		/**
+		 * @return the matched user, or -1 for {@link #MATCH_NONE}
+		 */
+		public long getUserId()
+		{
+			return mUserId;
+		}
+
+		/**
+		 * @return one of the MATCH_* constants
+		 */
+		public int getReason()
+		{
+			return mReason;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "Match{userId=" + mUserId + ", reason=" + mReason + "}";
+		}
+	}
+
+	/**
+	 * Everything known about one user across their identities.
+	 */
+	private static final class UserEntry
+	{
+		final Set<String> mEmails = new HashSet<String>(2);
+		final List<String[]> mNames = new ArrayList<String[]>(2);
+	}
+
+	private final Map<String, Long> mByIdentity = Maps.newHashMap();
+	private final Map<String, Set<Long>> mByEmail = Maps.newHashMap();
+	private final Map<String, Set<Long>> mByPhone = Maps.newHashMap();
+	private final Map<String, Set<Long>> mByNameKey = Maps.newHashMap();
+	private final Map<Long, UserEntry> mUsers = Maps.newHashMap();
+
+	/**
+	 * Indexes an identity as belonging to a user.
+	 */
+	public void add(long userId, String provider, String externalId, String email, String phone, String name)
+	{
+		UserEntry user = mUsers.get(userId);
+		if (user == null)
+		{
+			user = new UserEntry();
+			mUsers.put(userId, user);
+		}
+		if (externalId != null)
+			mByIdentity.put(identityKey(provider, externalId), userId);
+		String normalized_email = IdentityNormalizer.emailKey(email);
+		if (normalized_email != null)
+		{
+			put(mByEmail, normalized_email, userId);
+			user.mEmails.add(normalized_email);
+		}
+		String normalized_phone = IdentityNormalizer.normalizePhone(phone);
+		if (normalized_phone != null)
+			put(mByPhone, normalized_phone, userId);
+		String[] tokens = nameTokens(name);
+		if (tokens.length > 0)
+		{
+			put(mByNameKey, blockingKey(tokens), userId);
+			user.mNames.add(tokens);
+		}
+	}
+
+	/**
+	 * Indexes a profile as belonging to a user.
+	 */
+	public void add(long userId, SocialProfile profile)
+	{
+		add(userId, profile.getProvider(), profile.getUserId(), profile.getEmail(), profile.getPhoneNumber(),
+				profile.getName());
+	}
+
+	/**
+	 * Finds the user a profile belongs to.
+	 *
+	 * @return the match, never null; {@link Match#getReason()} is
+	 *         {@link #MATCH_NONE} if the profile belongs to a new user
+	 */
+	public Match match(SocialProfile profile)
+	{
+		if (profile.getUserId() != null)
+		{
+			Long user_id = mByIdentity.get(identityKey(profile.getProvider(), profile.getUserId()));
+			if (user_id != null)
+				return new Match(user_id, MATCH_IDENTITY);
+		}
+		String[] tokens = nameTokens(profile.getName());
+
+		String email = IdentityNormalizer.emailKey(profile.getEmail());
+		if (email != null)
+		{
+			long user_id = closestByName(mByEmail.get(email), tokens);
+			if (user_id != -1)
+				return new Match(user_id, MATCH_EMAIL);
+		}
+		String phone = IdentityNormalizer.normalizePhone(profile.getPhoneNumber());
+		if (phone != null)
+		{
+			long user_id = closestByName(mByPhone.get(phone), tokens);
+			if (user_id != -1)
+				return new Match(user_id, MATCH_PHONE);
+		}
+		if (tokens.length > 0)
+		{
+			long user_id = uniqueByName(mByNameKey.get(blockingKey(tokens)), tokens, email);
+			if (user_id != -1)
+				return new Match(user_id, MATCH_NAME);
+		}
+		return Match.NONE;
+	}
+
+	/**
+	 * Whether two profiles plausibly describe the same person: they share an
+	 * email or phone number, or neither has an email contradicting the other
+	 * and their names are similar.
+	 */
+	public static boolean isSamePerson(SocialProfile a, SocialProfile b)
+	{
+		String email_a = IdentityNormalizer.emailKey(a.getEmail());
+		String email_b = IdentityNormalizer.emailKey(b.getEmail());
+		if (email_a != null && email_a.equals(email_b))
+			return true;
+		String phone_a = IdentityNormalizer.normalizePhone(a.getPhoneNumber());
+		if (phone_a != null && phone_a.equals(IdentityNormalizer.normalizePhone(b.getPhoneNumber())))
+			return true;
+		if (email_a != null && email_b != null)
+			return false;
+		return nameSimilarity(nameTokens(a.getName()), nameTokens(b.getName())) >= NAME_THRESHOLD;
+	}
+
+	/**
+	 * Dice coefficient of two names' token sets, from 0 for no shared token to
+	 * 1 for the same tokens in any order.
+	 */
+	public static float nameSimilarity(String a, String b)
+	{
+		return nameSimilarity(nameTokens(a), nameTokens(b));
+	}
+
+	/**
+	 * @param a
+	 *            sorted tokens
+	 * @param b
+	 *            sorted tokens
+	 */
+	static float nameSimilarity(String[] a, String[] b)
+	{
+		if (a.length == 0 || b.length == 0)
+			return 0;
+		// Both arrays are sorted, so count common tokens with a merge walk
+		int common = 0;
+		int i = 0, j = 0;
+		while (i < a.length && j < b.length)
+		{
+			int cmp = a[i].compareTo(b[j]);
+			if (cmp == 0)
+			{
+				common++;
+				i++;
+				j++;
+			} else if (cmp < 0)
+				i++;
+			else
+				j++;
+		}
+		return 2f * common / (a.length + b.length);
+	}
+
+	/**
+	 * Splits a name into lower-case tokens without accents, sorted so that
+	 * "Smith, John" and "John Smith" compare equal.
+	 */
+	static String[] nameTokens(String name)
+	{
+		if (name == null)
+			return NO_TOKENS;
+		String folded = COMBINING_MARKS.matcher(Normalizer.normalize(name, Normalizer.Form.NFD)).replaceAll("")
+				.toLowerCase(Locale.US).trim();
+		if (folded.length() == 0)
+			return NO_TOKENS;
+		String[] tokens = NAME_SEPARATORS.split(folded);
+		int count = 0;
+		for (String token : tokens)
+			if (token.length() > 0)
+				tokens[count++] = token;
+		tokens = Arrays.copyOf(tokens, count);
+		Arrays.sort(tokens);
+		return tokens;
+	}
+
+	/**
+	 * The longest token, which is usually the family name. Names that differ
+	 * only by a middle initial or word order share a key.
+	 */
+	private static String blockingKey(String[] tokens)
+	{
+		String key = tokens[0];
+		for (String token : tokens)
+			if (token.length() > key.length())
+				key = token;
+		return key;
+	}
+
+	/**
+	 * @return the only candidate, or the one whose name is most similar, or -1
+	 *         if there are no candidates
+	 */
+	private long closestByName(Set<Long> candidates, String[] tokens)
+	{
+		if (candidates == null || candidates.isEmpty())
+			return -1;
+		long best_id = -1;
+		float best = -1;
+		for (Long candidate : candidates)
+		{
+			float similarity = bestNameSimilarity(mUsers.get(candidate), tokens);
+			if (similarity > best)
+			{
+				best = similarity;
+				best_id = candidate;
+			}
+		}
+		return best_id;
+	}
+
+	/**
+	 * @return the single candidate whose name is similar enough and whose
+	 *         emails do not contradict the given one, or -1 if there is none
+	 *         or more than one
+	 */
+	private long uniqueByName(Set<Long> candidates, String[] tokens, String email)
+	{
+		if (candidates == null)
+			return -1;
+		long found = -1;
+		for (Long candidate : candidates)
+		{
+			UserEntry user = mUsers.get(candidate);
+			if (email != null && !user.mEmails.isEmpty() && !user.mEmails.contains(email))
+				continue;
+			if (bestNameSimilarity(user, tokens) < NAME_THRESHOLD)
+				continue;
+			if (found != -1)
+				return -1;
+			found = candidate;
+		}
+		return found;
+	}
+
+	private static float bestNameSimilarity(UserEntry user, String[] tokens)
+	{
+		float best = 0;
+		for (String[] name : user.mNames)
+			best = Math.max(best, nameSimilarity(name, tokens));
+		return best;
+	}
+
+	private static void put(Map<String, Set<Long>> index, String key, long userId)
+	{
+		Set<Long> users = index.get(key);
+		if (users == null)
+		{
+			users = new HashSet<Long>(2);
+			index.put(key, users);
+		}
+		users.add(userId);
+	}
+
+	private static String identityKey(String provider, String externalId)
+	{
+		return provider + ':' + externalId;
+	}
+}
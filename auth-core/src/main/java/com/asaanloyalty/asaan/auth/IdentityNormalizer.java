@@ -0,0 +1,249 @@
+package com.asaanloyalty.asaan.auth;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.api.client.util.Maps;
+
+/**
+ * Brings email addresses and phone numbers into the form they are stored and
+ * indexed in, so the same address or number reported by different providers
+ * compares equal.
+ *
+ * Emails are trimmed, validated and case-folded; {@link #emailKey} further
+ * canonicalizes Gmail addresses, which ignore dots and "+tag" suffixes. Phone
+ * numbers are brought into E.164 form where the country is known. Every
+ * method is thread-safe and uses no Android API, so it can be benchmarked on a
+ * plain JVM; the pattern is compiled once and each thread reuses its own
+ * matcher and buffer.
+ */
+public final class IdentityNormalizer
+{
+	/** Same expression as android.util.Patterns.EMAIL_ADDRESS */
+	private static final Pattern EMAIL_ADDRESS = Pattern.compile("[a-zA-Z0-9\\+\\.\\_\\%\\-\\+]{1,256}" + "\\@"
+			+ "[a-zA-Z0-9][a-zA-Z0-9\\-]{0,64}" + "(" + "\\." + "[a-zA-Z0-9][a-zA-Z0-9\\-]{0,25}" + ")+");
+
+	private static final String GMAIL_DOMAIN = "gmail.com";
+	private static final String GOOGLEMAIL_DOMAIN = "googlemail.com";
+
+	/** E.164 allows at most 15 digits after the '+' */
+	private static final int E164_MAX_DIGITS = 15;
+	/** Shorter numbers are service or extension numbers */
+	private static final int E164_MIN_DIGITS = 7;
+
+	/**
+	 * ISO 3166 region, country calling code and national trunk prefix. Regions
+	 * missing here are normalized only when the number is written in
+	 * international form.
+	 */
+	private static final String[][] REGIONS = { {"US", "1", "1"}, {"CA", "1", "1"}, {"GB", "44", "0"},
+			{"PK", "92", "0"}, {"IN", "91", "0"}, {"BD", "880", "0"}, {"LK", "94", "0"}, {"AE", "971", "0"},
+			{"SA", "966", "0"}, {"QA", "974", ""}, {"KW", "965", ""}, {"OM", "968", ""}, {"BH", "973", ""},
+			{"TR", "90", "0"}, {"DE", "49", "0"}, {"FR", "33", "0"}, {"IT", "39", ""}, {"ES", "34", ""},
+			{"NL", "31", "0"}, {"BE", "32", "0"}, {"CH", "41", "0"}, {"AT", "43", "0"}, {"IE", "353", "0"},
+			{"PT", "351", ""}, {"SE", "46", "0"}, {"NO", "47", ""}, {"DK", "45", ""}, {"FI", "358", "0"},
+			{"PL", "48", ""}, {"RU", "7", "8"}, {"CN", "86", "0"}, {"JP", "81", "0"}, {"KR", "82", "0"},
+			{"SG", "65", ""}, {"MY", "60", "0"}, {"ID", "62", "0"}, {"PH", "63", "0"}, {"TH", "66", "0"},
+			{"AU", "61", "0"}, {"NZ", "64", "0"}, {"ZA", "27", "0"}, {"NG", "234", "0"}, {"EG", "20", "0"},
+			{"KE", "254", "0"}, {"BR", "55", "0"}, {"MX", "52", ""}, {"AR", "54", "0"}};
+
+	private static final Map<String, String[]> REGION_BY_ISO = Maps.newHashMap();
+	static
+	{
+		for (String[] region : REGIONS)
+			REGION_BY_ISO.put(region[0], region);
+	}
+
+	private static final ThreadLocal<Matcher> sEmailMatcher = new ThreadLocal<Matcher>()
+	{
+		@Override
+		protected Matcher initialValue()
+		{
+			return EMAIL_ADDRESS.matcher("");
+		}
+	};
+
+	private static final ThreadLocal<StringBuilder> sBuffer = new ThreadLocal<StringBuilder>()
+	{
+		@Override
+		protected StringBuilder initialValue()
+		{
+			return new StringBuilder(32);
+		}
+	};
+
+	/** Region assumed for numbers without a country code, or null */
+	private static volatile String sDefaultRegion;
+
+	private IdentityNormalizer()
+	{
+	}
+
+	/**
+	 * Sets the region numbers written in national form are assumed to be in,
+	 * usually the SIM's country.
+	 *
+	 * @param iso
+	 *            ISO 3166 country code in either case, or null
+	 */
+	public static void setDefaultRegion(String iso)
+	{
+		sDefaultRegion = iso != null && iso.length() > 0 ? iso.toUpperCase(Locale.US) : null;
+	}
+
+	/**
+	 * @return whether the value is a plausible email address
+	 */
+	public static boolean isValidEmail(String email)
+	{
+		// Rule out most non-addresses before running the expression
+		return email != null && email.indexOf('@') > 0 && sEmailMatcher.get().reset(email).matches();
+	}
+
+	/**
+	 * @return the address trimmed and lower-cased, or null if it is empty or
+	 *         not an address
+	 */
+	public static String normalizeEmail(String email)
+	{
+		if (email == null)
+			return null;
+		String trimmed = email.trim();
+		if (!isValidEmail(trimmed))
+			return null;
+		return toLowerCase(trimmed);
+	}
+
+	/**
+	 * Canonical form used to index and compare addresses. Equal to
+	 * {@link #normalizeEmail} except that Gmail addresses lose their dots and
+	 * "+tag" and googlemail.com becomes gmail.com, as Gmail delivers all those
+	 * variants to the same mailbox.
+	 *
+	 * @return the key, or null if the value is not an address
+	 */
+	public static String emailKey(String email)
+	{
+		String normalized = normalizeEmail(email);
+		if (normalized == null)
+			return null;
+		int at = normalized.lastIndexOf('@');
+		String domain = normalized.substring(at + 1);
+		if (!GMAIL_DOMAIN.equals(domain) && !GOOGLEMAIL_DOMAIN.equals(domain))
+			return normalized;
+
+		StringBuilder key = sBuffer.get();
+		key.setLength(0);
+		for (int i = 0; i < at; i++)
+		{
+			char c = normalized.charAt(i);
+			if (c == '+')
+				break;
+			if (c != '.')
+				key.append(c);
+		}
+		if (key.length() == 0)
+			return normalized;
+		return key.append('@').append(GMAIL_DOMAIN).toString();
+	}
+
+	/**
+	 * Same as {@link #normalizePhone(String, String)} in the default region.
+	 */
+	public static String normalizePhone(String phone)
+	{
+		return normalizePhone(phone, sDefaultRegion);
+	}
+
+	/**
+	 * Strips formatting and any extension from a phone number and brings it
+	 * into E.164 form. Numbers written with a leading + or international
+	 * prefix are converted whatever the region; numbers in national form are
+	 * converted if the region is known and otherwise come back as their
+	 * digits.
+	 *
+	 * @param region
+	 *            ISO 3166 country the number is assumed to be in, or null
+	 * @return the normalized number, or null if it has no digits or too many
+	 *         for E.164
+	 */
+	public static String normalizePhone(String phone, String region)
+	{
+		if (phone == null)
+			return null;
+		StringBuilder digits = sBuffer.get();
+		digits.setLength(0);
+		boolean international = false;
+		for (int i = 0; i < phone.length(); i++)
+		{
+			char c = phone.charAt(i);
+			if (c >= '0' && c <= '9')
+				digits.append(c);
+			else if (c == '+' && digits.length() == 0)
+				international = true;
+			else if (c == 'x' || c == 'X' || c == ',' || c == ';' || c == '#')
+				// Extension or dialling pause follows
+				break;
+		}
+		if (digits.length() == 0)
+			return null;
+
+		String[] known = region != null ? REGION_BY_ISO.get(region.toUpperCase(Locale.US)) : null;
+		if (!international)
+		{
+			if (startsWith(digits, "00"))
+			{
+				digits.delete(0, 2);
+				international = true;
+			} else if (known != null && "1".equals(known[1]) && startsWith(digits, "011"))
+			{
+				digits.delete(0, 3);
+				international = true;
+			} else if (known != null)
+			{
+				// North American and Russian numbers only carry the trunk 1 or
+				// 8 when dialled as 11 digits; with 10 it is part of the area
+				// code, as in St Petersburg's 812
+				String trunk = known[2];
+				boolean eleven_digit_trunk = "1".equals(known[1]) || "7".equals(known[1]);
+				if (trunk.length() > 0 && startsWith(digits, trunk)
+						&& (!eleven_digit_trunk || digits.length() == 11))
+					digits.delete(0, trunk.length());
+				digits.insert(0, known[1]);
+				international = true;
+			}
+		}
+		if (!international)
+			return digits.toString();
+		if (digits.length() > E164_MAX_DIGITS || digits.length() < E164_MIN_DIGITS)
+			return null;
+		return digits.insert(0, '+').toString();
+	}
+
+	private static boolean startsWith(StringBuilder value, String prefix)
+	{
+		if (value.length() < prefix.length())
+			return false;
+		for (int i = 0; i < prefix.length(); i++)
+			if (value.charAt(i) != prefix.charAt(i))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Lower-cases ASCII letters, returning the same instance when there are
+	 * none to change.
+	 */
+	private static String toLowerCase(String value)
+	{
+		for (int i = 0; i < value.length(); i++)
+		{
+			char c = value.charAt(i);
+			if (c >= 'A' && c <= 'Z')
+				return value.toLowerCase(Locale.US);
+		}
+		return value;
+	}
+}
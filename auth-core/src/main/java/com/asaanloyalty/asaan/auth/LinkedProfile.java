@@ -0,0 +1,78 @@
+package com.asaanloyalty.asaan.auth;
+
+/**
+ * A profile merged from several linked identities, recording which provider
+ * each field was taken from.
+ */
+public final class LinkedProfile
+{
+	public static final int FIELD_NAME = 0;
+	public static final int FIELD_EMAIL = 1;
+	public static final int FIELD_PHONE = 2;
+	public static final int FIELD_PHOTO = 3;
+	private static final int FIELD_COUNT = 4;
+
+	private final SocialProfile mProfile;
+	/** Provider of each field, indexed by the FIELD_* constants */
+	private final String[] mSources;
+
+	/**
+	 * Merges profiles field by field, taking each field from the first profile
+	 * that has it.
+	 *
+	 * @param profiles
+	 *            in order of preference; null entries are skipped
+	 * @return the merge, or null if every entry is null
+	 */
+	public static LinkedProfile merge(SocialProfile... profiles)
+	{
+		SocialProfile merged = null;
+		String[] sources = new String[FIELD_COUNT];
+		for (SocialProfile profile : profiles)
+		{
+			if (profile == null)
+				continue;
+			merged = merged == null ? profile : merged.mergedWith(profile);
+			claim(sources, FIELD_NAME, profile.getName(), profile);
+			claim(sources, FIELD_EMAIL, profile.getEmail(), profile);
+			claim(sources, FIELD_PHONE, profile.getPhoneNumber(), profile);
+			claim(sources, FIELD_PHOTO, profile.getPhotoUrl(), profile);
+		}
+		return merged != null ? new LinkedProfile(merged, sources) : null;
+	}
+
+	private static void claim(String[] sources, int field, String value, SocialProfile profile)
+	{
+		if (sources[field] == null && value != null && value.length() > 0)
+			sources[field] = profile.getProvider();
+	}
+
+	private LinkedProfile(SocialProfile profile, String[] sources)
+	{
+		mProfile = profile;
+		mSources = sources;
+	}
+
+	public SocialProfile getProfile()
+	{
+		return mProfile;
+	}
+
+	/**
+	 * @param field
+	 *            one of the FIELD_* constants
+	 * @return the provider the field was taken from, or null if no linked
+	 *         identity had it
+	 */
+	public String getSource(int field)
+	{
+		return mSources[field];
+	}
+
+	@Override
+	public String toString()
+	{
+		return "LinkedProfile{" + mProfile + ", name=" + mSources[FIELD_NAME] + ", email=" + mSources[FIELD_EMAIL]
+				+ ", phone=" + mSources[FIELD_PHONE] + ", photo=" + mSources[FIELD_PHOTO] + "}";
+	}
+}
@@ -0,0 +1,253 @@
+package com.asaanloyalty.asaan.auth;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.google.api.client.util.Lists;
+import com.google.api.client.util.Maps;
+
+/**
+ * Insertion ordered set of candidate values (emails, names or phone numbers)
+ * for a profile field.
+ *
+ * Values are deduplicated on a normalized key, so the same address reported
+ * by several sources or rows is held once. Each candidate remembers whether
+ * any source marked it primary, the most trusted source it came from and how
+ * often it was seen; {@link #best()} ranks on those in that order and falls
+ * back to insertion order. Adding, looking up and ranking are all constant
+ * time.
+ */
+public class ProfileCandidateSet
+{
+	/** Source of a value is not known */
+	public static final int SOURCE_UNKNOWN = 0;
+	/** Value came from the device's telephony service */
+	public static final int SOURCE_TELEPHONY = 1;
+	/** Value came from an account registered with the AccountManager */
+	public static final int SOURCE_ACCOUNTS = 2;
+	/** Value came from a social network sign-in */
+	public static final int SOURCE_SOCIAL = 3;
+	/** Value came from the device owner's profile contact */
+	public static final int SOURCE_CONTACTS = 4;
+
+	/**
+	 * Derives the key values are deduplicated on.
+	 */
+	public interface KeyFunction
+	{
+		/**
+		 * @return the normalized key, or null if the value should be ignored
+		 */
+		String key(String value);
+	}
+
+	/** Match on {@link IdentityNormalizer#emailKey}; invalid addresses are ignored */
+	public static final KeyFunction EMAIL_KEY = new KeyFunction()
+	{
+		@Override
+		public String key(String value)
+		{
+			return IdentityNormalizer.emailKey(value);
+		}
+	};
+
+	/** Match on the E.164 form of the number in the default region */
+	public static final KeyFunction PHONE_KEY = new KeyFunction()
+	{
+		@Override
+		public String key(String value)
+		{
+			return IdentityNormalizer.normalizePhone(value);
+		}
+	};
+
+	/** Case-insensitive match with runs of whitespace collapsed */
+	public static final KeyFunction NAME_KEY = new KeyFunction()
+	{
+		@Override
+		public String key(String value)
+		{
+			StringBuilder key = new StringBuilder(value.length());
+			boolean space = false;
+			for (int i = 0; i < value.length(); i++)
+			{
+				char c = value.charAt(i);
+				if (Character.isWhitespace(c))
+					space = key.length() > 0;
+				else
+				{
+					if (space)
+						key.append(' ');
+					key.append(Character.toLowerCase(c));
+					space = false;
+				}
+			}
+			return key.length() == 0 ? null : key.toString();
+		}
+	};
+
+	/**
+	 * A single deduplicated value.
+	 */
+	public static final class Candidate
+	{
+		private final String mValue;
+		private final int mOrder;
+		private boolean mPrimary;
+		private int mSource;
+		private int mCount;
+
+		private Candidate(String value, int order)
+		{
+			mValue = value;
+			mOrder = order;
+		}
+
+		/** The value as first reported */
+		public String value()
+		{
+			return mValue;
+		}
+
+		/** Whether any source marked this value primary */
+		public boolean isPrimary()
+		{
+			return mPrimary;
+		}
+
+		/** The most trusted source that reported this value */
+		public int source()
+		{
+			return mSource;
+		}
+
+		/** How many times this value was reported */
+		public int count()
+		{
+			return mCount;
+		}
+
+		private boolean outranks(Candidate other)
+		{
+			if (mPrimary != other.mPrimary)
+				return mPrimary;
+			if (mSource != other.mSource)
+				return mSource > other.mSource;
+			if (mCount != other.mCount)
+				return mCount > other.mCount;
+			return mOrder < other.mOrder;
+		}
+	}
+
+	private final KeyFunction mKeyFunction;
+	private final Map<String, Candidate> mCandidates = Maps.newLinkedHashMap();
+	private Candidate mBest;
+
+	public ProfileCandidateSet(KeyFunction keyFunction)
+	{
+		mKeyFunction = keyFunction;
+	}
+
+	/**
+	 * Adds a value, or updates the ranking of an equivalent value that is
+	 * already present.
+	 *
+	 * @param value
+	 *            the value; ignored if null or if it normalizes to nothing
+	 * @param is_primary
+	 *            whether the source marked the value primary
+	 * @param source
+	 *            one of the SOURCE_* constants
+	 */
+	public void add(String value, boolean is_primary, int source)
+	{
+		if (value == null)
+			return;
+		String key = mKeyFunction.key(value);
+		if (key == null)
+			return;
+		add(key, value, is_primary, source, 1);
+	}
+
+	/**
+	 * Adds every candidate of another set, summing how often each value was
+	 * seen.
+	 */
+	public void addAll(ProfileCandidateSet other)
+	{
+		for (Map.Entry<String, Candidate> entry : other.mCandidates.entrySet())
+		{
+			Candidate candidate = entry.getValue();
+			add(entry.getKey(), candidate.mValue, candidate.mPrimary, candidate.mSource, candidate.mCount);
+		}
+	}
+
+	private void add(String key, String value, boolean is_primary, int source, int count)
+	{
+		Candidate candidate = mCandidates.get(key);
+		if (candidate == null)
+		{
+			candidate = new Candidate(value, mCandidates.size());
+			mCandidates.put(key, candidate);
+		}
+		candidate.mPrimary |= is_primary;
+		candidate.mSource = Math.max(candidate.mSource, source);
+		candidate.mCount += count;
+		// Rankings only ever increase, so the best candidate can be tracked
+		// incrementally
+		if (mBest == null || (candidate != mBest && candidate.outranks(mBest)))
+			mBest = candidate;
+	}
+
+	/**
+	 * @return whether an equivalent value is present
+	 */
+	public boolean contains(String value)
+	{
+		if (value == null)
+			return false;
+		String key = mKeyFunction.key(value);
+		return key != null && mCandidates.containsKey(key);
+	}
+
+	/**
+	 * @return the candidate equivalent to the value, or null
+	 */
+	public Candidate get(String value)
+	{
+		if (value == null)
+			return null;
+		String key = mKeyFunction.key(value);
+		return key == null ? null : mCandidates.get(key);
+	}
+
+	/**
+	 * @return the highest ranked value, or null if the set is empty
+	 */
+	public String best()
+	{
+		return mBest != null ? mBest.mValue : null;
+	}
+
+	public int size()
+	{
+		return mCandidates.size();
+	}
+
+	public boolean isEmpty()
+	{
+		return mCandidates.isEmpty();
+	}
+
+	/**
+	 * @return the values in insertion order
+	 */
+	public List<String> values()
+	{
+		List<String> values = Lists.newArrayListWithCapacity(mCandidates.size());
+		for (Candidate candidate : mCandidates.values())
+			values.add(candidate.mValue);
+		return Collections.unmodifiableList(values);
+	}
+}
@@ -0,0 +1,360 @@
+package com.asaanloyalty.asaan.auth;
+
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Drives a provider's sign-in flow through explicit states.
+ *
+ * Every (state, event) pair is looked up in a fixed transition table that
+ * names the next state and the single action to run. Pairs that are not in
+ * the table are ignored and counted, so an event arriving twice, or in a
+ * state where it makes no sense, can never start a second connect or a
+ * second resolution intent. Connection failures that cannot be resolved by
+ * the user are retried with exponential backoff up to {@link #MAX_RETRIES}
+ * times. Signing out while connected forgets the account and connects again
+ * in the background; signing out in any other state but IDLE gives up on the
+ * sign-in in progress and returns to IDLE.
+ *
+ * The machine is provider-agnostic: the provider's work is done by a
+ * {@link Delegate}, and R is the provider's connection failure type. Retries
+ * are run by a {@link Scheduler}, so the machine itself needs no Android API.
+ * Must be used on the thread the scheduler runs its tasks on, on Android the
+ * main thread.
+ */
+public class SignInStateMachine<R>
+{
+	private static final Logger logger = Logger.getLogger(SignInStateMachine.class.getName());
+
+	/** Not connected and not trying to */
+	public static final int STATE_IDLE = 0;
+	/** Connecting in the background, without user interaction */
+	public static final int STATE_CONNECTING = 1;
+	/** A background connect failed in a way the user can resolve */
+	public static final int STATE_NEEDS_USER = 2;
+	/** Connecting because the user asked to sign in */
+	public static final int STATE_CONNECTING_INTERACTIVE = 3;
+	/** A resolution intent or error dialog is showing */
+	public static final int STATE_RESOLVING = 4;
+	/** Waiting to retry a failed interactive connect */
+	public static final int STATE_BACKOFF = 5;
+	public static final int STATE_CONNECTED = 6;
+	/** Connection lost; the provider restores it on its own */
+	public static final int STATE_SUSPENDED = 7;
+	/** Interactive sign-in gave up */
+	public static final int STATE_FAILED = 8;
+
+	private static final String[] STATE_NAMES = {"IDLE", "CONNECTING", "NEEDS_USER", "CONNECTING_INTERACTIVE",
+			"RESOLVING", "BACKOFF", "CONNECTED", "SUSPENDED", "FAILED"};
+	private static final int STATE_COUNT = STATE_NAMES.length;
+
+	/** Connect in the background if that might sign the user in silently */
+	public static final int EVENT_CONNECT = 0;
+	/** The user tapped sign-in */
+	public static final int EVENT_SIGN_IN = 1;
+	public static final int EVENT_CONNECTED = 2;
+	/** Connect failed with a failure the user can resolve */
+	public static final int EVENT_FAILED_RESOLVABLE = 3;
+	/** Connect failed with a failure the user cannot resolve */
+	public static final int EVENT_FAILED_UNRESOLVABLE = 4;
+	public static final int EVENT_RESOLUTION_OK = 5;
+	public static final int EVENT_RESOLUTION_CANCELED = 6;
+	/** The resolution could not be started */
+	public static final int EVENT_RESOLUTION_UNAVAILABLE = 7;
+	public static final int EVENT_SUSPENDED = 8;
+	public static final int EVENT_RETRY = 9;
+	public static final int EVENT_SIGN_OUT = 10;
+	/** The owning activity stopped */
+	public static final int EVENT_STOP = 11;
+
+	private static final String[] EVENT_NAMES = {"CONNECT", "SIGN_IN", "CONNECTED", "FAILED_RESOLVABLE",
+			"FAILED_UNRESOLVABLE", "RESOLUTION_OK", "RESOLUTION_CANCELED", "RESOLUTION_UNAVAILABLE", "SUSPENDED",
+			"RETRY", "SIGN_OUT", "STOP"};
+	private static final int EVENT_COUNT = EVENT_NAMES.length;
+
+	private static final int ACTION_NONE = 0;
+	private static final int ACTION_CONNECT = 1;
+	private static final int ACTION_RESOLVE = 2;
+	private static final int ACTION_SCHEDULE_RETRY = 3;
+	private static final int ACTION_CANCEL_RETRY = 4;
+	private static final int ACTION_DISCONNECT = 5;
+	private static final int ACTION_SIGN_OUT = 6;
+	private static final int ACTION_SIGNED_IN = 7;
+	private static final int ACTION_CANCELED = 8;
+	private static final int ACTION_ABANDON = 9;
+
+	/** Interactive connects retried after an unresolvable failure */
+	public static final int MAX_RETRIES = 3;
+	private static final long INITIAL_BACKOFF_MS = 1000;
+	private static final long MAX_BACKOFF_MS = 8000;
+
+	/** Next state per state and event, or -1 to ignore the event */
+	private static final int[][] NEXT = new int[STATE_COUNT][EVENT_COUNT];
+	/** Action per state and event */
+	private static final int[][] ACTION = new int[STATE_COUNT][EVENT_COUNT];
+
+	static
+	{
+		for (int[] row : NEXT)
+			Arrays.fill(row, -1);
+
+		on(STATE_IDLE, EVENT_CONNECT, STATE_CONNECTING, ACTION_CONNECT);
+		on(STATE_IDLE, EVENT_SIGN_IN, STATE_CONNECTING_INTERACTIVE, ACTION_CONNECT);
+
+		on(STATE_CONNECTING, EVENT_SIGN_IN, STATE_CONNECTING_INTERACTIVE, ACTION_NONE);
+		on(STATE_CONNECTING, EVENT_CONNECTED, STATE_CONNECTED, ACTION_SIGNED_IN);
+		on(STATE_CONNECTING, EVENT_FAILED_RESOLVABLE, STATE_NEEDS_USER, ACTION_NONE);
+		on(STATE_CONNECTING, EVENT_FAILED_UNRESOLVABLE, STATE_IDLE, ACTION_NONE);
+		on(STATE_CONNECTING, EVENT_STOP, STATE_IDLE, ACTION_DISCONNECT);
+
+		on(STATE_NEEDS_USER, EVENT_SIGN_IN, STATE_RESOLVING, ACTION_RESOLVE);
+		on(STATE_NEEDS_USER, EVENT_STOP, STATE_IDLE, ACTION_DISCONNECT);
+
+		on(STATE_CONNECTING_INTERACTIVE, EVENT_CONNECTED, STATE_CONNECTED, ACTION_SIGNED_IN);
+		on(STATE_CONNECTING_INTERACTIVE, EVENT_FAILED_RESOLVABLE, STATE_RESOLVING, ACTION_RESOLVE);
+		on(STATE_CONNECTING_INTERACTIVE, EVENT_FAILED_UNRESOLVABLE, STATE_BACKOFF, ACTION_SCHEDULE_RETRY);
+		on(STATE_CONNECTING_INTERACTIVE, EVENT_STOP, STATE_IDLE, ACTION_DISCONNECT);
+
+		on(STATE_RESOLVING, EVENT_RESOLUTION_OK, STATE_CONNECTING_INTERACTIVE, ACTION_CONNECT);
+		on(STATE_RESOLVING, EVENT_RESOLUTION_CANCELED, STATE_NEEDS_USER, ACTION_CANCELED);
+		on(STATE_RESOLVING, EVENT_RESOLUTION_UNAVAILABLE, STATE_BACKOFF, ACTION_SCHEDULE_RETRY);
+		// The resolution activity covers ours, so a stop is expected here and
+		// the result still arrives afterwards
+		on(STATE_RESOLVING, EVENT_STOP, STATE_RESOLVING, ACTION_DISCONNECT);
+
+		on(STATE_BACKOFF, EVENT_RETRY, STATE_CONNECTING_INTERACTIVE, ACTION_CONNECT);
+		on(STATE_BACKOFF, EVENT_STOP, STATE_IDLE, ACTION_CANCEL_RETRY);
+
+		on(STATE_CONNECTED, EVENT_SIGN_IN, STATE_CONNECTED, ACTION_SIGNED_IN);
+		on(STATE_CONNECTED, EVENT_SUSPENDED, STATE_SUSPENDED, ACTION_NONE);
+		on(STATE_CONNECTED, EVENT_SIGN_OUT, STATE_CONNECTING, ACTION_SIGN_OUT);
+		on(STATE_CONNECTED, EVENT_STOP, STATE_IDLE, ACTION_DISCONNECT);
+
+		on(STATE_SUSPENDED, EVENT_CONNECTED, STATE_CONNECTED, ACTION_SIGNED_IN);
+		on(STATE_SUSPENDED, EVENT_FAILED_RESOLVABLE, STATE_NEEDS_USER, ACTION_NONE);
+		on(STATE_SUSPENDED, EVENT_FAILED_UNRESOLVABLE, STATE_IDLE, ACTION_NONE);
+		on(STATE_SUSPENDED, EVENT_STOP, STATE_IDLE, ACTION_DISCONNECT);
+
+		on(STATE_FAILED, EVENT_CONNECT, STATE_CONNECTING, ACTION_CONNECT);
+		on(STATE_FAILED, EVENT_SIGN_IN, STATE_CONNECTING_INTERACTIVE, ACTION_CONNECT);
+		on(STATE_FAILED, EVENT_STOP, STATE_IDLE, ACTION_NONE);
+
+		// Not connected, so there is no account to forget; just stop trying
+		for (int state : new int[] {STATE_CONNECTING, STATE_NEEDS_USER, STATE_CONNECTING_INTERACTIVE,
+				STATE_RESOLVING, STATE_BACKOFF, STATE_SUSPENDED, STATE_FAILED})
+			on(state, EVENT_SIGN_OUT, STATE_IDLE, ACTION_ABANDON);
+	}
+
+	private static void on(int state, int event, int next, int action)
+	{
+		NEXT[state][event] = next;
+		ACTION[state][event] = action;
+	}
+
+	/**
+	 * Does the provider-specific work for the machine.
+	 */
+	public interface Delegate<R>
+	{
+		void connect();
+
+		void disconnect();
+
+		/**
+		 * Starts resolving a failure, typically with a resolution intent or
+		 * an error dialog whose result is fed back as
+		 * {@link SignInStateMachine#EVENT_RESOLUTION_OK} or
+		 * {@link SignInStateMachine#EVENT_RESOLUTION_CANCELED}.
+		 *
+		 * @return false if the resolution could not be started
+		 */
+		boolean startResolution(R failure);
+
+		/**
+		 * Forgets the signed-in account and disconnects.
+		 */
+		void signOut();
+
+		void onSignedIn();
+
+		void onSignInCanceled();
+
+		/**
+		 * @param failure
+		 *            the last connection failure, or null if there was none
+		 */
+		void onSignInFailed(R failure);
+	}
+
+	/**
+	 * Runs delayed tasks on the thread the machine is used on.
+	 */
+	public interface Scheduler
+	{
+		void postDelayed(Runnable task, long delayMillis);
+
+		/**
+		 * Drops a task posted with {@link #postDelayed} that has not run yet.
+		 */
+		void cancel(Runnable task);
+	}
+
+	private final String mName;
+	private final Delegate<R> mDelegate;
+	private final Scheduler mScheduler;
+	private final Runnable mRetry = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			fire(EVENT_RETRY);
+		}
+	};
+
+	private int mState = STATE_IDLE;
+	/** Last connection failure, kept for resolving once the user asks */
+	private R mFailure;
+	private int mRetries;
+
+	/** Transitions taken per state and event */
+	private final int[][] mTransitions = new int[STATE_COUNT][EVENT_COUNT];
+	private int mIgnored;
+	private int mConnects;
+	private int mResolutions;
+
+	/**
+	 * @param name
+	 *            the provider's name, for logging
+	 * @param scheduler
+	 *            runs the retries
+	 */
+	public SignInStateMachine(String name, Delegate<R> delegate, Scheduler scheduler)
+	{
+		mName = name;
+		mDelegate = delegate;
+		mScheduler = scheduler;
+	}
+
+	public int getState()
+	{
+		return mState;
+	}
+
+	public boolean isConnected()
+	{
+		return mState == STATE_CONNECTED;
+	}
+
+	/**
+	 * Feeds an event that carries no failure.
+	 */
+	public void fire(int event)
+	{
+		fire(event, null);
+	}
+
+	/**
+	 * Feeds an event, running the action the transition table names for it.
+	 *
+	 * @param failure
+	 *            the connection failure, for the FAILED_* events
+	 */
+	public void fire(int event, R failure)
+	{
+		int from = mState;
+		int next = NEXT[from][event];
+		if (next < 0)
+		{
+			mIgnored++;
+			logger.log(Level.FINE, mName + " ignored " + EVENT_NAMES[event] + " in " + STATE_NAMES[from]);
+			return;
+		}
+		if (failure != null)
+			mFailure = failure;
+		mTransitions[from][event]++;
+		mState = next;
+		logger.log(Level.INFO, mName + " " + STATE_NAMES[from] + " -" + EVENT_NAMES[event] + "-> " + STATE_NAMES[next]);
+		run(ACTION[from][event]);
+	}
+
+	private void run(int action)
+	{
+		switch (action)
+		{
+		case ACTION_CONNECT:
+			mConnects++;
+			mDelegate.connect();
+			break;
+		case ACTION_RESOLVE:
+			mResolutions++;
+			if (!mDelegate.startResolution(mFailure))
+				fire(EVENT_RESOLUTION_UNAVAILABLE);
+			break;
+		case ACTION_SCHEDULE_RETRY:
+			if (mRetries >= MAX_RETRIES)
+			{
+				// Out of retries: BACKOFF gives way to FAILED
+				mState = STATE_FAILED;
+				mRetries = 0;
+				mDelegate.onSignInFailed(mFailure);
+			} else
+			{
+				long delay = Math.min(INITIAL_BACKOFF_MS << mRetries, MAX_BACKOFF_MS);
+				mRetries++;
+				logger.log(Level.INFO, mName + " retry " + mRetries + " in " + delay + " ms");
+				mScheduler.postDelayed(mRetry, delay);
+			}
+			break;
+		case ACTION_CANCEL_RETRY:
+			mScheduler.cancel(mRetry);
+			mRetries = 0;
+			break;
+		case ACTION_DISCONNECT:
+			mDelegate.disconnect();
+			break;
+		case ACTION_SIGN_OUT:
+			mFailure = null;
+			mDelegate.signOut();
+			mConnects++;
+			mDelegate.connect();
+			break;
+		case ACTION_SIGNED_IN:
+			mFailure = null;
+			mRetries = 0;
+			mDelegate.onSignedIn();
+			break;
+		case ACTION_CANCELED:
+			mDelegate.onSignInCanceled();
+			break;
+		case ACTION_ABANDON:
+			mScheduler.cancel(mRetry);
+			mRetries = 0;
+			mFailure = null;
+			mDelegate.disconnect();
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * @return how many times a state handled an event
+	 */
+	public int transitionCount(int state, int event)
+	{
+		return mTransitions[state][event];
+	}
+
+	public String stats()
+	{
+		StringBuilder stats = new StringBuilder(mName).append(" connects = ").append(mConnects)
+				.append(" resolutions = ").append(mResolutions).append(" ignored = ").append(mIgnored);
+		for (int state = 0; state < STATE_COUNT; state++)
+			for (int event = 0; event < EVENT_COUNT; event++)
+				if (mTransitions[state][event] > 0)
+					stats.append(' ').append(STATE_NAMES[state]).append('/').append(EVENT_NAMES[event]).append('=')
+							.append(mTransitions[state][event]);
+		return stats.toString();
+	}
+}
@@ -0,0 +1,147 @@
+package com.asaanloyalty.asaan.auth;
+
+/**
+ * Immutable description of a signed-in user as reported by one identity
+ * provider (Facebook, Google+ or the device profile), or the merge of several
+ * of them.
+ */
+public final class SocialProfile
+{
+	public static final String PROVIDER_FACEBOOK = "facebook";
+	public static final String PROVIDER_GOOGLE_PLUS = "googleplus";
+	public static final String PROVIDER_DEVICE = "device";
+	/** Provider of a profile built by {@link #mergedWith} */
+	public static final String PROVIDER_MERGED = "merged";
+
+	private final String mProvider;
+	private final String mUserId;
+	private final String mName;
+	private final String mEmail;
+	private final String mPhoneNumber;
+	private final String mPhotoUrl;
+
+	private SocialProfile(Builder builder)
+	{
+		mProvider = builder.mProvider;
+		mUserId = builder.mUserId;
+		mName = builder.mName;
+		mEmail = builder.mEmail;
+		mPhoneNumber = builder.mPhoneNumber;
+		mPhotoUrl = builder.mPhotoUrl;
+	}
+
+	public String getProvider()
+	{
+		return mProvider;
+	}
+
+	public String getUserId()
+	{
+		return mUserId;
+	}
+
+	public String getName()
+	{
+		return mName;
+	}
+
+	public String getEmail()
+	{
+		return mEmail;
+	}
+
+	public String getPhoneNumber()
+	{
+		return mPhoneNumber;
+	}
+
+	public String getPhotoUrl()
+	{
+		return mPhotoUrl;
+	}
+
+	/**
+	 * Returns a profile with this profile's fields, falling back to the other
+	 * profile's for any that are missing. The result keeps this profile's
+	 * provider and user id unless the providers differ, in which case it is
+	 * marked {@link #PROVIDER_MERGED}.
+	 */
+	public SocialProfile mergedWith(SocialProfile other)
+	{
+		if (other == null)
+			return this;
+		boolean same_provider = mProvider.equals(other.mProvider);
+		return new Builder(same_provider ? mProvider : PROVIDER_MERGED, same_provider ? mUserId : null)
+				.setName(pick(mName, other.mName)).setEmail(pick(mEmail, other.mEmail))
+				.setPhoneNumber(pick(mPhoneNumber, other.mPhoneNumber)).setPhotoUrl(pick(mPhotoUrl, other.mPhotoUrl))
+				.build();
+	}
+
+	private static String pick(String preferred, String fallback)
+	{
+		return preferred != null && preferred.length() > 0 ? preferred : fallback;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "SocialProfile{provider=" + mProvider + ", userId=" + mUserId + ", name=" + mName + ", email=" + mEmail
+				+ "}";
+	}
+
+	/**
+	 * Builds {@link SocialProfile} instances.
+	 */
+	public static final class Builder
+	{
+		private final String mProvider;
+		private final String mUserId;
+		private String mName;
+		private String mEmail;
+		private String mPhoneNumber;
+		private String mPhotoUrl;
+
+		/**
+		 * @param provider
+		 *            one of the PROVIDER_* constants
+		 * @param userId
+		 *            the user's id with that provider
+		 */
+		public Builder(String provider, String userId)
+		{
+			if (provider == null)
+				throw new IllegalArgumentException("provider must not be null");
+			mProvider = provider;
+			mUserId = userId;
+		}
+
+		public Builder setName(String name)
+		{
+			mName = name;
+			return this;
+		}
+
+		public Builder setEmail(String email)
+		{
+			mEmail = email;
+			return this;
+		}
+
+		public Builder setPhoneNumber(String phoneNumber)
+		{
+			mPhoneNumber = phoneNumber;
+			return this;
+		}
+
+		public Builder setPhotoUrl(String photoUrl)
+		{
+			mPhotoUrl = photoUrl;
+			return this;
+		}
+
+		public SocialProfile build()
+		{
+			return new SocialProfile(this);
+		}
+	}
+}
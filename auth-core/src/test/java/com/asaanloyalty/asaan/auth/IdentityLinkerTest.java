@@ -0,0 +1,105 @@
+package com.asaanloyalty.asaan.auth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class IdentityLinkerTest
+{
+	private IdentityLinker mLinker;
+
+	@Before
+	public void setUp()
+	{
+		mLinker = new IdentityLinker();
+		mLinker.add(1, SocialProfile.PROVIDER_FACEBOOK, "fb-1", "John.Doe@gmail.com", null, "John Doe");
+		mLinker.add(2, SocialProfile.PROVIDER_GOOGLE_PLUS, "gp-2", "jane@example.com", "+44 20 7946 0958",
+				"Jane Roe");
+	}
+
+	@Test
+	public void matchesSameProviderIdentity()
+	{
+		IdentityLinker.Match match = mLinker.match(new SocialProfile.Builder(SocialProfile.PROVIDER_FACEBOOK,
+				"fb-1").build());
+		assertEquals(1, match.getUserId());
+		assertEquals(IdentityLinker.MATCH_IDENTITY, match.getReason());
+	}
+
+	@Test
+	public void matchesEmailAcrossProviders()
+	{
+		IdentityLinker.Match match = mLinker.match(new SocialProfile.Builder(SocialProfile.PROVIDER_GOOGLE_PLUS,
+				"gp-9").setEmail("johndoe+news@googlemail.com").build());
+		assertEquals(1, match.getUserId());
+		assertEquals(IdentityLinker.MATCH_EMAIL, match.getReason());
+	}
+
+	@Test
+	public void matchesPhoneNumber()
+	{
+		IdentityLinker.Match match = mLinker.match(new SocialProfile.Builder(SocialProfile.PROVIDER_FACEBOOK,
+				"fb-9").setPhoneNumber("+442079460958").build());
+		assertEquals(2, match.getUserId());
+		assertEquals(IdentityLinker.MATCH_PHONE, match.getReason());
+	}
+
+	@Test
+	public void matchesNameInAnyOrder()
+	{
+		IdentityLinker.Match match = mLinker.match(new SocialProfile.Builder(SocialProfile.PROVIDER_FACEBOOK,
+				"fb-9").setName("Roe, Jane").build());
+		assertEquals(2, match.getUserId());
+		assertEquals(IdentityLinker.MATCH_NAME, match.getReason());
+	}
+
+	@Test
+	public void rejectsNameMatchWithContradictingEmail()
+	{
+		IdentityLinker.Match match = mLinker.match(new SocialProfile.Builder(SocialProfile.PROVIDER_FACEBOOK,
+				"fb-9").setName("Jane Roe").setEmail("someone.else@example.com").build());
+		assertEquals(IdentityLinker.MATCH_NONE, match.getReason());
+		assertEquals(-1, match.getUserId());
+	}
+
+	@Test
+	public void rejectsAmbiguousNameMatch()
+	{
+		mLinker.add(3, SocialProfile.PROVIDER_FACEBOOK, "fb-3", null, null, "Jane Roe");
+		IdentityLinker.Match match = mLinker.match(new SocialProfile.Builder(SocialProfile.PROVIDER_GOOGLE_PLUS,
+				"gp-9").setName("Jane Roe").build());
+		assertEquals(IdentityLinker.MATCH_NONE, match.getReason());
+	}
+
+	@Test
+	public void leavesUnknownProfileUnmatched()
+	{
+		IdentityLinker.Match match = mLinker.match(new SocialProfile.Builder(SocialProfile.PROVIDER_FACEBOOK,
+				"fb-9").setName("Richard Miles").setEmail("richard@example.com").build());
+		assertEquals(IdentityLinker.MATCH_NONE, match.getReason());
+	}
+
+	@Test
+	public void nameSimilarityIgnoresCaseAccentsAndOrder()
+	{
+		assertEquals(1f, IdentityLinker.nameSimilarity("Jos\u00e9 Smith", "smith jose"), 0f);
+		assertEquals(0.5f, IdentityLinker.nameSimilarity("John Smith", "John Doe"), 0f);
+		assertEquals(0f, IdentityLinker.nameSimilarity(null, "John Doe"), 0f);
+	}
+
+	@Test
+	public void isSamePersonPrefersEmailsOverNames()
+	{
+		SocialProfile a = new SocialProfile.Builder(SocialProfile.PROVIDER_FACEBOOK, "fb-1").setName("John Doe")
+				.setEmail("john@example.com").build();
+		SocialProfile b = new SocialProfile.Builder(SocialProfile.PROVIDER_GOOGLE_PLUS, "gp-1")
+				.setName("John Doe").setEmail("john.doe@example.org").build();
+		SocialProfile c = new SocialProfile.Builder(SocialProfile.PROVIDER_DEVICE, null).setName("Doe John")
+				.build();
+		assertFalse(IdentityLinker.isSamePerson(a, b));
+		assertTrue(IdentityLinker.isSamePerson(a, c));
+	}
+}
@@ -0,0 +1,90 @@
+package com.asaanloyalty.asaan.auth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class IdentityNormalizerTest
+{
+	@Test
+	public void normalizeEmailTrimsAndLowerCases()
+	{
+		assertEquals("john.doe@example.com", IdentityNormalizer.normalizeEmail("  John.Doe@Example.COM "));
+	}
+
+	@Test
+	public void normalizeEmailRejectsNonAddresses()
+	{
+		assertNull(IdentityNormalizer.normalizeEmail(null));
+		assertNull(IdentityNormalizer.normalizeEmail("   "));
+		assertNull(IdentityNormalizer.normalizeEmail("John Doe"));
+		assertNull(IdentityNormalizer.normalizeEmail("@example.com"));
+		assertFalse(IdentityNormalizer.isValidEmail("john@localhost"));
+		assertTrue(IdentityNormalizer.isValidEmail("john+tag@mail.example.co.uk"));
+	}
+
+	@Test
+	public void emailKeyFoldsGmailVariants()
+	{
+		assertEquals("johndoe@gmail.com", IdentityNormalizer.emailKey("John.Doe+promo@GoogleMail.com"));
+		assertEquals("johndoe@gmail.com", IdentityNormalizer.emailKey("johndoe@gmail.com"));
+	}
+
+	@Test
+	public void emailKeyKeepsOtherDomainsAsNormalized()
+	{
+		assertEquals("john.doe+promo@example.com", IdentityNormalizer.emailKey("John.Doe+promo@example.com"));
+		assertNull(IdentityNormalizer.emailKey("not an address"));
+	}
+
+	@Test
+	public void normalizePhoneConvertsNationalNumbers()
+	{
+		assertEquals("+14155550100", IdentityNormalizer.normalizePhone("(415) 555-0100", "US"));
+		assertEquals("+14155550100", IdentityNormalizer.normalizePhone("1-415-555-0100", "us"));
+		assertEquals("+442079460958", IdentityNormalizer.normalizePhone("020 7946 0958", "GB"));
+		assertEquals("+923001234567", IdentityNormalizer.normalizePhone("0300 1234567", "PK"));
+	}
+
+	@Test
+	public void normalizePhoneStripsRussianTrunkOnlyFromElevenDigits()
+	{
+		assertEquals("+74951234567", IdentityNormalizer.normalizePhone("8 (495) 123-45-67", "RU"));
+		assertEquals("+78121234567", IdentityNormalizer.normalizePhone("812 123-45-67", "RU"));
+		assertEquals("+78121234567", IdentityNormalizer.normalizePhone("8 812 123-45-67", "RU"));
+	}
+
+	@Test
+	public void normalizePhoneConvertsInternationalNumbersInAnyRegion()
+	{
+		assertEquals("+923001234567", IdentityNormalizer.normalizePhone("+92 300 1234567", null));
+		assertEquals("+923001234567", IdentityNormalizer.normalizePhone("00 92 300 1234567", "GB"));
+		assertEquals("+442079460958", IdentityNormalizer.normalizePhone("011 44 20 7946 0958", "US"));
+	}
+
+	@Test
+	public void normalizePhoneKeepsDigitsWhenRegionUnknown()
+	{
+		assertEquals("03001234567", IdentityNormalizer.normalizePhone("0300-123-4567", null));
+		assertEquals("03001234567", IdentityNormalizer.normalizePhone("0300-123-4567", "XX"));
+	}
+
+	@Test
+	public void normalizePhoneDropsExtensions()
+	{
+		assertEquals("+14155550100", IdentityNormalizer.normalizePhone("+1 415 555 0100 x123", null));
+		assertEquals("+14155550100", IdentityNormalizer.normalizePhone("+1 415 555 0100;ext=9", null));
+	}
+
+	@Test
+	public void normalizePhoneRejectsImpossibleNumbers()
+	{
+		assertNull(IdentityNormalizer.normalizePhone(null, "US"));
+		assertNull(IdentityNormalizer.normalizePhone("n/a", "US"));
+		assertNull(IdentityNormalizer.normalizePhone("+12345", null));
+		assertNull(IdentityNormalizer.normalizePhone("+1234567890123456", null));
+	}
+}
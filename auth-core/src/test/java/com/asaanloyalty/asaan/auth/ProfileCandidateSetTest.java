@@ -0,0 +1,75 @@
+package com.asaanloyalty.asaan.auth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class ProfileCandidateSetTest
+{
+	@Test
+	public void deduplicatesOnKeyAndKeepsFirstValue()
+	{
+		ProfileCandidateSet emails = new ProfileCandidateSet(ProfileCandidateSet.EMAIL_KEY);
+		emails.add("John.Doe@gmail.com", false, ProfileCandidateSet.SOURCE_ACCOUNTS);
+		emails.add("johndoe@gmail.com", false, ProfileCandidateSet.SOURCE_CONTACTS);
+		assertEquals(1, emails.size());
+		ProfileCandidateSet.Candidate candidate = emails.get("JOHNDOE@gmail.com");
+		assertEquals("John.Doe@gmail.com", candidate.value());
+		assertEquals(2, candidate.count());
+		assertEquals(ProfileCandidateSet.SOURCE_CONTACTS, candidate.source());
+	}
+
+	@Test
+	public void ignoresValuesWithoutKey()
+	{
+		ProfileCandidateSet emails = new ProfileCandidateSet(ProfileCandidateSet.EMAIL_KEY);
+		emails.add(null, true, ProfileCandidateSet.SOURCE_CONTACTS);
+		emails.add("not an address", true, ProfileCandidateSet.SOURCE_CONTACTS);
+		assertTrue(emails.isEmpty());
+		assertNull(emails.best());
+	}
+
+	@Test
+	public void ranksPrimaryThenSourceThenCountThenOrder()
+	{
+		ProfileCandidateSet names = new ProfileCandidateSet(ProfileCandidateSet.NAME_KEY);
+		names.add("First", false, ProfileCandidateSet.SOURCE_ACCOUNTS);
+		names.add("Second", false, ProfileCandidateSet.SOURCE_ACCOUNTS);
+		assertEquals("First", names.best());
+		names.add("second", false, ProfileCandidateSet.SOURCE_ACCOUNTS);
+		assertEquals("Second", names.best());
+		names.add("Third", false, ProfileCandidateSet.SOURCE_CONTACTS);
+		assertEquals("Third", names.best());
+		names.add("Fourth", true, ProfileCandidateSet.SOURCE_TELEPHONY);
+		assertEquals("Fourth", names.best());
+		assertEquals(Arrays.asList("First", "Second", "Third", "Fourth"), names.values());
+	}
+
+	@Test
+	public void nameKeyCollapsesWhitespaceAndCase()
+	{
+		ProfileCandidateSet names = new ProfileCandidateSet(ProfileCandidateSet.NAME_KEY);
+		names.add("  John   Doe ", false, ProfileCandidateSet.SOURCE_ACCOUNTS);
+		assertTrue(names.contains("john doe"));
+	}
+
+	@Test
+	public void addAllSumsCounts()
+	{
+		ProfileCandidateSet a = new ProfileCandidateSet(ProfileCandidateSet.PHONE_KEY);
+		a.add("+1 415 555 0100", false, ProfileCandidateSet.SOURCE_TELEPHONY);
+		ProfileCandidateSet b = new ProfileCandidateSet(ProfileCandidateSet.PHONE_KEY);
+		b.add("+14155550100", true, ProfileCandidateSet.SOURCE_CONTACTS);
+		b.add("+442079460958", false, ProfileCandidateSet.SOURCE_CONTACTS);
+		a.addAll(b);
+		assertEquals(2, a.size());
+		ProfileCandidateSet.Candidate candidate = a.get("+1 (415) 555-0100");
+		assertEquals(2, candidate.count());
+		assertTrue(candidate.isPrimary());
+		assertEquals("+1 415 555 0100", a.best());
+	}
+}
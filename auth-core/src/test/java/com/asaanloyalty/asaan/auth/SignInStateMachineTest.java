@@ -0,0 +1,285 @@
+package com.asaanloyalty.asaan.auth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SignInStateMachineTest
+{
+	private final Object mFailure = new Object();
+	private RecordingDelegate mDelegate;
+	private ManualScheduler mScheduler;
+	private SignInStateMachine<Object> mMachine;
+
+	@Before
+	public void setUp()
+	{
+		mDelegate = new RecordingDelegate();
+		mScheduler = new ManualScheduler();
+		mMachine = new SignInStateMachine<Object>("test", mDelegate, mScheduler);
+	}
+
+	@Test
+	public void silentSignIn()
+	{
+		mMachine.fire(SignInStateMachine.EVENT_CONNECT);
+		assertEquals(SignInStateMachine.STATE_CONNECTING, mMachine.getState());
+		mMachine.fire(SignInStateMachine.EVENT_CONNECTED);
+		assertTrue(mMachine.isConnected());
+		assertEquals("connect signedIn", mDelegate.calls());
+	}
+
+	@Test
+	public void repeatedEventsAreIgnored()
+	{
+		mMachine.fire(SignInStateMachine.EVENT_CONNECT);
+		mMachine.fire(SignInStateMachine.EVENT_CONNECT);
+		mMachine.fire(SignInStateMachine.EVENT_RESOLUTION_OK);
+		assertEquals(SignInStateMachine.STATE_CONNECTING, mMachine.getState());
+		assertEquals("connect", mDelegate.calls());
+		assertEquals(1, mMachine.transitionCount(SignInStateMachine.STATE_IDLE, SignInStateMachine.EVENT_CONNECT));
+	}
+
+	@Test
+	public void resolvableFailureWaitsForUser()
+	{
+		mMachine.fire(SignInStateMachine.EVENT_CONNECT);
+		mMachine.fire(SignInStateMachine.EVENT_FAILED_RESOLVABLE, mFailure);
+		assertEquals(SignInStateMachine.STATE_NEEDS_USER, mMachine.getState());
+		assertEquals("connect", mDelegate.calls());
+
+		mMachine.fire(SignInStateMachine.EVENT_SIGN_IN);
+		assertEquals(SignInStateMachine.STATE_RESOLVING, mMachine.getState());
+		assertSame(mFailure, mDelegate.mResolved);
+
+		mMachine.fire(SignInStateMachine.EVENT_RESOLUTION_OK);
+		mMachine.fire(SignInStateMachine.EVENT_CONNECTED);
+		assertTrue(mMachine.isConnected());
+		assertEquals("connect resolve connect signedIn", mDelegate.calls());
+	}
+
+	@Test
+	public void canceledResolutionReportsCancel()
+	{
+		mMachine.fire(SignInStateMachine.EVENT_SIGN_IN);
+		mMachine.fire(SignInStateMachine.EVENT_FAILED_RESOLVABLE, mFailure);
+		mMachine.fire(SignInStateMachine.EVENT_RESOLUTION_CANCELED);
+		assertEquals(SignInStateMachine.STATE_NEEDS_USER, mMachine.getState());
+		assertEquals("connect resolve canceled", mDelegate.calls());
+	}
+
+	@Test
+	public void unavailableResolutionBacksOff()
+	{
+		mDelegate.mCanResolve = false;
+		mMachine.fire(SignInStateMachine.EVENT_SIGN_IN);
+		mMachine.fire(SignInStateMachine.EVENT_FAILED_RESOLVABLE, mFailure);
+		assertEquals(SignInStateMachine.STATE_BACKOFF, mMachine.getState());
+		assertEquals(1, mScheduler.mTasks.size());
+	}
+
+	@Test
+	public void unresolvableFailuresAreRetriedWithBackoffThenFail()
+	{
+		mMachine.fire(SignInStateMachine.EVENT_SIGN_IN);
+		List<Long> delays = new ArrayList<Long>();
+		for (int i = 0; i < SignInStateMachine.MAX_RETRIES; i++)
+		{
+			mMachine.fire(SignInStateMachine.EVENT_FAILED_UNRESOLVABLE, mFailure);
+			assertEquals(SignInStateMachine.STATE_BACKOFF, mMachine.getState());
+			delays.add(mScheduler.runNext());
+			assertEquals(SignInStateMachine.STATE_CONNECTING_INTERACTIVE, mMachine.getState());
+		}
+		mMachine.fire(SignInStateMachine.EVENT_FAILED_UNRESOLVABLE, mFailure);
+
+		assertEquals(SignInStateMachine.STATE_FAILED, mMachine.getState());
+		assertEquals("[1000, 2000, 4000]", delays.toString());
+		assertSame(mFailure, mDelegate.mFailed);
+		assertEquals("connect connect connect connect failed", mDelegate.calls());
+		assertTrue(mScheduler.mTasks.isEmpty());
+	}
+
+	@Test
+	public void stopCancelsScheduledRetry()
+	{
+		mMachine.fire(SignInStateMachine.EVENT_SIGN_IN);
+		mMachine.fire(SignInStateMachine.EVENT_FAILED_UNRESOLVABLE, mFailure);
+		mMachine.fire(SignInStateMachine.EVENT_STOP);
+		assertEquals(SignInStateMachine.STATE_IDLE, mMachine.getState());
+		assertTrue(mScheduler.mTasks.isEmpty());
+	}
+
+	@Test
+	public void signOutWhenConnectedReconnects()
+	{
+		mMachine.fire(SignInStateMachine.EVENT_CONNECT);
+		mMachine.fire(SignInStateMachine.EVENT_CONNECTED);
+		mMachine.fire(SignInStateMachine.EVENT_SIGN_OUT);
+		assertEquals(SignInStateMachine.STATE_CONNECTING, mMachine.getState());
+		assertEquals("connect signedIn signOut connect", mDelegate.calls());
+	}
+
+	@Test
+	public void signOutWhileSigningInReturnsToIdle()
+	{
+		int[][] paths = { {SignInStateMachine.EVENT_CONNECT},
+				{SignInStateMachine.EVENT_CONNECT, SignInStateMachine.EVENT_FAILED_RESOLVABLE},
+				{SignInStateMachine.EVENT_SIGN_IN},
+				{SignInStateMachine.EVENT_SIGN_IN, SignInStateMachine.EVENT_FAILED_RESOLVABLE},
+				{SignInStateMachine.EVENT_SIGN_IN, SignInStateMachine.EVENT_FAILED_UNRESOLVABLE},
+				{SignInStateMachine.EVENT_CONNECT, SignInStateMachine.EVENT_CONNECTED,
+						SignInStateMachine.EVENT_SUSPENDED}};
+		int[] states = {SignInStateMachine.STATE_CONNECTING, SignInStateMachine.STATE_NEEDS_USER,
+				SignInStateMachine.STATE_CONNECTING_INTERACTIVE, SignInStateMachine.STATE_RESOLVING,
+				SignInStateMachine.STATE_BACKOFF, SignInStateMachine.STATE_SUSPENDED};
+		for (int i = 0; i < paths.length; i++)
+		{
+			setUp();
+			for (int event : paths[i])
+				mMachine.fire(event, mFailure);
+			assertEquals(states[i], mMachine.getState());
+			mMachine.fire(SignInStateMachine.EVENT_SIGN_OUT);
+			assertEquals(SignInStateMachine.STATE_IDLE, mMachine.getState());
+			assertTrue(mDelegate.calls().endsWith("disconnect"));
+			assertTrue(mScheduler.mTasks.isEmpty());
+		}
+	}
+
+	@Test
+	public void signOutAfterFailureReturnsToIdle()
+	{
+		mMachine.fire(SignInStateMachine.EVENT_SIGN_IN);
+		for (int i = 0; i <= SignInStateMachine.MAX_RETRIES; i++)
+		{
+			mMachine.fire(SignInStateMachine.EVENT_FAILED_UNRESOLVABLE, mFailure);
+			if (!mScheduler.mTasks.isEmpty())
+				mScheduler.runNext();
+		}
+		assertEquals(SignInStateMachine.STATE_FAILED, mMachine.getState());
+		mMachine.fire(SignInStateMachine.EVENT_SIGN_OUT);
+		assertEquals(SignInStateMachine.STATE_IDLE, mMachine.getState());
+
+		// A later failure starts with the full number of retries again
+		mMachine.fire(SignInStateMachine.EVENT_SIGN_IN);
+		mMachine.fire(SignInStateMachine.EVENT_FAILED_UNRESOLVABLE, mFailure);
+		assertEquals(Long.valueOf(1000), mScheduler.mTasks.values().iterator().next());
+	}
+
+	@Test
+	public void stopWhileResolvingKeepsWaitingForResult()
+	{
+		mMachine.fire(SignInStateMachine.EVENT_SIGN_IN);
+		mMachine.fire(SignInStateMachine.EVENT_FAILED_RESOLVABLE, mFailure);
+		mMachine.fire(SignInStateMachine.EVENT_STOP);
+		assertEquals(SignInStateMachine.STATE_RESOLVING, mMachine.getState());
+		mMachine.fire(SignInStateMachine.EVENT_RESOLUTION_OK);
+		assertEquals(SignInStateMachine.STATE_CONNECTING_INTERACTIVE, mMachine.getState());
+	}
+
+	/**
+	 * Records the calls it receives in order.
+	 */
+	private static final class RecordingDelegate implements SignInStateMachine.Delegate<Object>
+	{
+		private final StringBuilder mCalls = new StringBuilder();
+		boolean mCanResolve = true;
+		Object mResolved;
+		Object mFailed;
+
+		String calls()
+		{
+			return mCalls.toString().trim();
+		}
+
+		private void record(String call)
+		{
+			mCalls.append(call).append(' ');
+		}
+
+		@Override
+		public void connect()
+		{
+			record("connect");
+		}
+
+		@Override
+		public void disconnect()
+		{
+			record("disconnect");
+		}
+
+		@Override
+		public boolean startResolution(Object failure)
+		{
+			record("resolve");
+			mResolved = failure;
+			return mCanResolve;
+		}
+
+		@Override
+		public void signOut()
+		{
+			record("signOut");
+		}
+
+		@Override
+		public void onSignedIn()
+		{
+			record("signedIn");
+		}
+
+		@Override
+		public void onSignInCanceled()
+		{
+			record("canceled");
+		}
+
+		@Override
+		public void onSignInFailed(Object failure)
+		{
+			record("failed");
+			mFailed = failure;
+		}
+	}
+
+	/**
+	 * Holds posted tasks until the test runs them.
+	 */
+	private static final class ManualScheduler implements SignInStateMachine.Scheduler
+	{
+		final Map<Runnable, Long> mTasks = new LinkedHashMap<Runnable, Long>();
+
+		@Override
+		public void postDelayed(Runnable task, long delayMillis)
+		{
+			mTasks.put(task, delayMillis);
+		}
+
+		@Override
+		public void cancel(Runnable task)
+		{
+			mTasks.remove(task);
+		}
+
+		/**
+		 * Runs the oldest task.
+		 *
+		 * @return the delay it was posted with
+		 */
+		long runNext()
+		{
+			Map.Entry<Runnable, Long> next = mTasks.entrySet().iterator().next();
+			mTasks.remove(next.getKey());
+			next.getKey().run();
+			return next.getValue();
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package com.asaanloyalty.asaan.auth;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.pm.PackageManager;
+
+/**
+ * Context with no system services, for code that only passes it through to
+ * a fake {@link DeviceServices}.
+ */
+final class FakeContext extends Context
+{
+	@Override
+	public Context getApplicationContext()
+	{
+		return this;
+	}
+
+	@Override
+	public ContentResolver getContentResolver()
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public PackageManager getPackageManager()
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Object getSystemService(String name)
+	{
+		return null;
+	}
+
+	@Override
+	public String getString(int resId)
+	{
+		throw new UnsupportedOperationException();
+	}
+}
@@ -0,0 +1,82 @@
+package com.asaanloyalty.asaan.auth;
+
+import android.database.CharArrayBuffer;
+import android.database.Cursor;
+
+/**
+ * Cursor over rows held in memory, standing in for a Contacts provider
+ * result. Public so the contacts benchmarks can share it.
+ */
+public final class FakeCursor implements Cursor
+{
+	private final String[][] mRows;
+	private int mPosition = -1;
+	private boolean mClosed;
+
+	/**
+	 * @param rows
+	 *            the rows, each indexed like the query's projection; shared,
+	 *            not copied
+	 */
+	public FakeCursor(String[][] rows)
+	{
+		mRows = rows;
+	}
+
+	@Override
+	public int getCount()
+	{
+		return mRows.length;
+	}
+
+	@Override
+	public boolean moveToNext()
+	{
+		if (mPosition >= mRows.length)
+			return false;
+		return ++mPosition < mRows.length;
+	}
+
+	@Override
+	public String getString(int columnIndex)
+	{
+		return mRows[mPosition][columnIndex];
+	}
+
+	@Override
+	public int getInt(int columnIndex)
+	{
+		String value = mRows[mPosition][columnIndex];
+		return value != null ? Integer.parseInt(value) : 0;
+	}
+
+	@Override
+	public long getLong(int columnIndex)
+	{
+		String value = mRows[mPosition][columnIndex];
+		return value != null ? Long.parseLong(value) : 0;
+	}
+
+	@Override
+	public void copyStringToBuffer(int columnIndex, CharArrayBuffer buffer)
+	{
+		String value = mRows[mPosition][columnIndex];
+		int length = value != null ? value.length() : 0;
+		if (buffer.data == null || buffer.data.length < length)
+			buffer.data = new char[length];
+		if (value != null)
+			value.getChars(0, length, buffer.data, 0);
+		buffer.sizeCopied = length;
+	}
+
+	@Override
+	public void close()
+	{
+		mClosed = true;
+	}
+
+	boolean isClosed()
+	{
+		return mClosed;
+	}
+}
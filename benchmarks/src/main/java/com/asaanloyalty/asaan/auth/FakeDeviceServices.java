@@ -0,0 +1,118 @@
+package com.asaanloyalty.asaan.auth;
+
+import java.util.Locale;
+
+import android.database.Cursor;
+import android.provider.ContactsContract;
+
+import com.asaanloyalty.asaan.auth.AuthAndroidUserProfileUtils.ProfileQuery;
+
+/**
+ * {@link DeviceServices} serving a synthetic device owner. The profile contact
+ * has one name row, one photo row and the given number of email and phone
+ * rows; the AccountManager reports as many Google accounts. Each call can be
+ * slowed down to model a busy provider.
+ */
+final class FakeDeviceServices implements DeviceServices
+{
+	private final String[][] mProfileRows;
+	private final String[] mAccountNames;
+	private final long mLatencyMillis;
+
+	/**
+	 * @param size
+	 *            email rows, phone rows and accounts to generate
+	 * @param latencyMillis
+	 *            how long every call blocks before answering
+	 */
+	FakeDeviceServices(int size, long latencyMillis)
+	{
+		mProfileRows = profileRows(size);
+		mAccountNames = new String[size];
+		for (int i = 0; i < size; i++)
+			mAccountNames[i] = String.format(Locale.US, "Member.%d+tag@gmail.com", i);
+		mLatencyMillis = latencyMillis;
+	}
+
+	/**
+	 * Rows shaped like {@link ProfileQuery#PROJECTION}, primary rows first.
+	 */
+	static String[][] profileRows(int size)
+	{
+		String[][] rows = new String[size * 2 + 2][];
+		int row = 0;
+		for (int i = 0; i < size; i++)
+			rows[row++] = row(ProfileQuery.EMAIL, String.format(Locale.US, "Member.%d@Example.com", i),
+					ProfileQuery.IS_PRIMARY_EMAIL, i == 0 ? "1" : "0",
+					ContactsContract.CommonDataKinds.Email.CONTENT_ITEM_TYPE);
+		for (int i = 0; i < size; i++)
+			rows[row++] = row(ProfileQuery.PHONE_NUMBER, String.format(Locale.US, "0300-%07d", i),
+					ProfileQuery.IS_PRIMARY_PHONE_NUMBER, i == 0 ? "1" : "0",
+					ContactsContract.CommonDataKinds.Phone.CONTENT_ITEM_TYPE);
+		String[] name = new String[ProfileQuery.PROJECTION.length];
+		name[ProfileQuery.GIVEN_NAME] = "Ayesha";
+		name[ProfileQuery.FAMILY_NAME] = "Khan";
+		name[ProfileQuery.MIME_TYPE] = ContactsContract.CommonDataKinds.StructuredName.CONTENT_ITEM_TYPE;
+		rows[row++] = name;
+		String[] photo = new String[ProfileQuery.PROJECTION.length];
+		photo[ProfileQuery.PHOTO] = "content://com.android.contacts/profile/photo";
+		photo[ProfileQuery.MIME_TYPE] = ContactsContract.CommonDataKinds.Photo.CONTENT_ITEM_TYPE;
+		rows[row++] = photo;
+		return rows;
+	}
+
+	private static String[] row(int valueColumn, String value, int primaryColumn, String primary, String mimeType)
+	{
+		String[] row = new String[ProfileQuery.PROJECTION.length];
+		row[valueColumn] = value;
+		row[primaryColumn] = primary;
+		row[ProfileQuery.MIME_TYPE] = mimeType;
+		return row;
+	}
+
+	@Override
+	public Cursor queryOwnerProfile(String[] projection, String selection, String[] selectionArgs, String sortOrder)
+	{
+		pause();
+		return new FakeCursor(mProfileRows);
+	}
+
+	@Override
+	public String[] getGoogleAccountNames()
+	{
+		pause();
+		return mAccountNames.clone();
+	}
+
+	@Override
+	public boolean hasTelephony()
+	{
+		return true;
+	}
+
+	@Override
+	public String getLine1Number()
+	{
+		pause();
+		return "+92 300 0000000";
+	}
+
+	@Override
+	public String getSimCountryIso()
+	{
+		return "pk";
+	}
+
+	private void pause()
+	{
+		if (mLatencyMillis <= 0)
+			return;
+		try
+		{
+			Thread.sleep(mLatencyMillis);
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+}
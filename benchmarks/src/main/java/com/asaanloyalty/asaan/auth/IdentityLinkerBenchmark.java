@@ -0,0 +1,87 @@
+package com.asaanloyalty.asaan.auth;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Matches identities against a linker holding a synthetic population of
+ * users, each with a Facebook and a Google+ identity.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class IdentityLinkerBenchmark
+{
+	@Param({"10", "1000", "100000"})
+	public int users;
+
+	private IdentityLinker mLinker;
+	private SocialProfile mKnownIdentity;
+	private SocialProfile mByEmail;
+	private SocialProfile mByName;
+	private SocialProfile mUnknown;
+
+	@Setup
+	public void setUp()
+	{
+		mLinker = new IdentityLinker();
+		for (int i = 0; i < users; i++)
+		{
+			mLinker.add(i, new SocialProfile.Builder(SocialProfile.PROVIDER_FACEBOOK, "fb" + i).setName(name(i))
+					.setEmail(email(i)).build());
+			mLinker.add(i, new SocialProfile.Builder(SocialProfile.PROVIDER_GOOGLE_PLUS, "gp" + i).setName(name(i))
+					.setPhoneNumber(String.format(Locale.US, "+92300%07d", i)).build());
+		}
+		int target = users / 2;
+		mKnownIdentity = new SocialProfile.Builder(SocialProfile.PROVIDER_FACEBOOK, "fb" + target).build();
+		mByEmail = new SocialProfile.Builder(SocialProfile.PROVIDER_GOOGLE_PLUS, "new").setName(name(target))
+				.setEmail(email(target).toUpperCase(Locale.US)).build();
+		mByName = new SocialProfile.Builder(SocialProfile.PROVIDER_GOOGLE_PLUS, "new").setName(
+				"KHAN, Member" + target).build();
+		mUnknown = new SocialProfile.Builder(SocialProfile.PROVIDER_GOOGLE_PLUS, "new").setName("Nobody Here")
+				.setEmail("nobody@example.com").build();
+	}
+
+	private static String name(int i)
+	{
+		return "Member" + i + " Khan";
+	}
+
+	private static String email(int i)
+	{
+		return "member." + i + "@gmail.com";
+	}
+
+	@Benchmark
+	public IdentityLinker.Match matchKnownIdentity()
+	{
+		return mLinker.match(mKnownIdentity);
+	}
+
+	@Benchmark
+	public IdentityLinker.Match matchByEmail()
+	{
+		return mLinker.match(mByEmail);
+	}
+
+	@Benchmark
+	public IdentityLinker.Match matchByName()
+	{
+		return mLinker.match(mByName);
+	}
+
+	@Benchmark
+	public IdentityLinker.Match matchNone()
+	{
+		return mLinker.match(mUnknown);
+	}
+}
@@ -0,0 +1,50 @@
+package com.asaanloyalty.asaan.auth;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Normalizes a rotating mix of well-formed, Gmail and invalid inputs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class IdentityNormalizerBenchmark
+{
+	private static final String[] EMAILS = {"John.Smith@Gmail.com", " jane.doe+asaan@googlemail.com ",
+			"ali@asaanloyalty.com", "Not An Address", "first.last@example.co.uk", "x@y"};
+	private static final String[] PHONES = {"+92 300 1234567", "0300-1234567", "(415) 555-0132",
+			"0044 20 7946 0958", "1-415-555-0132 x204", "12"};
+
+	private int mIndex;
+
+	@Benchmark
+	public String normalizeEmail()
+	{
+		return IdentityNormalizer.normalizeEmail(EMAILS[next(EMAILS.length)]);
+	}
+
+	@Benchmark
+	public String emailKey()
+	{
+		return IdentityNormalizer.emailKey(EMAILS[next(EMAILS.length)]);
+	}
+
+	@Benchmark
+	public String normalizePhone()
+	{
+		return IdentityNormalizer.normalizePhone(PHONES[next(PHONES.length)], "PK");
+	}
+
+	private int next(int length)
+	{
+		mIndex = mIndex + 1 < length ? mIndex + 1 : 0;
+		return mIndex;
+	}
+}
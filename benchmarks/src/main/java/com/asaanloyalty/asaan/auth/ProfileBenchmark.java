@@ -0,0 +1,71 @@
+package com.asaanloyalty.asaan.auth;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.asaanloyalty.asaan.auth.AuthAndroidUserProfileUtils.AndroidContactProfile;
+
+/**
+ * Reads the device owner's profile: mapping Contacts rows with
+ * {@link ProfileCursorMapper}, and a full {@link ProfileResolver} pass over
+ * all three device sources backed by {@link FakeDeviceServices}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProfileBenchmark
+{
+	/** Email and phone rows and accounts in the synthetic profile */
+	@Param({"1", "16", "256"})
+	public int size;
+
+	/** How long every fake service call blocks */
+	@Param({"0"})
+	public long latencyMillis;
+
+	private final ProfileCursorMapper mMapper = new ProfileCursorMapper();
+	private final FakeContext mContext = new FakeContext();
+	private String[][] mRows;
+
+	@Setup
+	public void setUp()
+	{
+		// Keep per-call INFO logging out of the measurement
+		Logger.getLogger("").setLevel(Level.WARNING);
+		mRows = FakeDeviceServices.profileRows(size);
+		AuthAndroidUserProfileUtils.setDeviceServices(new FakeDeviceServices(size, latencyMillis));
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		AuthAndroidUserProfileUtils.setDeviceServices(null);
+	}
+
+	@Benchmark
+	public AndroidContactProfile mapCursor()
+	{
+		return mMapper.map(new FakeCursor(mRows));
+	}
+
+	/**
+	 * With a latency set, shows the resolver returning once an email and a
+	 * name are known rather than after every source.
+	 */
+	@Benchmark
+	public AndroidContactProfile resolve()
+	{
+		return AuthAndroidUserProfileUtils.getUserProfile(mContext);
+	}
+}
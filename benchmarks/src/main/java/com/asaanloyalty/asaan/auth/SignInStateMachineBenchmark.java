@@ -0,0 +1,129 @@
+package com.asaanloyalty.asaan.auth;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Replays the typical sign-in paths through a fresh
+ * {@link SignInStateMachine} with a delegate that does nothing and a scheduler
+ * that drops the retries, which the paths fire themselves. Divide by the path
+ * length for the cost of one transition.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SignInStateMachineBenchmark
+{
+	/** Silent sign-in that succeeds, then the activity stops */
+	private static final int[] SILENT_SIGN_IN = {SignInStateMachine.EVENT_CONNECT, SignInStateMachine.EVENT_CONNECTED,
+			SignInStateMachine.EVENT_STOP};
+
+	/** Silent sign-in needs the user, who resolves the failure */
+	private static final int[] INTERACTIVE_SIGN_IN = {SignInStateMachine.EVENT_CONNECT,
+			SignInStateMachine.EVENT_FAILED_RESOLVABLE, SignInStateMachine.EVENT_SIGN_IN,
+			SignInStateMachine.EVENT_RESOLUTION_OK, SignInStateMachine.EVENT_CONNECTED,
+			SignInStateMachine.EVENT_SIGN_OUT, SignInStateMachine.EVENT_STOP};
+
+	/** Transient failures retried until the machine gives up */
+	private static final int[] BACKOFF = {SignInStateMachine.EVENT_CONNECT,
+			SignInStateMachine.EVENT_FAILED_UNRESOLVABLE, SignInStateMachine.EVENT_RETRY,
+			SignInStateMachine.EVENT_FAILED_UNRESOLVABLE, SignInStateMachine.EVENT_RETRY,
+			SignInStateMachine.EVENT_FAILED_UNRESOLVABLE, SignInStateMachine.EVENT_RETRY,
+			SignInStateMachine.EVENT_FAILED_UNRESOLVABLE, SignInStateMachine.EVENT_STOP};
+
+	private static final SignInStateMachine.Delegate<Object> NO_OP = new SignInStateMachine.Delegate<Object>()
+	{
+		@Override
+		public void connect()
+		{
+		}
+
+		@Override
+		public void disconnect()
+		{
+		}
+
+		@Override
+		public boolean startResolution(Object failure)
+		{
+			return true;
+		}
+
+		@Override
+		public void signOut()
+		{
+		}
+
+		@Override
+		public void onSignedIn()
+		{
+		}
+
+		@Override
+		public void onSignInCanceled()
+		{
+		}
+
+		@Override
+		public void onSignInFailed(Object failure)
+		{
+		}
+	};
+
+	private static final SignInStateMachine.Scheduler DROP = new SignInStateMachine.Scheduler()
+	{
+		@Override
+		public void postDelayed(Runnable task, long delayMillis)
+		{
+		}
+
+		@Override
+		public void cancel(Runnable task)
+		{
+		}
+	};
+
+	private final Object mFailure = new Object();
+
+	@Setup
+	public void setUp()
+	{
+		// The machine logs every transition at INFO
+		Logger.getLogger("").setLevel(Level.WARNING);
+	}
+
+	@Benchmark
+	public SignInStateMachine<Object> silentSignIn()
+	{
+		return replay(SILENT_SIGN_IN);
+	}
+
+	@Benchmark
+	public SignInStateMachine<Object> interactiveSignIn()
+	{
+		return replay(INTERACTIVE_SIGN_IN);
+	}
+
+	@Benchmark
+	public SignInStateMachine<Object> backoff()
+	{
+		return replay(BACKOFF);
+	}
+
+	private SignInStateMachine<Object> replay(int[] path)
+	{
+		SignInStateMachine<Object> machine = new SignInStateMachine<Object>("bench", NO_OP, DROP);
+		for (int event : path)
+			machine.fire(event, mFailure);
+		return machine;
+	}
+}
@@ -0,0 +1,155 @@
+package com.asaanloyalty.asaan.backend;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local stand-in for the Asaan backend's identity exchange endpoint, answering
+ * every request with the same session. Each request can be slowed down to
+ * model the round trip, the next requests can be made to fail with a given
+ * status, and the next requests can be made to drop the connection without
+ * answering, as a request lost after reaching the backend would.
+ */
+final class FakeBackendServer
+{
+	private static final byte[] EXCHANGE_RESPONSE = ("{\"session\":{\"token\":\"benchmark-session\","
+			+ "\"memberId\":\"member-1\",\"expiresAt\":4102444800000},\"avatar\":{\"url\":null},"
+			+ "\"device\":{\"id\":\"device-1\"}}").getBytes(Charset.forName("UTF-8"));
+
+	private final HttpServer mServer;
+	private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+	private final long mLatencyMillis;
+	private final AtomicInteger mFailing = new AtomicInteger();
+	private volatile int mFailStatus;
+	private final AtomicInteger mDropping = new AtomicInteger();
+	private final AtomicInteger mRequests = new AtomicInteger();
+
+	/**
+	 * Starts the server on a free local port.
+	 *
+	 * @param latencyMillis
+	 *            how long every request blocks before answering
+	 */
+	FakeBackendServer(long latencyMillis) throws IOException
+	{
+		mLatencyMillis = latencyMillis;
+		mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		mServer.createContext("/" + IdentityExchangeClient.EXCHANGE_PATH, new HttpHandler()
+		{
+			@Override
+			public void handle(HttpExchange exchange) throws IOException
+			{
+				answer(exchange);
+			}
+		});
+		mServer.setExecutor(mExecutor);
+		mServer.start();
+	}
+
+	/**
+	 * @return the base URL to hand to {@link IdentityExchangeClient}
+	 */
+	String getUrl()
+	{
+		return "http://127.0.0.1:" + mServer.getAddress().getPort() + "/";
+	}
+
+	/**
+	 * Makes the next requests fail.
+	 *
+	 * @param requests
+	 *            how many requests fail
+	 * @param status
+	 *            the status they are answered with
+	 */
+	void failNext(int requests, int status)
+	{
+		mFailStatus = status;
+		mFailing.set(requests);
+	}
+
+	/**
+	 * Makes the next requests drop the connection after reading the body.
+	 */
+	void dropNext(int requests)
+	{
+		mDropping.set(requests);
+	}
+
+	/**
+	 * @return requests received so far
+	 */
+	int getRequests()
+	{
+		return mRequests.get();
+	}
+
+	void stop()
+	{
+		mServer.stop(0);
+		mExecutor.shutdown();
+	}
+
+	private void answer(HttpExchange exchange) throws IOException
+	{
+		mRequests.incrementAndGet();
+		InputStream in = exchange.getRequestBody();
+		byte[] buffer = new byte[4096];
+		while (in.read(buffer) != -1)
+		{
+		}
+		in.close();
+		if (mLatencyMillis > 0)
+		{
+			try
+			{
+				Thread.sleep(mLatencyMillis);
+			} catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		if (take(mDropping))
+		{
+			exchange.close();
+			return;
+		}
+		if (take(mFailing))
+		{
+			exchange.sendResponseHeaders(mFailStatus, -1);
+			exchange.close();
+			return;
+		}
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(200, EXCHANGE_RESPONSE.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(EXCHANGE_RESPONSE);
+		out.close();
+	}
+
+	/**
+	 * Counts a request off, if any are left.
+	 */
+	private static boolean take(AtomicInteger remaining)
+	{
+		int left;
+		do
+		{
+			left = remaining.get();
+			if (left <= 0)
+				return false;
+		} while (!remaining.compareAndSet(left, left - 1));
+		return true;
+	}
+}
@@ -0,0 +1,97 @@
+package com.asaanloyalty.asaan.backend;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.asaanloyalty.asaan.auth.SocialProfile;
+import com.google.api.client.http.HttpResponseException;
+
+/**
+ * Exchanges an identity through {@link IdentityExchangeClient} with a local
+ * {@link FakeBackendServer}: when the backend answers at once, when it is
+ * unavailable for two attempts, when it rejects the request, and when the
+ * connection drops after the request was sent. Only the unavailable case
+ * should pay for backoff; the others return after a single round trip.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class IdentityExchangeBenchmark
+{
+	/** Round trip the fake backend adds to every request */
+	@Param({"50"})
+	public long latencyMillis;
+
+	private FakeBackendServer mServer;
+	private IdentityExchangeClient mClient;
+	private SocialProfile mProfile;
+
+	@Setup
+	public void setUp() throws IOException
+	{
+		Logger.getLogger("").setLevel(Level.WARNING);
+		mServer = new FakeBackendServer(latencyMillis);
+		mClient = new IdentityExchangeClient(mServer.getUrl());
+		mProfile = new SocialProfile.Builder(SocialProfile.PROVIDER_FACEBOOK, "100000000000000")
+				.setName("Benchmark Member").setEmail("member@example.com").build();
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		mServer.stop();
+	}
+
+	@Benchmark
+	public LoyaltySession exchange() throws IOException
+	{
+		return mClient.exchangeNow(mProfile, "benchmark-token", "benchmark-registration");
+	}
+
+	@Benchmark
+	public LoyaltySession exchangeAfterUnavailable() throws IOException
+	{
+		mServer.failNext(2, 503);
+		return mClient.exchangeNow(mProfile, "benchmark-token", "benchmark-registration");
+	}
+
+	@Benchmark
+	public int exchangeRejected() throws IOException
+	{
+		mServer.failNext(1, 400);
+		try
+		{
+			mClient.exchangeNow(mProfile, "benchmark-token", "benchmark-registration");
+		} catch (HttpResponseException e)
+		{
+			return e.getStatusCode();
+		}
+		throw new IllegalStateException("Rejected exchange succeeded");
+	}
+
+	@Benchmark
+	public boolean exchangeDropped()
+	{
+		mServer.dropNext(1);
+		try
+		{
+			mClient.exchangeNow(mProfile, "benchmark-token", "benchmark-registration");
+		} catch (IOException e)
+		{
+			return true;
+		}
+		throw new IllegalStateException("Dropped exchange succeeded");
+	}
+}
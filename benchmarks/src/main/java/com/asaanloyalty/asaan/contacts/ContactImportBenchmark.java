@@ -0,0 +1,177 @@
+package com.asaanloyalty.asaan.contacts;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import android.content.SharedPreferences;
+
+import com.asaanloyalty.asaan.auth.IdentityHasher;
+import com.asaanloyalty.asaan.dao.ImportedContact;
+
+/**
+ * Imports an address book held by a {@link FakeContactsProvider} through
+ * {@link ContactImporter}: in full as on the first sync, and after a few
+ * contacts were edited, when only those are read. Both keep their state in
+ * memory instead of the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ContactImportBenchmark
+{
+	@Param({"1000", "10000"})
+	public int contacts;
+
+	/** Contacts edited before each delta import */
+	@Param({"10"})
+	public int edited;
+
+	private FakeContactsProvider mProvider;
+	private ContactImporter mImporter;
+	private IdentityHasher mHasher;
+	private int mEdits;
+
+	@Setup
+	public void setUp() throws IOException
+	{
+		Logger.getLogger("").setLevel(Level.WARNING);
+		mProvider = new FakeContactsProvider(contacts);
+		mHasher = new IdentityHasher("benchmark-key".getBytes("UTF-8"));
+		mImporter = new ContactImporter(mProvider, new MemoryPreferences(), new MemoryStore(), "US");
+		ContactImporter.Result result = mImporter.importContacts(new DiscardingSink(), mHasher);
+		if (result.changed != contacts)
+			throw new IllegalStateException("Imported " + result.changed + " of " + contacts + " contacts");
+	}
+
+	@Benchmark
+	public ContactImporter.Result fullScan() throws IOException
+	{
+		mImporter.reset();
+		return mImporter.importContacts(new DiscardingSink(), mHasher);
+	}
+
+	@Benchmark
+	public ContactImporter.Result delta() throws IOException
+	{
+		for (int i = 0; i < edited; i++, mEdits++)
+			mProvider.edit(1 + (mEdits * 7919L) % contacts, "edited" + mEdits + "@example.com");
+		return mImporter.importContacts(new DiscardingSink(), mHasher);
+	}
+
+	/**
+	 * Stands in for the upload, which is not measured.
+	 */
+	private static final class DiscardingSink implements ContactImporter.Sink
+	{
+		@Override
+		public void onContactChanged(long contactId, List<String> emailHashes, List<String> phoneHashes)
+		{
+		}
+
+		@Override
+		public void onContactRemoved(long contactId)
+		{
+		}
+
+		@Override
+		public void flush()
+		{
+		}
+	}
+
+	private static final class MemoryStore implements ContactImporter.Store
+	{
+		private final Map<Long, ImportedContact> mContacts = new TreeMap<Long, ImportedContact>();
+
+		@Override
+		public Map<Long, ImportedContact> load(long[] ids, int count)
+		{
+			Map<Long, ImportedContact> stored = new HashMap<Long, ImportedContact>(count * 2);
+			for (int i = 0; i < count; i++)
+			{
+				ImportedContact contact = mContacts.get(ids[i]);
+				if (contact != null)
+					stored.put(ids[i], contact);
+			}
+			return stored;
+		}
+
+		@Override
+		public List<Long> loadIds()
+		{
+			return new ArrayList<Long>(mContacts.keySet());
+		}
+
+		@Override
+		public void write(List<ImportedContact> changed, List<Long> removed)
+		{
+			for (ImportedContact contact : changed)
+				mContacts.put(contact.getId(), contact);
+			for (Long id : removed)
+				mContacts.remove(id);
+		}
+
+		@Override
+		public void clear()
+		{
+			mContacts.clear();
+		}
+	}
+
+	/**
+	 * Preferences whose edits apply at once.
+	 */
+	private static final class MemoryPreferences implements SharedPreferences, SharedPreferences.Editor
+	{
+		private final Map<String, Long> mValues = new HashMap<String, Long>();
+
+		@Override
+		public long getLong(String key, long defValue)
+		{
+			Long value = mValues.get(key);
+			return value != null ? value : defValue;
+		}
+
+		@Override
+		public SharedPreferences.Editor edit()
+		{
+			return this;
+		}
+
+		@Override
+		public SharedPreferences.Editor putLong(String key, long value)
+		{
+			mValues.put(key, value);
+			return this;
+		}
+
+		@Override
+		public SharedPreferences.Editor remove(String key)
+		{
+			mValues.remove(key);
+			return this;
+		}
+
+		@Override
+		public boolean commit()
+		{
+			return true;
+		}
+	}
+}
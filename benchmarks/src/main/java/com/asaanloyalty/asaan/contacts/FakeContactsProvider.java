@@ -0,0 +1,122 @@
+package com.asaanloyalty.asaan.contacts;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.ContactsContract;
+
+import com.asaanloyalty.asaan.auth.FakeCursor;
+
+/**
+ * In-memory stand-in for the Contacts provider, answering the queries
+ * {@link ContactImporter} makes with {@link FakeCursor}s: a page of contacts
+ * after an id, optionally only those updated since a time, the email and phone
+ * rows of a page, and the deleted contacts, of which there are none. Every
+ * contact has one email address and one phone number. Only the rows crossing
+ * the cursor are modelled, not the cost of the provider's own query.
+ */
+final class FakeContactsProvider extends ContentResolver
+{
+	private static final String CONTACTS_PATH = ContactsContract.Contacts.CONTENT_URI.getEncodedPath();
+	private static final String DATA_PATH = ContactsContract.Data.CONTENT_URI.getEncodedPath();
+	private static final String DELETED_PATH = ContactsContract.DeletedContacts.CONTENT_URI.getEncodedPath();
+
+	private final Map<Long, Contact> mContacts = new TreeMap<Long, Contact>();
+
+	/**
+	 * @param contacts
+	 *            how many contacts the address book holds, all last updated
+	 *            long ago
+	 */
+	FakeContactsProvider(int contacts)
+	{
+		for (long id = 1; id <= contacts; id++)
+			mContacts.put(id, new Contact(id, "contact" + id + "@example.com", String.format("(415) 555-%04d",
+					id % 10000)));
+	}
+
+	/**
+	 * Gives a contact a new email address, updating it now.
+	 */
+	void edit(long id, String email)
+	{
+		Contact contact = mContacts.get(id);
+		contact.mEmail = email;
+		contact.mUpdatedAt = System.currentTimeMillis();
+	}
+
+	@Override
+	public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder)
+	{
+		String path = uri.getEncodedPath();
+		if (CONTACTS_PATH.equals(path))
+			return queryContacts(uri, projection, selectionArgs);
+		if (DATA_PATH.equals(path))
+			return queryData(selection);
+		if (DELETED_PATH.equals(path))
+			return new FakeCursor(new String[0][]);
+		throw new IllegalArgumentException("Unknown uri " + uri);
+	}
+
+	/**
+	 * Answers {@code _id>? [AND contact_last_updated_timestamp>=?]}.
+	 */
+	private Cursor queryContacts(Uri uri, String[] projection, String[] selectionArgs)
+	{
+		long after_id = Long.parseLong(selectionArgs[0]);
+		long updated_since = selectionArgs.length > 1 ? Long.parseLong(selectionArgs[1]) : 0;
+		int limit = Integer.parseInt(uri.getQueryParameter(ContactsContract.LIMIT_PARAM_KEY));
+		List<String[]> rows = new ArrayList<String[]>();
+		for (Contact contact : mContacts.values())
+		{
+			if (rows.size() == limit)
+				break;
+			if (contact.mId <= after_id || contact.mUpdatedAt < updated_since)
+				continue;
+			String[] row = new String[projection.length];
+			row[0] = String.valueOf(contact.mId);
+			if (row.length > 1)
+				row[1] = String.valueOf(contact.mUpdatedAt);
+			rows.add(row);
+		}
+		return new FakeCursor(rows.toArray(new String[rows.size()][]));
+	}
+
+	/**
+	 * Answers {@code mimetype IN (?,?) AND contact_id IN (<ids>)}.
+	 */
+	private Cursor queryData(String selection)
+	{
+		String ids = selection.substring(selection.lastIndexOf('(') + 1, selection.lastIndexOf(')'));
+		List<String[]> rows = new ArrayList<String[]>();
+		for (String id : ids.split(","))
+		{
+			Contact contact = mContacts.get(Long.valueOf(id));
+			if (contact == null)
+				continue;
+			rows.add(new String[] { id, ContactsContract.CommonDataKinds.Email.CONTENT_ITEM_TYPE, contact.mEmail });
+			rows.add(new String[] { id, ContactsContract.CommonDataKinds.Phone.CONTENT_ITEM_TYPE, contact.mPhone });
+		}
+		return new FakeCursor(rows.toArray(new String[rows.size()][]));
+	}
+
+	private static final class Contact
+	{
+		final long mId;
+		final String mPhone;
+		String mEmail;
+		long mUpdatedAt = 1;
+
+		Contact(long id, String email, String phone)
+		{
+			mId = id;
+			mEmail = email;
+			mPhone = phone;
+		}
+	}
+}
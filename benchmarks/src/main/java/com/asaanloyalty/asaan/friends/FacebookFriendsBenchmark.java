@@ -0,0 +1,133 @@
+package com.asaanloyalty.asaan.friends;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.google.api.client.http.javanet.NetHttpTransport;
+
+/**
+ * Fetches a recorded friend list through {@link FacebookFriendsClient} from a
+ * local {@link FakeGraphServer}: in full as on a first login, and with the
+ * page ETags of an earlier fetch when nothing or one page changed, as on a
+ * later login, and when one friend was added at the start of the list, which
+ * shifts every offset page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FacebookFriendsBenchmark
+{
+	@Param({"500", "5000"})
+	public int friends;
+
+	@Param({"1", "3"})
+	public int maxInFlight;
+
+	/** Round trip the fake Graph API adds to every request */
+	@Param({"50"})
+	public long latencyMillis;
+
+	private FakeGraphServer mServer;
+	private FacebookFriendsClient mClient;
+	private List<FacebookFriendsClient.PageState> mKnown;
+	private String mChangedPage;
+	private List<String> mOneAddedPages;
+
+	@Setup
+	public void setUp() throws IOException
+	{
+		Logger.getLogger("").setLevel(Level.WARNING);
+		List<String> pages = FakeGraphServer.record(friends, FacebookFriendsClient.PAGE_SIZE);
+		mChangedPage = pages.get(0).replace("Friend 0", "Friend Zero");
+		mOneAddedPages = FakeGraphServer.record(friends, FacebookFriendsClient.PAGE_SIZE, 1);
+		mServer = new FakeGraphServer(pages, FacebookFriendsClient.PAGE_SIZE, latencyMillis);
+		mClient = new FacebookFriendsClient(new NetHttpTransport(), mServer.getUrl(), maxInFlight);
+
+		CountingHandler handler = new CountingHandler();
+		FacebookFriendsClient.Result result = mClient.fetch("benchmark-token",
+				Collections.<FacebookFriendsClient.PageState> emptyList(), handler);
+		if (handler.mFriends.get() != friends)
+			throw new IllegalStateException("Read " + handler.mFriends.get() + " of " + friends + " friends");
+		mKnown = new ArrayList<FacebookFriendsClient.PageState>();
+		for (int i = 0; i < result.pages; i++)
+			mKnown.add(handler.mStates.get(i));
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		mClient.shutdown();
+		mServer.stop();
+	}
+
+	@Benchmark
+	public FacebookFriendsClient.Result full() throws IOException
+	{
+		return mClient.fetch("benchmark-token", Collections.<FacebookFriendsClient.PageState> emptyList(),
+				new CountingHandler());
+	}
+
+	@Benchmark
+	public FacebookFriendsClient.Result unchanged() throws IOException
+	{
+		return mClient.fetch("benchmark-token", mKnown, new CountingHandler());
+	}
+
+	@Benchmark
+	public FacebookFriendsClient.Result firstPageChanged() throws IOException
+	{
+		mServer.replace(0, mChangedPage);
+		return mClient.fetch("benchmark-token", mKnown, new CountingHandler());
+	}
+
+	@Benchmark
+	public FacebookFriendsClient.Result oneFriendAdded() throws IOException
+	{
+		for (int i = 0; i < mOneAddedPages.size(); i++)
+			mServer.replace(i, mOneAddedPages.get(i));
+		return mClient.fetch("benchmark-token", mKnown, new CountingHandler());
+	}
+
+	private static final class CountingHandler implements FacebookFriendsClient.PageHandler
+	{
+		final AtomicInteger mFriends = new AtomicInteger();
+		final Map<Integer, FacebookFriendsClient.PageState> mStates =
+				new ConcurrentHashMap<Integer, FacebookFriendsClient.PageState>();
+
+		@Override
+		public void onFriend(int page, String id, String name, boolean installed)
+		{
+			mFriends.incrementAndGet();
+		}
+
+		@Override
+		public void onPageChanged(int page, FacebookFriendsClient.PageState state)
+		{
+			mStates.put(page, state);
+		}
+
+		@Override
+		public void onPageUnchanged(int page, FacebookFriendsClient.PageState state)
+		{
+			mStates.put(page, state);
+		}
+	}
+}
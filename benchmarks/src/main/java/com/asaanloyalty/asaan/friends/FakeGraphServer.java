@@ -0,0 +1,260 @@
+package com.asaanloyalty.asaan.friends;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local stand-in for the Graph API's /me/friends, replaying recorded pages.
+ * The page for a request is picked by its offset and limit, offsets past the
+ * recording get an empty page, and every page carries an ETag derived from
+ * its body, so a request whose If-None-Match matches gets 304. Each request
+ * can be slowed down to model the round trip.
+ */
+final class FakeGraphServer
+{
+	private static final JsonFactory sJsonFactory = new JsonFactory();
+
+	private final HttpServer mServer;
+	private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+	private final long mLatencyMillis;
+	private final int mPageSize;
+	private final List<byte[]> mPages = new ArrayList<byte[]>();
+	private final List<String> mETags = new ArrayList<String>();
+	private final AtomicInteger mRequests = new AtomicInteger();
+	private final AtomicInteger mNotModified = new AtomicInteger();
+
+	/**
+	 * Starts the server on a free local port.
+	 *
+	 * @param pages
+	 *            the recorded response bodies, in page order
+	 * @param pageSize
+	 *            the limit the pages were recorded with
+	 * @param latencyMillis
+	 *            how long every request blocks before answering
+	 */
+	FakeGraphServer(List<String> pages, int pageSize, long latencyMillis) throws IOException
+	{
+		mPageSize = pageSize;
+		mLatencyMillis = latencyMillis;
+		for (String page : pages)
+			replace(mPages.size(), page);
+		mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		mServer.createContext("/me/friends", new HttpHandler()
+		{
+			@Override
+			public void handle(HttpExchange exchange) throws IOException
+			{
+				answer(exchange);
+			}
+		});
+		mServer.setExecutor(mExecutor);
+		mServer.start();
+	}
+
+	/**
+	 * Records a friend list in Graph API pages, one friend in twenty of
+	 * whom uses the app.
+	 *
+	 * @return the page bodies
+	 */
+	static List<String> record(int friends, int pageSize) throws IOException
+	{
+		return record(friends, pageSize, 0);
+	}
+
+	/**
+	 * Records the same friend list as {@link #record(int, int)} after new
+	 * friends were added at its start, which shifts every page.
+	 *
+	 * @param added
+	 *            how many new friends come before the recorded ones
+	 * @return the page bodies
+	 */
+	static List<String> record(int friends, int pageSize, int added) throws IOException
+	{
+		List<String> pages = new ArrayList<String>();
+		int total = added + friends;
+		for (int offset = 0; offset < total; offset += pageSize)
+		{
+			StringWriter out = new StringWriter();
+			JsonGenerator json = sJsonFactory.createGenerator(out);
+			json.writeStartObject();
+			json.writeArrayFieldStart("data");
+			for (int position = offset; position < Math.min(offset + pageSize, total); position++)
+			{
+				json.writeStartObject();
+				if (position < added)
+				{
+					json.writeStringField("name", "New Friend " + position);
+					json.writeStringField("id", String.valueOf(200000000000000L + position));
+				} else
+				{
+					int i = position - added;
+					json.writeStringField("name", "Friend " + i);
+					json.writeStringField("id", String.valueOf(100000000000000L + i));
+					if (i % 20 == 0)
+						json.writeBooleanField("installed", true);
+				}
+				json.writeEndObject();
+			}
+			json.writeEndArray();
+			if (offset + pageSize < total)
+			{
+				json.writeObjectFieldStart("paging");
+				json.writeStringField("next", "https://graph.facebook.com/me/friends?limit=" + pageSize
+						+ "&offset=" + (offset + pageSize));
+				json.writeEndObject();
+			}
+			json.writeEndObject();
+			json.close();
+			pages.add(out.toString());
+		}
+		return pages;
+	}
+
+	/**
+	 * @return the Graph base URL to hand to {@link FacebookFriendsClient}
+	 */
+	String getUrl()
+	{
+		return "http://127.0.0.1:" + mServer.getAddress().getPort() + "/";
+	}
+
+	/**
+	 * Changes the body, and so the ETag, of a page.
+	 */
+	synchronized void replace(int page, String body)
+	{
+		byte[] bytes;
+		try
+		{
+			bytes = body.getBytes("UTF-8");
+		} catch (IOException e)
+		{
+			throw new IllegalStateException(e);
+		}
+		if (page == mPages.size())
+		{
+			mPages.add(bytes);
+			mETags.add(eTag(bytes));
+		} else
+		{
+			mPages.set(page, bytes);
+			mETags.set(page, eTag(bytes));
+		}
+	}
+
+	/**
+	 * @return requests answered so far
+	 */
+	int getRequests()
+	{
+		return mRequests.get();
+	}
+
+	/**
+	 * @return requests answered with 304 so far
+	 */
+	int getNotModified()
+	{
+		return mNotModified.get();
+	}
+
+	void stop()
+	{
+		mServer.stop(0);
+		mExecutor.shutdown();
+	}
+
+	private void answer(HttpExchange exchange) throws IOException
+	{
+		mRequests.incrementAndGet();
+		if (mLatencyMillis > 0)
+		{
+			try
+			{
+				Thread.sleep(mLatencyMillis);
+			} catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		int offset = intParameter(exchange.getRequestURI(), "offset", 0);
+		int limit = intParameter(exchange.getRequestURI(), "limit", mPageSize);
+		if (limit != mPageSize || offset % mPageSize != 0)
+		{
+			exchange.sendResponseHeaders(400, -1);
+			exchange.close();
+			return;
+		}
+		byte[] body;
+		String etag;
+		synchronized (this)
+		{
+			int page = offset / mPageSize;
+			body = page < mPages.size() ? mPages.get(page) : "{\"data\":[]}".getBytes("UTF-8");
+			etag = page < mETags.size() ? mETags.get(page) : eTag(body);
+		}
+
+		exchange.getResponseHeaders().set("ETag", etag);
+		if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match")))
+		{
+			mNotModified.incrementAndGet();
+			exchange.sendResponseHeaders(304, -1);
+			exchange.close();
+			return;
+		}
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(200, body.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(body);
+		out.close();
+	}
+
+	private static int intParameter(URI uri, String name, int fallback)
+	{
+		String query = uri.getRawQuery();
+		if (query == null)
+			return fallback;
+		for (String pair : query.split("&"))
+		{
+			if (pair.startsWith(name + "="))
+				return Integer.parseInt(pair.substring(name.length() + 1));
+		}
+		return fallback;
+	}
+
+	private static String eTag(byte[] body)
+	{
+		byte[] hash;
+		try
+		{
+			hash = MessageDigest.getInstance("SHA-1").digest(body);
+		} catch (NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException(e);
+		}
+		StringBuilder etag = new StringBuilder("\"");
+		for (byte b : hash)
+			etag.append(String.format("%02x", b & 0xff));
+		return etag.append('"').toString();
+	}
+}
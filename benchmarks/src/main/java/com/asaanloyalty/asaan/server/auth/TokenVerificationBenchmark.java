@@ -0,0 +1,69 @@
+package com.asaanloyalty.asaan.server.auth;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.asaanloyalty.asaan.auth.SocialProfile;
+
+/**
+ * Verifies tokens through {@link TokenVerificationService} backed by a
+ * {@link StubTokenProvider} with a provider-like round trip: tokens already
+ * in the cache, and tokens seen for the first time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TokenVerificationBenchmark
+{
+	/** Distinct signed-in members whose tokens stay cached */
+	@Param({"1000", "100000"})
+	public int members;
+
+	/** How long the stub provider takes to verify a token */
+	@Param({"20"})
+	public long latencyMillis;
+
+	private final AtomicInteger mNext = new AtomicInteger();
+	private StubTokenProvider mProvider;
+	private TokenVerificationService mService;
+	private String[] mTokens;
+
+	@Setup
+	public void setUp() throws IOException, InvalidTokenException
+	{
+		// Warm the cache without paying the latency for every member
+		mProvider = new StubTokenProvider(SocialProfile.PROVIDER_FACEBOOK, 0);
+		mService = new TokenVerificationService(members, TimeUnit.HOURS.toMillis(1), mProvider);
+		mTokens = new String[members];
+		for (int i = 0; i < members; i++)
+		{
+			mTokens[i] = mProvider.issue(String.valueOf(i), null, TimeUnit.HOURS.toMillis(2));
+			mService.verify(SocialProfile.PROVIDER_FACEBOOK, mTokens[i]);
+		}
+		mProvider.setLatencyMillis(latencyMillis);
+	}
+
+	@Benchmark
+	public VerifiedToken cached() throws IOException, InvalidTokenException
+	{
+		int i = (mNext.getAndIncrement() & Integer.MAX_VALUE) % members;
+		return mService.verify(SocialProfile.PROVIDER_FACEBOOK, mTokens[i]);
+	}
+
+	@Benchmark
+	public VerifiedToken uncached() throws IOException, InvalidTokenException
+	{
+		String token = mProvider.issue("new", null, TimeUnit.HOURS.toMillis(2));
+		return mService.verify(SocialProfile.PROVIDER_FACEBOOK, token);
+	}
+}
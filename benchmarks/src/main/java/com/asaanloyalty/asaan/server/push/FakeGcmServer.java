@@ -0,0 +1,157 @@
+package com.asaanloyalty.asaan.server.push;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local stand-in for the GCM send endpoint, answering multicast requests the
+ * way GCM does. Ids starting with {@link #PREFIX_MOVED} get a canonical id and
+ * ids starting with {@link #PREFIX_GONE} get NotRegistered; every other id is
+ * accepted. Each request can be slowed down to model the round trip, and the
+ * next requests can be made to fail with 503 and a Retry-After header.
+ */
+final class FakeGcmServer
+{
+	static final String PREFIX_MOVED = "moved-";
+	static final String PREFIX_GONE = "gone-";
+
+	private final HttpServer mServer;
+	private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+	private final long mLatencyMillis;
+	private final AtomicInteger mUnavailable = new AtomicInteger();
+	private volatile int mRetryAfterSeconds;
+	private final AtomicInteger mRequests = new AtomicInteger();
+	private final AtomicLong mMessageIds = new AtomicLong();
+
+	/**
+	 * Starts the server on a free local port.
+	 *
+	 * @param latencyMillis
+	 *            how long every request blocks before answering
+	 */
+	FakeGcmServer(long latencyMillis) throws IOException
+	{
+		mLatencyMillis = latencyMillis;
+		mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		mServer.createContext("/gcm/send", new HttpHandler()
+		{
+			@Override
+			public void handle(HttpExchange exchange) throws IOException
+			{
+				answer(exchange);
+			}
+		});
+		mServer.setExecutor(mExecutor);
+		mServer.start();
+	}
+
+	String getUrl()
+	{
+		return "http://127.0.0.1:" + mServer.getAddress().getPort() + "/gcm/send";
+	}
+
+	/**
+	 * Makes the next requests fail with 503.
+	 */
+	void failNext(int requests, int retryAfterSeconds)
+	{
+		mRetryAfterSeconds = retryAfterSeconds;
+		mUnavailable.set(requests);
+	}
+
+	/**
+	 * @return requests answered so far
+	 */
+	int getRequests()
+	{
+		return mRequests.get();
+	}
+
+	void stop()
+	{
+		mServer.stop(0);
+		mExecutor.shutdown();
+	}
+
+	@SuppressWarnings("unchecked")
+	private void answer(HttpExchange exchange) throws IOException
+	{
+		mRequests.incrementAndGet();
+		Reader body = new InputStreamReader(exchange.getRequestBody(), "UTF-8");
+		List<Object> ids = (List<Object>) ((JSONObject) JSONValue.parse(body)).get("registration_ids");
+		body.close();
+		if (mLatencyMillis > 0)
+		{
+			try
+			{
+				Thread.sleep(mLatencyMillis);
+			} catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		if (mUnavailable.getAndDecrement() > 0)
+		{
+			exchange.getResponseHeaders().set("Retry-After", String.valueOf(mRetryAfterSeconds));
+			exchange.sendResponseHeaders(503, -1);
+			exchange.close();
+			return;
+		}
+		mUnavailable.set(0);
+
+		int success = 0;
+		int failure = 0;
+		int canonical_ids = 0;
+		JSONArray results = new JSONArray();
+		for (Object id : ids)
+		{
+			JSONObject result = new JSONObject();
+			String registration_id = (String) id;
+			if (registration_id.startsWith(PREFIX_GONE))
+			{
+				result.put("error", "NotRegistered");
+				failure++;
+			} else
+			{
+				result.put("message_id", "0:" + mMessageIds.incrementAndGet());
+				if (registration_id.startsWith(PREFIX_MOVED))
+				{
+					result.put("registration_id", registration_id.substring(PREFIX_MOVED.length()));
+					canonical_ids++;
+				}
+				success++;
+			}
+			results.add(result);
+		}
+		JSONObject response = new JSONObject();
+		response.put("multicast_id", mMessageIds.incrementAndGet());
+		response.put("success", success);
+		response.put("failure", failure);
+		response.put("canonical_ids", canonical_ids);
+		response.put("results", results);
+
+		byte[] bytes = response.toJSONString().getBytes("UTF-8");
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(200, bytes.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(bytes);
+		out.close();
+	}
+}
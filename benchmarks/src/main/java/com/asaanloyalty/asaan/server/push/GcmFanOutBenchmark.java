@@ -0,0 +1,102 @@
+package com.asaanloyalty.asaan.server.push;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.google.android.gcm.server.Message;
+
+/**
+ * Fans one message out to a synthetic segment through
+ * {@link GcmFanOutSender} and a local {@link FakeGcmServer}. One percent of
+ * the ids come back with a canonical id and one percent as NotRegistered.
+ * Registration ids per second is the score times {@link #recipients}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class GcmFanOutBenchmark
+{
+	@Param({"1000", "100000"})
+	public int recipients;
+
+	@Param({"1", "8", "32"})
+	public int workers;
+
+	/** Round trip the fake GCM endpoint adds to every request */
+	@Param({"50"})
+	public long latencyMillis;
+
+	private final AtomicInteger mCleanups = new AtomicInteger();
+	private FakeGcmServer mServer;
+	private GcmFanOutSender mSender;
+	private List<String> mIds;
+	private Message mMessage;
+
+	@Setup
+	public void setUp() throws IOException
+	{
+		Logger.getLogger("").setLevel(Level.WARNING);
+		mServer = new FakeGcmServer(latencyMillis);
+		mSender = new GcmFanOutSender("benchmark-key", mServer.getUrl(), workers,
+				new GcmFanOutSender.CleanupListener()
+				{
+					@Override
+					public void onCanonicalId(String registrationId, String canonicalId)
+					{
+						mCleanups.incrementAndGet();
+					}
+
+					@Override
+					public void onUnregistered(String registrationId)
+					{
+						mCleanups.incrementAndGet();
+					}
+				});
+		mIds = registrationIds(recipients);
+		mMessage = new Message.Builder().collapseKey("member_changed").addData("type", "member_changed")
+				.addData("sections", "profile").build();
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		mSender.shutdown();
+		mServer.stop();
+	}
+
+	@Benchmark
+	public GcmFanOutSender.Report send() throws InterruptedException
+	{
+		return mSender.send(mMessage, mIds);
+	}
+
+	static List<String> registrationIds(int count)
+	{
+		List<String> ids = new ArrayList<String>(count);
+		for (int i = 0; i < count; i++)
+		{
+			String id = "APA91b" + Integer.toHexString(i * 0x9E3779B1);
+			if (i % 100 == 1)
+				id = FakeGcmServer.PREFIX_MOVED + id;
+			else if (i % 100 == 2)
+				id = FakeGcmServer.PREFIX_GONE + id;
+			ids.add(id);
+		}
+		return ids;
+	}
+}
@@ -0,0 +1,16 @@
+package android.accounts;
+
+import android.content.Context;
+
+public class AccountManager
+{
+	public static AccountManager get(Context context)
+	{
+		throw new UnsupportedOperationException("Use a fake DeviceServices");
+	}
+
+	public Account[] getAccountsByType(String type)
+	{
+		throw new UnsupportedOperationException("Use a fake DeviceServices");
+	}
+}
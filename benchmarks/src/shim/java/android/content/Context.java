@@ -0,0 +1,18 @@
+package android.content;
+
+import android.content.pm.PackageManager;
+
+public abstract class Context
+{
+	public static final String TELEPHONY_SERVICE = "phone";
+
+	public abstract Context getApplicationContext();
+
+	public abstract ContentResolver getContentResolver();
+
+	public abstract PackageManager getPackageManager();
+
+	public abstract Object getSystemService(String name);
+
+	public abstract String getString(int resId);
+}
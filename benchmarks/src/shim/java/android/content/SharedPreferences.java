@@ -0,0 +1,17 @@
+package android.content;
+
+public interface SharedPreferences
+{
+	long getLong(String key, long defValue);
+
+	Editor edit();
+
+	public interface Editor
+	{
+		Editor putLong(String key, long value);
+
+		Editor remove(String key);
+
+		boolean commit();
+	}
+}
@@ -0,0 +1,18 @@
+package android.database;
+
+public interface Cursor
+{
+	int getCount();
+
+	boolean moveToNext();
+
+	String getString(int columnIndex);
+
+	int getInt(int columnIndex);
+
+	long getLong(int columnIndex);
+
+	void copyStringToBuffer(int columnIndex, CharArrayBuffer buffer);
+
+	void close();
+}
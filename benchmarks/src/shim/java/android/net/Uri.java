@@ -0,0 +1,80 @@
+package android.net;
+
+public final class Uri
+{
+	private final String mUri;
+
+	private Uri(String uri)
+	{
+		mUri = uri;
+	}
+
+	public static Uri parse(String uri)
+	{
+		return new Uri(uri);
+	}
+
+	public static Uri withAppendedPath(Uri baseUri, String pathSegment)
+	{
+		return new Uri(baseUri.mUri + '/' + pathSegment);
+	}
+
+	public String getEncodedPath()
+	{
+		int scheme = mUri.indexOf("://");
+		int path = scheme < 0 ? 0 : mUri.indexOf('/', scheme + 3);
+		if (path < 0)
+			return null;
+		int query = mUri.indexOf('?', path);
+		return query < 0 ? mUri.substring(path) : mUri.substring(path, query);
+	}
+
+	/**
+	 * Values are not decoded; the shim never encodes them.
+	 */
+	public String getQueryParameter(String key)
+	{
+		int query = mUri.indexOf('?');
+		if (query < 0)
+			return null;
+		for (String parameter : mUri.substring(query + 1).split("&"))
+		{
+			int equals = parameter.indexOf('=');
+			if (equals > 0 && parameter.substring(0, equals).equals(key))
+				return parameter.substring(equals + 1);
+		}
+		return null;
+	}
+
+	public Builder buildUpon()
+	{
+		return new Builder(mUri);
+	}
+
+	@Override
+	public String toString()
+	{
+		return mUri;
+	}
+
+	public static final class Builder
+	{
+		private final StringBuilder mUri;
+
+		Builder(String uri)
+		{
+			mUri = new StringBuilder(uri);
+		}
+
+		public Builder appendQueryParameter(String key, String value)
+		{
+			mUri.append(mUri.indexOf("?") < 0 ? '?' : '&').append(key).append('=').append(value);
+			return this;
+		}
+
+		public Uri build()
+		{
+			return new Uri(mUri.toString());
+		}
+	}
+}
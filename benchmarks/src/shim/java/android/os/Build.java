@@ -0,0 +1,17 @@
+package android.os;
+
+public class Build
+{
+	public static final String MODEL = "JVM";
+
+	public static class VERSION
+	{
+		public static final int SDK_INT = 19;
+	}
+
+	public static class VERSION_CODES
+	{
+		public static final int ICE_CREAM_SANDWICH = 14;
+		public static final int JELLY_BEAN_MR2 = 18;
+	}
+}
@@ -0,0 +1,25 @@
+package android.os;
+
+/**
+ * Accepts and drops everything it is given.
+ */
+public class Handler
+{
+	public Handler(Looper looper)
+	{
+	}
+
+	public final boolean post(Runnable r)
+	{
+		return true;
+	}
+
+	public final boolean postDelayed(Runnable r, long delayMillis)
+	{
+		return true;
+	}
+
+	public final void removeCallbacks(Runnable r)
+	{
+	}
+}
@@ -0,0 +1,72 @@
+package android.provider;
+
+import android.net.Uri;
+
+public final class ContactsContract
+{
+	public static final String LIMIT_PARAM_KEY = "limit";
+
+	public static final class Profile
+	{
+		public static final Uri CONTENT_URI = Uri.parse("content://com.android.contacts/profile");
+	}
+
+	public static final class Contacts
+	{
+		public static final Uri CONTENT_URI = Uri.parse("content://com.android.contacts/contacts");
+		public static final String _ID = "_id";
+		public static final String CONTACT_LAST_UPDATED_TIMESTAMP = "contact_last_updated_timestamp";
+
+		public static final class Data
+		{
+			public static final String CONTENT_DIRECTORY = "data";
+			public static final String MIMETYPE = "mimetype";
+			public static final String IS_PRIMARY = "is_primary";
+		}
+	}
+
+	public static final class Data
+	{
+		public static final Uri CONTENT_URI = Uri.parse("content://com.android.contacts/data");
+		public static final String CONTACT_ID = "contact_id";
+		public static final String MIMETYPE = "mimetype";
+		public static final String DATA1 = "data1";
+	}
+
+	public static final class DeletedContacts
+	{
+		public static final Uri CONTENT_URI = Uri.parse("content://com.android.contacts/deleted_contacts");
+		public static final String CONTACT_ID = "contact_id";
+		public static final String CONTACT_DELETED_TIMESTAMP = "contact_deleted_timestamp";
+	}
+
+	public static final class CommonDataKinds
+	{
+		public static final class Email
+		{
+			public static final String CONTENT_ITEM_TYPE = "vnd.android.cursor.item/email_v2";
+			public static final String ADDRESS = "data1";
+			public static final String IS_PRIMARY = "is_primary";
+		}
+
+		public static final class StructuredName
+		{
+			public static final String CONTENT_ITEM_TYPE = "vnd.android.cursor.item/name";
+			public static final String GIVEN_NAME = "data2";
+			public static final String FAMILY_NAME = "data3";
+		}
+
+		public static final class Phone
+		{
+			public static final String CONTENT_ITEM_TYPE = "vnd.android.cursor.item/phone_v2";
+			public static final String NUMBER = "data1";
+			public static final String IS_PRIMARY = "is_primary";
+		}
+
+		public static final class Photo
+		{
+			public static final String CONTENT_ITEM_TYPE = "vnd.android.cursor.item/photo";
+			public static final String PHOTO_URI = "photo_uri";
+		}
+	}
+}
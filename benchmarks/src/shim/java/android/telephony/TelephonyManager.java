@@ -0,0 +1,8 @@
+package android.telephony;
+
+public abstract class TelephonyManager
+{
+	public abstract String getLine1Number();
+
+	public abstract String getSimCountryIso();
+}
@@ -0,0 +1,21 @@
+package android.text;
+
+public class TextUtils
+{
+	public static boolean isEmpty(CharSequence str)
+	{
+		return str == null || str.length() == 0;
+	}
+
+	public static String join(CharSequence delimiter, Iterable tokens)
+	{
+		StringBuilder joined = new StringBuilder();
+		for (Object token : tokens)
+		{
+			if (joined.length() > 0)
+				joined.append(delimiter);
+			joined.append(token);
+		}
+		return joined.toString();
+	}
+}
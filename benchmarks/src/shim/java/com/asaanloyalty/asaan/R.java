@@ -0,0 +1,9 @@
+package com.asaanloyalty.asaan;
+
+public final class R
+{
+	public static final class string
+	{
+		public static final int asaan_backend_url = 0x7f050000;
+	}
+}
@@ -0,0 +1,125 @@
+package com.asaanloyalty.asaan.server.auth;
+
+import java.io.IOException;
+
+import com.asaanloyalty.asaan.auth.SocialProfile;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestFactory;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.json.JsonObjectParser;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.client.util.Key;
+
+/**
+ * Verifies Facebook user access tokens with the Graph API's debug_token
+ * endpoint. The token must be valid and issued to our app.
+ */
+public class FacebookTokenProvider implements TokenProvider
+{
+	public static final String DEBUG_TOKEN_URL = "https://graph.facebook.com/debug_token";
+
+	private final HttpRequestFactory mRequestFactory;
+	private final String mAppId;
+	private final String mAppToken;
+	private final String mDebugTokenUrl;
+
+	/**
+	 * @param appId
+	 *            the app id tokens must be issued to
+	 * @param appSecret
+	 *            the app secret, which with the app id authorizes debug_token
+	 */
+	public FacebookTokenProvider(HttpTransport transport, String appId, String appSecret)
+	{
+		this(transport, appId, appSecret, DEBUG_TOKEN_URL);
+	}
+
+	/**
+	 * @param debugTokenUrl
+	 *            the debug_token endpoint
+	 */
+	public FacebookTokenProvider(HttpTransport transport, String appId, String appSecret, String debugTokenUrl)
+	{
+		mAppId = appId;
+		mAppToken = appId + "|" + appSecret;
+		mDebugTokenUrl = debugTokenUrl;
+		mRequestFactory = transport.createRequestFactory(new HttpRequestInitializer()
+		{
+			@Override
+			public void initialize(HttpRequest request)
+			{
+				request.setParser(new JsonObjectParser(JacksonFactory.getDefaultInstance()));
+			}
+		});
+	}
+
+	@Override
+	public String getProvider()
+	{
+		return SocialProfile.PROVIDER_FACEBOOK;
+	}
+
+	@Override
+	public VerifiedToken verify(String token) throws IOException, InvalidTokenException
+	{
+		GenericUrl url = new GenericUrl(mDebugTokenUrl);
+		url.put("input_token", token);
+		url.put("access_token", mAppToken);
+		HttpResponse response;
+		try
+		{
+			response = mRequestFactory.buildGetRequest(url).execute();
+		} catch (HttpResponseException e)
+		{
+			// Graph answers a malformed or revoked input token with an
+			// OAuthException rather than is_valid=false
+			if (e.getStatusCode() == 400 || e.getStatusCode() == 401)
+				throw new InvalidTokenException("Access token rejected with status " + e.getStatusCode());
+			throw e;
+		}
+		DebugToken debug;
+		try
+		{
+			debug = response.parseAs(DebugToken.class);
+		} finally
+		{
+			response.disconnect();
+		}
+
+		TokenData data = debug.data;
+		if (data == null || !Boolean.TRUE.equals(data.isValid))
+			throw new InvalidTokenException("Access token is not valid");
+		if (!mAppId.equals(data.appId))
+			throw new InvalidTokenException("Access token was issued to another app");
+		if (data.userId == null)
+			throw new InvalidTokenException("Access token has no user");
+		// An expiry of 0 means the token does not expire
+		long expires_at = data.expiresAt == null || data.expiresAt == 0 ? Long.MAX_VALUE : data.expiresAt * 1000;
+		return new VerifiedToken(getProvider(), data.userId, null, expires_at);
+	}
+
+	/**
+	 * The debug_token response.
+	 */
+	public static class DebugToken
+	{
+		@Key
+		TokenData data;
+	}
+
+	public static class TokenData
+	{
+		@Key("app_id")
+		String appId;
+		@Key("is_valid")
+		Boolean isValid;
+		@Key("user_id")
+		String userId;
+		@Key("expires_at")
+		Long expiresAt;
+	}
+}
@@ -0,0 +1,245 @@
+package com.asaanloyalty.asaan.server.auth;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.asaanloyalty.asaan.auth.SocialProfile;
+import com.google.api.client.googleapis.auth.oauth2.GoogleIdToken;
+import com.google.api.client.googleapis.auth.oauth2.GoogleIdTokenVerifier;
+import com.google.api.client.googleapis.auth.oauth2.GoogleOAuthConstants;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestFactory;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.JsonObjectParser;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.client.util.Key;
+
+/**
+ * Verifies the tokens the app gets from {@code GoogleAuthUtil.getToken}.
+ *
+ * An ID token is verified locally against Google's signing keys. The keys are
+ * loaded in the background by {@link #start()} and reloaded ahead of their
+ * expiry into a fresh {@link GoogleIdTokenVerifier}, which replaces the
+ * current one only once it has its keys. Verification therefore never waits
+ * for a key download, and a failed download leaves the old keys in use. An
+ * OAuth access token is checked with Google's tokeninfo endpoint instead.
+ * Either way the token must have been issued to one of our client ids.
+ */
+public class GoogleTokenProvider implements TokenProvider
+{
+	private static final Logger logger = Logger.getLogger(GoogleTokenProvider.class.getName());
+
+	public static final String TOKEN_INFO_URL = "https://www.googleapis.com/oauth2/v1/tokeninfo";
+	/** The verifier downloads keys itself within five minutes of their expiry */
+	private static final long REFRESH_AHEAD_MS = 10 * 60 * 1000L;
+	private static final long REFRESH_RETRY_MS = 60 * 1000L;
+
+	private final HttpTransport mTransport;
+	private final JsonFactory mJsonFactory = JacksonFactory.getDefaultInstance();
+	private final HttpRequestFactory mRequestFactory;
+	private final Set<String> mClientIds;
+	private final String mTokenInfoUrl;
+	private final String mPublicCertsUrl;
+	private final ScheduledExecutorService mScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+	{
+		@Override
+		public Thread newThread(Runnable runnable)
+		{
+			Thread thread = new Thread(runnable, "google-key-refresh");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	private volatile GoogleIdTokenVerifier mVerifier;
+
+	private final Runnable mRefresh = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			refreshKeys();
+		}
+	};
+
+	/**
+	 * @param clientIds
+	 *            the OAuth client ids tokens may be issued to
+	 */
+	public GoogleTokenProvider(HttpTransport transport, Collection<String> clientIds)
+	{
+		this(transport, clientIds, TOKEN_INFO_URL, GoogleOAuthConstants.DEFAULT_PUBLIC_CERTS_ENCODED_URL);
+	}
+
+	/**
+	 * @param tokenInfoUrl
+	 *            the tokeninfo endpoint
+	 * @param publicCertsUrl
+	 *            where Google publishes its signing certificates
+	 */
+	public GoogleTokenProvider(HttpTransport transport, Collection<String> clientIds, String tokenInfoUrl,
+			String publicCertsUrl)
+	{
+		mTransport = transport;
+		mClientIds = new HashSet<String>(clientIds);
+		mTokenInfoUrl = tokenInfoUrl;
+		mPublicCertsUrl = publicCertsUrl;
+		mRequestFactory = transport.createRequestFactory(new HttpRequestInitializer()
+		{
+			@Override
+			public void initialize(HttpRequest request)
+			{
+				request.setParser(new JsonObjectParser(mJsonFactory));
+			}
+		});
+		// Loads its keys on first use if start() was not called
+		mVerifier = newVerifier();
+	}
+
+	/**
+	 * Loads the signing keys in the background and keeps them fresh.
+	 */
+	public void start()
+	{
+		mScheduler.execute(mRefresh);
+	}
+
+	public void shutdown()
+	{
+		mScheduler.shutdownNow();
+	}
+
+	@Override
+	public String getProvider()
+	{
+		return SocialProfile.PROVIDER_GOOGLE_PLUS;
+	}
+
+	@Override
+	public VerifiedToken verify(String token) throws IOException, InvalidTokenException
+	{
+		// A JWT is three base64url sections joined by dots; access tokens have
+		// at most one dot
+		int first_dot = token.indexOf('.');
+		if (first_dot > 0 && token.indexOf('.', first_dot + 1) > 0)
+			return verifyIdToken(token);
+		return verifyAccessToken(token);
+	}
+
+	private VerifiedToken verifyIdToken(String token) throws IOException, InvalidTokenException
+	{
+		GoogleIdToken id_token;
+		try
+		{
+			id_token = GoogleIdToken.parse(mJsonFactory, token);
+		} catch (IllegalArgumentException e)
+		{
+			throw new InvalidTokenException("Malformed ID token", e);
+		}
+		try
+		{
+			if (!mVerifier.verify(id_token))
+				throw new InvalidTokenException("ID token failed the signature, issuer or time check");
+		} catch (GeneralSecurityException e)
+		{
+			throw new InvalidTokenException("ID token signature could not be checked", e);
+		}
+		if (!id_token.verifyAudience(mClientIds))
+			throw new InvalidTokenException("ID token was issued to another client");
+
+		GoogleIdToken.Payload payload = id_token.getPayload();
+		return new VerifiedToken(getProvider(), payload.getSubject(), payload.getEmailVerified() ? payload.getEmail()
+				: null, payload.getExpirationTimeSeconds() * 1000);
+	}
+
+	private VerifiedToken verifyAccessToken(String token) throws IOException, InvalidTokenException
+	{
+		GenericUrl url = new GenericUrl(mTokenInfoUrl);
+		url.put("access_token", token);
+		HttpResponse response;
+		try
+		{
+			response = mRequestFactory.buildGetRequest(url).execute();
+		} catch (HttpResponseException e)
+		{
+			if (e.getStatusCode() == 400 || e.getStatusCode() == 401)
+				throw new InvalidTokenException("Access token rejected with status " + e.getStatusCode());
+			throw e;
+		}
+		TokenInfo info;
+		try
+		{
+			info = response.parseAs(TokenInfo.class);
+		} finally
+		{
+			response.disconnect();
+		}
+
+		if (!mClientIds.contains(info.audience) && !mClientIds.contains(info.issuedTo))
+			throw new InvalidTokenException("Access token was issued to another client");
+		if (info.userId == null || info.expiresIn == null)
+			throw new InvalidTokenException("Access token has no user id or lifetime");
+		return new VerifiedToken(getProvider(), info.userId, Boolean.TRUE.equals(info.verifiedEmail) ? info.email
+				: null, System.currentTimeMillis() + info.expiresIn * 1000);
+	}
+
+	/**
+	 * Runs on the scheduler.
+	 */
+	private void refreshKeys()
+	{
+		long delay;
+		try
+		{
+			GoogleIdTokenVerifier verifier = newVerifier().loadPublicCerts();
+			mVerifier = verifier;
+			delay = Math.max(REFRESH_RETRY_MS, verifier.getExpirationTimeMilliseconds() - System.currentTimeMillis()
+					- REFRESH_AHEAD_MS);
+			logger.log(Level.INFO, "Google signing keys loaded, next refresh in " + delay / 1000 + " s");
+		} catch (Exception e)
+		{
+			logger.log(Level.WARNING, "Google signing key refresh failed - " + e.getMessage());
+			delay = REFRESH_RETRY_MS;
+		}
+		if (!mScheduler.isShutdown())
+			mScheduler.schedule(mRefresh, delay, TimeUnit.MILLISECONDS);
+	}
+
+	private GoogleIdTokenVerifier newVerifier()
+	{
+		return new GoogleIdTokenVerifier.Builder(mTransport, mJsonFactory).setPublicCertsEncodedUrl(mPublicCertsUrl)
+				.build();
+	}
+
+	/**
+	 * The tokeninfo response.
+	 */
+	public static class TokenInfo
+	{
+		@Key("issued_to")
+		String issuedTo;
+		@Key
+		String audience;
+		@Key("user_id")
+		String userId;
+		@Key("expires_in")
+		Long expiresIn;
+		@Key
+		String email;
+		@Key("verified_email")
+		Boolean verifiedEmail;
+	}
+}
@@ -0,0 +1,20 @@
+package com.asaanloyalty.asaan.server.auth;
+
+/**
+ * Thrown when a provider rejects a token: it is malformed, expired, revoked
+ * or was issued to another app.
+ */
+public class InvalidTokenException extends Exception
+{
+	private static final long serialVersionUID = 1L;
+
+	public InvalidTokenException(String message)
+	{
+		super(message);
+	}
+
+	public InvalidTokenException(String message, Throwable cause)
+	{
+		super(message, cause);
+	}
+}
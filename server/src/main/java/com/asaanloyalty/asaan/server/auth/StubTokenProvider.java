@@ -0,0 +1,94 @@
+package com.asaanloyalty.asaan.server.auth;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory provider for running the backend and its tests without Google or
+ * Facebook. Tokens are issued by {@link #issue} and verified without any
+ * network; each verification can be slowed down to model a real provider's
+ * round trip.
+ */
+public class StubTokenProvider implements TokenProvider
+{
+	private final String mProvider;
+	private volatile long mLatencyMillis;
+	private final ConcurrentMap<String, VerifiedToken> mTokens = new ConcurrentHashMap<String, VerifiedToken>();
+	private final AtomicLong mNextToken = new AtomicLong();
+	private final AtomicInteger mVerifications = new AtomicInteger();
+
+	/**
+	 * @param provider
+	 *            the provider name to answer for
+	 * @param latencyMillis
+	 *            how long every verification blocks
+	 */
+	public StubTokenProvider(String provider, long latencyMillis)
+	{
+		mProvider = provider;
+		mLatencyMillis = latencyMillis;
+	}
+
+	/**
+	 * @return a new token for the user, valid for the given time
+	 */
+	public String issue(String userId, String email, long lifetimeMillis)
+	{
+		String token = "stub-" + mProvider + "-" + mNextToken.incrementAndGet();
+		mTokens.put(token, new VerifiedToken(mProvider, userId, email, System.currentTimeMillis() + lifetimeMillis));
+		return token;
+	}
+
+	/**
+	 * @param latencyMillis
+	 *            how long every verification blocks from now on
+	 */
+	public void setLatencyMillis(long latencyMillis)
+	{
+		mLatencyMillis = latencyMillis;
+	}
+
+	/**
+	 * Makes a token fail verification from now on.
+	 */
+	public void revoke(String token)
+	{
+		mTokens.remove(token);
+	}
+
+	/**
+	 * @return verifications performed so far
+	 */
+	public int getVerifications()
+	{
+		return mVerifications.get();
+	}
+
+	@Override
+	public String getProvider()
+	{
+		return mProvider;
+	}
+
+	@Override
+	public VerifiedToken verify(String token) throws InvalidTokenException
+	{
+		mVerifications.incrementAndGet();
+		if (mLatencyMillis > 0)
+		{
+			try
+			{
+				Thread.sleep(mLatencyMillis);
+			} catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+		VerifiedToken verified = mTokens.get(token);
+		if (verified == null || verified.isExpired())
+			throw new InvalidTokenException("Unknown or expired stub token");
+		return verified;
+	}
+}
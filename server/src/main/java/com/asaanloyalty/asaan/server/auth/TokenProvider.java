@@ -0,0 +1,24 @@
+package com.asaanloyalty.asaan.server.auth;
+
+import java.io.IOException;
+
+/**
+ * Verifies the tokens one social provider issues.
+ */
+public interface TokenProvider
+{
+	/**
+	 * @return the provider name, as in {@code SocialProfile.getProvider()}
+	 */
+	String getProvider();
+
+	/**
+	 * Verifies a token on the calling thread. May block on the network.
+	 *
+	 * @throws InvalidTokenException
+	 *             if the provider rejects the token
+	 * @throws IOException
+	 *             if the provider could not be asked
+	 */
+	VerifiedToken verify(String token) throws IOException, InvalidTokenException;
+}
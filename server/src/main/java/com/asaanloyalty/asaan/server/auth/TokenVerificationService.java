@@ -0,0 +1,228 @@
+package com.asaanloyalty.asaan.server.auth;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Verifies social provider tokens for the identity exchange, asking each
+ * provider at most once per token.
+ *
+ * Verified tokens are cached for at most the configured TTL and never past
+ * their own expiry. The cache keeps the most recently used
+ * {@code maxEntries} tokens and is keyed by a SHA-256 digest of the token, so
+ * bearer tokens are not held in memory. Concurrent requests for a token that
+ * is being verified wait for that verification instead of starting their own.
+ * Rejected tokens are not cached.
+ */
+public class TokenVerificationService
+{
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private static final ThreadLocal<MessageDigest> sDigest = new ThreadLocal<MessageDigest>()
+	{
+		@Override
+		protected MessageDigest initialValue()
+		{
+			try
+			{
+				return MessageDigest.getInstance("SHA-256");
+			} catch (NoSuchAlgorithmException e)
+			{
+				// Every JVM is required to provide SHA-256
+				throw new IllegalStateException(e);
+			}
+		}
+	};
+
+	private final Map<String, TokenProvider> mProviders = new HashMap<String, TokenProvider>();
+	private final long mTtlMillis;
+	/** Access-ordered, so iteration starts at the least recently used; guarded by itself */
+	private final LinkedHashMap<String, CacheEntry> mCache;
+	/** Verifications running, by cache key */
+	private final ConcurrentMap<String, FutureTask<VerifiedToken>> mInFlight =
+			new ConcurrentHashMap<String, FutureTask<VerifiedToken>>();
+	private final AtomicLong mHits = new AtomicLong();
+	private final AtomicLong mVerifications = new AtomicLong();
+
+	/**
+	 * @param maxEntries
+	 *            verified tokens to keep
+	 * @param ttlMillis
+	 *            how long a verification is trusted, however long the token
+	 *            itself lives
+	 */
+	public TokenVerificationService(final int maxEntries, long ttlMillis, TokenProvider... providers)
+	{
+		mTtlMillis = ttlMillis;
+		mCache = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest)
+			{
+				return size() > maxEntries;
+			}
+		};
+		for (TokenProvider provider : providers)
+			mProviders.put(provider.getProvider(), provider);
+	}
+
+	/**
+	 * Verifies a token, answering from the cache when possible.
+	 *
+	 * @param provider
+	 *            the provider that issued the token
+	 * @throws InvalidTokenException
+	 *             if the provider is unknown or rejects the token
+	 * @throws IOException
+	 *             if the provider could not be asked
+	 */
+	public VerifiedToken verify(String provider, final String token) throws IOException, InvalidTokenException
+	{
+		final TokenProvider source = mProviders.get(provider);
+		if (source == null)
+			throw new InvalidTokenException("Unknown provider " + provider);
+		String key = cacheKey(provider, token);
+		VerifiedToken cached = lookup(key);
+		if (cached != null)
+		{
+			mHits.incrementAndGet();
+			return cached;
+		}
+
+		FutureTask<VerifiedToken> task = new FutureTask<VerifiedToken>(new Callable<VerifiedToken>()
+		{
+			@Override
+			public VerifiedToken call() throws Exception
+			{
+				mVerifications.incrementAndGet();
+				return source.verify(token);
+			}
+		});
+		FutureTask<VerifiedToken> running = mInFlight.putIfAbsent(key, task);
+		if (running == null)
+		{
+			running = task;
+			try
+			{
+				task.run();
+				store(key, task);
+			} finally
+			{
+				// Removed only after the cache has the result, so a request
+				// arriving in between finds one or the other
+				mInFlight.remove(key);
+			}
+		}
+
+		try
+		{
+			return running.get();
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted waiting for token verification");
+		} catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof InvalidTokenException)
+				throw (InvalidTokenException) cause;
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			throw new IOException("Token verification failed", cause);
+		}
+	}
+
+	/**
+	 * @return verifications answered from the cache
+	 */
+	public long getHits()
+	{
+		return mHits.get();
+	}
+
+	/**
+	 * @return verifications passed to a provider
+	 */
+	public long getVerifications()
+	{
+		return mVerifications.get();
+	}
+
+	private VerifiedToken lookup(String key)
+	{
+		synchronized (mCache)
+		{
+			CacheEntry entry = mCache.get(key);
+			if (entry == null)
+				return null;
+			if (System.currentTimeMillis() >= entry.mCachedUntil)
+			{
+				mCache.remove(key);
+				return null;
+			}
+			return entry.mToken;
+		}
+	}
+
+	private void store(String key, FutureTask<VerifiedToken> task)
+	{
+		VerifiedToken verified;
+		try
+		{
+			verified = task.get();
+		} catch (Exception e)
+		{
+			return;
+		}
+		long cached_until = Math.min(System.currentTimeMillis() + mTtlMillis, verified.getExpiresAt());
+		synchronized (mCache)
+		{
+			mCache.put(key, new CacheEntry(verified, cached_until));
+		}
+	}
+
+	private static String cacheKey(String provider, String token)
+	{
+		MessageDigest digest = sDigest.get();
+		byte[] hash;
+		try
+		{
+			hash = digest.digest(token.getBytes("UTF-8"));
+		} catch (UnsupportedEncodingException e)
+		{
+			throw new IllegalStateException(e);
+		}
+		StringBuilder key = new StringBuilder(provider.length() + 1 + hash.length * 2).append(provider).append(':');
+		for (byte b : hash)
+			key.append(HEX[(b >> 4) & 0xf]).append(HEX[b & 0xf]);
+		return key.toString();
+	}
+
+	private static final class CacheEntry
+	{
+		final VerifiedToken mToken;
+		final long mCachedUntil;
+
+		CacheEntry(VerifiedToken token, long cachedUntil)
+		{
+			mToken = token;
+			mCachedUntil = cachedUntil;
+		}
+	}
+}
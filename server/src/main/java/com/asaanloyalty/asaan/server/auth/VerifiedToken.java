@@ -0,0 +1,67 @@
+package com.asaanloyalty.asaan.server.auth;
+
+/**
+ * The identity a provider vouched for when verifying a token.
+ */
+public final class VerifiedToken
+{
+	private final String mProvider;
+	private final String mUserId;
+	private final String mEmail;
+	private final long mExpiresAt;
+
+	/**
+	 * @param email
+	 *            the verified email, or null if the provider did not vouch for
+	 *            one
+	 * @param expiresAt
+	 *            when the token expires, in milliseconds since the epoch
+	 */
+	public VerifiedToken(String provider, String userId, String email, long expiresAt)
+	{
+		mProvider = provider;
+		mUserId = userId;
+		mEmail = email;
+		mExpiresAt = expiresAt;
+	}
+
+	public String getProvider()
+	{
+		return mProvider;
+	}
+
+	/**
+	 * @return the user's id at the provider
+	 */
+	public String getUserId()
+	{
+		return mUserId;
+	}
+
+	/**
+	 * @return the verified email, or null
+	 */
+	public String getEmail()
+	{
+		return mEmail;
+	}
+
+	/**
+	 * @return when the token expires, in milliseconds since the epoch
+	 */
+	public long getExpiresAt()
+	{
+		return mExpiresAt;
+	}
+
+	public boolean isExpired()
+	{
+		return System.currentTimeMillis() >= mExpiresAt;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "VerifiedToken{provider=" + mProvider + ", userId=" + mUserId + ", expiresAt=" + mExpiresAt + "}";
+	}
+}
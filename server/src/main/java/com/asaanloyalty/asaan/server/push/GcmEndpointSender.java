@@ -0,0 +1,117 @@
+package com.asaanloyalty.asaan.server.push;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+
+import com.google.android.gcm.server.Sender;
+
+/**
+ * {@link Sender} that posts to a configurable endpoint and remembers each
+ * thread's last connection, so the caller can read the HTTP status and the
+ * Retry-After header that {@code Sender} itself discards.
+ */
+class GcmEndpointSender extends Sender
+{
+	private static final int CONNECT_TIMEOUT_MS = 10 * 1000;
+	private static final int READ_TIMEOUT_MS = 30 * 1000;
+
+	private final String mEndpointUrl;
+	private final ThreadLocal<HttpURLConnection> mLastConnection = new ThreadLocal<HttpURLConnection>();
+
+	/**
+	 * @param apiKey
+	 *            the backend's GCM API key
+	 * @param endpointUrl
+	 *            where to post instead of the GCM send endpoint; benchmarks
+	 *            point this at a local fake
+	 */
+	GcmEndpointSender(String apiKey, String endpointUrl)
+	{
+		super(apiKey);
+		mEndpointUrl = endpointUrl;
+	}
+
+	@Override
+	protected HttpURLConnection getConnection(String url) throws IOException
+	{
+		HttpURLConnection connection = (HttpURLConnection) new URL(mEndpointUrl).openConnection();
+		connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+		connection.setReadTimeout(READ_TIMEOUT_MS);
+		mLastConnection.set(connection);
+		return connection;
+	}
+
+	/**
+	 * @return the status of this thread's last request, or -1 if it got no
+	 *         response
+	 */
+	int lastStatus()
+	{
+		HttpURLConnection connection = mLastConnection.get();
+		if (connection == null)
+			return -1;
+		try
+		{
+			return connection.getResponseCode();
+		} catch (IOException e)
+		{
+			return -1;
+		}
+	}
+
+	/**
+	 * @return how long the last response on this thread asked the sender to
+	 *         wait, in milliseconds, or 0 if it did not say
+	 */
+	long lastRetryAfterMillis()
+	{
+		HttpURLConnection connection = mLastConnection.get();
+		String value = connection != null ? connection.getHeaderField("Retry-After") : null;
+		if (value == null)
+			return 0;
+		try
+		{
+			return Math.max(0, Long.parseLong(value.trim()) * 1000);
+		} catch (NumberFormatException e)
+		{
+			// Not delta-seconds, so an HTTP-date
+		}
+		try
+		{
+			SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+			return Math.max(0, format.parse(value.trim()).getTime() - System.currentTimeMillis());
+		} catch (ParseException e)
+		{
+			return 0;
+		}
+	}
+
+	/**
+	 * Drops this thread's connection once its response has been looked at.
+	 */
+	void releaseConnection()
+	{
+		HttpURLConnection connection = mLastConnection.get();
+		mLastConnection.remove();
+		InputStream error = connection != null ? connection.getErrorStream() : null;
+		if (error == null)
+			return;
+		// Reading the error body to the end lets the connection be reused
+		try
+		{
+			byte[] buffer = new byte[1024];
+			while (error.read(buffer) != -1)
+			{
+			}
+			error.close();
+		} catch (IOException e)
+		{
+			connection.disconnect();
+		}
+	}
+}
@@ -0,0 +1,313 @@
+package com.asaanloyalty.asaan.server.push;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.android.gcm.server.Constants;
+import com.google.android.gcm.server.Message;
+import com.google.android.gcm.server.MulticastResult;
+import com.google.android.gcm.server.Result;
+
+/**
+ * Sends one GCM message to a member segment of any size.
+ *
+ * Registration ids are read lazily and grouped into multicast requests of
+ * {@link #MULTICAST_SIZE}, the most GCM accepts, which a fixed pool of workers
+ * sends concurrently. At most twice as many requests as there are workers are
+ * queued at once, so the caller stops reading ids while the pool is busy and a
+ * segment is never held in memory whole.
+ *
+ * A request that fails with a server error, and the ids within a request that
+ * GCM reports as Unavailable, are retried with exponential backoff and jitter
+ * for up to {@link #MAX_ATTEMPTS} attempts. A Retry-After header on the
+ * response is honoured as the minimum wait. Replies that make a stored id
+ * obsolete, a canonical id or NotRegistered, are passed to the
+ * {@link CleanupListener}.
+ */
+public class GcmFanOutSender
+{
+	private static final Logger logger = Logger.getLogger(GcmFanOutSender.class.getName());
+
+	/** Registration ids per multicast request */
+	public static final int MULTICAST_SIZE = 1000;
+	/** Attempts per request before its remaining ids count as failed */
+	public static final int MAX_ATTEMPTS = 5;
+	private static final long INITIAL_BACKOFF_MS = 1000L;
+	private static final long MAX_BACKOFF_MS = 60 * 1000L;
+	/** Not among the gcm-server constants, which predate it */
+	private static final String ERROR_INTERNAL_SERVER_ERROR = "InternalServerError";
+
+	/**
+	 * Receives replies that make a stored registration id obsolete. Called on
+	 * the worker threads, so implementations must be thread safe.
+	 */
+	public interface CleanupListener
+	{
+		/**
+		 * The device is registered under a newer id; store that one instead.
+		 */
+		void onCanonicalId(String registrationId, String canonicalId);
+
+		/**
+		 * The app was uninstalled or the id is invalid; stop sending to it.
+		 */
+		void onUnregistered(String registrationId);
+	}
+
+	private final GcmEndpointSender mSender;
+	private final CleanupListener mCleanup;
+	private final ExecutorService mExecutor;
+	private final int mMaxQueued;
+	private final Random mRandom = new Random();
+
+	/**
+	 * @param apiKey
+	 *            the backend's GCM API key
+	 * @param endpointUrl
+	 *            the GCM send endpoint, {@link Constants#GCM_SEND_ENDPOINT}
+	 *            outside of benchmarks
+	 * @param workers
+	 *            requests in flight at once
+	 * @param cleanup
+	 *            receives obsolete registration ids
+	 */
+	public GcmFanOutSender(String apiKey, String endpointUrl, int workers, CleanupListener cleanup)
+	{
+		mSender = new GcmEndpointSender(apiKey, endpointUrl);
+		mCleanup = cleanup;
+		mExecutor = Executors.newFixedThreadPool(workers);
+		mMaxQueued = workers * 2;
+	}
+
+	/**
+	 * Sends the message to every registration id and waits until each has
+	 * been delivered to GCM or given up on.
+	 */
+	public Report send(final Message message, Iterable<String> registrationIds) throws InterruptedException
+	{
+		final Report report = new Report();
+		final Semaphore queued = new Semaphore(mMaxQueued);
+		List<Future<?>> requests = new ArrayList<Future<?>>();
+		long start = System.nanoTime();
+
+		Iterator<String> ids = registrationIds.iterator();
+		while (ids.hasNext())
+		{
+			final List<String> chunk = new ArrayList<String>(MULTICAST_SIZE);
+			while (ids.hasNext() && chunk.size() < MULTICAST_SIZE)
+				chunk.add(ids.next());
+			queued.acquire();
+			requests.add(mExecutor.submit(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						sendMulticast(message, chunk, report);
+					} finally
+					{
+						queued.release();
+					}
+				}
+			}));
+		}
+		for (Future<?> request : requests)
+		{
+			try
+			{
+				request.get();
+			} catch (ExecutionException e)
+			{
+				logger.log(Level.WARNING, "Multicast failed - " + e.getCause());
+			}
+		}
+
+		report.mElapsedMillis = (System.nanoTime() - start) / 1000000;
+		logger.log(Level.INFO, "Fan-out finished " + report);
+		return report;
+	}
+
+	/**
+	 * Stops the workers once queued requests have been sent.
+	 */
+	public void shutdown()
+	{
+		mExecutor.shutdown();
+	}
+
+	/**
+	 * Runs on a worker.
+	 */
+	private void sendMulticast(Message message, List<String> ids, Report report)
+	{
+		List<String> pending = ids;
+		long backoff = INITIAL_BACKOFF_MS;
+		for (int attempt = 1;; attempt++)
+		{
+			report.mRequests.incrementAndGet();
+			try
+			{
+				MulticastResult result = mSender.sendNoRetry(message, pending);
+				pending = processResults(pending, result.getResults(), report);
+				if (pending.isEmpty())
+				{
+					mSender.releaseConnection();
+					return;
+				}
+			} catch (IOException e)
+			{
+				int status = mSender.lastStatus();
+				if (status >= 400 && status < 500)
+				{
+					// A malformed request or a bad API key; resending cannot help
+					logger.log(Level.WARNING, "Multicast of " + pending.size() + " rejected - " + e.getMessage());
+					report.mFailed.addAndGet(pending.size());
+					mSender.releaseConnection();
+					return;
+				}
+				logger.log(Level.INFO, "Multicast attempt " + attempt + " failed - " + e.getMessage());
+			}
+
+			long retry_after = mSender.lastRetryAfterMillis();
+			mSender.releaseConnection();
+			if (attempt == MAX_ATTEMPTS)
+			{
+				logger.log(Level.WARNING, "Multicast gave up on " + pending.size() + " ids");
+				report.mFailed.addAndGet(pending.size());
+				return;
+			}
+			// Half fixed, half random, so workers that failed together do not
+			// all come back at the same moment
+			long delay = Math.max(retry_after, backoff / 2 + (long) (mRandom.nextDouble() * backoff / 2));
+			backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+			try
+			{
+				Thread.sleep(delay);
+			} catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				report.mFailed.addAndGet(pending.size());
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return the ids to send again
+	 */
+	private List<String> processResults(List<String> ids, List<Result> results, Report report)
+	{
+		List<String> retry = new ArrayList<String>();
+		for (int i = 0; i < ids.size(); i++)
+		{
+			String id = ids.get(i);
+			Result result = i < results.size() ? results.get(i) : null;
+			if (result == null)
+			{
+				report.mFailed.incrementAndGet();
+			} else if (result.getMessageId() != null)
+			{
+				report.mSent.incrementAndGet();
+				if (result.getCanonicalRegistrationId() != null)
+				{
+					report.mCanonicalIds.incrementAndGet();
+					mCleanup.onCanonicalId(id, result.getCanonicalRegistrationId());
+				}
+			} else
+			{
+				String error = result.getErrorCodeName();
+				if (Constants.ERROR_UNAVAILABLE.equals(error) || ERROR_INTERNAL_SERVER_ERROR.equals(error))
+					retry.add(id);
+				else if (Constants.ERROR_NOT_REGISTERED.equals(error)
+						|| Constants.ERROR_INVALID_REGISTRATION.equals(error))
+				{
+					report.mUnregistered.incrementAndGet();
+					mCleanup.onUnregistered(id);
+				} else
+				{
+					logger.log(Level.FINE, "Multicast to " + id + " failed - " + error);
+					report.mFailed.incrementAndGet();
+				}
+			}
+		}
+		return retry;
+	}
+
+	/**
+	 * Counts from one {@link GcmFanOutSender#send}.
+	 */
+	public static final class Report
+	{
+		private final AtomicInteger mSent = new AtomicInteger();
+		private final AtomicInteger mFailed = new AtomicInteger();
+		private final AtomicInteger mCanonicalIds = new AtomicInteger();
+		private final AtomicInteger mUnregistered = new AtomicInteger();
+		private final AtomicInteger mRequests = new AtomicInteger();
+		private volatile long mElapsedMillis;
+
+		/**
+		 * @return ids GCM accepted the message for
+		 */
+		public int getSent()
+		{
+			return mSent.get();
+		}
+
+		/**
+		 * @return ids given up on, other than unregistered ones
+		 */
+		public int getFailed()
+		{
+			return mFailed.get();
+		}
+
+		/**
+		 * @return accepted ids that GCM reported a newer id for
+		 */
+		public int getCanonicalIds()
+		{
+			return mCanonicalIds.get();
+		}
+
+		/**
+		 * @return ids GCM reported as NotRegistered or invalid
+		 */
+		public int getUnregistered()
+		{
+			return mUnregistered.get();
+		}
+
+		/**
+		 * @return HTTP requests made, including retries
+		 */
+		public int getRequests()
+		{
+			return mRequests.get();
+		}
+
+		public long getElapsedMillis()
+		{
+			return mElapsedMillis;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "Report{sent=" + mSent + ", failed=" + mFailed + ", canonicalIds=" + mCanonicalIds
+					+ ", unregistered=" + mUnregistered + ", requests=" + mRequests + ", elapsedMillis="
+					+ mElapsedMillis + "}";
+		}
+	}
+}